@@ -0,0 +1,74 @@
+package com.napier.devops.bench;
+
+import com.napier.devops.models.City;
+import com.napier.devops.models.Population;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic world-like rows shared by the benchmarks.
+ * A fixed seed keeps every run measuring exactly the same data.
+ */
+final class BenchData {
+    private static final String[] CONTINENTS = {"Asia", "Europe", "North America", "Africa", "Oceania", "Antarctica", "South America"};
+
+    private BenchData() {}
+
+    static InMemoryTable cityTable(int rows) {
+        Random random = new Random(42);
+        List<Object[]> data = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            data.add(new Object[]{i + 1, "City " + i, "Country " + (i % 239), CONTINENTS[i % CONTINENTS.length],
+                    "District " + (i % 1367), random.nextInt(10_000_000)});
+        }
+        return new InMemoryTable(List.of("ID", "Name", "Country", "Continent", "District", "Population"), data);
+    }
+
+    static InMemoryTable countryTable(int rows) {
+        Random random = new Random(42);
+        List<Object[]> data = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            data.add(new Object[]{String.format("C%02d", i % 100), "Country " + i, CONTINENTS[i % CONTINENTS.length],
+                    "Region " + (i % 25), (long) random.nextInt(1_000_000_000), i % 10 == 0 ? null : "Capital " + i});
+        }
+        return new InMemoryTable(List.of("Code", "Name", "Continent", "Region", "Population", "Capital"), data);
+    }
+
+    static InMemoryTable languageTable(int rows) {
+        Random random = new Random(42);
+        List<Object[]> data = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            // One row per (country, language), the shape of LanguageStats' country LEFT JOIN countrylanguage
+            int country = i / 4;
+            data.add(new Object[]{String.format("C%04d", country), "Country " + country,
+                    CONTINENTS[country % CONTINENTS.length], "Region " + (country % 25),
+                    (long) random.nextInt(100_000_000), "Language " + random.nextInt(500),
+                    Math.round(random.nextDouble() * 250) / 10.0});
+        }
+        return new InMemoryTable(List.of("Code", "Name", "Continent", "Region", "Population", "Language",
+                "Percentage"), data);
+    }
+
+    static List<City> cities(int rows) {
+        Random random = new Random(42);
+        List<City> cities = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            cities.add(new City("City " + i, "District " + (i % 1367), "Country " + (i % 239),
+                    CONTINENTS[i % CONTINENTS.length], random.nextInt(10_000_000)));
+        }
+        return cities;
+    }
+
+    static List<Population> populations(int rows) {
+        Random random = new Random(42);
+        List<Population> populations = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            long total = random.nextInt(1_000_000_000);
+            long inCities = total / (2 + random.nextInt(5));
+            populations.add(new Population("Country " + i, total, inCities, total - inCities));
+        }
+        return populations;
+    }
+}
@@ -0,0 +1,65 @@
+package com.napier.devops.bench;
+
+import com.napier.devops.dao.CityDAO;
+import com.napier.devops.dao.CountryDAO;
+import com.napier.devops.dao.LanguageDAO;
+import com.napier.devops.dao.LanguageStats;
+import com.napier.devops.models.City;
+import com.napier.devops.models.Country;
+import com.napier.devops.models.Language;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the DAO loops that map ResultSet rows to model objects
+ * (queryCities and queryCountries) over an in-memory result set, and the language report,
+ * both served from built statistics and including the single pass that builds them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DaoMappingBenchmark {
+
+    /** 4079 is the size of the stock city table; the larger value stands in for the enlarged dataset. */
+    @Param({"4079", "100000"})
+    public int rows;
+
+    private CityDAO cityDAO;
+    private CountryDAO countryDAO;
+    private LanguageDAO languageDAO;
+    private InMemoryTable languageSource;
+
+    @Setup
+    public void setUp() {
+        cityDAO = new CityDAO(BenchData.cityTable(rows));
+        countryDAO = new CountryDAO(BenchData.countryTable(rows));
+        languageSource = BenchData.languageTable(rows);
+        languageDAO = new LanguageDAO(languageSource);
+    }
+
+    @Benchmark
+    public List<City> mapCities() {
+        return cityDAO.getCitiesByPopulation();
+    }
+
+    @Benchmark
+    public List<Country> mapCountries() {
+        return countryDAO.getCountriesByPopulation();
+    }
+
+    @Benchmark
+    public List<Language> mapLanguages() {
+        return languageDAO.getLanguagesByContinent("Asia");
+    }
+
+    @Benchmark
+    public LanguageStats buildLanguageStats() throws SQLException {
+        return LanguageStats.load(languageSource);
+    }
+}
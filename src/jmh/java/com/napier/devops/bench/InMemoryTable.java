@@ -0,0 +1,91 @@
+package com.napier.devops.bench;
+
+import com.napier.devops.db.ConnectionSource;
+
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A stand-in JDBC source that answers every query with the same in-memory rows.
+ * It lets the benchmarks drive the real DAO mapping loops without a network or MySQL,
+ * so what is measured is the mapping code rather than the database.
+ */
+public class InMemoryTable implements ConnectionSource {
+    private final Map<String, Integer> columns = new HashMap<>();
+    private final List<Object[]> rows;
+
+    /**
+     * @param columnNames the column labels, in the order values appear in each row
+     * @param rows the rows every query returns
+     */
+    public InMemoryTable(List<String> columnNames, List<Object[]> rows) {
+        for (int i = 0; i < columnNames.size(); i++) {
+            columns.put(columnNames.get(i).toLowerCase(Locale.ROOT), i);
+        }
+        this.rows = rows;
+    }
+
+    @Override
+    public Connection getConnection() {
+        return proxy(Connection.class, (method, args) -> switch (method) {
+            case "prepareStatement" -> statement();
+            case "isClosed" -> false;
+            default -> null;
+        });
+    }
+
+    private PreparedStatement statement() {
+        return proxy(PreparedStatement.class, (method, args) -> switch (method) {
+            case "executeQuery" -> resultSet();
+            default -> null;
+        });
+    }
+
+    private ResultSet resultSet() {
+        int[] cursor = {-1};
+        Object[] last = {null};
+        return proxy(ResultSet.class, (method, args) -> {
+            switch (method) {
+                case "next":
+                    return ++cursor[0] < rows.size();
+                case "close":
+                    return null;
+                case "wasNull":
+                    return last[0] == null;
+                case "findColumn":
+                    return column(args[0]) + 1;
+                default:
+                    break;
+            }
+            Object value = rows.get(cursor[0])[args[0] instanceof Integer i ? i - 1 : column(args[0])];
+            last[0] = value;
+            return switch (method) {
+                case "getString" -> value == null ? null : value.toString();
+                case "getInt" -> value == null ? 0 : ((Number) value).intValue();
+                case "getLong" -> value == null ? 0L : ((Number) value).longValue();
+                case "getDouble" -> value == null ? 0.0 : ((Number) value).doubleValue();
+                default -> value;
+            };
+        });
+    }
+
+    private int column(Object label) throws SQLException {
+        Integer index = columns.get(label.toString().toLowerCase(Locale.ROOT));
+        if (index == null) throw new SQLException("Column '" + label + "' not found");
+        return index;
+    }
+
+    private interface Handler {
+        Object handle(String method, Object[] args) throws Throwable;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(InMemoryTable.class.getClassLoader(), new Class<?>[]{type},
+                (p, method, args) -> handler.handle(method.getName(), args));
+    }
+}
@@ -0,0 +1,44 @@
+package com.napier.devops.bench;
+
+import com.google.gson.Gson;
+import com.napier.devops.models.City;
+import com.napier.devops.models.Population;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Gson serialisation of the report lists the web server returns.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    @Param({"4079", "100000"})
+    public int rows;
+
+    private final Gson gson = new Gson();
+    private List<City> cities;
+    private List<Population> populations;
+
+    @Setup
+    public void setUp() {
+        cities = BenchData.cities(rows);
+        populations = BenchData.populations(rows);
+    }
+
+    @Benchmark
+    public String cities() {
+        return gson.toJson(cities);
+    }
+
+    @Benchmark
+    public String populations() {
+        return gson.toJson(populations);
+    }
+}
@@ -0,0 +1,54 @@
+package com.napier.devops.bench;
+
+import com.napier.devops.models.City;
+import com.napier.devops.util.TablePrinter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building and printing a console report table.
+ * Standard output is swapped for a discarding stream so only the rendering is timed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TablePrinterBenchmark {
+
+    @Param({"4079", "100000"})
+    public int rows;
+
+    @Param({"20"})
+    public int pageSize;
+
+    private List<City> cities;
+    private PrintStream originalOut;
+
+    @Setup
+    public void setUp() {
+        cities = BenchData.cities(rows);
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    public TablePrinter print() {
+        TablePrinter table = new TablePrinter("Name", "Country", "District", "Population");
+        for (City c : cities) {
+            table.addRow(c.getName(), c.getCountry(), c.getDistrict(), c.getPopulation());
+        }
+        table.print(pageSize);
+        return table;
+    }
+}
@@ -1,11 +1,19 @@
 package com.napier.devops;
 
+import com.napier.devops.batch.ReportScheduler;
+import com.napier.devops.batch.ReportTask;
 import com.napier.devops.dao.*;
+import com.napier.devops.db.ConnectionPool;
+import com.napier.devops.db.ConnectionSource;
+import com.napier.devops.db.DataVersion;
 import com.napier.devops.db.Database;
+import com.napier.devops.db.DatabaseManager;
 import com.napier.devops.util.TablePrinter;
 import com.napier.devops.www.WebServer;
 
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Objects;
 import java.util.Scanner;
 
 
@@ -37,6 +45,17 @@ public class App {
      * @param args Command line arguments (currently not used)
      */
     public static void main(String[] args) {
+        // Check if web server mode is enabled via environment variable.
+        // It starts first: with a saved snapshot it serves reports before the database is up
+        if (System.getenv("WEB_MODE") != null &&  System.getenv("WEB_MODE").equals("true")) {
+            try {
+
+                // Start the web server on port 8081
+                new WebServer().start();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }        }
+
         // Initialize database connection
         Database db = new Database();
         db.connect();
@@ -51,25 +70,31 @@ public class App {
         LookupDAO lookupDAO = new LookupDAO(conn);
         LanguageDAO languageDAO = new LanguageDAO(conn);
 
-        // Check if web server mode is enabled via environment variable
-        if (System.getenv("WEB_MODE") != null &&  System.getenv("WEB_MODE").equals("true")) {
-            try {
-
-                // Start the web server on port 8081
-                new WebServer().start();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }        }
-
         // Check if batch mode is enabled via environment variable
         if (System.getenv("BATCH_MODE") != null  && System.getenv("BATCH_MODE").equals("true")) {
             System.out.println(System.getenv("BATCH_MODE"));
-            // Run predefined batch reports
-            runBatchReports(countryDAO, cityDAO, capitalDAO, populationDAO, languageDAO);
+            // Run predefined batch reports, each borrowing its own pooled connection
+            // so that independent reports wait on the database in parallel
+            try {
+                ConnectionPool pool = DatabaseManager.getPool();
+                runBatchReports(new CountryDAO(pool), new CityDAO(pool), new CapitalCityDAO(pool),
+                        new PopulationDAO(pool), new LanguageDAO(pool),
+                        ReportScheduler.fromEnv(pool.getConfig().getMaxSize()));
+            } catch (SQLException e) {
+                // No pool: run one report at a time on the shared connection
+                runBatchReports(countryDAO, cityDAO, capitalDAO, populationDAO, languageDAO, new ReportScheduler(1));
+            }
         }
         if (System.getenv("CONSOLE_MODE") != null  && System.getenv("BATCH_MODE").equals("CONSOLE_MODE")) {
             // Run in console
             Scanner scanner = new Scanner(System.in);
+            // Load the lookup lists up front and reload them when the data changes,
+            // unless the web server already keeps the shared lookup cache current
+            // or there is no database to watch
+            if (conn != null && !"true".equals(System.getenv("WEB_MODE"))) {
+                LookupCache.shared().watch(DataVersion.fromEnv(ConnectionSource.of(conn)));
+            }
+            lookupDAO.refreshIndex();
             MenuManager menu = new MenuManager(scanner, countryDAO, cityDAO, capitalDAO, populationDAO, lookupDAO, languageDAO);
             menu.start();
         }
@@ -92,6 +117,8 @@ public class App {
      * - Top 10 global populations by continent
      * - Top 5 languages by number of speakers.
 
+     * Reports run concurrently (BATCH_THREADS at a time) and are printed in the order above.
+
      * @param countryDAO Data access object for country queries
      * @param cityDAO Data access object for city queries
      * @param capitalDAO Data access object for capital city queries
@@ -105,52 +132,90 @@ public class App {
             CityDAO cityDAO,
             CapitalCityDAO capitalDAO,
             PopulationDAO populationDAO, LanguageDAO languageDAO) {
+        runBatchReports(countryDAO, cityDAO, capitalDAO, populationDAO, languageDAO, ReportScheduler.fromEnv(4));
+    }
+
+    /**
+     * Runs the batch reports as independent tasks on the given scheduler.
+     * Reports run concurrently but are always printed in the same order.
+
+     * @param scheduler Decides how many reports run at once
+     */
+    public static void runBatchReports(
+            CountryDAO countryDAO,
+            CityDAO cityDAO,
+            CapitalCityDAO capitalDAO,
+            PopulationDAO populationDAO, LanguageDAO languageDAO,
+            ReportScheduler scheduler) {
+        // Fail fast rather than report five failures when a DAO is missing
+        Objects.requireNonNull(countryDAO, "countryDAO");
+        Objects.requireNonNull(cityDAO, "cityDAO");
+        Objects.requireNonNull(capitalDAO, "capitalDAO");
+        Objects.requireNonNull(populationDAO, "populationDAO");
+        Objects.requireNonNull(languageDAO, "languageDAO");
 
         System.out.println("Running in batch mode...");
 
         // Generate top N countries by population
-        var topCountries = countryDAO.getCountriesByPopulation(10);
-        TablePrinter tp1 = new TablePrinter("Code", "Name", "Continent", "Region", "Population");
-        topCountries.forEach(c -> tp1.addRow(c.getCode(), c.getName(), c.getContinent(), c.getRegion(), c.getPopulation()));
-        System.out.println("\nTop 10 Countries by Population");
-        tp1.print(20);
+        scheduler.add(new ReportTask("top-countries", (upstream, out) -> {
+            var topCountries = countryDAO.getCountriesByPopulation(10);
+            TablePrinter tp1 = new TablePrinter("Code", "Name", "Continent", "Region", "Population");
+            topCountries.forEach(c -> tp1.addRow(c.getCode(), c.getName(), c.getContinent(), c.getRegion(), c.getPopulation()));
+            out.println("\nTop 10 Countries by Population");
+            tp1.print(20, out);
+            return topCountries;
+        }));
 
         // Generate top N cities
-        var topCities = cityDAO.getCitiesByPopulation(10);
-        TablePrinter tp2 = new TablePrinter( "Capital", "Country", "District", "Population");
-        topCities.forEach(c -> tp2.addRow( c.getName(), c.getCountry(), c.getDistrict(), c.getPopulation()));
-        System.out.println("\nTop 10 Cities by Population");
-        tp2.print(20);
+        scheduler.add(new ReportTask("top-cities", (upstream, out) -> {
+            var topCities = cityDAO.getCitiesByPopulation(10);
+            TablePrinter tp2 = new TablePrinter( "Capital", "Country", "District", "Population");
+            topCities.forEach(c -> tp2.addRow( c.getName(), c.getCountry(), c.getDistrict(), c.getPopulation()));
+            out.println("\nTop 10 Cities by Population");
+            tp2.print(20, out);
+            return topCities;
+        }));
 
         // Generate top N capital cities
-        var topCapitals = capitalDAO.getCapitalCitiesByPopulation(10);
-        TablePrinter tp3 = new TablePrinter( "Capital", "Country", "Continent", "Region", "Population");
-        topCapitals.forEach(c -> tp3.addRow(c.getName(), c.getCountry(), c.getContinent(), c.getRegion(), c.getPopulation()));
-        System.out.println("\nTop 10 Capital Cities by Population");
-        tp3.print(20);
+        scheduler.add(new ReportTask("top-capitals", (upstream, out) -> {
+            var topCapitals = capitalDAO.getCapitalCitiesByPopulation(10);
+            TablePrinter tp3 = new TablePrinter( "Capital", "Country", "Continent", "Region", "Population");
+            topCapitals.forEach(c -> tp3.addRow(c.getName(), c.getCountry(), c.getContinent(), c.getRegion(), c.getPopulation()));
+            out.println("\nTop 10 Capital Cities by Population");
+            tp3.print(20, out);
+            return topCapitals;
+        }));
 
         // Generate top N populations
-        var populations = populationDAO.getGlobalPopulations(10);
-        TablePrinter tp4 = new TablePrinter("Continent", "Total", "In Cities", "Not in Cities");
-        populations.forEach(p -> tp4.addRow(
-                p.getLabel(),
-                p.getTotalPopulation(),
-                p.getCityPopulation(),
-                p.getNonCityPopulation()
-        ));
-        System.out.println("\nTop 10 Populations Globally");
-        tp4.print(20);
+        scheduler.add(new ReportTask("top-populations", (upstream, out) -> {
+            var populations = populationDAO.getGlobalPopulations(10);
+            TablePrinter tp4 = new TablePrinter("Continent", "Total", "In Cities", "Not in Cities");
+            populations.forEach(p -> tp4.addRow(
+                    p.getLabel(),
+                    p.getTotalPopulation(),
+                    p.getCityPopulation(),
+                    p.getNonCityPopulation()
+            ));
+            out.println("\nTop 10 Populations Globally");
+            tp4.print(20, out);
+            return populations;
+        }));
 
         // Generate top N Languages
-        var languages = languageDAO.getLanguagesByPopulation(5);
-        TablePrinter tp5 = new TablePrinter("Language", "Speakers", "% of Global Population");
-        languages.forEach(r -> tp5.addRow(
-                r.getLanguage(),
-                r.getSpeakers(),
-                r.getPercentOfGlobalPopulation()
-        ));
-        System.out.println("\nTop 5 Languages");
-        tp5.print(20);
+        scheduler.add(new ReportTask("top-languages", (upstream, out) -> {
+            var languages = languageDAO.getLanguagesByPopulation(5);
+            TablePrinter tp5 = new TablePrinter("Language", "Speakers", "% of Global Population");
+            languages.forEach(r -> tp5.addRow(
+                    r.getLanguage(),
+                    r.getSpeakers(),
+                    r.getPercentOfGlobalPopulation()
+            ));
+            out.println("\nTop 5 Languages");
+            tp5.print(20, out);
+            return languages;
+        }));
+
+        scheduler.run(System.out);
     }
 
 }
@@ -992,10 +992,16 @@ public class MenuManager {
         for (int i = 0; i < continents.size(); i++) {
             System.out.println((i + 1) + ". " + continents.get(i).getValue());
         }
-        System.out.print("Select a continent (0 = Cancel): ");
-        int choice = Integer.parseInt(scanner.nextLine());
+        System.out.print("Select a continent by number or name (0 = Cancel): ");
+        String input = scanner.nextLine().trim();
         // Return null if the user chose 0 (cancel), otherwise return the selected continent
-        return choice == 0 ? null : continents.get(choice - 1).getValue();
+        if (input.equals("0")) return null;
+        String continent = pick(continents, input, LookupIndex.Type.CONTINENT);
+        if (continent == null) {
+            System.out.println("Invalid choice. Try again.");
+            return chooseContinent();
+        }
+        return continent;
     }
 
     /**
@@ -1007,9 +1013,15 @@ public class MenuManager {
         for (int i = 0; i < regions.size(); i++) {
             System.out.println((i + 1) + ". " + regions.get(i).getValue());
         }
-        System.out.print("Select a region (0 = Cancel): ");
-        int choice = Integer.parseInt(scanner.nextLine());
-        return choice == 0 ? null : regions.get(choice - 1).getValue();
+        System.out.print("Select a region by number or name (0 = Cancel): ");
+        String input = scanner.nextLine().trim();
+        if (input.equals("0")) return null;
+        String region = pick(regions, input, LookupIndex.Type.REGION);
+        if (region == null) {
+            System.out.println("Invalid choice. Try again.");
+            return chooseRegion();
+        }
+        return region;
     }
 
     /**
@@ -1026,8 +1038,9 @@ public class MenuManager {
 
         }
 
-        System.out.print("Enter a country code (0 = Cancel): ");
-        String input = scanner.nextLine().trim().toUpperCase(); // Convert to uppercase for consistency
+        System.out.print("Enter a country code or name (0 = Cancel): ");
+        String typed = scanner.nextLine().trim();
+        String input = typed.toUpperCase(); // Convert to uppercase for consistency
 
 
         if (input.equals("0")) return null; // User cancelled
@@ -1037,6 +1050,17 @@ public class MenuManager {
         boolean exists = countries.stream()
                 .anyMatch(c -> c.getType().equalsIgnoreCase(input));
         if (!exists) {
+            // Not a code, so try it as a (possibly mistyped) country name
+            Lookup match = lookupDAO.resolve(LookupIndex.Type.COUNTRY, typed);
+            if (match != null && countries.stream().anyMatch(c -> c.getType().equalsIgnoreCase(match.getType()))) {
+                System.out.println("Using " + match.getValue() + " (" + match.getType() + ")");
+                return match.getType();
+            }
+            List<Lookup> close = lookupDAO.suggest(LookupIndex.Type.COUNTRY, typed, 3);
+            if (!close.isEmpty()) {
+                System.out.println("Did you mean: " + String.join(", ",
+                        close.stream().map(c -> c.getValue() + " (" + c.getType() + ")").toList()) + "?");
+            }
             System.out.println("Invalid country code. Try again.");
             return chooseCountry(); // Recursively ask again
 
@@ -1064,24 +1088,49 @@ public class MenuManager {
             System.out.println((i + 1) + ". " + districts.get(i).getValue());
         }
 
-        System.out.print("Select a district (0 = Cancel): ");
-        int choice;
-        try {
-            choice = Integer.parseInt(scanner.nextLine());
-        } catch (NumberFormatException e) {
-            System.out.println("Invalid input. Please enter a number.");
-            return chooseDistrict(countryCode); // Retry on invalid input
-
-        }
+        System.out.print("Select a district by number or name (0 = Cancel): ");
+        String input = scanner.nextLine().trim();
+        if (input.equals("0")) return null;
 
-        if (choice == 0) return null;
-        if (choice < 1 || choice > districts.size()) {
+        String district = pick(districts, input, LookupIndex.Type.DISTRICT);
+        if (district == null) {
             System.out.println("Invalid choice. Try again.");
-            return chooseDistrict(countryCode); // Retry on out-of-range selection
+            return chooseDistrict(countryCode); // Retry on invalid or out-of-range input
 
         }
 
-        return districts.get(choice - 1).getValue();
+        return district;
+    }
+
+    /**
+     * Resolves a selection typed at a numbered prompt: either the number of an option, or an
+     * option's name, where small typos are corrected through the lookup index.
+     * @param options - the numbered options that were shown
+     * @param input - what the user typed
+     * @param type - the kind of name the options hold
+     * @return the chosen option's name, or null if the input matches none of them
+     */
+    private String pick(List<Lookup> options, String input, LookupIndex.Type type) {
+        if (!input.isEmpty() && input.chars().allMatch(Character::isDigit)) {
+            int choice = Integer.parseInt(input);
+            return choice >= 1 && choice <= options.size() ? options.get(choice - 1).getValue() : null;
+        }
+        Lookup match = lookupDAO.resolve(type, input);
+        if (match != null) {
+            for (Lookup option : options) {
+                if (option.getValue().equalsIgnoreCase(match.getValue())) {
+                    if (!option.getValue().equalsIgnoreCase(input)) System.out.println("Using " + option.getValue());
+                    return option.getValue();
+                }
+            }
+        }
+        List<String> close = lookupDAO.suggest(type, input, 10).stream()
+                .map(Lookup::getValue)
+                .filter(name -> options.stream().anyMatch(o -> o.getValue().equalsIgnoreCase(name)))
+                .limit(3)
+                .toList();
+        if (!close.isEmpty()) System.out.println("Did you mean: " + String.join(", ", close) + "?");
+        return null;
     }
 
     /**
@@ -0,0 +1,164 @@
+package com.napier.devops.batch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a batch of reports as a dependency graph on a bounded thread pool.
+
+ * Each report starts as soon as the reports it depends on have finished, so independent
+ * reports overlap their database waits. Whatever a report prints is buffered and written
+ * out in the order the reports were added, so the output is the same on every run no
+ * matter which report finishes first. A failed report is reported in its place and the
+ * reports depending on it are skipped; the rest of the batch still runs.
+ */
+public class ReportScheduler {
+    private static final Logger logger = Logger.getLogger(ReportScheduler.class.getName());
+
+    private final int threads;
+    private final Map<String, ReportTask> tasks = new LinkedHashMap<>();
+
+    /**
+     * @param threads maximum number of reports running at once
+     */
+    public ReportScheduler(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Creates a scheduler sized by the BATCH_THREADS environment variable (default 4).
+     * Each running report holds one connection, so this should not exceed the pool size.
+     *
+     * @param maxThreads upper bound, normally the connection pool's maximum size
+     * @return the scheduler
+     */
+    public static ReportScheduler fromEnv(int maxThreads) {
+        int threads = 4;
+        try {
+            threads = Integer.parseInt(System.getenv().getOrDefault("BATCH_THREADS", "4"));
+        } catch (NumberFormatException ignored) {
+            // keep the default
+        }
+        return new ReportScheduler(Math.min(threads, maxThreads));
+    }
+
+    /**
+     * Adds a report to the batch. Reports are printed in the order they are added.
+     *
+     * @param task the report to add
+     * @return this scheduler
+     * @throws IllegalArgumentException if a report with the same id was already added
+     */
+    public ReportScheduler add(ReportTask task) {
+        if (tasks.putIfAbsent(task.getId(), task) != null) {
+            throw new IllegalArgumentException("Duplicate report id: " + task.getId());
+        }
+        return this;
+    }
+
+    /**
+     * Runs every report and prints their output in the order they were added.
+     *
+     * @param out where the reports are printed
+     * @return the values returned by the reports that succeeded, keyed by id in the order added
+     * @throws IllegalArgumentException if a dependency is unknown or the dependencies form a cycle
+     */
+    public Map<String, Object> run(PrintStream out) {
+        List<ReportTask> order = topologicalOrder();
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "batch-report-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        try {
+            Map<String, CompletableFuture<Outcome>> futures = new HashMap<>();
+            for (ReportTask task : order) {
+                Map<String, CompletableFuture<Outcome>> upstream = new LinkedHashMap<>();
+                task.getDependsOn().forEach(id -> upstream.put(id, futures.get(id)));
+                futures.put(task.getId(), CompletableFuture.allOf(upstream.values().toArray(CompletableFuture[]::new))
+                        .thenApplyAsync(ignored -> execute(task, upstream), executor));
+            }
+
+            Map<String, Object> results = new LinkedHashMap<>();
+            for (ReportTask task : tasks.values()) {
+                Outcome outcome = futures.get(task.getId()).join();
+                out.print(outcome.output());
+                out.flush();
+                if (outcome.succeeded()) results.put(task.getId(), outcome.value());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Outcome execute(ReportTask task, Map<String, CompletableFuture<Outcome>> dependencies) {
+        Map<String, Object> upstream = new HashMap<>();
+        for (Map.Entry<String, CompletableFuture<Outcome>> dependency : dependencies.entrySet()) {
+            // Already complete: this only runs once every dependency has finished
+            Outcome result = dependency.getValue().join();
+            if (!result.succeeded()) {
+                return Outcome.failed("\nSkipped " + task.getId() + ": " + dependency.getKey() + " did not complete\n");
+            }
+            upstream.put(dependency.getKey(), result.value());
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        PrintStream printer = new PrintStream(buffer, true, StandardCharsets.UTF_8);
+        try {
+            Object value = task.getReport().run(Collections.unmodifiableMap(upstream), printer);
+            return new Outcome(buffer.toString(StandardCharsets.UTF_8), value, true);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Report " + task.getId() + " failed", e);
+            printer.println("\nReport " + task.getId() + " failed: " + e);
+            return Outcome.failed(buffer.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Orders the reports so each comes after everything it depends on,
+     * checking that every dependency exists and that there are no cycles.
+     */
+    private List<ReportTask> topologicalOrder() {
+        List<ReportTask> order = new ArrayList<>();
+        Set<String> done = new HashSet<>();
+        Set<String> inProgress = new HashSet<>();
+        for (ReportTask task : tasks.values()) {
+            visit(task, done, inProgress, order);
+        }
+        return order;
+    }
+
+    private void visit(ReportTask task, Set<String> done, Set<String> inProgress, List<ReportTask> order) {
+        if (done.contains(task.getId())) return;
+        if (!inProgress.add(task.getId())) {
+            throw new IllegalArgumentException("Report dependencies form a cycle at " + task.getId());
+        }
+        for (String dependency : task.getDependsOn()) {
+            ReportTask upstream = tasks.get(dependency);
+            if (upstream == null) {
+                throw new IllegalArgumentException("Report " + task.getId() + " depends on unknown report " + dependency);
+            }
+            visit(upstream, done, inProgress, order);
+        }
+        inProgress.remove(task.getId());
+        done.add(task.getId());
+        order.add(task);
+    }
+
+    private record Outcome(String output, Object value, boolean succeeded) {
+        static Outcome failed(String output) {
+            return new Outcome(output, null, false);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.napier.devops.batch;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One report in a batch run: an id, the ids of the reports it depends on,
+ * and the work that produces it.
+ */
+public class ReportTask {
+
+    /**
+     * The work a report does. Anything it prints goes to {@code out}, which the
+     * scheduler buffers and prints once every earlier report has been printed.
+     */
+    @FunctionalInterface
+    public interface Report {
+        /**
+         * @param upstream values returned by the reports this one depends on, keyed by id
+         * @param out where to print the report
+         * @return a value made available to dependent reports, may be null
+         * @throws Exception if the report fails; dependent reports are then skipped
+         */
+        Object run(Map<String, Object> upstream, PrintStream out) throws Exception;
+    }
+
+    private final String id;
+    private final List<String> dependsOn;
+    private final Report report;
+
+    /**
+     * @param id unique id of the report within the batch
+     * @param dependsOn ids of reports that must finish first
+     * @param report the work to run
+     */
+    public ReportTask(String id, List<String> dependsOn, Report report) {
+        this.id = id;
+        this.dependsOn = List.copyOf(dependsOn);
+        this.report = report;
+    }
+
+    /**
+     * Creates a report with no dependencies.
+     */
+    public ReportTask(String id, Report report) {
+        this(id, List.of(), report);
+    }
+
+    public String getId() { return id; }
+
+    public List<String> getDependsOn() { return dependsOn; }
+
+    public Report getReport() { return report; }
+}
@@ -1,8 +1,14 @@
 package com.napier.devops.dao;
 
+import com.napier.devops.db.ConnectionSource;
+import com.napier.devops.db.SlowQueryLog;
+import com.napier.devops.metrics.Metrics;
 import com.napier.devops.models.CapitalCity;
+import com.napier.devops.snapshot.SnapshotReports;
+import com.napier.devops.util.SingleFlight;
 import java.sql.*;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -12,16 +18,46 @@ import java.util.logging.Logger;
  * population, continent, and region, with optional limits on result count.
  */
 public class CapitalCityDAO {
-    private final Connection conn;
+    private final ConnectionSource source;
+    private volatile SnapshotReports snapshot;
+    /** Lets concurrent identical report queries share one execution; each caller gets its own list. */
+    private final SingleFlight<ReportQuery, List<CapitalCity>> flights = new SingleFlight<>(ArrayList::new);
+    // Connector/J only streams a result set row by row when the fetch size is Integer.MIN_VALUE
+    private static final int STREAM_ROWS = Integer.MIN_VALUE;
     private static final Logger logger = Logger.getLogger(CapitalCityDAO.class.getName());
 
+    private static final String SELECT_CAPITALS =
+            "SELECT city.ID, city.Name, country.Name AS Country, country.Continent, country.Region, city.Population " +
+            "FROM country JOIN city ON country.Capital = city.ID";
+    private static final Map<Scope, String> FILTERS = Map.of(
+            Scope.CONTINENT, "country.Continent",
+            Scope.REGION, "country.Region");
+
     /**
      * Constructs a CapitalCityDAO with the provided database connection.
      *
      * @param conn the database connection to use for queries
      */
     public CapitalCityDAO(Connection conn) {
-        this.conn = conn;
+        this(ConnectionSource.of(conn));
+    }
+
+    /**
+     * Constructs a CapitalCityDAO that borrows a connection for each query, e.g. from a ConnectionPool.
+     *
+     * @param source supplies the connection used by each query
+     */
+    public CapitalCityDAO(ConnectionSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Serves this DAO's reports from an in-memory snapshot instead of querying MySQL.
+     *
+     * @param snapshot the snapshot to answer from, or null to go back to the database
+     */
+    public void setSnapshot(SnapshotReports snapshot) {
+        this.snapshot = snapshot;
     }
 
     /**
@@ -30,10 +66,11 @@ public class CapitalCityDAO {
      * @return a list of CapitalCity objects sorted by population (highest first)
      */
     public List<CapitalCity> getCapitalCitiesByPopulation() {
-        String sql = "SELECT city.ID, city.Name, country.Name AS Country, country.Continent, country.Region, city.Population " +
-                "FROM country JOIN city ON country.Capital = city.ID " +
-                "ORDER BY city.Population DESC";
-        return queryCapitals(sql);
+        return Metrics.timed("CapitalCityDAO", "getCapitalCitiesByPopulation", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.capitals(Scope.WORLD, null, SnapshotReports.UNLIMITED);
+            return queryCapitals(capitals(Scope.WORLD, null).build());
+        });
     }
 
     /**
@@ -43,10 +80,11 @@ public class CapitalCityDAO {
      * @return a list of up to N CapitalCity objects sorted by population (highest first)
      */
     public List<CapitalCity> getCapitalCitiesByPopulation(int n) {
-        String sql = "SELECT city.ID, city.Name, country.Name AS Country, country.Continent, country.Region, city.Population " +
-                "FROM country JOIN city ON country.Capital = city.ID " +
-                "ORDER BY city.Population DESC LIMIT ?";
-        return queryCapitals(sql, n);
+        return Metrics.timed("CapitalCityDAO", "getCapitalCitiesByPopulation", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.capitals(Scope.WORLD, null, n);
+            return queryCapitals(capitals(Scope.WORLD, null).limit(n).build());
+        });
     }
 
     /**
@@ -56,10 +94,11 @@ public class CapitalCityDAO {
      * @return a list of CapitalCity objects in the specified continent sorted by population (highest first)
      */
     public List<CapitalCity> getCapitalCitiesInContinent(String continent) {
-        String sql = "SELECT city.ID, city.Name,  country.Name AS Country, country.Continent, country.Region, city.Population " +
-                "FROM country JOIN city ON country.Capital = city.ID " +
-                "WHERE country.Continent = ? ORDER BY city.Population DESC";
-        return queryCapitals(sql, continent);
+        return Metrics.timed("CapitalCityDAO", "getCapitalCitiesInContinent", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.capitals(Scope.CONTINENT, continent, SnapshotReports.UNLIMITED);
+            return queryCapitals(capitals(Scope.CONTINENT, continent).build());
+        });
     }
 
     /**
@@ -70,10 +109,11 @@ public class CapitalCityDAO {
      * @return a list of up to N CapitalCity objects in the specified continent sorted by population (highest first)
      */
     public List<CapitalCity> getCapitalCitiesInContinent(String continent, int n) {
-        String sql = "SELECT city.ID, city.Name,  country.Name AS Country, country.Continent, country.Region, city.Population " +
-                "FROM country JOIN city ON country.Capital = city.ID " +
-                "WHERE country.Continent = ? ORDER BY city.Population DESC LIMIT ?";
-        return queryCapitals(sql, continent, n);
+        return Metrics.timed("CapitalCityDAO", "getCapitalCitiesInContinent", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.capitals(Scope.CONTINENT, continent, n);
+            return queryCapitals(capitals(Scope.CONTINENT, continent).limit(n).build());
+        });
     }
 
     /**
@@ -83,10 +123,11 @@ public class CapitalCityDAO {
      * @return a list of CapitalCity objects in the specified region sorted by population (highest first)
      */
     public List<CapitalCity> getCapitalCitiesInRegion(String region) {
-        String sql = "SELECT city.ID, city.Name,  country.Name AS Country, country.Continent, country.Region, city.Population " +
-                "FROM country JOIN city ON country.Capital = city.ID " +
-                "WHERE country.Region = ? ORDER BY city.Population DESC";
-        return queryCapitals(sql, region);
+        return Metrics.timed("CapitalCityDAO", "getCapitalCitiesInRegion", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.capitals(Scope.REGION, region, SnapshotReports.UNLIMITED);
+            return queryCapitals(capitals(Scope.REGION, region).build());
+        });
     }
 
     /**
@@ -97,41 +138,117 @@ public class CapitalCityDAO {
      * @return a list of up to N CapitalCity objects in the specified region sorted by population (highest first)
      */
     public List<CapitalCity> getCapitalCitiesInRegion(String region, int n) {
-        String sql = "SELECT city.ID, city.Name,  country.Name AS Country, country.Continent, country.Region, city.Population " +
-                "FROM country JOIN city ON country.Capital = city.ID " +
-                "WHERE country.Region = ? ORDER BY city.Population DESC LIMIT ?";
-        return queryCapitals(sql, region, n);
+        return Metrics.timed("CapitalCityDAO", "getCapitalCitiesInRegion", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.capitals(Scope.REGION, region, n);
+            return queryCapitals(capitals(Scope.REGION, region).limit(n).build());
+        });
     }
 
     /**
-     * Executes a prepared SQL query and maps the results to CapitalCity objects.
+     * Streams capital cities to {@code sink} one row at a time instead of collecting them into a list,
+     * so memory stays flat however many rows match.
+     * A CONTINENT or REGION scope without a name lists every capital.
+     *
+     * @param scope WORLD, CONTINENT or REGION
+     * @param name the continent or region to filter by
+     * @param limit maximum number of rows, or negative for all of them
+     * @param sink receives each capital city, largest first
+     */
+    public void forEachCapital(Scope scope, String name, int limit, Consumer<? super CapitalCity> sink) {
+        Metrics.Sample sample = Metrics.startCall("CapitalCityDAO", "forEachCapital");
+        try {
+            streamCapitals(scope, name, limit, capital -> {
+                sample.addRows(1);
+                sink.accept(capital);
+            });
+        } finally {
+            sample.stop();
+        }
+    }
+
+    private void streamCapitals(Scope scope, String name, int limit, Consumer<? super CapitalCity> sink) {
+        if (name == null) scope = Scope.WORLD;
+        SnapshotReports snapshot = this.snapshot;
+        if (snapshot != null) {
+            snapshot.capitals(scope, name, limit < 0 ? SnapshotReports.UNLIMITED : limit).forEach(sink);
+            return;
+        }
+        ReportQuery.Builder query = capitals(scope, name);
+        if (limit >= 0) query.limit(limit);
+        streamRows(query.build(), sink);
+    }
+
+    private static ReportQuery.Builder capitals(Scope scope, String name) {
+        return ReportQuery.select(SELECT_CAPITALS, FILTERS).scope(scope, name).orderBy("city.Population DESC");
+    }
+
+    private void streamRows(ReportQuery query, Consumer<? super CapitalCity> sink) {
+        if (query.matchesNothing()) return;
+        try {
+            forEachRow(query.getSql(), STREAM_ROWS, sink, query.getParams());
+        } catch (SQLException e) {
+            Metrics.markFailed();
+            logger.log(Level.SEVERE, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Executes a report query and maps the results to CapitalCity objects.
      * This is a helper method used by all public query methods.
+     * Concurrent calls with an identical query wait for the one already running.
      *
-     * @param sql the SQL query string (may contain ? placeholders for parameters)
-     * @param params variable number of parameters to bind to the prepared statement
+     * @param query the report query to execute
      * @return a list of CapitalCity objects populated from the query results;
      *         returns an empty list if no results are found or an error occurs
      */
-    private List<CapitalCity> queryCapitals(String sql, Object... params) {
-        List<CapitalCity> results = new ArrayList<>();
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            // Bind each parameter to the prepared statement (1-indexed)
-            for (int i=0; i<params.length; i++) stmt.setObject(i+1, params[i]);
-            // Execute the query and process results
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                CapitalCity c = new CapitalCity(
-                rs.getString("Name"),
-                rs.getString("Country"),
-                rs.getString("Continent"),
-                rs.getString("Region"),
-                rs.getLong("Population")
-                );
-                results.add(c);
+    private List<CapitalCity> queryCapitals(ReportQuery query) {
+        if (query.matchesNothing()) return new ArrayList<>();
+        try {
+            return flights.run(query, () -> {
+                List<CapitalCity> results = new ArrayList<>();
+                try {
+                    forEachRow(query.getSql(), 0, results::add, query.getParams());
+                } catch (SQLException e) {
+                    throw new QueryFailedException(e);
+                }
+                return results;
+            });
+        } catch (QueryFailedException e) {
+            // Every caller that shared the query records the failure, not just the one that ran it
+            Metrics.markFailed();
+            logger.log(Level.SEVERE, e.getMessage(), e.getCause());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Runs a query and hands each mapped row to {@code sink} as soon as it is read.
+     *
+     * @param sql the SQL query to execute
+     * @param fetchSize JDBC fetch size hint; {@link #STREAM_ROWS} streams rows one at a time
+     * @param sink receives each row
+     * @param params values for the ? placeholders
+     * @throws SQLException if the query fails
+     */
+    private void forEachRow(String sql, int fetchSize, Consumer<? super CapitalCity> sink, Object... params) throws SQLException {
+        try (SlowQueryLog.Timer timer = SlowQueryLog.get().start(sql, params);
+             Connection conn = source.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) stmt.setObject(i + 1, params[i]);
+            stmt.setFetchSize(fetchSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    timer.row();
+                    sink.accept(new CapitalCity(
+                            rs.getString("Name"),
+                            rs.getString("Country"),
+                            rs.getString("Continent"),
+                            rs.getString("Region"),
+                            rs.getLong("Population")
+                    ));
+                }
             }
-        } catch (SQLException e) {
-            logger.log(Level.SEVERE, e.getMessage(), e);
         }
-        return results;
     }
 }
@@ -1,8 +1,15 @@
 package com.napier.devops.dao;
 
+import com.napier.devops.db.ConnectionSource;
+import com.napier.devops.db.SlowQueryLog;
+import com.napier.devops.metrics.Metrics;
 import com.napier.devops.models.City;
+import com.napier.devops.models.CityTable;
+import com.napier.devops.snapshot.SnapshotReports;
+import com.napier.devops.util.SingleFlight;
 import java.sql.*;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -11,8 +18,23 @@ import java.util.logging.Logger;
  * Provides methods to query cities from the database with various filtering and sorting criteria.
  */
 public class CityDAO {
-    private final Connection conn;
-        private static final Logger logger = Logger.getLogger(CityDAO.class.getName());
+    private final ConnectionSource source;
+    private volatile SnapshotReports snapshot;
+    /** Lets concurrent identical report queries share one execution; each caller gets its own table. */
+    private final SingleFlight<ReportQuery, List<City>> flights = new SingleFlight<>(CityTable::new);
+    // Connector/J only streams a result set row by row when the fetch size is Integer.MIN_VALUE
+    private static final int STREAM_ROWS = Integer.MIN_VALUE;
+    private static final Logger logger = Logger.getLogger(CityDAO.class.getName());
+
+    private static final String SELECT_CITIES =
+            "SELECT city.ID, city.Name, country.Name AS Country, country.Continent, city.District, city.Population " +
+            "FROM city JOIN country ON city.CountryCode = country.Code";
+    private static final Map<Scope, String> FILTERS = Map.of(
+            Scope.CONTINENT, "country.Continent",
+            Scope.REGION, "country.Region",
+            Scope.COUNTRY, "country.Name",
+            Scope.COUNTRY_CODE, "country.Code",
+            Scope.DISTRICT, "city.District");
 
     /**
      * Constructs a CityDAO with a database connection.
@@ -20,7 +42,25 @@ public class CityDAO {
      * @param conn the database connection to use for queries
      */
     public CityDAO(Connection conn) {
-        this.conn = conn;
+        this(ConnectionSource.of(conn));
+    }
+
+    /**
+     * Constructs a CityDAO that borrows a connection for each query, e.g. from a ConnectionPool.
+     *
+     * @param source supplies the connection used by each query
+     */
+    public CityDAO(ConnectionSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Serves this DAO's reports from an in-memory snapshot instead of querying MySQL.
+     *
+     * @param snapshot the snapshot to answer from, or null to go back to the database
+     */
+    public void setSnapshot(SnapshotReports snapshot) {
+        this.snapshot = snapshot;
     }
 
     /**
@@ -29,9 +69,11 @@ public class CityDAO {
      * @return a list of cities sorted by population (highest first)
      */
     public List<City> getCitiesByPopulation() {
-        String sql = "SELECT city.ID, city.Name, country.Name AS Country, country.Continent, city.District, city.Population " +
-                "FROM city JOIN country ON city.CountryCode=country.Code ORDER BY city.Population DESC";
-        return queryCities(sql);
+        return Metrics.timed("CityDAO", "getCitiesByPopulation", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.cities(Scope.WORLD, null, SnapshotReports.UNLIMITED);
+            return queryCities(cities(Scope.WORLD, null).build());
+        });
     }
 
     /**
@@ -41,9 +83,11 @@ public class CityDAO {
      * @return a list of up to N cities sorted by population (highest first)
      */
     public List<City> getCitiesByPopulation(int n) {
-        String sql = "SELECT city.ID, city.Name, country.Name AS Country, country.Continent, city.District, city.Population " +
-                "FROM city JOIN country ON city.CountryCode=country.Code ORDER BY city.Population DESC LIMIT " + n;
-        return queryCities(sql);
+        return Metrics.timed("CityDAO", "getCitiesByPopulation", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.cities(Scope.WORLD, null, n);
+            return queryCities(cities(Scope.WORLD, null).limit(n).build());
+        });
     }
 
     /**
@@ -52,10 +96,11 @@ public class CityDAO {
      * @return a list of cities sorted by population
      */
     public List<City> getCitiesByContinent() {
-        String sql = "SELECT city.ID, city.Name, country.Name AS Country, country.Continent, city.District, city.Population " +
-                "FROM city JOIN country ON city.CountryCode = country.Code " +
-                "ORDER BY UPPER(country.Continent) ASC, city.Population DESC";
-        return queryCities(sql);
+        return Metrics.timed("CityDAO", "getCitiesByContinent", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.citiesGroupedBy(Scope.CONTINENT, SnapshotReports.UNLIMITED);
+            return queryCities(citiesByContinent().build());
+        });
     }
 
     /**
@@ -65,10 +110,11 @@ public class CityDAO {
      * @return a list of up to N cities sorted by population
      */
     public List<City> getCitiesByContinent(int n) {
-        String sql = "SELECT city.ID, city.Name, country.Name AS Country, country.Continent, city.District, city.Population " +
-                "FROM city JOIN country ON city.CountryCode = country.Code " +
-                "ORDER BY UPPER(country.Continent) ASC, city.Population DESC LIMIT " + n;
-        return queryCities(sql);
+        return Metrics.timed("CityDAO", "getCitiesByContinent", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.citiesGroupedBy(Scope.CONTINENT, n);
+            return queryCities(citiesByContinent().limit(n).build());
+        });
     }
 
     /**
@@ -78,10 +124,11 @@ public class CityDAO {
      * @return a list of cities in the specified continent sorted by population
      */
     public List<City> getCitiesInContinent(String continent) {
-        String sql = "SELECT city.ID, city.Name, country.Name AS Country, country.Continent, District, city.Population " +
-                "FROM city JOIN country ON city.CountryCode = country.Code " +
-                "WHERE country.Continent=? ORDER BY city.Population DESC";
-        return queryCities(sql, continent);
+        return Metrics.timed("CityDAO", "getCitiesInContinent", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.cities(Scope.CONTINENT, continent, SnapshotReports.UNLIMITED);
+            return queryCities(cities(Scope.CONTINENT, continent).build());
+        });
     }
 
     /**
@@ -92,10 +139,11 @@ public class CityDAO {
      * @return a list of up to N cities in the specified continent sorted by population
      */
     public List<City> getCitiesInContinent(String continent, int n) {
-        String sql = "SELECT city.ID, city.Name, country.Name AS Country, country.Continent, District, city.Population " +
-                "FROM city JOIN country ON city.CountryCode = country.Code " +
-                "WHERE country.Continent=? ORDER BY city.Population DESC LIMIT " + n;
-        return queryCities(sql, continent);
+        return Metrics.timed("CityDAO", "getCitiesInContinent", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.cities(Scope.CONTINENT, continent, n);
+            return queryCities(cities(Scope.CONTINENT, continent).limit(n).build());
+        });
     }
 
     /**
@@ -105,10 +153,11 @@ public class CityDAO {
      * @return a list of cities in the specified region sorted by population
      */
     public List<City> getCitiesInRegion(String region) {
-        String sql = "SELECT city.Name, city.District, country.Name AS Country, country.Continent, city.Population, country.Region " +
-                "FROM city JOIN country ON city.CountryCode = country.Code " +
-                "WHERE country.Region = ? ORDER BY city.Population DESC";
-        return queryCities(sql, region);
+        return Metrics.timed("CityDAO", "getCitiesInRegion", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.cities(Scope.REGION, region, SnapshotReports.UNLIMITED);
+            return queryCities(cities(Scope.REGION, region).build());
+        });
     }
 
     /**
@@ -119,10 +168,11 @@ public class CityDAO {
      * @return a list of up to N cities in the specified region sorted by population
      */
     public List<City> getCitiesInRegion(String region, int n) {
-        String sql = "SELECT city.Name, city.District, country.Name AS Country, country.Continent, city.Population, country.Region " +
-                "FROM city JOIN country ON city.CountryCode = country.Code " +
-                "WHERE country.Region = ? ORDER BY city.Population DESC LIMIT " + n;
-        return queryCities(sql, region);
+        return Metrics.timed("CityDAO", "getCitiesInRegion", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.cities(Scope.REGION, region, n);
+            return queryCities(cities(Scope.REGION, region).limit(n).build());
+        });
     }
 
     /**
@@ -132,10 +182,11 @@ public class CityDAO {
      * @return a list of cities in the specified country sorted by population
      */
     public List<City> getCitiesInCountryByCode(String country) {
-        String sql = "SELECT city.ID, city.Name, country.Name AS Country, country.Continent, District, city.Population " +
-                "FROM city JOIN country ON city.CountryCode = country.Code " +
-                "WHERE country.Code=? ORDER BY city.Population DESC";
-        return queryCities(sql, country);
+        return Metrics.timed("CityDAO", "getCitiesInCountryByCode", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.cities(Scope.COUNTRY_CODE, country, SnapshotReports.UNLIMITED);
+            return queryCities(cities(Scope.COUNTRY_CODE, country).build());
+        });
     }
 
     /**
@@ -146,10 +197,11 @@ public class CityDAO {
      * @return a list of up to N cities in the specified country sorted by population
      */
     public List<City> getCitiesInCountryByCode(String country, int n) {
-        String sql = "SELECT city.ID, city.Name, country.Name AS Country, country.Continent, District, city.Population " +
-                "FROM city JOIN country ON city.CountryCode = country.Code " +
-                "WHERE country.Code=? ORDER BY city.Population DESC LIMIT " + n;
-        return queryCities(sql, country);
+        return Metrics.timed("CityDAO", "getCitiesInCountryByCode", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.cities(Scope.COUNTRY_CODE, country, n);
+            return queryCities(cities(Scope.COUNTRY_CODE, country).limit(n).build());
+        });
     }
 
     /**
@@ -159,10 +211,11 @@ public class CityDAO {
      * @return a list of cities in the specified country sorted by population
      */
     public List<City> getCitiesInCountryByName(String country) {
-        String sql = "SELECT city.ID, city.Name, country.Name AS Country, country.Continent, District, city.Population " +
-                "FROM city JOIN country ON city.CountryCode = country.Code " +
-                "WHERE country.Name=? ORDER BY city.Population DESC";
-        return queryCities(sql, country);
+        return Metrics.timed("CityDAO", "getCitiesInCountryByName", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.cities(Scope.COUNTRY, country, SnapshotReports.UNLIMITED);
+            return queryCities(cities(Scope.COUNTRY, country).build());
+        });
     }
 
     /**
@@ -173,10 +226,11 @@ public class CityDAO {
      * @return a list of up to N cities in the specified country sorted by population
      */
     public List<City> getCitiesInCountryByName(String country, int n) {
-        String sql = "SELECT city.ID, city.Name, country.Name AS Country, country.Continent, District, city.Population " +
-                "FROM city JOIN country ON city.CountryCode = country.Code " +
-                "WHERE country.Name=? ORDER BY city.Population DESC LIMIT " + n;
-        return queryCities(sql, country);
+        return Metrics.timed("CityDAO", "getCitiesInCountryByName", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.cities(Scope.COUNTRY, country, n);
+            return queryCities(cities(Scope.COUNTRY, country).limit(n).build());
+        });
     }
 
     /**
@@ -186,10 +240,11 @@ public class CityDAO {
      * @return a list of cities in the specified district sorted by population
      */
     public List<City> getCitiesInDistrict(String district) {
-        String sql = "SELECT city.ID, city.Name, country.Name AS Country, country.Continent, city.District, city.Population " +
-                "FROM city JOIN country ON city.CountryCode = country.Code " +
-                "WHERE city.District=? ORDER BY city.Population DESC";
-        return queryCities(sql, district);
+        return Metrics.timed("CityDAO", "getCitiesInDistrict", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.cities(Scope.DISTRICT, district, SnapshotReports.UNLIMITED);
+            return queryCities(cities(Scope.DISTRICT, district).build());
+        });
     }
 
     /**
@@ -200,40 +255,184 @@ public class CityDAO {
      * @return a list of up to N cities in the specified district sorted by population
      */
     public List<City> getCitiesInDistrict(String district, int n) {
-        String sql = "SELECT city.ID, city.Name, country.Name AS Country, country.Continent, city.District, city.Population " +
-                "FROM city JOIN country ON city.CountryCode = country.Code " +
-                "WHERE city.District=? ORDER BY city.Population DESC LIMIT " + n;
-        return queryCities(sql, district);
+        return Metrics.timed("CityDAO", "getCitiesInDistrict", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.cities(Scope.DISTRICT, district, n);
+            return queryCities(cities(Scope.DISTRICT, district).limit(n).build());
+        });
     }
 
     /**
-     * Executes a city query with the given SQL and parameters, mapping results to City objects.
-     * 
-     * @param sql the SQL query to execute
-     * @param params variable arguments representing query parameters (? placeholders)
-     * @return a list of City objects populated from the query results
-     */
-    private List<City> queryCities(String sql, Object... params) {
-        List<City> results = new ArrayList<>();
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            // Bind all parameters to the prepared statement
-            for (int i = 0; i < params.length; i++) {
-                stmt.setObject(i + 1, params[i]);
-            }
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                City c = new City(
-                    rs.getString("Name"),
-                    rs.getString("District"),
-                    rs.getString("Country"),
-                    rs.getString("Continent"),
-                    rs.getInt("Population")
-                );
-                results.add(c);
-            }
+     * Streams cities to {@code sink} one row at a time instead of collecting them into a list,
+     * so memory stays flat however many rows match.
+     * A CONTINENT scope without a name lists every city grouped by continent.
+     *
+     * @param scope WORLD, CONTINENT, REGION, COUNTRY (by name), COUNTRY_CODE or DISTRICT
+     * @param name the continent, region, country or district to filter by
+     * @param limit maximum number of rows, or negative for all of them
+     * @param sink receives each city in report order
+     */
+    public void forEachCity(Scope scope, String name, int limit, Consumer<? super City> sink) {
+        Metrics.Sample sample = Metrics.startCall("CityDAO", "forEachCity");
+        try {
+            streamCities(scope, name, limit, city -> {
+                sample.addRows(1);
+                sink.accept(city);
+            });
+        } finally {
+            sample.stop();
+        }
+    }
+
+    /**
+     * Returns one page of cities, largest first and then by ID, starting just after {@code after}.
+     * Pages are fetched with a seek on (population, ID) instead of an offset,
+     * so a deep page costs the same as the first one.
+     *
+     * @param scope WORLD, CONTINENT, REGION, COUNTRY (by name), COUNTRY_CODE or DISTRICT
+     * @param name the continent, region, country or district to filter by
+     * @param size rows per page
+     * @param after where the previous page ended, or null for the first page
+     * @return the page, with the cursor for the next one
+     * @throws IllegalArgumentException if the cursor was not issued for cities
+     */
+    public Page<City> getCitiesPage(Scope scope, String name, int size, PageCursor after) {
+        Metrics.Sample sample = Metrics.startCall("CityDAO", "getCitiesPage");
+        try {
+            Page<City> page = fetchCitiesPage(scope, name, size, after);
+            sample.addRows(page.getData().size());
+            return page;
+        } finally {
+            sample.stop();
+        }
+    }
+
+    private Page<City> fetchCitiesPage(Scope scope, String name, int size, PageCursor after) {
+        SnapshotReports snapshot = this.snapshot;
+        if (snapshot != null) return snapshot.citiesPage(scope, name, size, after);
+
+        List<City> data = new ArrayList<>();
+        ReportQuery.Builder builder = ReportQuery.select(SELECT_CITIES, FILTERS).scope(scope, name)
+                .pageBy("city.Population", "city.ID");
+        if (after != null) builder.after(after.getPopulation(), after.getNumericId());
+        // One row more than the page tells us whether there is a next page
+        ReportQuery query = builder.limit(size == Integer.MAX_VALUE ? size : size + 1).build();
+        if (size <= 0 || query.matchesNothing()) return new Page<>(data, null);
+
+        long[] last = new long[2];
+        boolean[] more = new boolean[1];
+        try {
+            forEachResult(query.getSql(), 0, rs -> {
+                if (data.size() == size) {
+                    more[0] = true;
+                    return;
+                }
+                data.add(toCity(rs));
+                last[0] = rs.getLong("Population");
+                last[1] = rs.getLong("ID");
+            }, query.getParams());
         } catch (SQLException e) {
+            Metrics.markFailed();
             logger.log(Level.SEVERE, e.getMessage(), e);
         }
-        return results;
+        return new Page<>(data, more[0] ? new PageCursor(last[0], String.valueOf(last[1])) : null);
+    }
+
+    private void streamCities(Scope scope, String name, int limit, Consumer<? super City> sink) {
+        boolean grouped = scope == Scope.CONTINENT && name == null;
+        SnapshotReports snapshot = this.snapshot;
+        if (snapshot != null) {
+            int rows = limit < 0 ? SnapshotReports.UNLIMITED : limit;
+            (grouped ? snapshot.citiesGroupedBy(Scope.CONTINENT, rows) : snapshot.cities(scope, name, rows)).forEach(sink);
+            return;
+        }
+        ReportQuery.Builder query = grouped ? citiesByContinent() : cities(scope, name);
+        if (limit >= 0) query.limit(limit);
+        streamRows(query.build(), sink);
+    }
+
+    private static ReportQuery.Builder cities(Scope scope, String name) {
+        return ReportQuery.select(SELECT_CITIES, FILTERS).scope(scope, name).orderBy("city.Population DESC");
+    }
+
+    private static ReportQuery.Builder citiesByContinent() {
+        return ReportQuery.select(SELECT_CITIES, FILTERS).orderBy("UPPER(country.Continent) ASC, city.Population DESC");
+    }
+
+    private void streamRows(ReportQuery query, Consumer<? super City> sink) {
+        if (query.matchesNothing()) return;
+        try {
+            forEachRow(query.getSql(), STREAM_ROWS, sink, query.getParams());
+        } catch (SQLException e) {
+            Metrics.markFailed();
+            logger.log(Level.SEVERE, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Executes a city query, mapping results to City objects.
+     * Concurrent calls with an identical query wait for the one already running.
+     *
+     * @param query the report query to execute
+     * @return the matching cities, held column by column in a {@link CityTable}
+     */
+    private List<City> queryCities(ReportQuery query) {
+        if (query.matchesNothing()) return new ArrayList<>();
+        try {
+            return flights.run(query, () -> {
+                List<City> results = new CityTable();
+                try {
+                    forEachRow(query.getSql(), 0, results::add, query.getParams());
+                } catch (SQLException e) {
+                    throw new QueryFailedException(e);
+                }
+                return results;
+            });
+        } catch (QueryFailedException e) {
+            // Every caller that shared the query records the failure, not just the one that ran it
+            Metrics.markFailed();
+            logger.log(Level.SEVERE, e.getMessage(), e.getCause());
+            return new CityTable();
+        }
+    }
+
+    /**
+     * Runs a query and hands each mapped row to {@code sink} as soon as it is read.
+     *
+     * @param sql the SQL query to execute
+     * @param fetchSize JDBC fetch size hint; {@link #STREAM_ROWS} streams rows one at a time
+     * @param sink receives each row
+     * @param params values for the ? placeholders
+     * @throws SQLException if the query fails
+     */
+    private void forEachRow(String sql, int fetchSize, Consumer<? super City> sink, Object... params) throws SQLException {
+        forEachResult(sql, fetchSize, rs -> sink.accept(toCity(rs)), params);
+    }
+
+    /**
+     * Runs a query and calls {@code handler} with the result set positioned on each row in turn.
+     */
+    private void forEachResult(String sql, int fetchSize, RowHandler handler, Object... params) throws SQLException {
+        try (SlowQueryLog.Timer timer = SlowQueryLog.get().start(sql, params);
+             Connection conn = source.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) stmt.setObject(i + 1, params[i]);
+            stmt.setFetchSize(fetchSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    timer.row();
+                    handler.handle(rs);
+                }
+            }
+        }
+    }
+
+    private static City toCity(ResultSet rs) throws SQLException {
+        return new City(
+                rs.getString("Name"),
+                rs.getString("District"),
+                rs.getString("Country"),
+                rs.getString("Continent"),
+                rs.getInt("Population"));
     }
 }
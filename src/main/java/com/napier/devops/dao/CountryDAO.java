@@ -1,8 +1,14 @@
 package com.napier.devops.dao;
 
+import com.napier.devops.db.ConnectionSource;
+import com.napier.devops.db.SlowQueryLog;
+import com.napier.devops.metrics.Metrics;
 import com.napier.devops.models.Country;
+import com.napier.devops.snapshot.SnapshotReports;
+import com.napier.devops.util.SingleFlight;
 import java.sql.*;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -12,16 +18,46 @@ import java.util.logging.Logger;
  * including filtering by population, continent, and region.
  */
 public class CountryDAO {
-    private final Connection conn;
+    private final ConnectionSource source;
+    private volatile SnapshotReports snapshot;
+    /** Lets concurrent identical report queries share one execution; each caller gets its own list. */
+    private final SingleFlight<ReportQuery, List<Country>> flights = new SingleFlight<>(ArrayList::new);
+    // Connector/J only streams a result set row by row when the fetch size is Integer.MIN_VALUE
+    private static final int STREAM_ROWS = Integer.MIN_VALUE;
     private static final Logger logger = Logger.getLogger(CountryDAO.class.getName());
 
+    private static final String SELECT_COUNTRIES =
+            "SELECT country.Code, country.Name, country.Continent, country.Region, country.Population, city.Name AS Capital " +
+            "FROM country LEFT JOIN city ON country.Capital = city.ID";
+    private static final Map<Scope, String> FILTERS = Map.of(
+            Scope.CONTINENT, "country.Continent",
+            Scope.REGION, "country.Region");
+
     /**
      * Constructs a CountryDAO with the provided database connection.
      * 
      * @param conn the database connection to use for queries
      */
     public CountryDAO(Connection conn) {
-        this.conn = conn;
+        this(ConnectionSource.of(conn));
+    }
+
+    /**
+     * Constructs a CountryDAO that borrows a connection for each query, e.g. from a ConnectionPool.
+     * 
+     * @param source supplies the connection used by each query
+     */
+    public CountryDAO(ConnectionSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Serves this DAO's reports from an in-memory snapshot instead of querying MySQL.
+     *
+     * @param snapshot the snapshot to answer from, or null to go back to the database
+     */
+    public void setSnapshot(SnapshotReports snapshot) {
+        this.snapshot = snapshot;
     }
 
     /**
@@ -30,9 +66,11 @@ public class CountryDAO {
      * @return a list of all countries ordered by population
      */
     public List<Country> getCountriesByPopulation() {
-        String sql = "SELECT country.Code, country.Name, country.Continent, country.Region, country.Population, city.Name AS Capital " +
-                "FROM country LEFT JOIN city ON country.Capital=city.ID ORDER BY country.Population DESC";
-        return queryCountries(sql);
+        return Metrics.timed("CountryDAO", "getCountriesByPopulation", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.countries(Scope.WORLD, null, SnapshotReports.UNLIMITED);
+            return queryCountries(countries(Scope.WORLD, null).build());
+        });
     }
 
     /**
@@ -42,9 +80,11 @@ public class CountryDAO {
      * @return a list of up to N countries ordered by population
      */
     public List<Country> getCountriesByPopulation(int n) {
-        String sql = "SELECT country.Code, country.Name, country.Continent, country.Region, country.Population, city.Name AS Capital " +
-                "FROM country LEFT JOIN city ON country.Capital=city.ID ORDER BY country.Population DESC  LIMIT " + n;
-        return queryCountries(sql);
+        return Metrics.timed("CountryDAO", "getCountriesByPopulation", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.countries(Scope.WORLD, null, n);
+            return queryCountries(countries(Scope.WORLD, null).limit(n).build());
+        });
     }
 
     /**
@@ -53,10 +93,11 @@ public class CountryDAO {
      * @return a list of all countries ordered by continent, then population
      */
     public List<Country> getCountriesInContinent() {
-        String sql = "SELECT country.Code, country.Name, country.Continent AS Continent, country.Region, country.Population, city.Name AS Capital " +
-                "FROM country LEFT JOIN city ON country.Capital=city.ID " +
-                "ORDER BY UPPER(country.Continent) ASC, country.Population DESC";
-        return queryCountries(sql);
+        return Metrics.timed("CountryDAO", "getCountriesInContinent", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.countriesGroupedBy(Scope.CONTINENT, SnapshotReports.UNLIMITED);
+            return queryCountries(countriesGroupedBy(Scope.CONTINENT).build());
+        });
     }
 
     /**
@@ -66,10 +107,11 @@ public class CountryDAO {
      * @return a list of up to N countries ordered by continent, then population
      */
     public List<Country> getCountriesInContinent(int n) {
-        String sql = "SELECT country.Code, country.Name, country.Continent, country.Region, country.Population, city.Name AS Capital " +
-                "FROM country LEFT JOIN city ON country.Capital=city.ID " +
-                "ORDER BY UPPER(country.Continent) ASC, country.Population DESC  LIMIT " + n;
-        return queryCountries(sql);
+        return Metrics.timed("CountryDAO", "getCountriesInContinent", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.countriesGroupedBy(Scope.CONTINENT, n);
+            return queryCountries(countriesGroupedBy(Scope.CONTINENT).limit(n).build());
+        });
     }
 
     /**
@@ -79,10 +121,11 @@ public class CountryDAO {
      * @return a list of countries in the specified continent
      */
     public List<Country> getCountriesInContinent(String continent) {
-        String sql = "SELECT country.Code, country.Name, country.Continent, country.Region, country.Population, city.Name AS Capital " +
-                "FROM country LEFT JOIN city ON country.Capital=city.ID " +
-                "WHERE Continent=? ORDER BY country.Population DESC";
-        return queryCountries(sql, continent);
+        return Metrics.timed("CountryDAO", "getCountriesInContinent", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.countries(Scope.CONTINENT, continent, SnapshotReports.UNLIMITED);
+            return queryCountries(countries(Scope.CONTINENT, continent).build());
+        });
     }
 
     /**
@@ -93,10 +136,11 @@ public class CountryDAO {
      * @return a list of up to N countries in the specified continent
      */
     public List<Country> getCountriesInContinent(String continent, int n) {
-        String sql = "SELECT country.Code, country.Name, country.Continent, country.Region, country.Population, city.Name AS Capital " +
-                "FROM country LEFT JOIN city ON country.Capital=city.ID " +
-                "WHERE Continent=? ORDER BY country.Population DESC  LIMIT " + n;
-        return queryCountries(sql, continent);
+        return Metrics.timed("CountryDAO", "getCountriesInContinent", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.countries(Scope.CONTINENT, continent, n);
+            return queryCountries(countries(Scope.CONTINENT, continent).limit(n).build());
+        });
     }
 
     /**
@@ -105,10 +149,11 @@ public class CountryDAO {
      * @return a list of all countries ordered by region, then population
      */
     public List<Country> getCountriesInRegion() {
-        String sql = "SELECT country.Code, country.Name, country.Continent, country.Region, country.Population, city.Name AS Capital " +
-                "FROM country LEFT JOIN city ON country.Capital=city.ID " +
-                "ORDER BY UPPER(TRIM(country.Region)) ASC, country.Population DESC";
-        return queryCountries(sql);
+        return Metrics.timed("CountryDAO", "getCountriesInRegion", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.countriesGroupedBy(Scope.REGION, SnapshotReports.UNLIMITED);
+            return queryCountries(countriesGroupedBy(Scope.REGION).build());
+        });
     }
 
     /**
@@ -118,10 +163,11 @@ public class CountryDAO {
      * @return a list of up to N countries ordered by region, then population
      */
     public List<Country> getCountriesInRegion(int n) {
-        String sql = "SELECT country.Code, country.Name, country.Continent, country.Region, country.Population, city.Name AS Capital " +
-                "FROM country LEFT JOIN city ON country.Capital=city.ID " +
-                "ORDER BY UPPER(TRIM(country.Region)) ASC, country.Population DESC  LIMIT " + n;
-        return queryCountries(sql);
+        return Metrics.timed("CountryDAO", "getCountriesInRegion", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.countriesGroupedBy(Scope.REGION, n);
+            return queryCountries(countriesGroupedBy(Scope.REGION).limit(n).build());
+        });
     }
 
     /**
@@ -131,9 +177,11 @@ public class CountryDAO {
      * @return a list of countries in the specified region
      */
     public List<Country> getCountriesInRegion(String region) {
-        String sql = "SELECT country.Code, country.Name, country.Continent, country.Region, country.Population, city.Name AS Capital " +
-                "FROM country LEFT JOIN city ON country.Capital=city.ID WHERE Region=? ORDER BY country.Population DESC";
-        return queryCountries(sql, region);
+        return Metrics.timed("CountryDAO", "getCountriesInRegion", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.countries(Scope.REGION, region, SnapshotReports.UNLIMITED);
+            return queryCountries(countries(Scope.REGION, region).build());
+        });
     }
 
     /**
@@ -144,40 +192,181 @@ public class CountryDAO {
      * @return a list of up to N countries in the specified region
      */
     public List<Country> getCountriesInRegion(String region, int n) {
-        String sql = "SELECT country.Code, country.Name, country.Continent, country.Region, country.Population, city.Name AS Capital " +
-                "FROM country LEFT JOIN city ON country.Capital=city.ID WHERE Region=? ORDER BY country.Population DESC  LIMIT " + n;
-        return queryCountries(sql, region);
+        return Metrics.timed("CountryDAO", "getCountriesInRegion", () -> {
+            SnapshotReports snapshot = this.snapshot;
+            if (snapshot != null) return snapshot.countries(Scope.REGION, region, n);
+            return queryCountries(countries(Scope.REGION, region).limit(n).build());
+        });
+    }
+
+    /**
+     * Streams countries to {@code sink} one row at a time instead of collecting them into a list,
+     * so memory stays flat however many rows match.
+     * A CONTINENT or REGION scope without a name lists every country grouped by that level.
+     *
+     * @param scope WORLD, CONTINENT or REGION
+     * @param name the continent or region to filter by
+     * @param limit maximum number of rows, or negative for all of them
+     * @param sink receives each country in report order
+     */
+    public void forEachCountry(Scope scope, String name, int limit, Consumer<? super Country> sink) {
+        Metrics.Sample sample = Metrics.startCall("CountryDAO", "forEachCountry");
+        try {
+            streamCountries(scope, name, limit, country -> {
+                sample.addRows(1);
+                sink.accept(country);
+            });
+        } finally {
+            sample.stop();
+        }
+    }
+
+    /**
+     * Returns one page of countries, largest first and then by code, starting just after {@code after}.
+     * Pages are fetched with a seek on (population, code) instead of an offset,
+     * so a deep page costs the same as the first one.
+     *
+     * @param scope WORLD, CONTINENT or REGION
+     * @param name the continent or region to filter by
+     * @param size rows per page
+     * @param after where the previous page ended, or null for the first page
+     * @return the page, with the cursor for the next one
+     */
+    public Page<Country> getCountriesPage(Scope scope, String name, int size, PageCursor after) {
+        Metrics.Sample sample = Metrics.startCall("CountryDAO", "getCountriesPage");
+        try {
+            Page<Country> page = fetchCountriesPage(scope, name, size, after);
+            sample.addRows(page.getData().size());
+            return page;
+        } finally {
+            sample.stop();
+        }
+    }
+
+    private Page<Country> fetchCountriesPage(Scope scope, String name, int size, PageCursor after) {
+        SnapshotReports snapshot = this.snapshot;
+        if (snapshot != null) return snapshot.countriesPage(scope, name, size, after);
+
+        List<Country> data = new ArrayList<>();
+        ReportQuery.Builder builder = ReportQuery.select(SELECT_COUNTRIES, FILTERS).scope(scope, name)
+                .pageBy("country.Population", "country.Code");
+        if (after != null) builder.after(after.getPopulation(), after.getId());
+        // One row more than the page tells us whether there is a next page
+        ReportQuery query = builder.limit(size == Integer.MAX_VALUE ? size : size + 1).build();
+        if (size <= 0 || query.matchesNothing()) return new Page<>(data, null);
+
+        boolean[] more = new boolean[1];
+        try {
+            forEachResult(query.getSql(), 0, rs -> {
+                if (data.size() == size) more[0] = true;
+                else data.add(toCountry(rs));
+            }, query.getParams());
+        } catch (SQLException e) {
+            Metrics.markFailed();
+            logger.log(Level.SEVERE, e.getMessage(), e);
+        }
+        Country last = more[0] ? data.get(data.size() - 1) : null;
+        return new Page<>(data, last == null ? null : new PageCursor(last.getPopulation(), last.getCode()));
+    }
+
+    private void streamCountries(Scope scope, String name, int limit, Consumer<? super Country> sink) {
+        boolean grouped = (scope == Scope.CONTINENT || scope == Scope.REGION) && name == null;
+        SnapshotReports snapshot = this.snapshot;
+        if (snapshot != null) {
+            int rows = limit < 0 ? SnapshotReports.UNLIMITED : limit;
+            (grouped ? snapshot.countriesGroupedBy(scope, rows) : snapshot.countries(scope, name, rows)).forEach(sink);
+            return;
+        }
+        ReportQuery.Builder query = grouped ? countriesGroupedBy(scope) : countries(scope, name);
+        if (limit >= 0) query.limit(limit);
+        streamRows(query.build(), sink);
+    }
+
+    private static ReportQuery.Builder countries(Scope scope, String name) {
+        return ReportQuery.select(SELECT_COUNTRIES, FILTERS).scope(scope, name).orderBy("country.Population DESC");
+    }
+
+    private static ReportQuery.Builder countriesGroupedBy(Scope scope) {
+        String group = scope == Scope.REGION ? "UPPER(TRIM(country.Region))" : "UPPER(country.Continent)";
+        return ReportQuery.select(SELECT_COUNTRIES, FILTERS).orderBy(group + " ASC, country.Population DESC");
+    }
+
+    private void streamRows(ReportQuery query, Consumer<? super Country> sink) {
+        if (query.matchesNothing()) return;
+        try {
+            forEachRow(query.getSql(), STREAM_ROWS, sink, query.getParams());
+        } catch (SQLException e) {
+            Metrics.markFailed();
+            logger.log(Level.SEVERE, e.getMessage(), e);
+        }
     }
 
     /**
      * Executes a query and maps the results to Country objects.
      * Handles parameterized queries to prevent SQL injection.
-     * 
-     * @param sql the SQL query to execute
-     * @param params variable arguments to bind to the query (? placeholders)
+     * Concurrent calls with an identical query wait for the one already running.
+     *
+     * @param query the report query to execute
      * @return a list of Country objects from the query results, or an empty list if an error occurs
      */
-    private List<Country> queryCountries(String sql, Object... params) {
-        List<Country> results = new ArrayList<>();
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            // Bind parameters to the prepared statement
-            for (int i=0; i<params.length; i++) stmt.setObject(i+1, params[i]);
-            ResultSet rs = stmt.executeQuery();
-            // Map each result row to a Country object
-            while (rs.next()) {
-                Country c = new Country(
+    private List<Country> queryCountries(ReportQuery query) {
+        if (query.matchesNothing()) return new ArrayList<>();
+        try {
+            return flights.run(query, () -> {
+                List<Country> results = new ArrayList<>();
+                try {
+                    forEachRow(query.getSql(), 0, results::add, query.getParams());
+                } catch (SQLException e) {
+                    throw new QueryFailedException(e);
+                }
+                return results;
+            });
+        } catch (QueryFailedException e) {
+            // Every caller that shared the query records the failure, not just the one that ran it
+            Metrics.markFailed();
+            logger.log(Level.SEVERE, e.getMessage(), e.getCause());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Runs a query and hands each mapped row to {@code sink} as soon as it is read.
+     *
+     * @param sql the SQL query to execute
+     * @param fetchSize JDBC fetch size hint; {@link #STREAM_ROWS} streams rows one at a time
+     * @param sink receives each row
+     * @param params values for the ? placeholders
+     * @throws SQLException if the query fails
+     */
+    private void forEachRow(String sql, int fetchSize, Consumer<? super Country> sink, Object... params) throws SQLException {
+        forEachResult(sql, fetchSize, rs -> sink.accept(toCountry(rs)), params);
+    }
+
+    /**
+     * Runs a query and calls {@code handler} with the result set positioned on each row in turn.
+     */
+    private void forEachResult(String sql, int fetchSize, RowHandler handler, Object... params) throws SQLException {
+        try (SlowQueryLog.Timer timer = SlowQueryLog.get().start(sql, params);
+             Connection conn = source.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) stmt.setObject(i + 1, params[i]);
+            stmt.setFetchSize(fetchSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    timer.row();
+                    handler.handle(rs);
+                }
+            }
+        }
+    }
+
+    private static Country toCountry(ResultSet rs) throws SQLException {
+        return new Country(
                 rs.getString("Code"),
                 rs.getString("Name"),
                 rs.getString("Continent"),
                 rs.getString("Region"),
                 rs.getLong("Population"),
-                rs.getString("Capital")
-                );
-                results.add(c);
-            }
-        } catch (SQLException e) {
-            logger.log(Level.SEVERE, e.getMessage(), e);
-        }
-        return results;
+                rs.getString("Capital"));
     }
 }
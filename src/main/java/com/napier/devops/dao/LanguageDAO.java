@@ -1,26 +1,72 @@
 package com.napier.devops.dao;
 
+import com.napier.devops.db.ConnectionSource;
+import com.napier.devops.db.DataVersion;
+import com.napier.devops.db.VersionedValue;
+import com.napier.devops.metrics.Metrics;
 import com.napier.devops.models.Language;
+import com.napier.devops.models.LanguageMatrix;
+import com.napier.devops.snapshot.SnapshotReports;
 import java.sql.*;
 import java.util.*;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+
+import static com.napier.devops.snapshot.SnapshotReports.UNLIMITED;
 
 /**
  * Data Access Object (DAO) for querying language statistics and population data.
  * Provides methods to retrieve language information grouped by various geographic scopes:
  * global, continent, region, and country.
+ * Every report is answered from {@link LanguageStats} computed in one pass over the data and
+ * kept in memory; it is rebuilt on demand ({@link #refreshStats()}) and, when a data version is
+ * being watched ({@link #watch(DataVersion)}), once the data changes.
  */
 public class LanguageDAO {
-    private final Connection conn;
-    private static final Logger logger = Logger.getLogger(PopulationDAO.class.getName());
+    private final ConnectionSource source;
+    private volatile SnapshotReports snapshot;
+    private final VersionedValue<LanguageStats> stats = new VersionedValue<>();
 
     /**
      * Constructs a LanguageDAO with a database connection.
      * @param conn The database connection to use for queries
      */
     public LanguageDAO(Connection conn) {
-        this.conn = conn;
+        this(ConnectionSource.of(conn));
+    }
+
+    /**
+     * Constructs a LanguageDAO that borrows a connection for each query, e.g. from a ConnectionPool.
+     * @param source Supplies the connection used by each query
+     */
+    public LanguageDAO(ConnectionSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Serves this DAO's reports from an in-memory snapshot instead of querying MySQL.
+     *
+     * @param snapshot the snapshot to answer from, or null to go back to the database
+     */
+    public void setSnapshot(SnapshotReports snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Rebuilds the language statistics whenever the given data version changes.
+     *
+     * @param version the data version to follow; null stops following one
+     */
+    public void watch(DataVersion version) {
+        stats.watch(version);
+    }
+
+    /**
+     * Rebuilds the language statistics from the database. Reports keep being served from the
+     * previous statistics until the new ones are ready; if the rebuild fails they are kept.
+     *
+     * @return true if the statistics were rebuilt
+     */
+    public boolean refreshStats() {
+        return stats.refresh(() -> LanguageStats.load(source));
     }
 
     /**
@@ -28,17 +74,7 @@ public class LanguageDAO {
      * @return List of Language objects sorted by total_speakers in descending order
      */
     public List<Language> getLanguagesByPopulation() {
-        String sql = "SELECT cl.Language, " +
-                "SUM(co.Population * cl.Percentage / 100) AS total_speakers, " +
-                "(SELECT SUM(co.Population * cl.Percentage / 100) * 100) " +
-                " / " +
-                "(SELECT SUM(Population) FROM country) " +
-                "AS percent_of_global " +
-                "FROM countrylanguage cl " +
-                "JOIN country co ON cl.CountryCode = co.Code " +
-                "GROUP BY cl.Language " +
-                "ORDER BY total_speakers DESC";
-        return queryLanguages(sql);
+        return Metrics.timed("LanguageDAO", "getLanguagesByPopulation", () -> languages(Scope.WORLD, null, UNLIMITED));
     }
 
     /**
@@ -47,18 +83,7 @@ public class LanguageDAO {
      * @return List of up to N Language objects sorted by total_speakers in descending order
      */
     public List<Language> getLanguagesByPopulation(int n) {
-        String sql = "SELECT cl.Language, " +
-                "SUM(co.Population * cl.Percentage / 100) AS total_speakers, " +
-                "(SELECT SUM(co.Population * cl.Percentage / 100) * 100) " +
-                " / " +
-                "(SELECT SUM(Population) FROM country) " +
-                "AS percent_of_global " +
-                "FROM countrylanguage cl " +
-                "JOIN country co ON cl.CountryCode = co.Code " +
-                "GROUP BY cl.Language " +
-                "ORDER BY total_speakers DESC " +
-                "LIMIT ?";
-        return queryLanguages(sql, n);
+        return Metrics.timed("LanguageDAO", "getLanguagesByPopulation", () -> languages(Scope.WORLD, null, n));
     }
 
     /**
@@ -68,18 +93,7 @@ public class LanguageDAO {
      * @return List of Language objects for the specified continent
      */
     public List<Language> getLanguagesByContinent(String continent) {
-        String sql = "SELECT co.Continent AS Continent, cl.Language, " +
-                "SUM(co.Population * cl.Percentage / 100) AS total_speakers, " +
-                "(SUM(co.Population * cl.Percentage / 100) * 100.0) / " +
-                "(SELECT SUM(c1.Population) FROM country c1 WHERE c1.Continent = co.Continent) AS percent_of_continent, " +
-                "(SUM(co.Population * cl.Percentage / 100) * 100.0) / " +
-                "(SELECT SUM(Population) FROM country) AS percent_of_global " +
-                "FROM countrylanguage cl " +
-                "JOIN country co ON cl.CountryCode = co.Code " +
-                "WHERE co.Continent = ?" +
-                "GROUP BY co.Continent, cl.Language " +
-                "ORDER BY co.Continent, total_speakers DESC";
-        return queryLanguages(sql, continent);
+        return Metrics.timed("LanguageDAO", "getLanguagesByContinent", () -> languages(Scope.CONTINENT, continent, UNLIMITED));
     }
 
     /**
@@ -89,19 +103,7 @@ public class LanguageDAO {
      * @return List of up to N Language objects for the specified continent
      */
     public List<Language> getLanguagesByContinent(String continent, int n) {
-        String sql = "SELECT co.Continent AS Continent, cl.Language, " +
-                "SUM(co.Population * cl.Percentage / 100) AS total_speakers, " +
-                "(SUM(co.Population * cl.Percentage / 100) * 100.0) / " +
-                "(SELECT SUM(c1.Population) FROM country c1 WHERE c1.Continent = co.Continent) AS percent_of_continent, " +
-                "(SUM(co.Population * cl.Percentage / 100) * 100.0) / " +
-                "(SELECT SUM(Population) FROM country) AS percent_of_global " +
-                "FROM countrylanguage cl " +
-                "JOIN country co ON cl.CountryCode = co.Code " +
-                "WHERE co.Continent = ?" +
-                "GROUP BY co.Continent, cl.Language " +
-                "ORDER BY co.Continent, total_speakers DESC " +
-                "LIMIT ?";
-        return queryLanguages(sql, continent, n);
+        return Metrics.timed("LanguageDAO", "getLanguagesByContinent", () -> languages(Scope.CONTINENT, continent, n));
     }
 
     /**
@@ -111,18 +113,7 @@ public class LanguageDAO {
      * @return List of Language objects for the specified region
      */
     public List<Language> getLanguagesByRegion(String region) {
-        String sql = "SELECT co.Region AS Region, cl.Language, " +
-                "SUM(co.Population * cl.Percentage / 100) AS total_speakers, " +
-                "(SUM(co.Population * cl.Percentage / 100) * 100.0) / " +
-                "(SELECT SUM(c1.Population) FROM country c1 WHERE c1.Region = co.Region) AS percent_of_region, " +
-                "(SUM(co.Population * cl.Percentage / 100) * 100.0) / " +
-                "(SELECT SUM(Population) FROM country) AS percent_of_global " +
-                "FROM countrylanguage cl " +
-                "JOIN country co ON cl.CountryCode = co.Code " +
-                "WHERE co.Region = ?" +
-                "GROUP BY co.Region, cl.Language " +
-                "ORDER BY co.Region, total_speakers DESC";
-        return queryLanguages(sql, region);
+        return Metrics.timed("LanguageDAO", "getLanguagesByRegion", () -> languages(Scope.REGION, region, UNLIMITED));
     }
 
     /**
@@ -132,40 +123,17 @@ public class LanguageDAO {
      * @return List of up to N Language objects for the specified region
      */
     public List<Language> getLanguagesByRegion(String region, int n) {
-        String sql = "SELECT co.Region AS Region, cl.Language, " +
-                "SUM(co.Population * cl.Percentage / 100) AS total_speakers, " +
-                "(SUM(co.Population * cl.Percentage / 100) * 100.0) / " +
-                "(SELECT SUM(c1.Population) FROM country c1 WHERE c1.Region = co.Region) AS percent_of_region, " +
-                "(SUM(co.Population * cl.Percentage / 100) * 100.0) / " +
-                "(SELECT SUM(Population) FROM country) AS percent_of_global " +
-                "FROM countrylanguage cl " +
-                "JOIN country co ON cl.CountryCode = co.Code " +
-                "WHERE co.Region = ?" +
-                "GROUP BY co.Region, cl.Language " +
-                "ORDER BY co.Region, total_speakers DESC " +
-                "LIMIT ?";
-        return queryLanguages(sql, region, n);
+        return Metrics.timed("LanguageDAO", "getLanguagesByRegion", () -> languages(Scope.REGION, region, n));
     }
 
     /**
      * Retrieves all languages spoken in a specific country (by name).
-     * Includes country-level, continental, and global percentage metrics.
+     * Includes country-level and global percentage metrics.
      * @param country The country name to filter by
      * @return List of Language objects for the specified country
      */
     public List<Language> getLanguagesByCountry(String country) {
-        String sql = "SELECT co.Name AS Country, cl.Language, " +
-                "SUM(co.Population * cl.Percentage / 100) AS total_speakers, " +
-                "(SUM(co.Population * cl.Percentage / 100) * 100.0) / " +
-                "(SELECT c1.Population FROM country c1 WHERE c1.Code = co.Code) AS percent_of_country, " +
-                "(SUM(co.Population * cl.Percentage / 100) * 100.0) / " +
-                "(SELECT SUM(Population) FROM country) AS percent_of_global " +
-                "FROM countrylanguage cl " +
-                "JOIN country co ON cl.CountryCode = co.Code " +
-                "WHERE co.Name = ? " +
-                "GROUP BY co.Code, co.Name, cl.Language " +
-                "ORDER BY co.Name, total_speakers DESC";
-        return queryLanguages(sql, country);
+        return Metrics.timed("LanguageDAO", "getLanguagesByCountry", () -> languages(Scope.COUNTRY, country, UNLIMITED));
     }
 
     /**
@@ -175,19 +143,7 @@ public class LanguageDAO {
      * @return List of up to N Language objects for the specified country
      */
     public List<Language> getLanguagesByCountry(String country, int n) {
-        String sql = "SELECT co.Name AS Country, cl.Language, " +
-                "SUM(co.Population * cl.Percentage / 100) AS total_speakers, " +
-                "(SUM(co.Population * cl.Percentage / 100) * 100.0) / " +
-                "(SELECT c1.Population FROM country c1 WHERE c1.Code = co.Code) AS percent_of_country, " +
-                "(SUM(co.Population * cl.Percentage / 100) * 100.0) / " +
-                "(SELECT SUM(Population) FROM country) AS percent_of_global " +
-                "FROM countrylanguage cl " +
-                "JOIN country co ON cl.CountryCode = co.Code " +
-                "WHERE co.Name = ? " +
-                "GROUP BY co.Code, co.Name, cl.Language " +
-                "ORDER BY co.Name, total_speakers DESC " +
-                "LIMIT ?";
-        return queryLanguages(sql, country, n);
+        return Metrics.timed("LanguageDAO", "getLanguagesByCountry", () -> languages(Scope.COUNTRY, country, n));
     }
 
     /**
@@ -197,18 +153,7 @@ public class LanguageDAO {
      * @return List of Language objects for the specified country code
      */
     public List<Language> getLanguagesByCountryCode(String country) {
-        String sql = "SELECT co.Name AS Country, cl.Language, " +
-                "SUM(co.Population * cl.Percentage / 100) AS total_speakers, " +
-                "(SUM(co.Population * cl.Percentage / 100) * 100.0) / " +
-                "(SELECT c1.Population FROM country c1 WHERE c1.Code = co.Code) AS percent_of_country, " +
-                "(SUM(co.Population * cl.Percentage / 100) * 100.0) / " +
-                "(SELECT SUM(Population) FROM country) AS percent_of_global " +
-                "FROM countrylanguage cl " +
-                "JOIN country co ON cl.CountryCode = co.Code " +
-                "WHERE co.Code = ? " +
-                "GROUP BY co.Code, co.Name, cl.Language " +
-                "ORDER BY co.Name, total_speakers DESC";
-        return queryLanguages(sql, country);
+        return Metrics.timed("LanguageDAO", "getLanguagesByCountryCode", () -> languages(Scope.COUNTRY_CODE, country, UNLIMITED));
     }
 
     /**
@@ -218,111 +163,45 @@ public class LanguageDAO {
      * @return List of up to N Language objects for the specified country code
      */
     public List<Language> getLanguagesByCountryCode(String country, int n) {
-        String sql = "SELECT co.Name AS Country, cl.Language, " +
-                "SUM(co.Population * cl.Percentage / 100) AS total_speakers, " +
-                "(SUM(co.Population * cl.Percentage / 100) * 100.0) / " +
-                "(SELECT c1.Population FROM country c1 WHERE c1.Code = co.Code) AS percent_of_country, " +
-                "(SUM(co.Population * cl.Percentage / 100) * 100.0) / " +
-                "(SELECT SUM(Population) FROM country) AS percent_of_global " +
-                "FROM countrylanguage cl " +
-                "JOIN country co ON cl.CountryCode = co.Code " +
-                "WHERE co.Code = ? " +
-                "GROUP BY co.Code, co.Name, cl.Language " +
-                "ORDER BY co.Name, total_speakers DESC " +
-                "LIMIT ?";
-        return queryLanguages(sql, country, n);
+        return Metrics.timed("LanguageDAO", "getLanguagesByCountryCode", () -> languages(Scope.COUNTRY_CODE, country, n));
     }
 
     /**
-     * Queries the total world population from the country table.
-     * Used to calculate global percentage metrics for all language queries.
-     * @return The sum of all country populations, or 0 if query fails
+     * Retrieves the speakers of every language in every continent or every region at once,
+     * instead of one ranked report per area.
+     * @param level CONTINENT or REGION
+     * @return the sparse language × area matrix, or null if the level is not supported or
+     *         the statistics could not be built
      */
-    private long getGlobalPopulation() {
-        String sql = "SELECT SUM(Population) AS WorldPop FROM country";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getLong("WorldPop");
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
+    public LanguageMatrix getLanguageMatrix(Scope level) {
+        Metrics.Sample sample = Metrics.startCall("LanguageDAO", "getLanguageMatrix");
+        try {
+            LanguageStats stats = stats();
+            LanguageMatrix matrix = stats == null ? null : stats.matrix(level);
+            if (matrix != null) sample.addRows(matrix.getCells().size());
+            return matrix;
+        } finally {
+            sample.stop();
         }
-        return 0;
     }
 
     /**
-     * Core query execution method that processes language statistics.
-     * Dynamically detects the query scope (continent, region, country, or global)
-     * by checking which geographic columns are present in the result set,
-     * then constructs appropriate Language objects with the correct metrics.
-     * 
-     * @param sql The prepared SQL statement
-     * @param params Variable arguments to bind to the PreparedStatement (? placeholders)
-     * @return List of Language objects populated from the query result set
+     * Answers a language report from the current statistics.
      */
-    private List<Language> queryLanguages(String sql, Object... params) {
-        List<Language> results = new ArrayList<>();
-
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            for (int i = 0; i < params.length; i++) {
-                stmt.setObject(i + 1, params[i]);
-            }
-
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    // Detect which scope columns are present
-                    String continentType = safeGet(rs, "Continent");
-                    String regionType    = safeGet(rs, "Region");
-                    String countryType   = safeGet(rs, "Country");
-
-                    String language = rs.getString("Language");
-                    long speakers = rs.getLong("total_speakers");
-                    String percentOfGlobal = String.format("%.2f", rs.getDouble("percent_of_global"));
-
-
-                    if (continentType != null) {
-                        String percentOfContinent = String.format("%.2f", rs.getDouble("percent_of_continent"));
-                        results.add(new Language("Continent", language, speakers, percentOfContinent, percentOfGlobal, rs.getString("Continent")));
-                    } else if (regionType != null) {
-                        String percentOfRegion = String.format("%.2f", rs.getDouble("percent_of_region"));
-                        results.add(new Language("Region", language, speakers, percentOfRegion, percentOfGlobal, rs.getString("Region")));
-                    } else if (countryType != null) {
-                        String percentOfCountry = String.format("%.2f", rs.getDouble("percent_of_country"));
-                        results.add(new Language("Country", language, speakers, percentOfCountry, percentOfGlobal, rs.getString("Country")));
-                    } else {
-                        // Default: global report
-                        results.add(new Language(language, speakers, percentOfGlobal));
-                    }
-                }
-            }
-        } catch (SQLException e) {
-            logger.log(Level.SEVERE, e.getMessage(), e);
-        }
-
-        // Inject global population into each Language object if needed
-        long worldPop = getGlobalPopulation();
-        results.forEach(l -> l.setGlobalPopulation(worldPop));
-
-        return results;
+    private List<Language> languages(Scope scope, String name, int limit) {
+        LanguageStats stats = stats();
+        return stats == null ? new ArrayList<>() : stats.languages(scope, name, limit);
     }
 
     /**
-     * Utility method to safely check if a column exists in the ResultSet.
-     * Prevents SQLException when attempting to access columns that don't exist
-     * in the result set (useful for detecting optional geographic columns).
-     * 
-     * @param rs The ResultSet to check
-     * @param column The column name to search for
-     * @return The column name if found, null if the column doesn't exist
+     * Returns the statistics reports are served from: the snapshot's when one is attached,
+     * otherwise the ones built from the database on first use and after the data changes.
+     *
+     * @return the current statistics, or null if they could not be built
      */
-    private String safeGet(ResultSet rs, String column) {
-        try {
-            rs.findColumn(column); // throws if not present
-            return column;
-        } catch (SQLException e) {
-            return null;
-        }
+    private LanguageStats stats() {
+        SnapshotReports snapshot = this.snapshot;
+        if (snapshot != null) return snapshot.languageStats();
+        return stats.get(() -> LanguageStats.load(source));
     }
-
 }
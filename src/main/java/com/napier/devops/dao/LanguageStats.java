@@ -0,0 +1,261 @@
+package com.napier.devops.dao;
+
+import com.napier.devops.db.ConnectionSource;
+import com.napier.devops.db.SlowQueryLog;
+import com.napier.devops.models.Language;
+import com.napier.devops.models.LanguageMatrix;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Pre-computed language statistics at every geographic level.
+
+ * Speakers per (language, country) are computed once from a single pass over country and
+ * countrylanguage, then summed into world, continent and region totals. Each group keeps
+ * its population (the denominator of its percentages, counting countries with no recorded
+ * language) and its languages ranked by speakers, so every language report becomes a
+ * lookup instead of a grouped query with scalar subqueries and a second round trip for the
+ * world population. The language × continent and language × region matrices are laid out
+ * from the same groups. Instances are immutable; refreshing means building new statistics
+ * and swapping them in.
+ */
+public class LanguageStats {
+    /** Speakers are summed in tenths of a percent, so the arithmetic matches MySQL's exact DECIMAL sums. */
+    private static final double TENTHS = 1000.0;
+
+    /** One continent, region, country or the whole world. */
+    private static final class Group {
+        final String label;
+        long population;
+        final Map<String, long[]> speakerTenths = new HashMap<>();
+        String[] languages;
+        long[] ranked;
+
+        Group(String label) {
+            this.label = label;
+        }
+
+        void add(String language, long tenths) {
+            speakerTenths.computeIfAbsent(language, k -> new long[1])[0] += tenths;
+        }
+
+        /** Orders the languages by speakers, most first, and ties by name. */
+        void rank() {
+            List<Map.Entry<String, long[]>> rows = new ArrayList<>(speakerTenths.entrySet());
+            rows.sort(Comparator.comparingLong((Map.Entry<String, long[]> e) -> e.getValue()[0]).reversed()
+                    .thenComparing(Map.Entry::getKey));
+            languages = new String[rows.size()];
+            ranked = new long[rows.size()];
+            for (int i = 0; i < rows.size(); i++) {
+                languages[i] = rows.get(i).getKey();
+                ranked[i] = rows.get(i).getValue()[0];
+            }
+            speakerTenths.clear();
+        }
+    }
+
+    private final Group world = new Group(null);
+    private final Map<Scope, Map<String, Group>> byName = new EnumMap<>(Scope.class);
+    private final Map<Scope, LanguageMatrix> matrices = new EnumMap<>(Scope.class);
+    private final long builtAt = System.currentTimeMillis();
+
+    private LanguageStats(Builder b) {
+        Map<String, Group> continents = new HashMap<>();
+        Map<String, Group> regions = new HashMap<>();
+        Map<String, Group> countries = new HashMap<>();
+        Map<String, Group> countriesByCode = new HashMap<>();
+
+        for (CountryRow c : b.countries.values()) {
+            Group continent = continents.computeIfAbsent(fold(c.continent), k -> new Group(c.continent));
+            Group region = regions.computeIfAbsent(fold(c.region), k -> new Group(c.region));
+            Group country = new Group(c.name);
+            countries.putIfAbsent(fold(c.name), country);
+            countriesByCode.put(fold(c.code), country);
+
+            for (Group g : List.of(world, continent, region, country)) g.population += c.population;
+            for (Map.Entry<String, Long> spoken : c.languageTenths.entrySet()) {
+                long tenths = c.population * spoken.getValue();
+                for (Group g : List.of(world, continent, region, country)) g.add(spoken.getKey(), tenths);
+            }
+        }
+
+        world.rank();
+        for (Map<String, Group> level : List.of(continents, regions, countriesByCode)) {
+            level.values().forEach(Group::rank);
+        }
+        byName.put(Scope.CONTINENT, continents);
+        byName.put(Scope.REGION, regions);
+        byName.put(Scope.COUNTRY, countries);
+        byName.put(Scope.COUNTRY_CODE, countriesByCode);
+        matrices.put(Scope.CONTINENT, matrix("Continent", continents.values()));
+        matrices.put(Scope.REGION, matrix("Region", regions.values()));
+    }
+
+    /** Lays out the ranked groups of one level as a sparse language × area matrix. */
+    private LanguageMatrix matrix(String level, Collection<Group> groups) {
+        Map<String, Integer> row = new HashMap<>();
+        for (int i = 0; i < world.languages.length; i++) row.put(world.languages[i], i);
+
+        List<Group> areas = new ArrayList<>(groups);
+        areas.sort(Comparator.comparing((Group g) -> g.label, Comparator.nullsFirst(Comparator.naturalOrder())));
+        List<String> names = new ArrayList<>(areas.size());
+        List<Long> populations = new ArrayList<>(areas.size());
+        List<LanguageMatrix.Cell> cells = new ArrayList<>();
+        for (int area = 0; area < areas.size(); area++) {
+            Group g = areas.get(area);
+            names.add(g.label);
+            populations.add(g.population);
+            for (int i = 0; i < g.languages.length; i++) {
+                cells.add(new LanguageMatrix.Cell(row.get(g.languages[i]), area, g.ranked[i] / (long) TENTHS));
+            }
+        }
+        cells.sort(Comparator.comparingInt(LanguageMatrix.Cell::getLanguage).thenComparingInt(LanguageMatrix.Cell::getArea));
+        return new LanguageMatrix(level, Arrays.asList(world.languages), names, populations, world.population, cells);
+    }
+
+    private static String fold(String name) {
+        return name == null ? null : name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Builds the statistics from the database with a single pass over country and countrylanguage.
+     *
+     * @param source supplies the connection to read from
+     * @return the new statistics
+     * @throws SQLException if the query fails
+     */
+    public static LanguageStats load(ConnectionSource source) throws SQLException {
+        // LEFT JOIN so countries without a recorded language still count towards the denominators
+        String sql = "SELECT co.Code, co.Name, co.Continent, co.Region, co.Population, cl.Language, cl.Percentage " +
+                "FROM country co LEFT JOIN countrylanguage cl ON cl.CountryCode = co.Code";
+        Builder b = new Builder();
+        try (SlowQueryLog.Timer timer = SlowQueryLog.get().start(sql);
+             Connection conn = source.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                timer.row();
+                String code = rs.getString("Code");
+                b.addCountry(code, rs.getString("Name"), rs.getString("Continent"), rs.getString("Region"),
+                        rs.getLong("Population"));
+                String language = rs.getString("Language");
+                if (language != null) {
+                    b.addLanguage(code, language, Math.round(rs.getDouble("Percentage") * 10));
+                }
+            }
+        }
+        return b.build();
+    }
+
+    /** @return the sum of every country's population */
+    public long getGlobalPopulation() {
+        return world.population;
+    }
+
+    /** @return when these statistics were computed, in epoch milliseconds */
+    public long getBuiltAt() {
+        return builtAt;
+    }
+
+    /**
+     * Languages ranked by number of speakers, worldwide or within one continent, region or country.
+     *
+     * @param scope WORLD, CONTINENT, REGION, COUNTRY (by name) or COUNTRY_CODE
+     * @param name the continent, region, country or code (case-insensitive); ignored for WORLD
+     * @param limit maximum number of rows; zero or negative returns none
+     * @return new Language rows, most speakers first
+     */
+    public List<Language> languages(Scope scope, String name, int limit) {
+        List<Language> results = new ArrayList<>();
+        Group group = scope == Scope.WORLD ? world
+                : name == null ? null : byName.getOrDefault(scope, Map.of()).get(fold(name));
+        if (group == null || limit <= 0) return results;
+
+        String scopeType = switch (scope) {
+            case CONTINENT -> "Continent";
+            case REGION -> "Region";
+            case COUNTRY, COUNTRY_CODE -> "Country";
+            default -> null;
+        };
+        int n = Math.min(limit, group.languages.length);
+        for (int i = 0; i < n; i++) {
+            double speakersExact = group.ranked[i] / TENTHS;
+            long speakers = group.ranked[i] / (long) TENTHS;
+            String percentOfGlobal = percent(speakersExact, world.population);
+            Language language = scopeType == null
+                    ? new Language(group.languages[i], speakers, percentOfGlobal)
+                    : new Language(scopeType, group.languages[i], speakers,
+                            percent(speakersExact, group.population), percentOfGlobal, group.label);
+            language.setGlobalPopulation(world.population);
+            results.add(language);
+        }
+        return results;
+    }
+
+    /**
+     * Speakers of every language in every continent or every region, in one response.
+     *
+     * @param level CONTINENT or REGION
+     * @return the matrix, or null for any other level
+     */
+    public LanguageMatrix matrix(Scope level) {
+        return matrices.get(level);
+    }
+
+    private static String percent(double part, long whole) {
+        return String.format("%.2f", whole == 0 ? 0.0 : part * 100.0 / whole);
+    }
+
+    private static final class CountryRow {
+        final String code;
+        final String name;
+        final String continent;
+        final String region;
+        final long population;
+        final Map<String, Long> languageTenths = new LinkedHashMap<>();
+
+        CountryRow(String code, String name, String continent, String region, long population) {
+            this.code = code;
+            this.name = name;
+            this.continent = continent;
+            this.region = region;
+            this.population = population;
+        }
+    }
+
+    /**
+     * Collects country rows and the languages spoken in them before the statistics are computed.
+     */
+    public static class Builder {
+        private final Map<String, CountryRow> countries = new LinkedHashMap<>();
+
+        /**
+         * Adds a country; adding the same code again keeps the first row.
+         *
+         * @return this builder
+         */
+        public Builder addCountry(String code, String name, String continent, String region, long population) {
+            countries.putIfAbsent(code, new CountryRow(code, name, continent, region, population));
+            return this;
+        }
+
+        /**
+         * Records the share of a country's population that speaks a language.
+         *
+         * @param code the code of a country already added
+         * @param language the language
+         * @param tenths the percentage of speakers in tenths of a percent (e.g. 995 for 99.5%)
+         * @return this builder
+         */
+        public Builder addLanguage(String code, String language, long tenths) {
+            CountryRow row = countries.get(code);
+            if (row != null) row.languageTenths.merge(language, tenths, Long::sum);
+            return this;
+        }
+
+        public LanguageStats build() {
+            return new LanguageStats(this);
+        }
+    }
+}
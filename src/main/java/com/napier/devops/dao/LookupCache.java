@@ -0,0 +1,60 @@
+package com.napier.devops.dao;
+
+import com.napier.devops.db.ConnectionSource;
+import com.napier.devops.db.DataVersion;
+import com.napier.devops.db.VersionedValue;
+
+/**
+ * Holds the {@link LookupIndex} the lookup lists, searches and name resolution are answered from.
+
+ * One cache is shared by the whole process ({@link #shared()}), so the web server and the
+ * console menu read the same index. It is built on first use or by {@link #refresh}, and
+ * when a {@link DataVersion} is being watched the index is rebuilt once the version moves on.
+ * Only one caller rebuilds; everyone else keeps reading the previous index until the new one
+ * is swapped in, and if a rebuild fails the previous index is kept.
+ */
+public class LookupCache {
+    private static final LookupCache SHARED = new LookupCache();
+
+    private final VersionedValue<LookupIndex> index = new VersionedValue<>();
+
+    /** @return the cache shared by every LookupDAO in this process */
+    public static LookupCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Rebuilds the index whenever the given version changes.
+     *
+     * @param version the data version to follow; null stops following one
+     */
+    public void watch(DataVersion version) {
+        index.watch(version);
+    }
+
+    /**
+     * Returns the current index, building it on first use and rebuilding it if the data
+     * version has changed since it was built.
+     *
+     * @param source supplies the connection used if the index has to be (re)built
+     * @return the index, or null if it has never been built successfully
+     */
+    public LookupIndex get(ConnectionSource source) {
+        return index.get(() -> LookupIndex.load(source));
+    }
+
+    /**
+     * Builds a new index from the database and swaps it in.
+     *
+     * @param source supplies the connection to read from
+     * @return true if the index was rebuilt
+     */
+    public boolean refresh(ConnectionSource source) {
+        return index.refresh(() -> LookupIndex.load(source));
+    }
+
+    /** Drops the index, so the next call to {@link #get} builds a new one. */
+    public void clear() {
+        index.clear();
+    }
+}
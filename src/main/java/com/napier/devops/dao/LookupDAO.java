@@ -1,6 +1,10 @@
 package com.napier.devops.dao;
 
+import com.napier.devops.db.ConnectionSource;
+import com.napier.devops.db.SlowQueryLog;
+import com.napier.devops.metrics.Metrics;
 import com.napier.devops.models.Lookup;
+import com.napier.devops.util.SingleFlight;
 import java.sql.*;
 import java.util.*;
 import java.util.logging.Level;
@@ -10,17 +14,42 @@ import java.util.logging.Logger;
  * Data Access Object (DAO) for managing lookup/reference data queries.
  * Provides methods to retrieve geographical information (continents, regions, countries, districts)
  * from the database with optional search functionality.
+ * The lists and searches are answered from a {@link LookupIndex} held in a {@link LookupCache},
+ * so dropdowns and type-ahead do not query the tables (no {@code LIKE '%term%'} scans); only
+ * if the index cannot be built do they fall back to SQL. The same index resolves mistyped
+ * names ({@link #resolve}) before they reach a report query.
  */
 public class LookupDAO {
-    private final Connection conn;
+    private final ConnectionSource source;
     private static final Logger logger = Logger.getLogger(CountryDAO.class.getName());
+    /** Lets concurrent identical lookups share one execution; each caller gets its own list. */
+    private final SingleFlight<List<Object>, List<Lookup>> flights = new SingleFlight<>(ArrayList::new);
+    private final LookupCache lookups;
 
     /**
      * Constructs a LookupDAO with the provided database connection.
      * @param conn Database connection to be used for all queries
      */
     public LookupDAO(Connection conn) {
-        this.conn = conn;
+        this(ConnectionSource.of(conn));
+    }
+
+    /**
+     * Constructs a LookupDAO that borrows a connection for each query, e.g. from a ConnectionPool.
+     * @param source Supplies the connection used by each query
+     */
+    public LookupDAO(ConnectionSource source) {
+        this(source, LookupCache.shared());
+    }
+
+    /**
+     * Constructs a LookupDAO that answers from the given cache rather than the shared one.
+     * @param source Supplies the connection used by each query
+     * @param lookups Holds the lookup index
+     */
+    public LookupDAO(ConnectionSource source, LookupCache lookups) {
+        this.source = source;
+        this.lookups = lookups;
     }
 
     // --- GET methods ---
@@ -29,8 +58,12 @@ public class LookupDAO {
      * @return List of Lookup objects containing continent names
      */
     public List<Lookup> getAllContinents() {
-        String sql = "SELECT DISTINCT Continent FROM country ORDER BY Continent";
-        return querySingleColumnLookup(sql, "Continent");
+        return Metrics.timed("LookupDAO", "getAllContinents", () -> {
+            LookupIndex index = index();
+            if (index != null) return index.all(LookupIndex.Type.CONTINENT);
+            String sql = "SELECT DISTINCT Continent FROM country ORDER BY Continent";
+            return querySingleColumnLookup(sql, "Continent");
+        });
     }
 
     /**
@@ -38,8 +71,12 @@ public class LookupDAO {
      * @return List of Lookup objects containing region names
      */
     public List<Lookup> getAllRegions() {
-        String sql = "SELECT DISTINCT Region FROM country ORDER BY Region";
-        return querySingleColumnLookup(sql, "Region");
+        return Metrics.timed("LookupDAO", "getAllRegions", () -> {
+            LookupIndex index = index();
+            if (index != null) return index.all(LookupIndex.Type.REGION);
+            String sql = "SELECT DISTINCT Region FROM country ORDER BY Region";
+            return querySingleColumnLookup(sql, "Region");
+        });
     }
 
     /**
@@ -47,8 +84,12 @@ public class LookupDAO {
      * @return List of Lookup objects containing country codes and names
      */
     public List<Lookup> getAllCountries() {
-        String sql = "SELECT Code, Name FROM country ORDER BY Name";
-        return queryCountryLookup(sql);
+        return Metrics.timed("LookupDAO", "getAllCountries", () -> {
+            LookupIndex index = index();
+            if (index != null) return index.all(LookupIndex.Type.COUNTRY);
+            String sql = "SELECT Code, Name FROM country ORDER BY Name";
+            return queryCountryLookup(sql);
+        });
     }
 
     /**
@@ -56,8 +97,12 @@ public class LookupDAO {
      * @return List of Lookup objects containing district names
      */
     public List<Lookup> getAllDistricts() {
-        String sql = "SELECT DISTINCT District FROM city ORDER BY District";
-        return querySingleColumnLookup(sql, "District");
+        return Metrics.timed("LookupDAO", "getAllDistricts", () -> {
+            LookupIndex index = index();
+            if (index != null) return index.all(LookupIndex.Type.DISTRICT);
+            String sql = "SELECT DISTINCT District FROM city ORDER BY District";
+            return querySingleColumnLookup(sql, "District");
+        });
     }
 
     /**
@@ -66,18 +111,12 @@ public class LookupDAO {
      * @return List of Lookup objects containing districts for the specified country
      */
     public List<Lookup> getDistrictsByCountryCode(String countryCode) {
-        String sql = "SELECT DISTINCT District FROM city WHERE CountryCode = ? ORDER BY District";
-        List<Lookup> list = new ArrayList<>();
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, countryCode);
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                list.add(new Lookup("District", rs.getString("District")));
-            }
-        } catch (SQLException e) {
-            System.err.println("Error fetching districts: " + e.getMessage());
-        }
-        return list;
+        return Metrics.timed("LookupDAO", "getDistrictsByCountryCode", () -> {
+            LookupIndex index = index();
+            if (index != null) return index.districtsOf(countryCode);
+            String sql = "SELECT DISTINCT District FROM city WHERE CountryCode = ? ORDER BY District";
+            return querySingleColumnLookup(sql, "District", countryCode);
+        });
     }
 
     /**
@@ -87,18 +126,12 @@ public class LookupDAO {
      * @return List of Lookup objects containing districts for the specified country
      */
     public List<Lookup> getDistrictsByCountryName(String countryName) {
-        String sql = "SELECT DISTINCT district FROM city JOIN country ON city.CountryCode=country.Code WHERE country.Name= ? ORDER BY District";
-        List<Lookup> list = new ArrayList<>();
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, countryName);
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                list.add(new Lookup("District", rs.getString("District")));
-            }
-        } catch (SQLException e) {
-            System.err.println("Error fetching districts: " + e.getMessage());
-        }
-        return list;
+        return Metrics.timed("LookupDAO", "getDistrictsByCountryName", () -> {
+            LookupIndex index = index();
+            if (index != null) return index.districtsOfCountryNamed(countryName);
+            String sql = "SELECT DISTINCT district FROM city JOIN country ON city.CountryCode=country.Code WHERE country.Name= ? ORDER BY District";
+            return querySingleColumnLookup(sql, "District", countryName);
+        });
     }
 
     // --- Search methods ---
@@ -108,8 +141,12 @@ public class LookupDAO {
      * @return List of Lookup objects containing matching continents
      */
     public List<Lookup> searchContinents(String term) {
-        String sql = "SELECT DISTINCT Continent FROM country WHERE Continent LIKE ? ORDER BY Continent";
-        return querySingleColumnLookup(sql, "Continent", "%" + term + "%");
+        return Metrics.timed("LookupDAO", "searchContinents", () -> {
+            LookupIndex index = index();
+            if (index != null) return index.matching(LookupIndex.Type.CONTINENT, term);
+            String sql = "SELECT DISTINCT Continent FROM country WHERE Continent LIKE ? ORDER BY Continent";
+            return querySingleColumnLookup(sql, "Continent", "%" + term + "%");
+        });
     }
 
     /**
@@ -118,8 +155,12 @@ public class LookupDAO {
      * @return List of Lookup objects containing matching regions
      */
     public List<Lookup> searchRegions(String term) {
-        String sql = "SELECT DISTINCT Region FROM country WHERE Region LIKE ? ORDER BY Region";
-        return querySingleColumnLookup(sql, "Region", "%" + term + "%");
+        return Metrics.timed("LookupDAO", "searchRegions", () -> {
+            LookupIndex index = index();
+            if (index != null) return index.matching(LookupIndex.Type.REGION, term);
+            String sql = "SELECT DISTINCT Region FROM country WHERE Region LIKE ? ORDER BY Region";
+            return querySingleColumnLookup(sql, "Region", "%" + term + "%");
+        });
     }
 
     /**
@@ -128,8 +169,12 @@ public class LookupDAO {
      * @return List of Lookup objects containing matching countries with their codes
      */
     public List<Lookup> searchCountries(String term) {
-        String sql = "SELECT Code, Name FROM country WHERE Name LIKE ? ORDER BY Name";
-        return queryCountryLookup(sql, "%" + term + "%");
+        return Metrics.timed("LookupDAO", "searchCountries", () -> {
+            LookupIndex index = index();
+            if (index != null) return index.matching(LookupIndex.Type.COUNTRY, term);
+            String sql = "SELECT Code, Name FROM country WHERE Name LIKE ? ORDER BY Name";
+            return queryCountryLookup(sql, "%" + term + "%");
+        });
     }
 
     /**
@@ -138,33 +183,109 @@ public class LookupDAO {
      * @return List of Lookup objects containing matching districts
      */
     public List<Lookup> searchDistricts(String term) {
-        String sql = "SELECT DISTINCT District FROM city WHERE District LIKE ? ORDER BY District";
-        return querySingleColumnLookup(sql, "District", "%" + term + "%");
+        return Metrics.timed("LookupDAO", "searchDistricts", () -> {
+            LookupIndex index = index();
+            if (index != null) return index.matching(LookupIndex.Type.DISTRICT, term);
+            String sql = "SELECT DISTINCT District FROM city WHERE District LIKE ? ORDER BY District";
+            return querySingleColumnLookup(sql, "District", "%" + term + "%");
+        });
+    }
+
+    /**
+     * Ranked type-ahead search over one kind of lookup name, answered from the in-memory index.
+     * @param type Which names to search
+     * @param term The text typed so far
+     * @param limit The most results to return, capped at {@link LookupIndex#MAX_RESULTS}
+     * @return The best matches first, or an empty list if the index could not be built
+     */
+    public List<Lookup> search(LookupIndex.Type type, String term, int limit) {
+        return Metrics.timed("LookupDAO", "search", () -> {
+            LookupIndex index = index();
+            return index == null ? new ArrayList<>() : index.search(type, term, limit);
+        });
+    }
+
+    /**
+     * Resolves a possibly mistyped name to the canonical one before it is used in a query.
+     * Answered from the in-memory index without timing, as it runs ahead of every scoped report.
+     * @param type Which names to look in
+     * @param name The name as the user typed it
+     * @return The canonical entry (for countries the code is the Lookup type), or null if the
+     *         name is unknown, too close to call, or the index could not be built
+     */
+    public Lookup resolve(LookupIndex.Type type, String name) {
+        LookupIndex index = index();
+        return index == null ? null : index.resolve(type, name);
+    }
+
+    /**
+     * Suggests names close to one that could not be resolved.
+     * @param type Which names to look in
+     * @param name The name as the user typed it
+     * @param limit The most suggestions to return
+     * @return The closest names first, or an empty list if the index could not be built
+     */
+    public List<Lookup> suggest(LookupIndex.Type type, String name, int limit) {
+        LookupIndex index = index();
+        return index == null ? new ArrayList<>() : index.suggest(type, name, limit);
+    }
+
+    /**
+     * Rebuilds the lookup index from the database, e.g. to preload it at startup. Lookups keep
+     * using the previous index until the new one is ready; if the rebuild fails it is kept.
+     * @return true if the index was rebuilt
+     */
+    public boolean refreshIndex() {
+        return lookups.refresh(source);
+    }
+
+    /**
+     * Returns the lookup index, building it on first use and after the data changes.
+     * @return the current index, or null if it could not be built
+     */
+    private LookupIndex index() {
+        return lookups.get(source);
     }
 
     // --- Shared query helpers ---
     /**
      * Helper method to execute queries that return a single column of data.
      * Used for lookups like continents, regions, and districts.
+     * Concurrent calls with the same SQL and parameters share one execution.
      * @param sql The SQL query to execute
      * @param type The type identifier for the Lookup object (e.g., "Continent", "Region")
      * @param params Variable number of query parameters to bind to prepared statement
      * @return List of Lookup objects containing the query results
      */
     private List<Lookup> querySingleColumnLookup(String sql, String type, Object... params) {
+        try {
+            return flights.run(Arrays.asList(sql, type, Arrays.asList(params)), () -> fetchSingleColumnLookup(sql, type, params));
+        } catch (QueryFailedException e) {
+            // Every caller that shared the query records the failure, not just the one that ran it
+            Metrics.markFailed();
+            logger.log(Level.SEVERE, e.getMessage(), e.getCause());
+            return new ArrayList<>();
+        }
+    }
+
+    private List<Lookup> fetchSingleColumnLookup(String sql, String type, Object... params) {
         List<Lookup> results = new ArrayList<>();
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (SlowQueryLog.Timer timer = SlowQueryLog.get().start(sql, params);
+             Connection conn = source.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             // Bind all parameters to the prepared statement
             for (int i = 0; i < params.length; i++) {
                 stmt.setObject(i + 1, params[i]);
             }
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                // Extract first column and create Lookup object with provided type
-                results.add(new Lookup(type, rs.getString(1)));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    timer.row();
+                    // Extract first column and create Lookup object with provided type
+                    results.add(new Lookup(type, rs.getString(1)));
+                }
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            throw new QueryFailedException(e);
         }
         return results;
     }
@@ -172,26 +293,41 @@ public class LookupDAO {
     /**
      * Helper method to execute queries that return country data (Code and Name).
      * Specialized for country lookups where both code and name are needed.
+     * Concurrent calls with the same SQL and parameters share one execution.
      * @param sql The SQL query to execute (should select Code and Name columns)
      * @param params Variable number of query parameters to bind to prepared statement
      * @return List of Lookup objects containing country codes and names
      */
     private List<Lookup> queryCountryLookup(String sql, Object... params) {
+        try {
+            return flights.run(Arrays.asList(sql, Arrays.asList(params)), () -> fetchCountryLookup(sql, params));
+        } catch (QueryFailedException e) {
+            Metrics.markFailed();
+            logger.log(Level.SEVERE, e.getMessage(), e.getCause());
+            return new ArrayList<>();
+        }
+    }
+
+    private List<Lookup> fetchCountryLookup(String sql, Object... params) {
         List<Lookup> results = new ArrayList<>();
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (SlowQueryLog.Timer timer = SlowQueryLog.get().start(sql, params);
+             Connection conn = source.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             // Bind all parameters to the prepared statement
             for (int i = 0; i < params.length; i++) {
                 stmt.setObject(i + 1, params[i]);
             }
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                String code = rs.getString("Code");
-                String name = rs.getString("Name");
-                // Create Lookup with code as type and name as value
-                results.add(new Lookup(code, name));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    timer.row();
+                    String code = rs.getString("Code");
+                    String name = rs.getString("Name");
+                    // Create Lookup with code as type and name as value
+                    results.add(new Lookup(code, name));
+                }
             }
         } catch (SQLException e) {
-            logger.log(Level.SEVERE, e.getMessage(), e);
+            throw new QueryFailedException(e);
         }
         return results;
     }
@@ -0,0 +1,492 @@
+package com.napier.devops.dao;
+
+import com.napier.devops.db.ConnectionSource;
+import com.napier.devops.db.SlowQueryLog;
+import com.napier.devops.models.Lookup;
+import com.napier.devops.util.BkTree;
+
+import java.sql.*;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory search over the lookup names (continents, regions, countries and districts).
+
+ * Each type keeps its names in rank order: shorter names first, then alphabetically, so a
+ * name's position in that order is its id and a smaller id is always a better match. Two
+ * prefix tries answer type-ahead: one over whole names and one over every word start
+ * ("york" finds "New York"). Every trie node stores the best few ids beneath it, so a
+ * prefix lookup costs one walk down the trie however many names share the prefix.
+ * Substring matches anywhere in a name come from a trigram index: the postings of the
+ * query's rarest trigrams are intersected and the few survivors checked directly.
+ * Mistyped names are resolved through a BK-tree over the same names, searched within an
+ * edit distance that grows with the length of the name.
+
+ * The index also answers the plain lookup lists (every continent, region or country, and the
+ * districts of a country) in alphabetical order, so they need no query of their own.
+
+ * Matching ignores case, accents and surrounding spaces. Instances are immutable;
+ * refreshing means building a new index and swapping it in.
+ */
+public class LookupIndex {
+    /** The most results a single search returns. */
+    public static final int MAX_RESULTS = 50;
+
+    /** The lookup types that can be searched, with the type label their results carry. */
+    public enum Type {
+        CONTINENT("Continent"), REGION("Region"), COUNTRY(null), DISTRICT("District");
+
+        private final String label;
+
+        Type(String label) { this.label = label; }
+
+        /**
+         * @param name a type name such as "country" (case-insensitive)
+         * @return the matching type, or null if there is none
+         */
+        public static Type parse(String name) {
+            if (name == null) return null;
+            for (Type t : values()) {
+                if (t.name().equalsIgnoreCase(name.trim())) return t;
+            }
+            return null;
+        }
+    }
+
+    /** The order the lookup lists come in: alphabetical, ignoring case and accents. */
+    private static final Comparator<String> ALPHABETICAL =
+            Comparator.comparing(LookupIndex::fold).thenComparing(Comparator.naturalOrder());
+
+    private final Map<Type, Names> names = new EnumMap<>(Type.class);
+    private final Map<String, List<String>> districtsByCountry = new HashMap<>();
+    private final long builtAt = System.currentTimeMillis();
+
+    private LookupIndex(Builder b) {
+        for (Type t : Type.values()) {
+            names.put(t, new Names(t, b.entries.get(t)));
+        }
+        b.districtsByCountry.forEach((code, districts) -> {
+            List<String> sorted = new ArrayList<>(districts);
+            sorted.sort(ALPHABETICAL);
+            districtsByCountry.put(fold(code), sorted);
+        });
+    }
+
+    /**
+     * Builds an index from the database: the country table is read once for continents,
+     * regions and countries, and the distinct districts of each country come from the city table.
+     *
+     * @param source supplies the connection to read from
+     * @return the new index
+     * @throws SQLException if a query fails
+     */
+    public static LookupIndex load(ConnectionSource source) throws SQLException {
+        String countrySql = "SELECT Code, Name, Continent, Region FROM country";
+        String districtSql = "SELECT DISTINCT CountryCode, District FROM city";
+        Builder b = new Builder();
+        try (Connection conn = source.getConnection()) {
+            try (SlowQueryLog.Timer timer = SlowQueryLog.get().start(countrySql);
+                 PreparedStatement stmt = conn.prepareStatement(countrySql);
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    timer.row();
+                    b.add(Type.CONTINENT, null, rs.getString("Continent"));
+                    b.add(Type.REGION, null, rs.getString("Region"));
+                    b.add(Type.COUNTRY, rs.getString("Code"), rs.getString("Name"));
+                }
+            }
+            try (SlowQueryLog.Timer timer = SlowQueryLog.get().start(districtSql);
+                 PreparedStatement stmt = conn.prepareStatement(districtSql);
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    timer.row();
+                    b.addDistrict(rs.getString("CountryCode"), rs.getString("District"));
+                }
+            }
+        }
+        return b.build();
+    }
+
+    /**
+     * Ranked search for type-ahead. Names equal to the query come first, then names that
+     * start with it, then names with a word that starts with it, then names containing it
+     * anywhere; within each group shorter names come first.
+     *
+     * @param type which names to search
+     * @param query the text typed so far
+     * @param limit the most results to return, capped at {@link #MAX_RESULTS}
+     * @return the best matches, best first
+     */
+    public List<Lookup> search(Type type, String query, int limit) {
+        String q = fold(query);
+        List<Lookup> results = new ArrayList<>();
+        if (q == null || q.isEmpty() || limit <= 0) return results;
+        Names n = names.get(type);
+        int cap = Math.min(limit, MAX_RESULTS);
+
+        // An exact match is the shortest key under its own prefix, so it comes out first
+        BitSet taken = new BitSet(n.size());
+        for (int id : n.prefixes.top(q)) take(n, id, taken, results, cap);
+        for (int id : n.words.top(q)) take(n, id, taken, results, cap);
+        if (results.size() < cap) {
+            n.containing(q, id -> {
+                take(n, id, taken, results, cap);
+                return results.size() < cap;
+            });
+        }
+        return results;
+    }
+
+    /**
+     * Every name containing the query, alphabetically, as a {@code LIKE '%term%'} search would
+     * return them.
+     *
+     * @param type which names to search
+     * @param query the text to look for
+     * @return all matches
+     */
+    public List<Lookup> matching(Type type, String query) {
+        String q = fold(query);
+        List<Lookup> results = new ArrayList<>();
+        if (q == null) return results;
+        Names n = names.get(type);
+        n.containing(q, id -> results.add(n.lookup(id)));
+        results.sort(Comparator.comparing(Lookup::getValue));
+        return results;
+    }
+
+    /**
+     * Resolves a possibly mistyped name to the name it most likely means: the name itself when
+     * it exists (ignoring case and accents), otherwise the single closest name within the
+     * allowed number of typos.
+     *
+     * @param type which names to look in
+     * @param name the name as given
+     * @return the canonical entry, or null if the name is unknown or too close to call
+     */
+    public Lookup resolve(Type type, String name) {
+        String q = fold(name);
+        if (q == null || q.isEmpty()) return null;
+        Names n = names.get(type);
+        Integer id = n.exact.get(q);
+        if (id != null) return n.lookup(id);
+
+        // Most typos are a single edit, and a search within one edit visits far less of the tree
+        int[] best = {-1, Integer.MAX_VALUE, 0};   // id, distance, how many share that distance
+        for (int t = 1; t <= typos(q) && best[2] == 0; t++) {
+            n.fuzzy.search(q, t, (match, distance) -> {
+                if (distance < best[1]) {
+                    best[0] = match;
+                    best[1] = distance;
+                    best[2] = 1;
+                } else if (distance == best[1]) {
+                    best[2]++;
+                }
+            });
+        }
+        return best[2] == 1 ? n.lookup(best[0]) : null;
+    }
+
+    /**
+     * Names within the allowed number of typos of the given one, closest first.
+     *
+     * @param type which names to look in
+     * @param name the name as given
+     * @param limit the most suggestions to return
+     * @return the suggestions, closest and then best ranked first
+     */
+    public List<Lookup> suggest(Type type, String name, int limit) {
+        String q = fold(name);
+        List<Lookup> results = new ArrayList<>();
+        if (q == null || q.isEmpty() || limit <= 0) return results;
+        Names n = names.get(type);
+        List<int[]> matches = new ArrayList<>();
+        n.fuzzy.search(q, typos(q), (match, distance) -> matches.add(new int[]{distance, match}));
+        matches.sort(Comparator.comparingInt((int[] m) -> m[0]).thenComparingInt(m -> m[1]));
+        for (int i = 0; i < matches.size() && i < limit; i++) {
+            results.add(n.lookup(matches.get(i)[1]));
+        }
+        return results;
+    }
+
+    /** Typos tolerated in a name: none in very short names, one up to four letters, two beyond. */
+    private static int typos(String folded) {
+        return folded.length() < 3 ? 0 : folded.length() <= 4 ? 1 : 2;
+    }
+
+    /**
+     * Every name of a type, alphabetically.
+     *
+     * @param type which names to list
+     * @return fresh Lookup rows, shaped as the lookup queries return them
+     */
+    public List<Lookup> all(Type type) {
+        Names n = names.get(type);
+        List<Lookup> results = new ArrayList<>(n.size());
+        for (int id : n.alphabetical) results.add(n.lookup(id));
+        return results;
+    }
+
+    /**
+     * The districts of one country, alphabetically.
+     *
+     * @param countryCode the country's code (case-insensitive)
+     * @return the districts, or an empty list for an unknown country
+     */
+    public List<Lookup> districtsOf(String countryCode) {
+        List<Lookup> results = new ArrayList<>();
+        for (String district : districtsByCountry.getOrDefault(fold(countryCode), List.of())) {
+            results.add(new Lookup(Type.DISTRICT.label, district));
+        }
+        return results;
+    }
+
+    /**
+     * The districts of one country, alphabetically.
+     *
+     * @param countryName the country's name (case-insensitive)
+     * @return the districts, or an empty list for an unknown country
+     */
+    public List<Lookup> districtsOfCountryNamed(String countryName) {
+        Names countries = names.get(Type.COUNTRY);
+        Integer id = countries.exact.get(fold(countryName));
+        return id == null ? new ArrayList<>() : districtsOf(countries.codes[id]);
+    }
+
+    /** @return how many names of the type are indexed */
+    public int size(Type type) {
+        return names.get(type).size();
+    }
+
+    /** @return when this index was built, in epoch milliseconds */
+    public long getBuiltAt() {
+        return builtAt;
+    }
+
+    private static boolean take(Names n, int id, BitSet taken, List<Lookup> results, int cap) {
+        if (results.size() >= cap || taken.get(id)) return false;
+        taken.set(id);
+        results.add(n.lookup(id));
+        return true;
+    }
+
+    /**
+     * Folds a name for matching: lower case, accents removed, surrounding spaces trimmed.
+     *
+     * @param name the name to fold, or null
+     * @return the folded name, or null
+     */
+    static String fold(String name) {
+        if (name == null) return null;
+        String s = name.trim().toLowerCase(Locale.ROOT);
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) {
+                return Normalizer.normalize(s, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+            }
+        }
+        return s;
+    }
+
+    /** Visits ids in increasing order; returning false stops the walk. */
+    private interface IdVisitor {
+        boolean visit(int id);
+    }
+
+    /** The names of one type, ranked, with their tries and trigram postings. */
+    private static final class Names {
+        private final Type type;
+        private final String[] codes;
+        private final String[] values;
+        private final String[] folded;
+        private final int[] alphabetical;
+        private final Map<String, Integer> exact = new HashMap<>();
+        private final BkTree fuzzy = new BkTree();
+        private final Trie prefixes = new Trie();
+        private final Trie words = new Trie();
+        private final Map<String, int[]> trigrams = new HashMap<>();
+
+        Names(Type type, Map<String, String> entries) {
+            this.type = type;
+            // Rank order: shorter folded names first, then alphabetically
+            List<String[]> rows = new ArrayList<>();
+            entries.forEach((value, code) -> rows.add(new String[]{fold(value), value, code}));
+            rows.sort(Comparator.comparingInt((String[] r) -> r[0].length()).thenComparing(r -> r[0]).thenComparing(r -> r[1]));
+            codes = new String[rows.size()];
+            values = new String[rows.size()];
+            folded = new String[rows.size()];
+
+            Map<String, List<Integer>> postings = new HashMap<>();
+            for (int id = 0; id < rows.size(); id++) {
+                String f = rows.get(id)[0];
+                folded[id] = f;
+                values[id] = rows.get(id)[1];
+                codes[id] = rows.get(id)[2];
+                exact.putIfAbsent(f, id);
+                fuzzy.add(f, id);
+                prefixes.insert(f, id);
+                for (int i = 1; i < f.length(); i++) {
+                    if (!Character.isLetterOrDigit(f.charAt(i - 1)) && Character.isLetterOrDigit(f.charAt(i))) {
+                        words.insert(f.substring(i), id);
+                    }
+                }
+                for (int i = 0; i + 3 <= f.length(); i++) {
+                    List<Integer> ids = postings.computeIfAbsent(f.substring(i, i + 3), k -> new ArrayList<>());
+                    // ids arrive in increasing order, so one look back removes repeats within a name
+                    if (ids.isEmpty() || ids.get(ids.size() - 1) != id) ids.add(id);
+                }
+            }
+            postings.forEach((gram, ids) -> trigrams.put(gram, ids.stream().mapToInt(Integer::intValue).toArray()));
+            prefixes.rank();
+            words.rank();
+            alphabetical = IntStream.range(0, values.length).boxed()
+                    .sorted(Comparator.comparing(id -> values[id], ALPHABETICAL))
+                    .mapToInt(Integer::intValue).toArray();
+        }
+
+        int size() {
+            return values.length;
+        }
+
+        Lookup lookup(int id) {
+            return new Lookup(type == Type.COUNTRY ? codes[id] : type.label, values[id]);
+        }
+
+        /** Visits the ids of names containing q, best ranked first. */
+        void containing(String q, IdVisitor visitor) {
+            if (q.length() < 3) {
+                // Too short for trigrams; the tables are small enough to check directly
+                for (int id = 0; id < folded.length; id++) {
+                    if (folded[id].contains(q) && !visitor.visit(id)) return;
+                }
+                return;
+            }
+            List<int[]> lists = new ArrayList<>();
+            for (int i = 0; i + 3 <= q.length(); i++) {
+                int[] ids = trigrams.get(q.substring(i, i + 3));
+                if (ids == null) return;
+                lists.add(ids);
+            }
+            lists.sort(Comparator.comparingInt(ids -> ids.length));
+            int[] rarest = lists.get(0);
+            for (int id : rarest) {
+                boolean inAll = true;
+                for (int k = 1; k < lists.size() && inAll; k++) {
+                    inAll = Arrays.binarySearch(lists.get(k), id) >= 0;
+                }
+                // Sharing every trigram does not guarantee they are contiguous, so confirm
+                if (inAll && folded[id].contains(q) && !visitor.visit(id)) return;
+            }
+        }
+    }
+
+    /** A character trie whose nodes remember the best-ranked ids stored beneath them. */
+    private static final class Trie {
+        private static final int[] NONE = new int[0];
+
+        private static final class Node {
+            char[] keys = new char[0];
+            Node[] children = new Node[0];
+            int[] ids = NONE;   // ids whose key ends here; after rank(), the best ids in the subtree
+        }
+
+        private final Node root = new Node();
+
+        void insert(String key, int id) {
+            Node node = root;
+            for (int i = 0; i < key.length(); i++) {
+                node = child(node, key.charAt(i), true);
+            }
+            node.ids = Arrays.copyOf(node.ids, node.ids.length + 1);
+            node.ids[node.ids.length - 1] = id;
+        }
+
+        /** @return the best-ranked ids of keys starting with the prefix */
+        int[] top(String prefix) {
+            Node node = root;
+            for (int i = 0; i < prefix.length() && node != null; i++) {
+                node = child(node, prefix.charAt(i), false);
+            }
+            return node == null ? NONE : node.ids;
+        }
+
+        /** Replaces each node's ids with the best {@link #MAX_RESULTS} distinct ids of its subtree. */
+        void rank() {
+            rank(root);
+        }
+
+        private static int[] rank(Node node) {
+            TreeSet<Integer> best = new TreeSet<>();
+            for (int id : node.ids) keep(best, id);
+            for (Node child : node.children) {
+                for (int id : rank(child)) keep(best, id);
+            }
+            node.ids = best.stream().mapToInt(Integer::intValue).toArray();
+            return node.ids;
+        }
+
+        private static void keep(TreeSet<Integer> best, int id) {
+            best.add(id);
+            if (best.size() > MAX_RESULTS) best.pollLast();
+        }
+
+        private static Node child(Node node, char c, boolean create) {
+            int i = Arrays.binarySearch(node.keys, c);
+            if (i >= 0) return node.children[i];
+            if (!create) return null;
+            int at = -i - 1;
+            char[] keys = new char[node.keys.length + 1];
+            Node[] children = new Node[node.children.length + 1];
+            System.arraycopy(node.keys, 0, keys, 0, at);
+            System.arraycopy(node.children, 0, children, 0, at);
+            System.arraycopy(node.keys, at, keys, at + 1, node.keys.length - at);
+            System.arraycopy(node.children, at, children, at + 1, node.children.length - at);
+            keys[at] = c;
+            children[at] = new Node();
+            node.keys = keys;
+            node.children = children;
+            return children[at];
+        }
+    }
+
+    /**
+     * Collects lookup names before an index is built. Repeated names are kept once.
+     */
+    public static class Builder {
+        private final Map<Type, Map<String, String>> entries = new EnumMap<>(Type.class);
+        private final Map<String, Set<String>> districtsByCountry = new HashMap<>();
+
+        public Builder() {
+            for (Type t : Type.values()) entries.put(t, new LinkedHashMap<>());
+        }
+
+        /**
+         * @param type the kind of name
+         * @param code the country code for COUNTRY names, otherwise ignored
+         * @param value the name; null or blank names are skipped
+         * @return this builder
+         */
+        public Builder add(Type type, String code, String value) {
+            if (value != null && !value.isBlank()) entries.get(type).putIfAbsent(value, code);
+            return this;
+        }
+
+        /**
+         * Adds a district and records which country it belongs to.
+         *
+         * @param countryCode the code of the district's country
+         * @param district the district name; null or blank names are skipped
+         * @return this builder
+         */
+        public Builder addDistrict(String countryCode, String district) {
+            if (district == null || district.isBlank()) return this;
+            add(Type.DISTRICT, null, district);
+            if (countryCode != null) districtsByCountry.computeIfAbsent(countryCode, k -> new LinkedHashSet<>()).add(district);
+            return this;
+        }
+
+        public LookupIndex build() {
+            return new LookupIndex(this);
+        }
+    }
+}
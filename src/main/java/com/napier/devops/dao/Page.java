@@ -0,0 +1,27 @@
+package com.napier.devops.dao;
+
+import java.util.List;
+
+/**
+ * One page of a report plus the cursor that fetches the page after it.
+ *
+ * @param <T> the row type
+ */
+public class Page<T> {
+    private final List<T> data;
+    private final String next;
+
+    /**
+     * @param data the rows on this page
+     * @param next where the following page starts, or null if this is the last page
+     */
+    public Page(List<T> data, PageCursor next) {
+        this.data = data;
+        this.next = next == null ? null : next.encode();
+    }
+
+    public List<T> getData() { return data; }
+
+    /** @return the token for the following page, or null if this is the last page */
+    public String getNext() { return next; }
+}
@@ -0,0 +1,74 @@
+package com.napier.devops.dao;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Marks where a population-ordered report left off: the population and id of the last row sent.
+ *
+ * Paged reports are ordered by population, largest first, then by id, so the pair identifies a
+ * unique position and the next page is simply "every row after it". Clients see the cursor as an
+ * opaque URL-safe token and pass it back unchanged.
+ */
+public final class PageCursor {
+    private final long population;
+    private final String id;
+
+    /**
+     * @param population the last row's population
+     * @param id the last row's id: a city ID or a country code
+     */
+    public PageCursor(long population, String id) {
+        this.population = population;
+        this.id = id;
+    }
+
+    /**
+     * Reads a token produced by {@link #encode()}.
+     *
+     * @param token the token, as received from a client
+     * @return the cursor
+     * @throws IllegalArgumentException if the token is not a cursor
+     */
+    public static PageCursor decode(String token) {
+        String text;
+        try {
+            text = new String(Base64.getUrlDecoder().decode(token.trim()), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page cursor", e);
+        }
+        int split = text.indexOf(':');
+        if (split <= 0 || split == text.length() - 1) {
+            throw new IllegalArgumentException("Invalid page cursor");
+        }
+        try {
+            return new PageCursor(Long.parseLong(text.substring(0, split)), text.substring(split + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid page cursor", e);
+        }
+    }
+
+    /**
+     * @return the cursor as an opaque, URL-safe token
+     */
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((population + ":" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public long getPopulation() { return population; }
+
+    public String getId() { return id; }
+
+    /**
+     * @return the id as a number, for tables keyed by an integer
+     * @throws IllegalArgumentException if the id is not a number
+     */
+    public int getNumericId() {
+        try {
+            return Integer.parseInt(id);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid page cursor", e);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.napier.devops.dao;
+
+import com.napier.devops.db.ConnectionSource;
+import com.napier.devops.db.SlowQueryLog;
+import com.napier.devops.models.Population;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Pre-computed population totals at every geographic level.
+
+ * Country rows (population plus the summed population of their cities) are read once and
+ * rolled up into continent, region and global totals, so every population report becomes
+ * a lookup instead of a set of correlated subqueries. Instances are immutable; refreshing
+ * means building a new cube and swapping it in.
+ */
+public class PopulationCube {
+    private final long globalPopulation;
+    private final Map<Scope, List<Population>> ranked = new EnumMap<>(Scope.class);
+    private final Map<Scope, Map<String, Population>> byName = new EnumMap<>(Scope.class);
+    private final long builtAt = System.currentTimeMillis();
+
+    private PopulationCube(Builder b) {
+        Map<String, long[]> continents = new LinkedHashMap<>();
+        Map<String, long[]> regions = new LinkedHashMap<>();
+        List<Population> countries = new ArrayList<>();
+        Map<String, Population> countriesByName = new HashMap<>();
+        Map<String, Population> countriesByCode = new HashMap<>();
+        long global = 0;
+
+        for (CountryTotals c : b.countries) {
+            global += c.population;
+            add(continents, c.continent, c.population, c.cityPopulation);
+            add(regions, c.region, c.population, c.cityPopulation);
+
+            // A country's cities can't hold more people than the country itself
+            long inCities = Math.min(c.cityPopulation, c.population);
+            Population p = new Population(c.name, c.population, inCities, c.population - inCities);
+            countries.add(p);
+            countriesByName.putIfAbsent(fold(c.name), p);
+            countriesByCode.put(fold(c.code), p);
+        }
+
+        this.globalPopulation = global;
+        index(Scope.CONTINENT, toPopulations(continents));
+        index(Scope.REGION, toPopulations(regions));
+        index(Scope.COUNTRY, countries);
+        byName.put(Scope.COUNTRY_CODE, countriesByCode);
+    }
+
+    private static void add(Map<String, long[]> totals, String key, long population, long cityPopulation) {
+        long[] t = totals.computeIfAbsent(key, k -> new long[2]);
+        t[0] += population;
+        t[1] += cityPopulation;
+    }
+
+    private static List<Population> toPopulations(Map<String, long[]> totals) {
+        List<Population> rows = new ArrayList<>();
+        totals.forEach((label, t) -> rows.add(new Population(label, t[0], t[1], t[0] - t[1])));
+        return rows;
+    }
+
+    private void index(Scope level, List<Population> rows) {
+        rows.sort(Comparator.comparingLong(Population::getTotalPopulation).reversed());
+        ranked.put(level, rows);
+        Map<String, Population> names = byName.computeIfAbsent(level, k -> new HashMap<>());
+        for (Population p : rows) names.putIfAbsent(fold(p.getLabel()), p);
+    }
+
+    private static String fold(String name) {
+        return name == null ? null : name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Builds a cube from the database with a single grouped scan of country and city.
+     *
+     * @param source supplies the connection to read from
+     * @return the new cube
+     * @throws SQLException if the query fails
+     */
+    public static PopulationCube load(ConnectionSource source) throws SQLException {
+        String sql = "SELECT c.Code, c.Name, c.Continent, c.Region, c.Population, " +
+                "IFNULL(SUM(ci.Population), 0) AS city_population " +
+                "FROM country c LEFT JOIN city ci ON ci.CountryCode = c.Code " +
+                "GROUP BY c.Code, c.Name, c.Continent, c.Region, c.Population";
+        Builder b = new Builder();
+        try (SlowQueryLog.Timer timer = SlowQueryLog.get().start(sql);
+             Connection conn = source.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                timer.row();
+                b.addCountry(rs.getString("Code"), rs.getString("Name"), rs.getString("Continent"),
+                        rs.getString("Region"), rs.getLong("Population"), rs.getLong("city_population"));
+            }
+        }
+        return b.build();
+    }
+
+    /** @return the sum of every country's population */
+    public long getGlobalPopulation() {
+        return globalPopulation;
+    }
+
+    /** @return when this cube was computed, in epoch milliseconds */
+    public long getBuiltAt() {
+        return builtAt;
+    }
+
+    /**
+     * Every continent, region or country, largest total population first.
+     *
+     * @param level CONTINENT, REGION or COUNTRY
+     * @param limit maximum number of rows; negative returns none
+     * @return copies of the matching rows
+     */
+    public List<Population> all(Scope level, int limit) {
+        List<Population> rows = ranked.getOrDefault(level, List.of());
+        List<Population> results = new ArrayList<>();
+        for (int i = 0; i < rows.size() && i < limit; i++) {
+            results.add(copy(rows.get(i)));
+        }
+        return results;
+    }
+
+    /**
+     * The totals for a single continent, region or country.
+     *
+     * @param level CONTINENT, REGION, COUNTRY (by name) or COUNTRY_CODE
+     * @param name the name or code to look up (case-insensitive)
+     * @param limit maximum number of rows; zero or negative returns none
+     * @return a list holding the one matching row, or an empty list
+     */
+    public List<Population> of(Scope level, String name, int limit) {
+        List<Population> results = new ArrayList<>();
+        Population p = byName.getOrDefault(level, Map.of()).get(fold(name));
+        if (p != null && limit > 0) {
+            results.add(copy(p));
+        }
+        return results;
+    }
+
+    // Population is mutable, so callers get their own copy
+    private static Population copy(Population p) {
+        return new Population(p.getLabel(), p.getTotalPopulation(), p.getCityPopulation(), p.getNonCityPopulation());
+    }
+
+    /**
+     * Collects per-country totals before they are rolled up.
+     */
+    public static class Builder {
+        private final List<CountryTotals> countries = new ArrayList<>();
+
+        /**
+         * @param cityPopulation the summed population of the country's cities
+         */
+        public Builder addCountry(String code, String name, String continent, String region,
+                                  long population, long cityPopulation) {
+            countries.add(new CountryTotals(code, name, continent, region, population, cityPopulation));
+            return this;
+        }
+
+        public PopulationCube build() {
+            return new PopulationCube(this);
+        }
+    }
+
+    private record CountryTotals(String code, String name, String continent, String region,
+                                 long population, long cityPopulation) {}
+}
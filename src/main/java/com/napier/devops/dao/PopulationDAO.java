@@ -1,18 +1,29 @@
 package com.napier.devops.dao;
 
+import com.napier.devops.db.ConnectionSource;
+import com.napier.devops.db.DataVersion;
+import com.napier.devops.db.VersionedValue;
+import com.napier.devops.metrics.Metrics;
 import com.napier.devops.models.Population;
+import com.napier.devops.snapshot.SnapshotReports;
 import java.sql.*;
 import java.util.*;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Data Access Object (DAO) for retrieving population statistics
  * from the database at various geographical levels (global, continent, region, country).
+ * Every report is answered from a {@link PopulationCube} that is computed once and
+ * rebuilt on demand ({@link #refreshCube()}), on a schedule ({@link #scheduleCubeRefresh(long)})
+ * and, when a data version is being watched ({@link #watch(DataVersion)}), once the data changes.
  */
 public class PopulationDAO {
-    private final Connection conn;
-    private static final Logger logger = Logger.getLogger(PopulationDAO.class.getName());
+    private final ConnectionSource source;
+    private volatile SnapshotReports snapshot;
+    private final VersionedValue<PopulationCube> cube = new VersionedValue<>();
+    private ScheduledExecutorService refresher;
 
     /**
      * Constructs a PopulationDAO with a database connection.
@@ -20,7 +31,64 @@ public class PopulationDAO {
      * @param conn Database connection to be used for queries
      */
     public PopulationDAO(Connection conn) {
-        this.conn = conn;
+        this(ConnectionSource.of(conn));
+    }
+
+    /**
+     * Constructs a PopulationDAO that borrows a connection for each query, e.g. from a ConnectionPool.
+     * 
+     * @param source Supplies the connection used by each query
+     */
+    public PopulationDAO(ConnectionSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Serves this DAO's reports from an in-memory snapshot instead of querying MySQL.
+     *
+     * @param snapshot the snapshot to answer from, or null to go back to the database
+     */
+    public void setSnapshot(SnapshotReports snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Rebuilds the population cube whenever the given data version changes.
+     *
+     * @param version the data version to follow; null stops following one
+     */
+    public void watch(DataVersion version) {
+        cube.watch(version);
+    }
+
+    /**
+     * Rebuilds the population cube from the database. Reports keep being served from the
+     * previous cube until the new one is ready; if the rebuild fails the previous cube is kept.
+     *
+     * @return true if the cube was rebuilt
+     */
+    public boolean refreshCube() {
+        return cube.refresh(() -> PopulationCube.load(source));
+    }
+
+    /**
+     * Rebuilds the population cube in the background at a fixed interval.
+     * Calling this again replaces the previous schedule.
+     *
+     * @param periodSeconds seconds between rebuilds; zero or negative stops scheduled rebuilds
+     */
+    public synchronized void scheduleCubeRefresh(long periodSeconds) {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+        if (periodSeconds <= 0) return;
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "population-cube-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        refresher.scheduleAtFixedRate(this::refreshCube, periodSeconds, periodSeconds, TimeUnit.SECONDS);
     }
 
     /**
@@ -29,16 +97,13 @@ public class PopulationDAO {
      * @return Total population across all countries, or 0 if query fails
      */
     public long getGlobalPopulation() {
-        String sql = "SELECT SUM(country.Population) AS globalPopulation FROM country";
-        try (PreparedStatement stmt = conn.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
-            if (rs.next()) {
-                return rs.getLong("globalPopulation");
-            }
-        } catch (SQLException e) {
-            logger.log(Level.SEVERE, e.getMessage(), e);
+        Metrics.Sample sample = Metrics.startCall("PopulationDAO", "getGlobalPopulation");
+        try {
+            PopulationCube cube = cube();
+            return cube == null ? 0L : cube.getGlobalPopulation();
+        } finally {
+            sample.stop();
         }
-        return 0L;
     }
 
     /**
@@ -49,28 +114,7 @@ public class PopulationDAO {
      * @return List of Population objects for all continents
      */
     public List<Population> getGlobalPopulations() {
-        String sql = "SELECT c.Continent, " +
-                "(SELECT SUM(co.Population) " +
-                "FROM country co WHERE co.Continent = c.Continent) " +
-                "AS total_population, " +
-
-                "(SELECT SUM(ci.Population) " +
-                "FROM city ci JOIN country co2 ON ci.CountryCode = co2.Code " +
-                "WHERE co2.Continent = c.Continent) AS city_population, " +
-
-                "(SELECT SUM(co.Population) " +
-                "FROM country co " +
-                "WHERE co.Continent = c.Continent)" +
-                " - " +
-                "(SELECT SUM(ci.Population) " +
-                "FROM city ci " +
-                "JOIN country co2 ON ci.CountryCode = co2.Code " +
-                "WHERE co2.Continent = c.Continent) AS non_city_population " +
-
-                "FROM country c " +
-                "GROUP BY c.Continent " +
-                "ORDER BY total_population DESC";
-        return queryPopulation(sql);
+        return Metrics.timed("PopulationDAO", "getGlobalPopulations", () -> all(Scope.CONTINENT, SnapshotReports.UNLIMITED));
     }
 
     /**
@@ -80,29 +124,7 @@ public class PopulationDAO {
      * @return List of top N continents by population
      */
     public List<Population> getGlobalPopulations(int n) {
-        String sql = "SELECT c.Continent, " +
-                "(SELECT SUM(co.Population) " +
-                "FROM country co WHERE co.Continent = c.Continent) " +
-                "AS total_population, " +
-
-                "(SELECT SUM(ci.Population) " +
-                "FROM city ci JOIN country co2 ON ci.CountryCode = co2.Code " +
-                "WHERE co2.Continent = c.Continent) AS city_population, " +
-
-                "(SELECT SUM(co.Population) " +
-                "FROM country co " +
-                "WHERE co.Continent = c.Continent)" +
-                " - " +
-                "(SELECT SUM(ci.Population) " +
-                "FROM city ci " +
-                "JOIN country co2 ON ci.CountryCode = co2.Code " +
-                "WHERE co2.Continent = c.Continent) AS non_city_population " +
-
-                "FROM country c " +
-                "GROUP BY c.Continent " +
-                "ORDER BY total_population DESC " +
-                " LIMIT " + n;
-        return queryPopulation(sql);
+        return Metrics.timed("PopulationDAO", "getGlobalPopulations", () -> all(Scope.CONTINENT, n));
     }
 
     /**
@@ -112,29 +134,7 @@ public class PopulationDAO {
      * @return List of Population data for the specified continent
      */
     public List<Population> getContinentPopulations(String name) {
-        String sql = "SELECT c.Continent, " +
-                "(SELECT SUM(co.Population) " +
-                "FROM country co WHERE co.Continent = c.Continent) " +
-                "AS total_population, " +
-
-                "(SELECT SUM(ci.Population) " +
-                "FROM city ci JOIN country co2 ON ci.CountryCode = co2.Code " +
-                "WHERE co2.Continent = c.Continent) AS city_population, " +
-
-                "(SELECT SUM(co.Population) " +
-                "FROM country co " +
-                "WHERE co.Continent = c.Continent)" +
-                " - " +
-                "(SELECT SUM(ci.Population) " +
-                "FROM city ci " +
-                "JOIN country co2 ON ci.CountryCode = co2.Code " +
-                "WHERE co2.Continent = c.Continent) AS non_city_population " +
-
-                "FROM country c " +
-                "WHERE c.Continent = ? " +
-                "GROUP BY c.Continent " +
-                "ORDER BY total_population DESC";
-        return queryPopulation(sql, name);
+        return Metrics.timed("PopulationDAO", "getContinentPopulations", () -> of(Scope.CONTINENT, name, SnapshotReports.UNLIMITED));
     }
 
     /**
@@ -145,30 +145,7 @@ public class PopulationDAO {
      * @return List of top N population records for the specified continent
      */
     public List<Population> getContinentPopulations(String name, int n) {
-        String sql = "SELECT c.Continent, " +
-                "(SELECT SUM(co.Population) " +
-                "FROM country co WHERE co.Continent = c.Continent) " +
-                "AS total_population, " +
-
-                "(SELECT SUM(ci.Population) " +
-                "FROM city ci JOIN country co2 ON ci.CountryCode = co2.Code " +
-                "WHERE co2.Continent = c.Continent) AS city_population, " +
-
-                "(SELECT SUM(co.Population) " +
-                "FROM country co " +
-                "WHERE co.Continent = c.Continent)" +
-                " - " +
-                "(SELECT SUM(ci.Population) " +
-                "FROM city ci " +
-                "JOIN country co2 ON ci.CountryCode = co2.Code " +
-                "WHERE co2.Continent = c.Continent) AS non_city_population " +
-
-                "FROM country c " +
-                "WHERE c.Continent = ? " +
-                "GROUP BY c.Continent " +
-                "ORDER BY total_population DESC " +
-                " LIMIT " + n;
-        return queryPopulation(sql, name);
+        return Metrics.timed("PopulationDAO", "getContinentPopulations", () -> of(Scope.CONTINENT, name, n));
     }
 
     /**
@@ -177,28 +154,7 @@ public class PopulationDAO {
      * @return List of Population objects for all regions
      */
     public List<Population> getRegionPopulations() {
-        String sql = "SELECT c.Region, " +
-                "(SELECT SUM(co.Population) " +
-                "FROM country co WHERE co.Region = c.Region) " +
-                "AS total_population, " +
-
-                "(SELECT SUM(ci.Population) " +
-                "FROM city ci JOIN country co2 ON ci.CountryCode = co2.Code " +
-                "WHERE co2.Region = c.Region) AS city_population, " +
-
-                "(SELECT SUM(co.Population) " +
-                "FROM country co " +
-                "WHERE co.Region = c.Region)" +
-                " - " +
-                "(SELECT SUM(ci.Population) " +
-                "FROM city ci " +
-                "JOIN country co2 ON ci.CountryCode = co2.Code " +
-                "WHERE co2.Region = c.Region) AS non_city_population " +
-
-                "FROM country c " +
-                "GROUP BY c.Region, total_population " +
-                "ORDER BY total_population DESC";
-        return queryPopulation(sql);
+        return Metrics.timed("PopulationDAO", "getRegionPopulations", () -> all(Scope.REGION, SnapshotReports.UNLIMITED));
     }
 
     /**
@@ -208,29 +164,7 @@ public class PopulationDAO {
      * @return List of top N regions by population
      */
     public List<Population> getRegionPopulations(int n) {
-        String sql = "SELECT c.Region, " +
-                "(SELECT SUM(co.Population) " +
-                "FROM country co WHERE co.Region = c.Region) " +
-                "AS total_population, " +
-
-                "(SELECT SUM(ci.Population) " +
-                "FROM city ci JOIN country co2 ON ci.CountryCode = co2.Code " +
-                "WHERE co2.Region = c.Region) AS city_population, " +
-
-                "(SELECT SUM(co.Population) " +
-                "FROM country co " +
-                "WHERE co.Region = c.Region)" +
-                " - " +
-                "(SELECT SUM(ci.Population) " +
-                "FROM city ci " +
-                "JOIN country co2 ON ci.CountryCode = co2.Code " +
-                "WHERE co2.Region = c.Region) AS non_city_population " +
-
-                "FROM country c " +
-                "GROUP BY c.Region " +
-                "ORDER BY total_population DESC " +
-                " LIMIT " + n;
-        return queryPopulation(sql);
+        return Metrics.timed("PopulationDAO", "getRegionPopulations", () -> all(Scope.REGION, n));
     }
 
     /**
@@ -240,29 +174,7 @@ public class PopulationDAO {
      * @return List of Population data for the specified region
      */
     public List<Population> getRegionPopulations(String name) {
-        String sql = "SELECT c.Region, " +
-                "(SELECT SUM(co.Population) " +
-                "FROM country co WHERE co.Region = c.Region) " +
-                "AS total_population, " +
-
-                "(SELECT SUM(ci.Population) " +
-                "FROM city ci JOIN country co2 ON ci.CountryCode = co2.Code " +
-                "WHERE co2.Region = c.Region) AS city_population, " +
-
-                "(SELECT SUM(co.Population) " +
-                "FROM country co " +
-                "WHERE co.Region = c.Region)" +
-                " - " +
-                "(SELECT SUM(ci.Population) " +
-                "FROM city ci " +
-                "JOIN country co2 ON ci.CountryCode = co2.Code " +
-                "WHERE co2.Region = c.Region) AS non_city_population " +
-
-                "FROM country c " +
-                "WHERE c.Region = ? " +
-                "GROUP BY c.Region " +
-                "ORDER BY total_population DESC";
-        return queryPopulation(sql, name);
+        return Metrics.timed("PopulationDAO", "getRegionPopulations", () -> of(Scope.REGION, name, SnapshotReports.UNLIMITED));
     }
 
     /**
@@ -273,30 +185,7 @@ public class PopulationDAO {
      * @return List of top N population records for the specified region
      */
     public List<Population> getRegionPopulations(String name, int n) {
-        String sql = "SELECT c.Region, " +
-                "(SELECT SUM(co.Population) " +
-                "FROM country co WHERE co.Region = c.Region) " +
-                "AS total_population, " +
-
-                "(SELECT SUM(ci.Population) " +
-                "FROM city ci JOIN country co2 ON ci.CountryCode = co2.Code " +
-                "WHERE co2.Region = c.Region) AS city_population, " +
-
-                "(SELECT SUM(co.Population) " +
-                "FROM country co " +
-                "WHERE co.Region = c.Region)" +
-                " - " +
-                "(SELECT SUM(ci.Population) " +
-                "FROM city ci " +
-                "JOIN country co2 ON ci.CountryCode = co2.Code " +
-                "WHERE co2.Region = c.Region) AS non_city_population " +
-
-                "FROM country c " +
-                "WHERE c.Region = ? " +
-                "GROUP BY c.Region " +
-                "ORDER BY total_population DESC " +
-                " LIMIT " + n;
-        return queryPopulation(sql, name);
+        return Metrics.timed("PopulationDAO", "getRegionPopulations", () -> of(Scope.REGION, name, n));
     }
 
     /**
@@ -305,14 +194,7 @@ public class PopulationDAO {
      * @return List of Population objects for all countries
      */
     public List<Population> getCountryPopulations() {
-        String sql = "SELECT c.Name AS Country, c.Population AS total_population, " +
-        "LEAST(IFNULL(SUM(ci.Population), 0), c.Population) AS city_population, " +
-        "c.Population - LEAST(IFNULL(SUM(ci.Population), 0), c.Population) AS non_city_population " +
-        "FROM country c " +
-        "LEFT JOIN city ci ON ci.CountryCode = c.Code " +
-        "GROUP BY c.Code, c.Name, c.Continent, c.Region, c.Population " +
-        "ORDER BY total_population DESC";
-        return queryPopulation(sql);
+        return Metrics.timed("PopulationDAO", "getCountryPopulations", () -> all(Scope.COUNTRY, SnapshotReports.UNLIMITED));
     }
 
     /**
@@ -322,15 +204,7 @@ public class PopulationDAO {
      * @return List of top N countries by population
      */
     public List<Population> getCountryPopulations(int n) {
-        String sql = "SELECT c.Name AS Country, c.Population AS total_population, " +
-                "IFNULL(SUM(ci.Population), 0) AS city_population, " +
-                "c.Population - IFNULL(SUM(ci.Population), 0) AS non_city_population " +
-                "FROM country c " +
-                "LEFT JOIN city ci ON ci.CountryCode = c.Code " +
-                "GROUP BY c.Code, c.Name, c.Continent, c.Region, c.Population " +
-                "ORDER BY total_population DESC " +
-                " LIMIT " + n;
-        return queryPopulation(sql);
+        return Metrics.timed("PopulationDAO", "getCountryPopulations", () -> all(Scope.COUNTRY, n));
     }
 
     /**
@@ -340,28 +214,7 @@ public class PopulationDAO {
      * @return List of Population data for the specified country
      */
     public List<Population> getCountryPopulationByCode(String country) {
-        String sql = "SELECT c.Name AS Country, " +
-                "(SELECT SUM(co.Population) " +
-                "FROM country co WHERE co.Code = c.Code) " +
-                "AS total_population, " +
-
-                "(SELECT SUM(ci.Population) " +
-                "FROM city ci JOIN country co2 ON ci.CountryCode = co2.Code " +
-                "WHERE co2.Code  = c.Code) AS city_population, " +
-
-                "(SELECT SUM(co.Population) " +
-                "FROM country co " +
-                "WHERE co.Code = c.Code)  - " +
-                "(SELECT SUM(ci.Population) " +
-                "FROM city ci " +
-                "JOIN country co2 ON ci.CountryCode = co2.Code " +
-                "WHERE co2.Code = c.Code) AS non_city_population " +
-
-                "FROM country c " +
-                "WHERE c.Code = ? " +
-                "GROUP BY c.Code, total_population " +
-                "ORDER BY total_population DESC";
-        return queryPopulation(sql, country);
+        return Metrics.timed("PopulationDAO", "getCountryPopulationByCode", () -> of(Scope.COUNTRY_CODE, country, SnapshotReports.UNLIMITED));
     }
 
     /**
@@ -372,29 +225,7 @@ public class PopulationDAO {
      * @return List of top N population records for the specified country
      */
     public List<Population> getCountryPopulationByCode(String country, int n) {
-        String sql = "SELECT c.Name AS Country, " +
-                "(SELECT SUM(co.Population) " +
-                "FROM country co WHERE co.Code = c.Code) " +
-                "AS total_population, " +
-
-                "(SELECT SUM(ci.Population) " +
-                "FROM city ci JOIN country co2 ON ci.CountryCode = co2.Code " +
-                "WHERE co2.Code  = c.Code) AS city_population, " +
-
-                "(SELECT SUM(co.Population) " +
-                "FROM country co " +
-                "WHERE co.Code = c.Code)  - " +
-                "(SELECT SUM(ci.Population) " +
-                "FROM city ci " +
-                "JOIN country co2 ON ci.CountryCode = co2.Code " +
-                "WHERE co2.Code = c.Code) AS non_city_population " +
-
-                "FROM country c " +
-                "WHERE c.Code = ? " +
-                "GROUP BY c.Code, total_population " +
-                "ORDER BY total_population DESC " +
-                " LIMIT " + n;
-        return queryPopulation(sql, country);
+        return Metrics.timed("PopulationDAO", "getCountryPopulationByCode", () -> of(Scope.COUNTRY_CODE, country, n));
     }
 
     /**
@@ -404,28 +235,7 @@ public class PopulationDAO {
      * @return List of Population data for the specified country
      */
     public List<Population> getCountryPopulations(String country) {
-        String sql = "SELECT c.Name AS Country, " +
-                "(SELECT SUM(co.Population) " +
-                "FROM country co WHERE co.Code = c.Code) " +
-                "AS total_population, " +
-
-                "(SELECT SUM(ci.Population) " +
-                "FROM city ci JOIN country co2 ON ci.CountryCode = co2.Code " +
-                "WHERE co2.Code  = c.Code) AS city_population, " +
-
-                "(SELECT SUM(co.Population) " +
-                "FROM country co " +
-                "WHERE co.Code = c.Code)  - " +
-                "(SELECT SUM(ci.Population) " +
-                "FROM city ci " +
-                "JOIN country co2 ON ci.CountryCode = co2.Code " +
-                "WHERE co2.Code = c.Code) AS non_city_population " +
-
-                "FROM country c " +
-                "WHERE c.Name = ? " +
-                "GROUP BY c.Code, total_population " +
-                "ORDER BY total_population DESC";
-        return queryPopulation(sql, country);
+        return Metrics.timed("PopulationDAO", "getCountryPopulations", () -> of(Scope.COUNTRY, country, SnapshotReports.UNLIMITED));
     }
 
     /**
@@ -436,61 +246,28 @@ public class PopulationDAO {
      * @return List of top N population records for the specified country
      */
     public List<Population> getCountryPopulations(String country, int n) {
-        String sql = "SELECT c.Name AS Country, " +
-                "(SELECT SUM(co.Population) " +
-                "FROM country co WHERE co.Code = c.Code) " +
-                "AS total_population, " +
-
-                "(SELECT SUM(ci.Population) " +
-                "FROM city ci JOIN country co2 ON ci.CountryCode = co2.Code " +
-                "WHERE co2.Code  = c.Code) AS city_population, " +
-
-                "(SELECT SUM(co.Population) " +
-                "FROM country co " +
-                "WHERE co.Code = c.Code)" +
-                " - " +
-                "(SELECT SUM(ci.Population) " +
-                "FROM city ci " +
-                "JOIN country co2 ON ci.CountryCode = co2.Code " +
-                "WHERE co2.Code = c.Code) AS non_city_population " +
-
-                "FROM country c " +
-                "WHERE c.Name = ? " +
-                "GROUP BY c.Code, total_population " +
-                "ORDER BY total_population DESC " +
-                " LIMIT " + n;
-        return queryPopulation(sql, country);
+        return Metrics.timed("PopulationDAO", "getCountryPopulations", () -> of(Scope.COUNTRY, country, n));
     }
 
     /**
-     * Helper method that executes population queries and maps results to Population objects.
-     * Handles parameterized queries to prevent SQL injection.
-     * 
-     * @param sql SQL query string with optional parameter placeholders (?)
-     * @param params Optional variable arguments to bind to the query parameters
-     * @return List of Population objects populated from query results
+     * Returns the cube reports are served from: the snapshot's when one is attached,
+     * otherwise the one built from the database on first use and after the data changes.
+     *
+     * @return the current cube, or null if it could not be built
      */
-    private List<Population> queryPopulation(String sql, Object... params) {
-        List<Population> results = new ArrayList<>();
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            // Bind all provided parameters to their corresponding placeholders
-            for (int i = 0; i < params.length; i++) {
-                stmt.setObject(i + 1, params[i]);
-            }
-            ResultSet rs = stmt.executeQuery();
-            // Map each result row to a Population object
-            while (rs.next()) {
-                Population p = new Population(
-                        rs.getString(1),       // label (continent/region/country name)
-                        rs.getLong(2),         // total population
-                        rs.getLong(3),         // urban/city population
-                        rs.getLong(4)          // rural/non-city population
-                );
-                results.add(p);
-            }
-        } catch (SQLException e) {
-            logger.log(Level.SEVERE, e.getMessage(), e);
-        }
-        return results;
+    private PopulationCube cube() {
+        SnapshotReports snapshot = this.snapshot;
+        if (snapshot != null) return snapshot.populationCube();
+        return cube.get(() -> PopulationCube.load(source));
+    }
+
+    private List<Population> all(Scope level, int n) {
+        PopulationCube cube = cube();
+        return cube == null ? new ArrayList<>() : cube.all(level, n);
+    }
+
+    private List<Population> of(Scope level, String name, int n) {
+        PopulationCube cube = cube();
+        return cube == null ? new ArrayList<>() : cube.of(level, name, n);
     }
 }
@@ -0,0 +1,16 @@
+package com.napier.devops.dao;
+
+import java.sql.SQLException;
+
+/**
+ * Carries a database error out of a query shared through a {@link com.napier.devops.util.SingleFlight},
+ * which rethrows it to every caller that waited on the query. Each caller then records the
+ * failure on its own thread, so none of them mistakes the empty result for a real one.
+ */
+final class QueryFailedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    QueryFailedException(SQLException cause) {
+        super(cause.getMessage(), cause);
+    }
+}
@@ -0,0 +1,211 @@
+package com.napier.devops.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A report query: a fixed base statement narrowed by a scope filter, then sorted, limited and offset.
+ *
+ * Names, limits and offsets are always bound as parameters, never written into the SQL, so the
+ * statement text only depends on which of those parts a report uses. Each DAO therefore sends a
+ * small fixed set of statements that the driver and server can prepare once and reuse.
+ */
+public final class ReportQuery {
+    private final String sql;
+    private final Object[] params;
+    private final boolean matchesNothing;
+
+    private ReportQuery(String sql, Object[] params, boolean matchesNothing) {
+        this.sql = sql;
+        this.params = params;
+        this.matchesNothing = matchesNothing;
+    }
+
+    /**
+     * Starts a query.
+     *
+     * @param selectFrom the SELECT ... FROM ... part, including any joins but no WHERE clause
+     * @param filters the column each scope filters on; scopes not listed can only be queried unfiltered
+     * @return a builder for the rest of the query
+     */
+    public static Builder select(String selectFrom, Map<Scope, String> filters) {
+        return new Builder(selectFrom, filters);
+    }
+
+    /**
+     * @return the SQL text, with a ? for every parameter
+     */
+    public String getSql() { return sql; }
+
+    /**
+     * @return the values to bind, in placeholder order
+     */
+    public Object[] getParams() { return params.clone(); }
+
+    /**
+     * @return true if the query was filtered by a missing name and cannot match any row,
+     *         so there is no need to send it to the database
+     */
+    public boolean matchesNothing() { return matchesNothing; }
+
+    /**
+     * Two queries are equal when they send the same SQL with the same parameters,
+     * and so return the same rows.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ReportQuery other)) return false;
+        return matchesNothing == other.matchesNothing && sql.equals(other.sql) && Arrays.equals(params, other.params);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * sql.hashCode() + Arrays.hashCode(params);
+    }
+
+    /**
+     * Builds a {@link ReportQuery}. Every part except the base statement is optional.
+     */
+    public static final class Builder {
+        private final String selectFrom;
+        private final Map<Scope, String> filters;
+        private String filterColumn;
+        private String name;
+        private String groupBy;
+        private String orderBy;
+        private Integer limit;
+        private int offset;
+        private String seekValueColumn;
+        private String seekIdColumn;
+        private Object[] seekAfter;
+
+        private Builder(String selectFrom, Map<Scope, String> filters) {
+            this.selectFrom = selectFrom;
+            this.filters = filters;
+        }
+
+        /**
+         * Restricts the report to one continent, region, country or district.
+         * WORLD leaves the report unfiltered.
+         *
+         * @param scope what {@code name} refers to
+         * @param name the value to match; null matches nothing
+         * @return this builder
+         * @throws IllegalArgumentException if this report cannot be filtered by {@code scope}
+         */
+        public Builder scope(Scope scope, String name) {
+            if (scope == Scope.WORLD) {
+                filterColumn = null;
+                this.name = null;
+                return this;
+            }
+            String column = filters.get(scope);
+            if (column == null) {
+                throw new IllegalArgumentException("Report cannot be filtered by " + scope);
+            }
+            filterColumn = column;
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * @param columns the GROUP BY column list
+         * @return this builder
+         */
+        public Builder groupBy(String columns) {
+            this.groupBy = columns;
+            return this;
+        }
+
+        /**
+         * @param order the ORDER BY list, e.g. {@code "city.Population DESC"}
+         * @return this builder
+         */
+        public Builder orderBy(String order) {
+            this.orderBy = order;
+            return this;
+        }
+
+        /**
+         * Orders the report by {@code valueColumn}, largest first, then by the unique
+         * {@code idColumn}, so that every row has a fixed position to page from.
+         *
+         * @param valueColumn e.g. {@code "city.Population"}
+         * @param idColumn e.g. {@code "city.ID"}
+         * @return this builder
+         */
+        public Builder pageBy(String valueColumn, String idColumn) {
+            this.seekValueColumn = valueColumn;
+            this.seekIdColumn = idColumn;
+            this.orderBy = valueColumn + " DESC, " + idColumn + " ASC";
+            return this;
+        }
+
+        /**
+         * Starts the report just after the row with the given value and id. Unlike an offset,
+         * this lets the database seek straight to the position, so a deep page costs the same
+         * as the first one. Requires {@link #pageBy}.
+         *
+         * @param value the previous page's last value
+         * @param id the previous page's last id
+         * @return this builder
+         * @throws IllegalStateException if the report is not ordered with {@link #pageBy}
+         */
+        public Builder after(long value, Object id) {
+            if (seekValueColumn == null) {
+                throw new IllegalStateException("after() needs pageBy()");
+            }
+            this.seekAfter = new Object[]{value, value, id};
+            return this;
+        }
+
+        /**
+         * @param n maximum number of rows; a negative limit counts as zero
+         * @return this builder
+         */
+        public Builder limit(int n) {
+            this.limit = Math.max(0, n);
+            return this;
+        }
+
+        /**
+         * @param n number of rows to skip before the first one returned
+         * @return this builder
+         */
+        public Builder offset(int n) {
+            this.offset = Math.max(0, n);
+            return this;
+        }
+
+        public ReportQuery build() {
+            StringBuilder sql = new StringBuilder(selectFrom);
+            List<Object> params = new ArrayList<>();
+            if (filterColumn != null) {
+                sql.append(" WHERE ").append(filterColumn).append(" = ?");
+                params.add(name);
+            }
+            if (seekAfter != null) {
+                sql.append(filterColumn != null ? " AND " : " WHERE ")
+                        .append('(').append(seekValueColumn).append(" < ? OR (")
+                        .append(seekValueColumn).append(" = ? AND ").append(seekIdColumn).append(" > ?))");
+                params.addAll(List.of(seekAfter));
+            }
+            if (groupBy != null) sql.append(" GROUP BY ").append(groupBy);
+            if (orderBy != null) sql.append(" ORDER BY ").append(orderBy);
+            if (limit != null || offset > 0) {
+                // MySQL has no OFFSET without LIMIT, so an offset alone gets the largest possible limit
+                sql.append(" LIMIT ?");
+                if (limit != null) params.add(limit);
+                else params.add(Long.MAX_VALUE);
+            }
+            if (offset > 0) {
+                sql.append(" OFFSET ?");
+                params.add(offset);
+            }
+            return new ReportQuery(sql.toString(), params.toArray(), filterColumn != null && name == null);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.napier.devops.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads the current row of a result set, for DAO helpers that walk a query row by row.
+ */
+@FunctionalInterface
+interface RowHandler {
+    void handle(ResultSet rs) throws SQLException;
+}
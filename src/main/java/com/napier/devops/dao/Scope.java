@@ -0,0 +1,13 @@
+package com.napier.devops.dao;
+
+/**
+ * The geographic level a report is filtered or grouped by.
+ */
+public enum Scope {
+    WORLD,
+    CONTINENT,
+    REGION,
+    COUNTRY,        // matched by country name
+    COUNTRY_CODE,   // matched by ISO country code
+    DISTRICT
+}
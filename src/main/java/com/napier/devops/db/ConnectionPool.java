@@ -0,0 +1,299 @@
+package com.napier.devops.db;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded pool of JDBC connections shared by the DAOs.
+ * Each DAO call borrows a connection and closes it when done, which returns it to the pool,
+ * so concurrent web requests no longer queue up behind a single MySQL socket.
+
+ * The pool keeps at least {@code minSize} connections open, never opens more than
+ * {@code maxSize}, validates connections that have been idle for a while before lending
+ * them out, closes connections that stay idle past the idle timeout, and logs a warning
+ * (with the borrower's stack trace) for connections held longer than the leak threshold.
+ * Each connection also keeps its prepared statements open in a {@link StatementCache},
+ * so a DAO preparing the same report SQL again reuses the statement prepared last time.
+ */
+public class ConnectionPool implements ConnectionSource, AutoCloseable {
+    private static final Logger logger = Logger.getLogger(ConnectionPool.class.getName());
+
+    private final PoolConfig config;
+    private final ConnectionSource factory;
+
+    // Idle connections, most recently used first so the tail is the eviction candidate
+    private final BlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private final AtomicInteger total = new AtomicInteger();
+    private final StatementCache.Stats statementStats = new StatementCache.Stats();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool and opens the initial {@code minSize} connections.
+     *
+     * @param config sizing and timing settings
+     * @param factory opens a new physical connection each time it is called
+     */
+    public ConnectionPool(PoolConfig config, ConnectionSource factory) {
+        this.config = config;
+        this.factory = factory;
+        this.permits = new Semaphore(config.getMaxSize(), true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        fillToMinimum();
+        long interval = config.getHousekeepingIntervalMillis();
+        housekeeper.scheduleWithFixedDelay(this::housekeep, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, waiting up to the acquire timeout if every connection is in use.
+     *
+     * @return a connection whose {@code close()} returns it to the pool
+     * @throws SQLException if the pool is closed, the timeout elapses or a new connection cannot be opened
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(config.getAcquireTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + config.getAcquireTimeoutMillis()
+                        + "ms waiting for a database connection (active=" + getActiveCount()
+                        + ", idle=" + getIdleCount() + ", max=" + config.getMaxSize() + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null) {
+                pooled = open();
+            }
+            pooled.onBorrow(config.getLeakThresholdMillis() > 0);
+            borrowed.add(pooled);
+            return pooled.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Polls idle connections until a healthy one is found.
+     *
+     * @return a validated idle connection, or null if none are left
+     */
+    private PooledConnection takeIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isUsable(pooled)) {
+                return pooled;
+            }
+            discard(pooled);
+        }
+        return null;
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        long idleFor = System.currentTimeMillis() - pooled.lastUsed;
+        if (idleFor < config.getValidationIntervalMillis()) {
+            return true;
+        }
+        try {
+            return pooled.raw.isValid(config.getValidationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        Connection raw = factory.getConnection();
+        if (raw == null) {
+            throw new SQLException("Connection factory returned no connection");
+        }
+        total.incrementAndGet();
+        int cacheSize = config.getStatementCacheSize();
+        return new PooledConnection(raw, cacheSize > 0 ? new StatementCache(raw, cacheSize, statementStats) : null);
+    }
+
+    /**
+     * Returns a borrowed connection to the pool. Called when the handle is closed.
+     */
+    private void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        try {
+            boolean healthy = !closed && !pooled.raw.isClosed();
+            if (healthy && !pooled.raw.getAutoCommit()) {
+                pooled.raw.rollback();
+                pooled.raw.setAutoCommit(true);
+            }
+            if (healthy) {
+                if (pooled.statements != null) pooled.statements.reclaim();
+                pooled.lastUsed = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            } else {
+                discard(pooled);
+            }
+        } catch (SQLException e) {
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        total.decrementAndGet();
+        if (pooled.statements != null) pooled.statements.closeAll();
+        try {
+            pooled.raw.close();
+        } catch (SQLException e) {
+            logger.log(Level.FINE, "Error closing pooled connection", e);
+        }
+    }
+
+    private void fillToMinimum() {
+        while (!closed && total.get() < config.getMinSize()) {
+            try {
+                PooledConnection pooled = open();
+                pooled.lastUsed = System.currentTimeMillis();
+                idle.offerLast(pooled);
+            } catch (SQLException e) {
+                logger.log(Level.WARNING, "Unable to open pooled connection: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Periodic maintenance: evicts connections idle past the timeout (down to the minimum),
+     * tops the pool back up to the minimum and reports suspected leaks.
+     */
+    private void housekeep() {
+        try {
+            long now = System.currentTimeMillis();
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && total.get() > config.getMinSize()) {
+                PooledConnection pooled = it.next();
+                if (now - pooled.lastUsed > config.getIdleTimeoutMillis() && idle.remove(pooled)) {
+                    discard(pooled);
+                }
+            }
+            fillToMinimum();
+
+            long leakThreshold = config.getLeakThresholdMillis();
+            if (leakThreshold > 0) {
+                for (PooledConnection pooled : borrowed) {
+                    if (now - pooled.borrowedAt > leakThreshold && pooled.leakReported.compareAndSet(false, true)) {
+                        logger.log(Level.WARNING, "Connection held for " + (now - pooled.borrowedAt)
+                                + "ms without being closed; possible leak", pooled.borrowSite);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Connection pool housekeeping failed", e);
+        }
+    }
+
+    /** @return the number of connections currently lent out */
+    public int getActiveCount() { return borrowed.size(); }
+
+    /** @return the number of open connections waiting in the pool */
+    public int getIdleCount() { return idle.size(); }
+
+    /** @return the number of physical connections the pool has open */
+    public int getTotalCount() { return total.get(); }
+
+    /** @return prepared statement cache hits, misses and evictions across every connection */
+    public StatementCache.Stats getStatementStats() { return statementStats; }
+
+    /** @return the configuration this pool was created with */
+    public PoolConfig getConfig() { return config; }
+
+    /**
+     * Closes every idle connection and stops housekeeping.
+     * Connections still on loan are closed as they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    /**
+     * A physical connection plus the bookkeeping the pool needs about it.
+     */
+    private final class PooledConnection {
+        private final Connection raw;
+        private final StatementCache statements;
+        private volatile long lastUsed;
+        private volatile long borrowedAt;
+        private volatile Throwable borrowSite;
+        private final AtomicBoolean leakReported = new AtomicBoolean();
+
+        private PooledConnection(Connection raw, StatementCache statements) {
+            this.raw = raw;
+            this.statements = statements;
+        }
+
+        private void onBorrow(boolean trackLeaks) {
+            borrowedAt = System.currentTimeMillis();
+            borrowSite = trackLeaks ? new Throwable("Connection borrowed here") : null;
+            leakReported.set(false);
+        }
+
+        /**
+         * Creates the handle given to the borrower. Closing the handle returns the
+         * connection to the pool exactly once; any later use of it fails.
+         */
+        private Connection newHandle() {
+            AtomicBoolean returned = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        String name = method.getName();
+                        if (name.equals("close") && method.getParameterCount() == 0) {
+                            if (returned.compareAndSet(false, true)) {
+                                release(this);
+                            }
+                            return null;
+                        }
+                        if (name.equals("isClosed") && method.getParameterCount() == 0) {
+                            return returned.get() || raw.isClosed();
+                        }
+                        if (returned.get()) {
+                            throw new SQLException("Connection has already been returned to the pool");
+                        }
+                        if (statements != null && name.equals("prepareStatement") && method.getParameterCount() == 1) {
+                            return statements.prepare((String) args[0]);
+                        }
+                        try {
+                            return method.invoke(raw, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.napier.devops.db;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Supplies JDBC connections to the DAOs.
+ * Callers always close the connection they are given: for a {@link ConnectionPool}
+ * that hands it back to the pool, for a shared connection it does nothing.
+ */
+@FunctionalInterface
+public interface ConnectionSource {
+
+    /**
+     * Borrows a connection. The caller must close it when finished.
+     *
+     * @return an open connection
+     * @throws SQLException if no connection could be obtained
+     */
+    Connection getConnection() throws SQLException;
+
+    /**
+     * Wraps a single long-lived connection (console and batch mode) so that
+     * closing it after each query leaves the underlying connection open.
+     *
+     * @param conn the shared connection, may be null if the database is unavailable
+     * @return a source that always returns the same connection
+     */
+    static ConnectionSource of(Connection conn) {
+        if (conn == null) {
+            return () -> null;
+        }
+        Connection shared = (Connection) Proxy.newProxyInstance(
+                ConnectionSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close") && method.getParameterCount() == 0) {
+                        return null;
+                    }
+                    try {
+                        return method.invoke(conn, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        return () -> shared;
+    }
+}
@@ -0,0 +1,107 @@
+package com.napier.devops.db;
+
+import java.sql.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tracks a version number for the world tables that changes whenever their data does.
+ * Caches compare versions to decide whether what they hold is still current.
+ *
+ * The version comes from MySQL's table statistics (last update time and row counts of
+ * {@code city}, {@code country} and {@code countrylanguage}). The database is asked at
+ * most once per check interval; in between, and whenever the probe fails or no connection
+ * is available, the last known version is returned.
+ */
+public class DataVersion {
+    private static final Logger logger = Logger.getLogger(DataVersion.class.getName());
+
+    private static final String PROBE_SQL =
+            "SELECT COALESCE(UNIX_TIMESTAMP(MAX(UPDATE_TIME)), 0) AS updated, COALESCE(SUM(TABLE_ROWS), 0) AS row_total " +
+            "FROM information_schema.TABLES " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME IN ('city', 'country', 'countrylanguage')";
+
+    private final ConnectionSource source;
+    private final long checkIntervalMillis;
+    private volatile long version;
+    // Zero rather than Long.MIN_VALUE, which would overflow the elapsed-time check
+    private volatile long checkedAt;
+    private final ReentrantLock probeLock = new ReentrantLock();
+    // Whether the last probe reached the database; only touched under probeLock
+    private boolean reachable = true;
+
+    /**
+     * @param source supplies the connection used for probing; null means the data never changes
+     * @param checkIntervalMillis minimum time between probes of the database
+     */
+    public DataVersion(ConnectionSource source, long checkIntervalMillis) {
+        this.source = source;
+        this.checkIntervalMillis = checkIntervalMillis;
+    }
+
+    /**
+     * Builds a tracker whose check interval comes from DATA_VERSION_CHECK_MS (default 5000).
+     *
+     * @param source supplies the connection used for probing
+     * @return the tracker
+     */
+    public static DataVersion fromEnv(ConnectionSource source) {
+        long interval = 5000;
+        try {
+            interval = Long.parseLong(System.getenv().getOrDefault("DATA_VERSION_CHECK_MS", "5000"));
+        } catch (NumberFormatException ignored) {
+            // keep the default
+        }
+        return new DataVersion(source, interval);
+    }
+
+    /**
+     * @return the current data version, probing the database if the last check is older than the interval
+     */
+    public long current() {
+        if (source == null) return version;
+        long now = System.currentTimeMillis();
+        if (now - checkedAt >= checkIntervalMillis) {
+            probeLock.lock();
+            try {
+                if (now - checkedAt >= checkIntervalMillis) {
+                    probe();
+                    checkedAt = now;
+                }
+            } finally {
+                probeLock.unlock();
+            }
+        }
+        return version;
+    }
+
+    /**
+     * Forgets the last check so the next call to {@link #current()} asks the database again.
+     */
+    public void invalidate() {
+        checkedAt = 0;
+    }
+
+    private void probe() {
+        try (Connection conn = source.getConnection()) {
+            // No connection means the version is unknown, so the last known one stands
+            if (conn == null) return;
+            try (Statement stmt = conn.createStatement()) {
+                // information_schema statistics are otherwise cached by MySQL for up to a day
+                stmt.execute("SET SESSION information_schema_stats_expiry = 0");
+                try (ResultSet rs = stmt.executeQuery(PROBE_SQL)) {
+                    if (rs.next()) {
+                        version = rs.getLong("updated") * 31 + rs.getLong("row_total");
+                    }
+                }
+            }
+            if (!reachable) logger.info("Data version checks are working again");
+            reachable = true;
+        } catch (SQLException e) {
+            // Warn once when the database goes away rather than on every probe while it is down
+            logger.log(reachable ? Level.WARNING : Level.FINE, "Could not check data version: " + e.getMessage());
+            reachable = false;
+        }
+    }
+}
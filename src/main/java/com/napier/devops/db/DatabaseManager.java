@@ -5,19 +5,20 @@ import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class DatabaseManager {
-    private static final String URL = "jdbc:mysql://db:3306/world?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC";
+    private static final String URL = "jdbc:mysql://db:3306/world?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC&useServerPrepStmts=true";
     private static final String USER = "root";
     private static final String PASSWORD = "P@ssw0rd!";
 
-    public static Connection getConnection() throws SQLException {
-        String url = System.getenv().getOrDefault("DB_URL", URL);
-        String user = System.getenv().getOrDefault("DB_USER", USER);
-        String pass = System.getenv().getOrDefault("DB_PASS", PASSWORD);
+    private static ConnectionPool pool;
 
+    /**
+     * Opens a connection, retrying while the database starts up.
+     */
+    public static Connection getConnection() throws SQLException {
         int attempts = 0;
         while (attempts < 15) {
             try {
-                return DriverManager.getConnection(URL, USER, PASSWORD);
+                return openConnection();
             } catch (SQLException e) {
                 attempts++;
                 System.out.println("Attempting DB connection (" + attempts + "/15)... " +  e.getMessage());
@@ -29,4 +30,26 @@ public class DatabaseManager {
         throw new SQLException("Unable to connect to database after 15 attempts.");
     }
 
+    /**
+     * Opens a single connection without retrying, using environment variables or defaults.
+     */
+    public static Connection openConnection() throws SQLException {
+        String url = System.getenv().getOrDefault("DB_URL", URL);
+        String user = System.getenv().getOrDefault("DB_USER", USER);
+        String pass = System.getenv().getOrDefault("DB_PASS", PASSWORD);
+        return DriverManager.getConnection(url, user, pass);
+    }
+
+    /**
+     * Returns the shared connection pool, creating it on first use.
+     * The first call waits for the database to accept connections before the pool is filled.
+     */
+    public static synchronized ConnectionPool getPool() throws SQLException {
+        if (pool == null) {
+            getConnection().close();
+            pool = new ConnectionPool(PoolConfig.fromEnv(), DatabaseManager::openConnection);
+        }
+        return pool;
+    }
+
 }
@@ -0,0 +1,36 @@
+package com.napier.devops.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A connection source that exists before the database does.
+ * The DAOs can be built against it straight away; until {@link #complete(ConnectionSource)}
+ * is called every request for a connection fails fast, after that it is handed to the real source.
+ */
+public class DeferredConnectionSource implements ConnectionSource {
+    private volatile ConnectionSource target;
+
+    /**
+     * Starts passing connection requests to the real source.
+     *
+     * @param target the source to use from now on, usually a {@link ConnectionPool}
+     */
+    public void complete(ConnectionSource target) {
+        this.target = target;
+    }
+
+    /** @return true once {@link #complete(ConnectionSource)} has been called */
+    public boolean isReady() {
+        return target != null;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        ConnectionSource source = target;
+        if (source == null) {
+            throw new SQLException("Database is not available yet");
+        }
+        return source.getConnection();
+    }
+}
@@ -0,0 +1,72 @@
+package com.napier.devops.db;
+
+/**
+ * Sizing and timing settings for a {@link ConnectionPool}.
+ * Defaults suit the web tier; each value can be overridden with an environment variable.
+ */
+public class PoolConfig {
+    private int minSize = 2;
+    private int maxSize = 10;
+    private long acquireTimeoutMillis = 5000;
+    private long idleTimeoutMillis = 600_000;
+    private long validationIntervalMillis = 30_000;
+    private int validationTimeoutSeconds = 2;
+    private long leakThresholdMillis = 60_000;
+    private long housekeepingIntervalMillis = 30_000;
+    private int statementCacheSize = 64;
+
+    /**
+     * Builds a configuration from environment variables, falling back to the defaults:
+     * DB_POOL_MIN, DB_POOL_MAX, DB_POOL_ACQUIRE_TIMEOUT_MS, DB_POOL_IDLE_TIMEOUT_MS
+     * DB_POOL_LEAK_THRESHOLD_MS (0 disables leak detection) and
+     * DB_POOL_STATEMENT_CACHE (prepared statements kept per connection, 0 disables the cache).
+     *
+     * @return the pool configuration
+     */
+    public static PoolConfig fromEnv() {
+        PoolConfig config = new PoolConfig();
+        config.setMinSize(intEnv("DB_POOL_MIN", config.getMinSize()));
+        config.setMaxSize(intEnv("DB_POOL_MAX", config.getMaxSize()));
+        config.setAcquireTimeoutMillis(intEnv("DB_POOL_ACQUIRE_TIMEOUT_MS", (int) config.getAcquireTimeoutMillis()));
+        config.setIdleTimeoutMillis(intEnv("DB_POOL_IDLE_TIMEOUT_MS", (int) config.getIdleTimeoutMillis()));
+        config.setLeakThresholdMillis(intEnv("DB_POOL_LEAK_THRESHOLD_MS", (int) config.getLeakThresholdMillis()));
+        config.setStatementCacheSize(intEnv("DB_POOL_STATEMENT_CACHE", config.getStatementCacheSize()));
+        return config;
+    }
+
+    private static int intEnv(String name, int fallback) {
+        try {
+            return Integer.parseInt(System.getenv().getOrDefault(name, String.valueOf(fallback)));
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    // Getters & Setters
+    public int getMinSize() { return minSize; }
+    public void setMinSize(int minSize) { this.minSize = Math.max(0, minSize); }
+
+    public int getMaxSize() { return Math.max(maxSize, Math.max(1, minSize)); }
+    public void setMaxSize(int maxSize) { this.maxSize = maxSize; }
+
+    public long getAcquireTimeoutMillis() { return acquireTimeoutMillis; }
+    public void setAcquireTimeoutMillis(long acquireTimeoutMillis) { this.acquireTimeoutMillis = acquireTimeoutMillis; }
+
+    public long getIdleTimeoutMillis() { return idleTimeoutMillis; }
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) { this.idleTimeoutMillis = idleTimeoutMillis; }
+
+    public long getValidationIntervalMillis() { return validationIntervalMillis; }
+    public void setValidationIntervalMillis(long validationIntervalMillis) { this.validationIntervalMillis = validationIntervalMillis; }
+
+    public int getValidationTimeoutSeconds() { return validationTimeoutSeconds; }
+    public void setValidationTimeoutSeconds(int validationTimeoutSeconds) { this.validationTimeoutSeconds = validationTimeoutSeconds; }
+
+    public long getLeakThresholdMillis() { return leakThresholdMillis; }
+    public void setLeakThresholdMillis(long leakThresholdMillis) { this.leakThresholdMillis = leakThresholdMillis; }
+
+    public long getHousekeepingIntervalMillis() { return housekeepingIntervalMillis; }
+    public void setHousekeepingIntervalMillis(long housekeepingIntervalMillis) { this.housekeepingIntervalMillis = housekeepingIntervalMillis; }
+
+    public int getStatementCacheSize() { return statementCacheSize; }
+    public void setStatementCacheSize(int statementCacheSize) { this.statementCacheSize = Math.max(0, statementCacheSize); }
+}
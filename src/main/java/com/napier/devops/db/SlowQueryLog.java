@@ -0,0 +1,222 @@
+package com.napier.devops.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Logs DAO statements that run longer than a threshold and keeps the most recent ones.
+ *
+ * DAOs wrap each statement in a {@link Timer}, which counts the rows read and, once the
+ * statement is done, hands anything over the threshold to the log. A slow statement is
+ * logged with its SQL, bind parameters, row count, elapsed time and the HTTP request that
+ * ran it, and kept in a fixed-size ring of {@link Entry samples}. {@link #explain(long)}
+ * runs EXPLAIN FORMAT=JSON for a sample on demand and stores the plan alongside it.
+ */
+public class SlowQueryLog {
+    private static final Logger logger = Logger.getLogger(SlowQueryLog.class.getName());
+    /** The HTTP request being handled on this thread, e.g. "GET /reports/cities?scope=region". */
+    private static final ThreadLocal<String> CURRENT_REQUEST = new ThreadLocal<>();
+    private static final SlowQueryLog GLOBAL = fromEnv();
+
+    private final long thresholdNanos;
+    private final Entry[] ring;
+    private long nextId = 1;
+    private volatile ConnectionSource explainSource;
+
+    /**
+     * @param thresholdMillis statements taking at least this long are logged; negative disables the log
+     * @param capacity how many samples to keep
+     */
+    public SlowQueryLog(long thresholdMillis, int capacity) {
+        this.thresholdNanos = thresholdMillis < 0 ? Long.MAX_VALUE : thresholdMillis * 1_000_000;
+        this.ring = new Entry[Math.max(1, capacity)];
+    }
+
+    /**
+     * Builds a log from SLOW_QUERY_MS (default 500, negative disables it) and
+     * SLOW_QUERY_SAMPLES (samples kept, default 50).
+     *
+     * @return the log
+     */
+    public static SlowQueryLog fromEnv() {
+        return new SlowQueryLog(longEnv("SLOW_QUERY_MS", 500), (int) longEnv("SLOW_QUERY_SAMPLES", 50));
+    }
+
+    private static long longEnv(String name, long fallback) {
+        try {
+            return Long.parseLong(System.getenv().getOrDefault(name, String.valueOf(fallback)).trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /** @return the log every DAO reports to */
+    public static SlowQueryLog get() {
+        return GLOBAL;
+    }
+
+    /**
+     * Tags statements run on this thread with the HTTP request that caused them.
+     *
+     * @param request a description of the request, or null once it is finished
+     */
+    public static void setCurrentRequest(String request) {
+        if (request == null) CURRENT_REQUEST.remove();
+        else CURRENT_REQUEST.set(request);
+    }
+
+    /**
+     * Sets where {@link #explain(long)} borrows its connection from.
+     *
+     * @param source the connection source, usually the pool the DAOs use
+     */
+    public void setExplainSource(ConnectionSource source) {
+        this.explainSource = source;
+    }
+
+    /**
+     * Starts timing a statement.
+     *
+     * @param sql the statement text
+     * @param params the values bound to it, in order
+     * @return the running timer; close it when the statement and its rows are done
+     */
+    public Timer start(String sql, Object... params) {
+        return new Timer(sql, params);
+    }
+
+    /**
+     * Times one statement. Close it after the last row has been read, typically as the
+     * first resource of the DAO's try-with-resources block.
+     */
+    public final class Timer implements AutoCloseable {
+        private final String sql;
+        private final Object[] params;
+        private final long start = System.nanoTime();
+        private long rows;
+
+        private Timer(String sql, Object[] params) {
+            this.sql = sql;
+            this.params = params;
+        }
+
+        /** Counts one row read from the statement's result. */
+        public void row() {
+            rows++;
+        }
+
+        @Override
+        public void close() {
+            long elapsed = System.nanoTime() - start;
+            if (elapsed >= thresholdNanos) record(sql, params, rows, elapsed);
+        }
+    }
+
+    /**
+     * Logs a slow statement and adds it to the samples, replacing the oldest once full.
+     */
+    void record(String sql, Object[] params, long rows, long elapsedNanos) {
+        Entry entry;
+        synchronized (this) {
+            entry = new Entry(nextId++, System.currentTimeMillis(), CURRENT_REQUEST.get(), sql,
+                    params == null ? List.of() : Collections.unmodifiableList(Arrays.asList(params.clone())),
+                    rows, elapsedNanos / 1_000_000.0);
+            ring[(int) ((entry.id - 1) % ring.length)] = entry;
+        }
+        logger.warning(String.format("Slow query #%d took %.1f ms for %d rows (request: %s): %s %s",
+                entry.id, entry.elapsedMillis, rows, entry.request, sql, entry.params));
+    }
+
+    /**
+     * @return the kept samples, newest first
+     */
+    public synchronized List<Entry> samples() {
+        List<Entry> list = new ArrayList<>(ring.length);
+        for (long id = nextId - 1; id >= 1 && id >= nextId - ring.length; id--) {
+            list.add(ring[(int) ((id - 1) % ring.length)]);
+        }
+        return list;
+    }
+
+    /**
+     * Captures EXPLAIN FORMAT=JSON for a sample, binding the same parameters it ran with.
+     * The plan is kept with the sample, so asking again does not re-run it.
+     *
+     * @param id the sample's id
+     * @return the sample with its plan, or null if it is no longer kept
+     * @throws SQLException if the EXPLAIN fails
+     * @throws IllegalStateException if no explain source has been set
+     */
+    public Entry explain(long id) throws SQLException {
+        Entry entry = find(id);
+        if (entry == null || entry.plan != null) return entry;
+        ConnectionSource source = explainSource;
+        if (source == null) {
+            throw new IllegalStateException("No connection source for EXPLAIN");
+        }
+        try (Connection conn = source.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("EXPLAIN FORMAT=JSON " + entry.sql)) {
+            for (int i = 0; i < entry.params.size(); i++) stmt.setObject(i + 1, entry.params.get(i));
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) entry.plan = rs.getString(1);
+            }
+        }
+        return entry;
+    }
+
+    synchronized Entry find(long id) {
+        if (id < 1 || id >= nextId || id < nextId - ring.length) return null;
+        return ring[(int) ((id - 1) % ring.length)];
+    }
+
+    /**
+     * One slow statement as it ran.
+     */
+    public static final class Entry {
+        private final long id;
+        private final long timestamp;
+        private final String request;
+        private final String sql;
+        private final List<Object> params;
+        private final long rows;
+        private final double elapsedMillis;
+        private volatile String plan;
+
+        private Entry(long id, long timestamp, String request, String sql, List<Object> params,
+                      long rows, double elapsedMillis) {
+            this.id = id;
+            this.timestamp = timestamp;
+            this.request = request;
+            this.sql = sql;
+            this.params = params;
+            this.rows = rows;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public long getId() { return id; }
+
+        /** @return when the statement finished, in epoch milliseconds */
+        public long getTimestamp() { return timestamp; }
+
+        /** @return the HTTP request that ran the statement, or null outside a request */
+        public String getRequest() { return request; }
+
+        public String getSql() { return sql; }
+
+        public List<Object> getParams() { return params; }
+
+        public long getRows() { return rows; }
+
+        public double getElapsedMillis() { return elapsedMillis; }
+
+        /** @return the EXPLAIN FORMAT=JSON output, or null until {@link #explain(long)} captures it */
+        public String getPlan() { return plan; }
+    }
+}
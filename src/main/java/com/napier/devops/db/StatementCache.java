@@ -0,0 +1,234 @@
+package com.napier.devops.db;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the prepared statements of one physical connection open between uses.
+ * Preparing the same SQL again hands back the statement prepared last time instead of
+ * asking the driver (and, with server-side prepared statements, MySQL) to parse it again.
+
+ * Statements are keyed by their SQL text and evicted least recently used first once the
+ * cache holds {@code maxSize} of them. Closing a statement obtained here only returns it
+ * to the cache; it is closed for real when it is evicted or the connection is discarded.
+ * A {@link ReentrantLock} rather than a monitor guards the cache, because preparing can
+ * wait on the server and a virtual thread blocked inside {@code synchronized} pins its carrier.
+ */
+public class StatementCache {
+    private static final Logger logger = Logger.getLogger(StatementCache.class.getName());
+
+    /**
+     * Hit, miss and eviction counts, shared by every cache in a pool.
+     */
+    public static class Stats {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        /** @return the number of prepares answered with an already prepared statement */
+        public long getHits() { return hits.sum(); }
+
+        /** @return the number of prepares that went to the driver */
+        public long getMisses() { return misses.sum(); }
+
+        /** @return the number of statements closed to make room for others */
+        public long getEvictions() { return evictions.sum(); }
+    }
+
+    private final Connection raw;
+    private final int maxSize;
+    private final Stats stats;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * @param raw the physical connection statements are prepared on
+     * @param maxSize the most statements kept open at once
+     * @param stats where hits, misses and evictions are counted
+     */
+    public StatementCache(Connection raw, int maxSize, Stats stats) {
+        this.raw = raw;
+        this.maxSize = maxSize;
+        this.stats = stats;
+    }
+
+    /**
+     * Returns a prepared statement for {@code sql}, reusing the cached one when it is free.
+     * If the cached statement is still in use, a separate uncached statement is prepared.
+     *
+     * @param sql the SQL to prepare
+     * @return a statement whose {@code close()} returns it to the cache
+     * @throws SQLException if the driver cannot prepare the statement
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        lock.lock();
+        try {
+            Entry entry = entries.get(sql);
+            if (entry != null && !entry.inUse) {
+                if (!entry.statement.isClosed()) {
+                    stats.hits.increment();
+                    return entry.checkOut();
+                }
+                entries.remove(sql);
+                entry = null;
+            }
+
+            stats.misses.increment();
+            PreparedStatement statement = raw.prepareStatement(sql);
+            if (entry != null) {
+                return statement;
+            }
+            Entry fresh = new Entry(sql, statement);
+            entries.put(sql, fresh);
+            evictOverflow();
+            return fresh.checkOut();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evictOverflow() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxSize && eldest.hasNext()) {
+            Entry entry = eldest.next();
+            eldest.remove();
+            stats.evictions.increment();
+            // A statement still being read is closed when its borrower finishes with it
+            if (!entry.inUse) closeQuietly(entry);
+        }
+    }
+
+    private void checkIn(Entry entry) {
+        lock.lock();
+        try {
+            entry.inUse = false;
+            if (entries.get(entry.sql) != entry) {
+                closeQuietly(entry);
+                return;
+            }
+            // The statement stays open, so a result set its borrower left open is closed here
+            ResultSet rs = entry.statement.getResultSet();
+            if (rs != null) rs.close();
+            entry.statement.clearParameters();
+            if (entry.statement.getFetchSize() != entry.defaultFetchSize) {
+                entry.statement.setFetchSize(entry.defaultFetchSize);
+            }
+        } catch (SQLException e) {
+            entries.remove(entry.sql);
+            closeQuietly(entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes statements that were never returned, so a borrower that forgot to close one
+     * cannot hold it hostage after the connection has gone back to the pool.
+     */
+    public void reclaim() {
+        lock.lock();
+        try {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.inUse) {
+                    it.remove();
+                    closeQuietly(entry);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes every cached statement.
+     */
+    public void closeAll() {
+        lock.lock();
+        try {
+            entries.values().forEach(this::closeQuietly);
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return the number of statements currently cached */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeQuietly(Entry entry) {
+        try {
+            entry.statement.close();
+        } catch (SQLException e) {
+            logger.log(Level.FINE, "Error closing cached statement", e);
+        }
+    }
+
+    /**
+     * A cached statement plus whether someone is using it right now.
+     */
+    private final class Entry {
+        private final String sql;
+        private final PreparedStatement statement;
+        private final int defaultFetchSize;
+        private boolean inUse;
+
+        private Entry(String sql, PreparedStatement statement) throws SQLException {
+            this.sql = sql;
+            this.statement = statement;
+            this.defaultFetchSize = statement.getFetchSize();
+        }
+
+        /**
+         * Marks the statement in use and wraps it in a handle whose {@code close()}
+         * checks it back in exactly once; any later use of the handle fails.
+         */
+        private PreparedStatement checkOut() {
+            inUse = true;
+            AtomicBoolean returned = new AtomicBoolean();
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    StatementCache.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    (proxy, method, args) -> {
+                        String name = method.getName();
+                        if (name.equals("close") && method.getParameterCount() == 0) {
+                            if (returned.compareAndSet(false, true)) {
+                                checkIn(this);
+                            }
+                            return null;
+                        }
+                        if (name.equals("isClosed") && method.getParameterCount() == 0) {
+                            return returned.get() || statement.isClosed();
+                        }
+                        if (returned.get()) {
+                            throw new SQLException("Statement has already been closed");
+                        }
+                        try {
+                            return method.invoke(statement, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+}
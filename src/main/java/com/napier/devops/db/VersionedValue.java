@@ -0,0 +1,97 @@
+package com.napier.devops.db;
+
+import com.napier.devops.metrics.Metrics;
+
+import java.sql.SQLException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A value loaded from the database once and reloaded when the data changes.
+ *
+ * It is loaded on first use or by {@link #refresh}, and when a {@link DataVersion} is being
+ * watched it is reloaded once the version moves on. Only one caller reloads; everyone else
+ * keeps reading the previous value until the new one is swapped in, and if a reload fails
+ * the previous value is kept.
+ *
+ * @param <T> the value, which should be immutable since every caller shares it
+ */
+public class VersionedValue<T> {
+    private static final Logger logger = Logger.getLogger(VersionedValue.class.getName());
+
+    /** Loads a new value from the database. */
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws SQLException;
+    }
+
+    private volatile T value;
+    private volatile long loadedVersion;
+    private volatile DataVersion version;
+    // A lock rather than a monitor, so virtual threads waiting on the first load don't pin carriers
+    private final ReentrantLock loadLock = new ReentrantLock();
+
+    /**
+     * Reloads the value whenever the given version changes.
+     *
+     * @param version the data version to follow; null stops following one
+     */
+    public void watch(DataVersion version) {
+        this.version = version;
+    }
+
+    /**
+     * Returns the current value, loading it on first use and reloading it if the data
+     * version has changed since it was loaded.
+     *
+     * @param loader loads the value if it has to be (re)loaded
+     * @return the value, or null if it has never been loaded successfully
+     */
+    public T get(Loader<T> loader) {
+        if (value == null) {
+            loadLock.lock();
+            try {
+                if (value == null) refresh(loader);
+                return value;
+            } finally {
+                loadLock.unlock();
+            }
+        }
+        DataVersion v = version;
+        if (v != null && v.current() != loadedVersion && loadLock.tryLock()) {
+            try {
+                if (v.current() != loadedVersion) refresh(loader);
+            } finally {
+                loadLock.unlock();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Loads a new value and swaps it in.
+     *
+     * @param loader loads the value
+     * @return true if the value was reloaded
+     */
+    public boolean refresh(Loader<T> loader) {
+        DataVersion v = version;
+        // Read the version first, so a change made during the load triggers another one
+        long at = v == null ? 0 : v.current();
+        try {
+            value = loader.load();
+            loadedVersion = at;
+            return true;
+        } catch (SQLException e) {
+            Metrics.markFailed();
+            logger.log(Level.SEVERE, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /** Drops the value, so the next call to {@link #get} loads a new one. */
+    public void clear() {
+        value = null;
+    }
+}
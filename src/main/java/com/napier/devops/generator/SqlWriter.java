@@ -0,0 +1,83 @@
+package com.napier.devops.generator;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes generated rows as a SQL load file for a database created from {@code world.sql}.
+ *
+ * The file empties the three tables and refills them with multi-row INSERTs of up to
+ * {@value #ROWS_PER_INSERT} rows, inside one transaction with foreign key checks off, which
+ * is how mysqldump loads large tables quickly. Columns the reports do not read keep their
+ * defaults.
+ */
+public class SqlWriter implements WorldGenerator.Sink, AutoCloseable {
+    static final int ROWS_PER_INSERT = 1000;
+
+    private final Writer out;
+    private String table;
+    private int rows;
+
+    /**
+     * @param out where the SQL goes; it is not closed by {@link #close()}
+     */
+    public SqlWriter(Writer out) throws IOException {
+        this.out = out;
+        out.write("-- Synthetic world data written by WorldGenerator\n");
+        out.write("SET FOREIGN_KEY_CHECKS = 0;\nSET UNIQUE_CHECKS = 0;\nSET autocommit = 0;\n");
+        out.write("TRUNCATE TABLE `countrylanguage`;\nTRUNCATE TABLE `city`;\nTRUNCATE TABLE `country`;\n");
+    }
+
+    @Override
+    public void country(String code, String name, String continent, String region,
+                        long population, Integer capitalId) throws IOException {
+        row("INSERT INTO `country` (`Code`, `Name`, `Continent`, `Region`, `Population`, `Capital`) VALUES");
+        out.write('(' + quote(code) + ',' + quote(name) + ',' + quote(continent) + ',' + quote(region) + ','
+                + population + ',' + (capitalId == null ? "NULL" : capitalId.toString()) + ')');
+    }
+
+    @Override
+    public void city(int id, String name, String countryCode, String district, int population) throws IOException {
+        row("INSERT INTO `city` (`ID`, `Name`, `CountryCode`, `District`, `Population`) VALUES");
+        out.write("(" + id + ',' + quote(name) + ',' + quote(countryCode) + ',' + quote(district) + ','
+                + population + ')');
+    }
+
+    @Override
+    public void language(String countryCode, String language, boolean official, short tenths) throws IOException {
+        row("INSERT INTO `countrylanguage` (`CountryCode`, `Language`, `IsOfficial`, `Percentage`) VALUES");
+        out.write('(' + quote(countryCode) + ',' + quote(language) + ',' + (official ? "'T'" : "'F'") + ','
+                + tenths / 10 + '.' + tenths % 10 + ')');
+    }
+
+    /** Starts a new INSERT when the table changes or the current one is full, otherwise continues it. */
+    private void row(String insert) throws IOException {
+        if (insert.equals(table) && rows < ROWS_PER_INSERT) {
+            out.write(",\n");
+        } else {
+            endStatement();
+            out.write(insert);
+            out.write('\n');
+            table = insert;
+        }
+        rows++;
+    }
+
+    private void endStatement() throws IOException {
+        if (table != null) out.write(";\n");
+        table = null;
+        rows = 0;
+    }
+
+    /** Finishes the last INSERT and commits. */
+    @Override
+    public void close() throws IOException {
+        endStatement();
+        out.write("COMMIT;\nSET UNIQUE_CHECKS = 1;\nSET FOREIGN_KEY_CHECKS = 1;\n");
+        out.flush();
+    }
+
+    static String quote(String value) {
+        return "'" + value.replace("\\", "\\\\").replace("'", "''") + "'";
+    }
+}
@@ -0,0 +1,371 @@
+package com.napier.devops.generator;
+
+import com.napier.devops.snapshot.SnapshotFile;
+import com.napier.devops.snapshot.WorldSnapshot;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates world-like {@code country}, {@code city} and {@code countrylanguage} data at many
+ * times the size of the bundled {@code world.sql}, for benchmarking at production-like sizes.
+ *
+ * The scale multiplies the stock 4079 cities; countries and languages grow with its square
+ * root, countries up to the 17,576 three-letter codes. The shape follows the real data:
+ * <ul>
+ *   <li>country populations fall off with rank, so a few countries are huge and most are small;</li>
+ *   <li>cities are shared out by country population, and the smallest countries get none;</li>
+ *   <li>within a country city sizes follow the rank-size rule, the largest being the capital;</li>
+ *   <li>bigger countries have more districts, and a few districts hold most of the cities;</li>
+ *   <li>each country speaks one dominant language plus a skewed number of minority ones, drawn
+ *       so that a handful of languages are spoken almost everywhere.</li>
+ * </ul>
+ * The same seed and scale always produce exactly the same rows.
+ *
+ * Run it from the command line to write a SQL load file for a database created from
+ * {@code world.sql}, a snapshot file for SNAPSHOT_FILE, or both:
+ * <pre>
+ *   java -cp target/classes com.napier.devops.generator.WorldGenerator \
+ *        --scale 1000 --seed 42 --sql world-1000x.sql --snapshot world-1000x.snapshot
+ * </pre>
+ * The snapshot is built in memory, so very large scales need a correspondingly large heap;
+ * the SQL file is streamed.
+ */
+public class WorldGenerator {
+
+    /** Receives the generated rows: countries first, then cities, then languages. */
+    public interface Sink {
+        void country(String code, String name, String continent, String region,
+                     long population, Integer capitalId) throws IOException;
+
+        void city(int id, String name, String countryCode, String district, int population) throws IOException;
+
+        /**
+         * @param tenths percentage of the country's population speaking the language, in tenths of a percent
+         */
+        void language(String countryCode, String language, boolean official, short tenths) throws IOException;
+    }
+
+    static final int STOCK_CITIES = 4079;
+    static final int STOCK_COUNTRIES = 239;
+    static final int STOCK_LANGUAGES = 457;
+    private static final int MAX_COUNTRIES = 26 * 26 * 26;
+    private static final long LARGEST_COUNTRY = 1_300_000_000L;
+
+    /** The stock regions, their continents and how many stock countries each has. */
+    private static final String[][] REGIONS = {
+            {"Africa", "Central Africa", "9"}, {"Africa", "Eastern Africa", "20"},
+            {"Africa", "Northern Africa", "7"}, {"Africa", "Southern Africa", "5"},
+            {"Africa", "Western Africa", "17"}, {"Antarctica", "Antarctica", "5"},
+            {"Asia", "Eastern Asia", "8"}, {"Asia", "Middle East", "18"},
+            {"Asia", "Southeast Asia", "11"}, {"Asia", "Southern and Central Asia", "14"},
+            {"Europe", "Baltic Countries", "3"}, {"Europe", "British Islands", "2"},
+            {"Europe", "Eastern Europe", "10"}, {"Europe", "Nordic Countries", "7"},
+            {"Europe", "Southern Europe", "15"}, {"Europe", "Western Europe", "9"},
+            {"North America", "Caribbean", "24"}, {"North America", "Central America", "8"},
+            {"North America", "North America", "5"}, {"Oceania", "Australia and New Zealand", "5"},
+            {"Oceania", "Melanesia", "5"}, {"Oceania", "Micronesia", "7"},
+            {"Oceania", "Polynesia", "10"}, {"South America", "South America", "14"},
+    };
+    private static final String[] SYLLABLES = {
+            "ka", "ra", "to", "mi", "an", "sel", "vo", "lin", "gar", "el", "su", "dor", "be", "na", "ri",
+            "tal", "mon", "os", "que", "lu", "ven", "ho", "za", "ber", "ti", "ma", "por", "ne", "ci", "go",
+    };
+
+    private final long seed;
+    private final double scale;
+
+    /**
+     * @param seed fixes every random choice, so equal seeds give equal data
+     * @param scale how many times the stock city count to generate, e.g. 0.1, 10 or 10000
+     */
+    public WorldGenerator(long seed, double scale) {
+        if (!(scale > 0)) throw new IllegalArgumentException("Scale must be positive");
+        this.seed = seed;
+        this.scale = scale;
+    }
+
+    /** @return how many cities {@link #generate(Sink)} produces */
+    public int cityCount() {
+        return (int) Math.min(Integer.MAX_VALUE - 1, Math.round(STOCK_CITIES * scale));
+    }
+
+    /** @return how many countries {@link #generate(Sink)} produces */
+    public int countryCount() {
+        return (int) Math.max(REGIONS.length, Math.min(MAX_COUNTRIES, Math.round(STOCK_COUNTRIES * Math.sqrt(scale))));
+    }
+
+    /**
+     * Generates the whole dataset into {@code sink}.
+     *
+     * @param sink receives every row
+     * @throws IOException if the sink fails
+     */
+    public void generate(Sink sink) throws IOException {
+        Random random = new Random(seed);
+        int countries = countryCount();
+        String[] codes = countryCodes(random, countries);
+        String[] names = uniqueNames(random, countries, 52);
+        int[] region = regions(random, countries);
+        long[] population = countryPopulations(random, countries);
+        int[] cities = shareOut(cityCount(), population);
+
+        int nextId = 1;
+        int[] firstCity = new int[countries];
+        for (int c = 0; c < countries; c++) {
+            firstCity[c] = nextId;
+            nextId += cities[c];
+        }
+        for (int c = 0; c < countries; c++) {
+            sink.country(codes[c], names[c], REGIONS[region[c]][0], REGIONS[region[c]][1], population[c],
+                    cities[c] == 0 ? null : firstCity[c]);
+        }
+
+        for (int c = 0; c < countries; c++) {
+            generateCities(random, sink, codes[c], population[c], firstCity[c], cities[c]);
+        }
+
+        String[] languages = uniqueNames(random, Math.max(20, (int) Math.round(STOCK_LANGUAGES * Math.sqrt(scale))), 30);
+        double[] popularity = zipf(languages.length, 1.0);
+        for (int c = 0; c < countries; c++) {
+            generateLanguages(random, sink, codes[c], languages, popularity);
+        }
+    }
+
+    private void generateCities(Random random, Sink sink, String code, long countryPopulation,
+                                int firstId, int count) throws IOException {
+        if (count == 0) return;
+        // Rank-size rule: the k-th city is about 1/k the size of the largest
+        double harmonic = 0;
+        for (int k = 1; k <= count; k++) harmonic += 1 / Math.pow(k, 1.07);
+        double urbanShare = 0.15 + random.nextDouble() * 0.5;
+        double largest = Math.min(30_000_000, countryPopulation * urbanShare / harmonic);
+
+        int districtCount = Math.max(1, (int) Math.round(1.2 * Math.pow(count, 0.6)));
+        String[] districts = new String[districtCount];
+        for (int d = 0; d < districtCount; d++) districts[d] = name(random, 1, 3, 20);
+
+        for (int k = 0; k < count; k++) {
+            double u = random.nextDouble();
+            // The capital's district comes first; the rest favour the low-numbered districts
+            int district = k == 0 ? 0 : (int) (districtCount * u * u);
+            int size = (int) Math.max(1, largest / Math.pow(k + 1, 1.07) * (0.85 + random.nextDouble() * 0.3));
+            sink.city(firstId + k, name(random, 2, 4, 35), code, districts[district], size);
+        }
+    }
+
+    private void generateLanguages(Random random, Sink sink, String code, String[] languages, double[] popularity)
+            throws IOException {
+        int spoken = Math.min(12, 1 + (int) (-Math.log(1 - random.nextDouble()) * 3.1));
+        Set<Integer> chosen = new HashSet<>();
+        double remaining = 1000;
+        for (int i = 0; i < spoken && chosen.size() < languages.length; i++) {
+            int language = pick(popularity, random.nextDouble());
+            if (!chosen.add(language)) continue;
+            // The first language is the majority one; minorities share what is left, shrinking as they go
+            double share = i == 0 ? 400 + random.nextDouble() * 590 : remaining * (0.1 + random.nextDouble() * 0.5);
+            remaining -= share;
+            sink.language(code, languages[language], i == 0, (short) Math.max(1, Math.round(share)));
+        }
+    }
+
+    /** Distinct three-letter codes in a shuffled order. */
+    private static String[] countryCodes(Random random, int count) {
+        int[] all = new int[MAX_COUNTRIES];
+        for (int i = 0; i < all.length; i++) all[i] = i;
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(all.length - i);
+            int swap = all[i];
+            all[i] = all[j];
+            all[j] = swap;
+        }
+        String[] codes = new String[count];
+        for (int i = 0; i < count; i++) {
+            int n = all[i];
+            codes[i] = "" + (char) ('A' + n / 676) + (char) ('A' + n / 26 % 26) + (char) ('A' + n % 26);
+        }
+        return codes;
+    }
+
+    /** Assigns countries to regions in proportion to how many each region has in the stock data. */
+    private static int[] regions(Random random, int count) {
+        double[] weights = new double[REGIONS.length];
+        for (int r = 0; r < REGIONS.length; r++) weights[r] = Integer.parseInt(REGIONS[r][2]);
+        double[] cumulative = cumulative(weights);
+        int[] region = new int[count];
+        // Every region gets at least one country, so all the region reports have something to show
+        for (int c = 0; c < count; c++) {
+            region[c] = c < REGIONS.length ? c : pick(cumulative, random.nextDouble());
+        }
+        return region;
+    }
+
+    /**
+     * Country sizes fall off with a random rank, with some noise, from about 1.3 billion down,
+     * ending in a tail of tiny territories.
+     */
+    private static long[] countryPopulations(Random random, int count) {
+        int[] rank = new int[count];
+        for (int i = 0; i < count; i++) rank[i] = i + 1;
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = rank[i];
+            rank[i] = rank[j];
+            rank[j] = swap;
+        }
+        long[] population = new long[count];
+        int territories = count - Math.max(1, count * 3 / 100);
+        for (int c = 0; c < count; c++) {
+            double size = LARGEST_COUNTRY / Math.pow(rank[c], 1.1) * (0.7 + random.nextDouble() * 0.6);
+            // The last few ranks are island territories too small to have a listed city
+            if (rank[c] > territories) size = 50 + random.nextInt(50_000);
+            population[c] = Math.max(50, Math.min(Integer.MAX_VALUE, Math.round(size)));
+        }
+        return population;
+    }
+
+    /**
+     * Shares {@code total} cities out in proportion to population to the power 0.9, by largest
+     * remainder, so the counts add up exactly and the smallest countries may get none.
+     */
+    static int[] shareOut(int total, long[] population) {
+        double[] weight = new double[population.length];
+        double sum = 0;
+        for (int c = 0; c < population.length; c++) {
+            weight[c] = Math.pow(population[c], 0.9);
+            sum += weight[c];
+        }
+        int[] count = new int[population.length];
+        double[] remainder = new double[population.length];
+        long given = 0;
+        for (int c = 0; c < population.length; c++) {
+            double exact = total * weight[c] / sum;
+            count[c] = (int) exact;
+            remainder[c] = exact - count[c];
+            given += count[c];
+        }
+        Integer[] order = new Integer[population.length];
+        for (int c = 0; c < order.length; c++) order[c] = c;
+        Arrays.sort(order, (a, b) -> Double.compare(remainder[b], remainder[a]));
+        for (int i = 0; given < total; i = (i + 1) % order.length, given++) count[order[i]]++;
+        return count;
+    }
+
+    /** Cumulative Zipf weights over {@code n} ranks, for {@link #pick(double[], double)}. */
+    private static double[] zipf(int n, double exponent) {
+        double[] weights = new double[n];
+        for (int i = 0; i < n; i++) weights[i] = 1 / Math.pow(i + 1, exponent);
+        return cumulative(weights);
+    }
+
+    private static double[] cumulative(double[] weights) {
+        double[] cumulative = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) cumulative[i] = sum += weights[i];
+        for (int i = 0; i < weights.length; i++) cumulative[i] /= sum;
+        return cumulative;
+    }
+
+    /** Picks the index whose cumulative weight first reaches {@code u}. */
+    private static int pick(double[] cumulative, double u) {
+        int i = Arrays.binarySearch(cumulative, u);
+        return Math.min(cumulative.length - 1, i >= 0 ? i : -i - 1);
+    }
+
+    private static String[] uniqueNames(Random random, int count, int maxLength) {
+        Set<String> seen = new HashSet<>();
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            String name = name(random, 2, 4, maxLength);
+            // Suffixes keep names distinct once the syllable combinations run short
+            for (int n = 2; !seen.add(name); n++) {
+                String suffix = " " + n;
+                name = name.substring(0, Math.min(name.length(), maxLength - suffix.length())) + suffix;
+            }
+            names[i] = name;
+        }
+        return names;
+    }
+
+    private static String name(Random random, int minSyllables, int maxSyllables, int maxLength) {
+        int syllables = minSyllables + random.nextInt(maxSyllables - minSyllables + 1);
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < syllables; i++) name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        return name.length() > maxLength ? name.substring(0, maxLength) : name.toString();
+    }
+
+    /**
+     * Collects the rows into a snapshot builder.
+     *
+     * @param builder the builder to add to
+     * @return a sink feeding {@code builder}
+     */
+    public static Sink into(WorldSnapshot.Builder builder) {
+        return new Sink() {
+            @Override
+            public void country(String code, String name, String continent, String region,
+                                long population, Integer capitalId) {
+                builder.addCountry(code, name, continent, region, population, capitalId);
+            }
+
+            @Override
+            public void city(int id, String name, String countryCode, String district, int population) {
+                builder.addCity(id, name, countryCode, district, population);
+            }
+
+            @Override
+            public void language(String countryCode, String language, boolean official, short tenths) {
+                builder.addLanguage(countryCode, language, tenths);
+            }
+        };
+    }
+
+    /**
+     * Command line entry point: {@code --scale N --seed N [--sql FILE] [--snapshot FILE]}.
+     */
+    public static void main(String[] args) throws IOException {
+        double scale = 10;
+        long seed = 42;
+        Path sql = null;
+        Path snapshot = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i].toLowerCase(Locale.ROOT)) {
+                case "--scale" -> scale = Double.parseDouble(args[i + 1]);
+                case "--seed" -> seed = Long.parseLong(args[i + 1]);
+                case "--sql" -> sql = Path.of(args[i + 1]);
+                case "--snapshot" -> snapshot = Path.of(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (sql == null && snapshot == null) {
+            System.err.println("Usage: WorldGenerator --scale N --seed N [--sql FILE] [--snapshot FILE]");
+            return;
+        }
+
+        WorldGenerator generator = new WorldGenerator(seed, scale);
+        System.out.println("Generating " + generator.countryCount() + " countries and "
+                + generator.cityCount() + " cities (seed " + seed + ")");
+        if (sql != null) {
+            try (BufferedWriter out = Files.newBufferedWriter(sql, StandardCharsets.UTF_8);
+                 SqlWriter writer = new SqlWriter(out)) {
+                generator.generate(writer);
+            }
+            System.out.println("Wrote " + sql);
+        }
+        if (snapshot != null) {
+            WorldSnapshot.Builder builder = new WorldSnapshot.Builder();
+            generator.generate(into(builder));
+            SnapshotFile.write(builder.build(), snapshot);
+            System.out.println("Wrote " + snapshot);
+        }
+    }
+}
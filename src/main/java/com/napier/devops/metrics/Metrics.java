@@ -0,0 +1,296 @@
+package com.napier.devops.metrics;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Process-wide request and DAO metrics, exposed in the Prometheus text format.
+
+ * Every web route and DAO method records its calls, failures, rows returned and a
+ * {@link LatencyHistogram} of how long it took, labelled by route and scope or by DAO and
+ * method. Other components can publish their own counters and gauges with
+ * {@link #counter} and {@link #gauge}. {@link #scrape()} renders everything for /metrics.
+ */
+public final class Metrics {
+
+    private static final Family REQUESTS = new Family("http_request", "route", "scope",
+            "HTTP requests handled", "HTTP requests that failed", "Rows written to HTTP responses",
+            "Time spent handling HTTP requests");
+    private static final Family CALLS = new Family("dao_call", "dao", "method",
+            "DAO method calls", "DAO method calls that hit a database error", "Rows returned by DAO methods",
+            "Time spent in DAO methods");
+    private static final Map<String, Gauge> GAUGES = new ConcurrentSkipListMap<>();
+
+    private static final ThreadLocal<Sample> CURRENT_REQUEST = new ThreadLocal<>();
+    private static final ThreadLocal<Sample> CURRENT_CALL = new ThreadLocal<>();
+    private static final ThreadLocal<long[]> FAILURES = ThreadLocal.withInitial(() -> new long[1]);
+
+    private Metrics() {
+    }
+
+    /**
+     * Counts, failures, rows and latencies for one label combination.
+     */
+    public static final class Series {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        void record(long nanos, long rowCount, boolean failed) {
+            calls.increment();
+            if (failed) errors.increment();
+            if (rowCount > 0) rows.add(rowCount);
+            latency.record(nanos);
+        }
+
+        public long getCalls() { return calls.sum(); }
+
+        public long getErrors() { return errors.sum(); }
+
+        public long getRows() { return rows.sum(); }
+
+        public LatencyHistogram getLatency() { return latency; }
+    }
+
+    /**
+     * One timed request or call in progress. {@link #stop()} records it; until then it is
+     * the current sample of its kind on this thread, so code further down can add rows or
+     * mark it failed without being handed the sample.
+     */
+    public static final class Sample {
+        private final Series series;
+        private final ThreadLocal<Sample> slot;
+        private final Sample previous;
+        private final long start = System.nanoTime();
+        private long rows;
+        private boolean failed;
+
+        private Sample(Series series, ThreadLocal<Sample> slot) {
+            this.series = series;
+            this.slot = slot;
+            this.previous = slot.get();
+            slot.set(this);
+        }
+
+        public void addRows(long count) { rows += count; }
+
+        public void fail() { failed = true; }
+
+        /**
+         * Records the sample and restores whichever sample was current before it.
+         */
+        public void stop() {
+            series.record(System.nanoTime() - start, rows, failed);
+            if (previous == null) slot.remove();
+            else slot.set(previous);
+        }
+    }
+
+    /**
+     * Starts timing an HTTP request.
+     *
+     * @param route the route path, e.g. /reports/cities
+     * @param scope the scope the request asked for
+     * @return the running sample; call {@link Sample#stop()} when the response is done
+     */
+    public static Sample startRequest(String route, String scope) {
+        return new Sample(REQUESTS.series(route, scope), CURRENT_REQUEST);
+    }
+
+    /**
+     * Starts timing a DAO method call.
+     *
+     * @param dao the DAO's class name
+     * @param method the method being called
+     * @return the running sample; call {@link Sample#stop()} when the call returns
+     */
+    public static Sample startCall(String dao, String method) {
+        return new Sample(CALLS.series(dao, method), CURRENT_CALL);
+    }
+
+    /**
+     * Times a DAO method that returns its rows as a collection.
+     *
+     * @param dao the DAO's class name
+     * @param method the method being called
+     * @param call runs the method
+     * @return whatever {@code call} returned
+     */
+    public static <T extends Collection<?>> T timed(String dao, String method, Supplier<T> call) {
+        Sample sample = startCall(dao, method);
+        try {
+            T result = call.get();
+            if (result != null) sample.addRows(result.size());
+            return result;
+        } catch (RuntimeException e) {
+            sample.fail();
+            throw e;
+        } finally {
+            sample.stop();
+        }
+    }
+
+    /**
+     * Marks the DAO call running on this thread as failed. DAOs call this where they
+     * catch and log a database error instead of letting it propagate.
+     */
+    public static void markFailed() {
+        FAILURES.get()[0]++;
+        Sample sample = CURRENT_CALL.get();
+        if (sample != null) sample.fail();
+    }
+
+    /**
+     * Counts the database errors DAOs have reported on this thread. Reading it before and
+     * after some work tells whether that work hit one, e.g. whether a response built from
+     * DAO results is missing rows.
+     *
+     * @return how many times {@link #markFailed()} has been called on this thread
+     */
+    public static long failures() {
+        return FAILURES.get()[0];
+    }
+
+    /**
+     * Adds to the row count of the HTTP request running on this thread.
+     *
+     * @param rows how many rows were written to the response
+     */
+    public static void addResponseRows(long rows) {
+        Sample sample = CURRENT_REQUEST.get();
+        if (sample != null) sample.addRows(rows);
+    }
+
+    /**
+     * Publishes a value that only ever goes up, read each time metrics are scraped.
+     * Registering the same name again replaces the earlier supplier.
+     */
+    public static void counter(String name, String help, LongSupplier value) {
+        GAUGES.put(name, new Gauge("counter", help, value));
+    }
+
+    /**
+     * Publishes a value that can go up and down, read each time metrics are scraped.
+     * Registering the same name again replaces the earlier supplier.
+     */
+    public static void gauge(String name, String help, LongSupplier value) {
+        GAUGES.put(name, new Gauge("gauge", help, value));
+    }
+
+    /**
+     * @return the series for one route and scope, created on first use
+     */
+    public static Series request(String route, String scope) {
+        return REQUESTS.series(route, scope);
+    }
+
+    /**
+     * @return the series for one DAO method, created on first use
+     */
+    public static Series call(String dao, String method) {
+        return CALLS.series(dao, method);
+    }
+
+    /**
+     * Renders every metric in the Prometheus text exposition format (version 0.0.4).
+     *
+     * @return the scrape body
+     */
+    public static String scrape() {
+        StringBuilder out = new StringBuilder(8192);
+        REQUESTS.writeTo(out);
+        CALLS.writeTo(out);
+        for (Map.Entry<String, Gauge> entry : GAUGES.entrySet()) {
+            Gauge gauge = entry.getValue();
+            header(out, entry.getKey(), gauge.type, gauge.help);
+            out.append(entry.getKey()).append(' ').append(gauge.value.getAsLong()).append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * Forgets every recorded series and registered gauge.
+     */
+    static void reset() {
+        REQUESTS.series.clear();
+        CALLS.series.clear();
+        GAUGES.clear();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private record Gauge(String type, String help, LongSupplier value) {}
+
+    /**
+     * The four metrics recorded for one kind of operation, keyed by two labels.
+     */
+    private static final class Family {
+        private final String prefix;
+        private final String firstLabel;
+        private final String secondLabel;
+        private final String[] help;
+        private final Map<String, Map<String, Series>> series = new ConcurrentSkipListMap<>();
+
+        private Family(String prefix, String firstLabel, String secondLabel, String... help) {
+            this.prefix = prefix;
+            this.firstLabel = firstLabel;
+            this.secondLabel = secondLabel;
+            this.help = help;
+        }
+
+        private Series series(String first, String second) {
+            return series.computeIfAbsent(first, k -> new ConcurrentSkipListMap<>())
+                    .computeIfAbsent(second, k -> new Series());
+        }
+
+        private void writeTo(StringBuilder out) {
+            if (series.isEmpty()) return;
+            writeCounter(out, prefix + "s_total", help[0], Series::getCalls);
+            writeCounter(out, prefix + "_errors_total", help[1], Series::getErrors);
+            writeCounter(out, prefix + "_rows_total", help[2], Series::getRows);
+
+            String name = prefix + "_duration_seconds";
+            header(out, name, "histogram", help[3]);
+            forEach((labels, s) -> {
+                long[] buckets = s.getLatency().bucketCounts();
+                long cumulative = 0;
+                for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+                    cumulative += buckets[i];
+                    String le = BigDecimal.valueOf(LatencyHistogram.upperBoundSeconds(i)).toPlainString();
+                    out.append(name).append("_bucket{").append(labels).append(",le=\"").append(le).append("\"} ")
+                            .append(cumulative).append('\n');
+                }
+                cumulative += buckets[LatencyHistogram.BUCKETS];
+                out.append(name).append("_bucket{").append(labels).append(",le=\"+Inf\"} ").append(cumulative).append('\n');
+                out.append(name).append("_sum{").append(labels).append("} ").append(s.getLatency().getSumSeconds()).append('\n');
+                out.append(name).append("_count{").append(labels).append("} ").append(cumulative).append('\n');
+            });
+        }
+
+        private void writeCounter(StringBuilder out, String name, String help, ToLongFunction<Series> value) {
+            header(out, name, "counter", help);
+            forEach((labels, s) -> out.append(name).append('{').append(labels).append("} ")
+                    .append(value.applyAsLong(s)).append('\n'));
+        }
+
+        private void forEach(BiConsumer<String, Series> action) {
+            series.forEach((first, inner) -> inner.forEach((second, s) -> action.accept(
+                    firstLabel + "=\"" + escape(first) + "\"," + secondLabel + "=\"" + escape(second) + "\"", s)));
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.napier.devops.models;
 
+import java.util.Objects;
+
 public class CapitalCity {
     private String name;
     private String country;
@@ -20,17 +22,34 @@ public class CapitalCity {
     public void setName(String name) { this.name = name; }
 
     public String getCountry() { return country; }
-    public void setCountry(String country) { this.country = country; }
+    public void setCountry(String country) { this.country = GeoNames.canonical(country); }
 
     public String getContinent() { return continent; }
-    public void setContinent(String continent) { this.continent = continent; }
+    public void setContinent(String continent) { this.continent = GeoNames.canonical(continent); }
 
     public String getRegion() { return region; }
-    public void setRegion(String region) { this.region = region; }
+    public void setRegion(String region) { this.region = GeoNames.canonical(region); }
 
     public long getPopulation() { return population; }
     public void setPopulation(long population) { this.population = population; }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CapitalCity)) return false;
+        CapitalCity other = (CapitalCity) o;
+        return Objects.equals(name, other.name) &&
+                Objects.equals(country, other.country) &&
+                Objects.equals(continent, other.continent) &&
+                Objects.equals(region, other.region) &&
+                population == other.population;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, country, continent, region, population);
+    }
+
     @Override
     public String toString() {
         return String.format("%s (Capital of %s) | Pop: %d", name, country, population);
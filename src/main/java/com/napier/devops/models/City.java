@@ -1,5 +1,7 @@
 package com.napier.devops.models;
 
+import java.util.Objects;
+
 public class City {
     private String name;
     private String continent;
@@ -20,15 +22,32 @@ public class City {
     public void setName(String name) { this.name = name; }
 
     public String getContinent() { return continent; }
-    public void setContinent(String continent) { this.continent = continent; }
+    public void setContinent(String continent) { this.continent = GeoNames.canonical(continent); }
 
     public String getCountry() { return country; }
-    public void setCountry(String country) { this.country = country; }
+    public void setCountry(String country) { this.country = GeoNames.canonical(country); }
 
     public String getDistrict() { return district; }
-    public void setDistrict(String district) { this.district = district; }
+    public void setDistrict(String district) { this.district = GeoNames.canonical(district); }
 
     public long getPopulation() { return population; }
     public void setPopulation(long population) { this.population = population; }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof City)) return false;
+        City other = (City) o;
+        return Objects.equals(name, other.name) &&
+                Objects.equals(district, other.district) &&
+                Objects.equals(country, other.country) &&
+                Objects.equals(continent, other.continent) &&
+                population == other.population;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, district, country, continent, population);
+    }
+
 }
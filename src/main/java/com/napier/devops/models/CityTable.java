@@ -0,0 +1,161 @@
+package com.napier.devops.models;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * A list of cities stored column by column instead of as one object per row.
+ *
+ * Each column is a plain array: names, the shared {@link GeoNames} instances for district,
+ * country and continent, and primitive populations. A report of every city in the world is
+ * then five arrays rather than four thousand City objects. {@link #get(int)} builds a City
+ * on demand, so the table can be handed to anything expecting a {@code List<City>}, and
+ * serialises to the same JSON. Changing a City returned by {@code get} does not change the
+ * table; use {@link #set(int, City)}.
+ */
+public class CityTable extends AbstractList<City> implements RandomAccess {
+    private String[] names;
+    private String[] districts;
+    private String[] countries;
+    private String[] continents;
+    private long[] populations;
+    private int size;
+
+    public CityTable() {
+        this(16);
+    }
+
+    /**
+     * @param capacity the number of rows to make room for up front
+     */
+    public CityTable(int capacity) {
+        names = new String[capacity];
+        districts = new String[capacity];
+        countries = new String[capacity];
+        continents = new String[capacity];
+        populations = new long[capacity];
+    }
+
+    /**
+     * Copies a list of cities; copying another table is a straight array copy.
+     *
+     * @param cities the rows to copy
+     */
+    public CityTable(Collection<? extends City> cities) {
+        if (cities instanceof CityTable table) {
+            size = table.size;
+            names = Arrays.copyOf(table.names, size);
+            districts = Arrays.copyOf(table.districts, size);
+            countries = Arrays.copyOf(table.countries, size);
+            continents = Arrays.copyOf(table.continents, size);
+            populations = Arrays.copyOf(table.populations, size);
+        } else {
+            names = new String[cities.size()];
+            districts = new String[cities.size()];
+            countries = new String[cities.size()];
+            continents = new String[cities.size()];
+            populations = new long[cities.size()];
+            for (City city : cities) add(city);
+        }
+    }
+
+    @Override
+    public City get(int index) {
+        checkIndex(index, size);
+        return new City(names[index], districts[index], countries[index], continents[index], populations[index]);
+    }
+
+    @Override
+    public City set(int index, City city) {
+        City previous = get(index);
+        write(index, city);
+        return previous;
+    }
+
+    @Override
+    public void add(int index, City city) {
+        checkIndex(index, size + 1);
+        if (size == names.length) grow();
+        if (index < size) shift(index, index + 1, size - index);
+        write(index, city);
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public City remove(int index) {
+        City previous = get(index);
+        shift(index + 1, index, size - index - 1);
+        size--;
+        write(size, null);
+        modCount++;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(districts, 0, size, null);
+        Arrays.fill(countries, 0, size, null);
+        Arrays.fill(continents, 0, size, null);
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Reads a population without building a City.
+     *
+     * @param index the row
+     * @return that row's population
+     */
+    public long getPopulation(int index) {
+        checkIndex(index, size);
+        return populations[index];
+    }
+
+    private void write(int index, City city) {
+        if (city == null) {
+            names[index] = null;
+            districts[index] = null;
+            countries[index] = null;
+            continents[index] = null;
+            populations[index] = 0;
+            return;
+        }
+        names[index] = city.getName();
+        districts[index] = GeoNames.canonical(city.getDistrict());
+        countries[index] = GeoNames.canonical(city.getCountry());
+        continents[index] = GeoNames.canonical(city.getContinent());
+        populations[index] = city.getPopulation();
+    }
+
+    private void shift(int from, int to, int length) {
+        System.arraycopy(names, from, names, to, length);
+        System.arraycopy(districts, from, districts, to, length);
+        System.arraycopy(countries, from, countries, to, length);
+        System.arraycopy(continents, from, continents, to, length);
+        System.arraycopy(populations, from, populations, to, length);
+    }
+
+    private void grow() {
+        int capacity = Math.max(16, names.length + (names.length >> 1));
+        names = Arrays.copyOf(names, capacity);
+        districts = Arrays.copyOf(districts, capacity);
+        countries = Arrays.copyOf(countries, capacity);
+        continents = Arrays.copyOf(continents, capacity);
+        populations = Arrays.copyOf(populations, capacity);
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + bound);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.napier.devops.models;
 
+import java.util.Objects;
+
 public class Country {
     private String code;
     private String name;
@@ -31,7 +33,7 @@ public class Country {
     }
 
     public void setName(String name) {
-        this.name = name;
+        this.name = GeoNames.canonical(name);
     }
 
     public String getContinent() {
@@ -39,7 +41,7 @@ public class Country {
     }
 
     public void setContinent(String continent) {
-        this.continent = continent;
+        this.continent = GeoNames.canonical(continent);
     }
 
     public String getRegion() {
@@ -47,7 +49,7 @@ public class Country {
     }
 
     public void setRegion(String region) {
-        this.region = region;
+        this.region = GeoNames.canonical(region);
     }
 
     public long getPopulation() {
@@ -65,4 +67,22 @@ public class Country {
     public void setCapital(String capital) {
         this.capital = capital;
     }
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Country)) return false;
+        Country other = (Country) o;
+        return Objects.equals(code, other.code) &&
+                Objects.equals(name, other.name) &&
+                Objects.equals(continent, other.continent) &&
+                Objects.equals(region, other.region) &&
+                population == other.population &&
+                Objects.equals(capital, other.capital);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(code, name, continent, region, population, capital);
+    }
+
 }
\ No newline at end of file
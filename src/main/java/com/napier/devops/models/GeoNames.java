@@ -0,0 +1,41 @@
+package com.napier.devops.models;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical instances for the geography strings the models repeat on every row.
+ *
+ * The world data has a handful of continents, a few dozen regions, a few hundred country
+ * names and about fifteen hundred districts, yet every JDBC row hands back a fresh copy of
+ * each. The models pass those fields through {@link #canonical(String)} so that all rows
+ * share one instance per distinct value. Unlike {@link String#intern()} the pool is private
+ * to this application and bounded, so an unexpected flood of distinct values cannot grow it
+ * without limit.
+ */
+public final class GeoNames {
+    /** Far above the number of distinct geography names in the world data. */
+    static final int MAX_NAMES = 65_536;
+
+    private static final ConcurrentHashMap<String, String> NAMES = new ConcurrentHashMap<>();
+
+    private GeoNames() {
+    }
+
+    /**
+     * @param value a continent, region, country or district name, may be null
+     * @return the shared instance equal to {@code value}, or {@code value} itself if the pool is full
+     */
+    public static String canonical(String value) {
+        if (value == null) return null;
+        String shared = NAMES.get(value);
+        if (shared != null) return shared;
+        if (NAMES.size() >= MAX_NAMES) return value;
+        shared = NAMES.putIfAbsent(value, value);
+        return shared == null ? value : shared;
+    }
+
+    /** @return the number of distinct names held */
+    public static int size() {
+        return NAMES.size();
+    }
+}
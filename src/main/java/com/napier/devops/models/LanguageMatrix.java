@@ -0,0 +1,53 @@
+package com.napier.devops.models;
+
+import java.util.List;
+
+/**
+ * Speakers of every language in every continent or region, as a sparse matrix.
+ * Rows are languages (most speakers worldwide first), columns are areas (alphabetical),
+ * and only the cells of languages recorded in an area are listed, each pointing at its row
+ * and column by index.
+ */
+public class LanguageMatrix {
+
+    /** The speakers of one language in one area. */
+    public static class Cell {
+        private final int language;  // index into languages
+        private final int area;      // index into areas
+        private final long speakers;
+
+        public Cell(int language, int area, long speakers) {
+            this.language = language;
+            this.area = area;
+            this.speakers = speakers;
+        }
+
+        public int getLanguage() { return language; }
+        public int getArea() { return area; }
+        public long getSpeakers() { return speakers; }
+    }
+
+    private final String level;              // "Continent" or "Region"
+    private final List<String> languages;
+    private final List<String> areas;
+    private final List<Long> areaPopulations;  // same order as areas
+    private final long globalPopulation;
+    private final List<Cell> cells;           // by language, then area
+
+    public LanguageMatrix(String level, List<String> languages, List<String> areas, List<Long> areaPopulations,
+                          long globalPopulation, List<Cell> cells) {
+        this.level = level;
+        this.languages = List.copyOf(languages);
+        this.areas = List.copyOf(areas);
+        this.areaPopulations = List.copyOf(areaPopulations);
+        this.globalPopulation = globalPopulation;
+        this.cells = List.copyOf(cells);
+    }
+
+    public String getLevel() { return level; }
+    public List<String> getLanguages() { return languages; }
+    public List<String> getAreas() { return areas; }
+    public List<Long> getAreaPopulations() { return areaPopulations; }
+    public long getGlobalPopulation() { return globalPopulation; }
+    public List<Cell> getCells() { return cells; }
+}
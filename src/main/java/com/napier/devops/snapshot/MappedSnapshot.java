@@ -0,0 +1,261 @@
+package com.napier.devops.snapshot;
+
+import com.napier.devops.dao.Scope;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Reads the city columns of a {@link SnapshotFile} in place, through a memory map, instead of
+ * copying them onto the heap.
+ *
+ * Opening the file only records where each section starts. City countries, districts and
+ * populations are read straight from the mapped pages, and a city name is only decoded when
+ * {@link #cityName(int)} asks for it, which the report writers do while serialising the row.
+ * The operating system pages the file in and out as needed, so a snapshot with tens of millions
+ * of cities costs little heap. The small tables (continents, regions and countries) are decoded
+ * up front for name lookups; districts stay in the file and are searched when a report filters
+ * by one.
+ *
+ * One mapping covers the whole file, so files must be under 2 GB.
+ */
+public final class MappedSnapshot {
+
+    /** Receives the row number of each city a report visits. */
+    @FunctionalInterface
+    public interface RowVisitor {
+        void visit(int row) throws IOException;
+    }
+
+    /** Where a string table's offsets and bytes start in the file. */
+    private record Strings(int count, int offsets, int bytes) {
+        int end(ByteBuffer in) {
+            return bytes + in.getInt(offsets + count * Integer.BYTES);
+        }
+    }
+
+    private final ByteBuffer in;
+    private final String[] continents;
+    private final String[] regions;
+    private final Strings districts;
+    private final String[] countryName;
+    private final int[] countryContinent;
+    private final int[] countryRegion;
+    private final Map<String, Integer> countryByCode = new HashMap<>();
+    private final Map<String, Integer> countryByName = new HashMap<>();
+    private final int cities;
+    private final Strings cityNames;
+    private final int cityCountry;
+    private final int cityDistrict;
+    private final int cityPopulation;
+    private final int citiesByPopulation;
+
+    private MappedSnapshot(ByteBuffer in) throws IOException {
+        this.in = in;
+        SnapshotFile.checkHeader(in);
+        int pos = in.position();
+
+        Strings table = dictionary(pos);
+        continents = decodeAll(table);
+        table = dictionary(table.end(in));
+        regions = decodeAll(table);
+        districts = dictionary(table.end(in));
+        table = dictionary(districts.end(in));   // languages are not needed by the city reports
+        pos = table.end(in);
+
+        int countries = in.getInt(pos);
+        Strings codes = strings(pos + Integer.BYTES, countries);
+        String[] countryCode = decodeAll(codes);
+        Strings names = strings(codes.end(in), countries);
+        countryName = decodeAll(names);
+        pos = names.end(in);
+        countryContinent = ints(pos, countries);
+        pos += countries * Integer.BYTES;
+        countryRegion = ints(pos, countries);
+        pos += countries * Integer.BYTES;
+        // population (long) and capital (int) columns are not needed by the city reports
+        pos += countries * (Long.BYTES + Integer.BYTES);
+        for (int i = 0; i < countries; i++) {
+            countryByCode.putIfAbsent(StringDictionary.fold(countryCode[i]), i);
+            countryByName.putIfAbsent(StringDictionary.fold(countryName[i]), i);
+        }
+
+        cities = in.getInt(pos);
+        pos += Integer.BYTES + cities * Integer.BYTES;   // skip the id column
+        cityNames = strings(pos, cities);
+        cityCountry = cityNames.end(in);
+        cityDistrict = cityCountry + cities * Integer.BYTES;
+        cityPopulation = cityDistrict + cities * Integer.BYTES;
+        pos = cityPopulation + cities * Integer.BYTES;
+
+        int spoken = in.getInt(pos);
+        pos += Integer.BYTES + spoken * (2 * Integer.BYTES + Short.BYTES);
+        pos += countries * Integer.BYTES;   // skip the country ordering
+        citiesByPopulation = pos;
+        if (citiesByPopulation + (long) cities * Integer.BYTES > in.limit()) {
+            throw new IOException("Snapshot file is truncated or corrupt");
+        }
+    }
+
+    /**
+     * Maps a snapshot file for reading.
+     *
+     * @param file a file written by {@link SnapshotFile#write(WorldSnapshot, Path)}
+     * @return a reader over the mapped file
+     * @throws IOException if the file cannot be mapped, is not a snapshot, or has another format version
+     */
+    public static MappedSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot file is larger than 2 GB and cannot be mapped");
+            }
+            // The mapping stays valid after the channel is closed
+            return new MappedSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Snapshot file is truncated or corrupt", e);
+        }
+    }
+
+    /**
+     * Visits cities largest first, as the city reports order them.
+     *
+     * @param scope the level {@code name} belongs to; WORLD ignores the name
+     * @param name the continent, region, country, country code or district to keep
+     * @param limit the most cities to visit; negative means no limit
+     * @param visitor called with each city's row number
+     * @return how many cities were visited
+     * @throws IOException if the visitor fails
+     */
+    public long forEachCity(Scope scope, String name, int limit, RowVisitor visitor) throws IOException {
+        IntPredicate keep = filter(scope, name);
+        if (keep == null || limit == 0) return 0;
+        long visited = 0;
+        for (int rank = 0; rank < cities; rank++) {
+            int row = in.getInt(citiesByPopulation + rank * Integer.BYTES);
+            if (!keep.test(row)) continue;
+            visitor.visit(row);
+            if (++visited == limit) break;
+        }
+        return visited;
+    }
+
+    /** Returns which cities belong to the scope, or null when none can. */
+    private IntPredicate filter(Scope scope, String name) {
+        if (scope == Scope.WORLD) return row -> true;
+        if (name == null) return null;
+        switch (scope) {
+            case CONTINENT: {
+                int code = indexOf(continents, name);
+                return code < 0 ? null : row -> countryContinent[country(row)] == code;
+            }
+            case REGION: {
+                int code = indexOf(regions, name);
+                return code < 0 ? null : row -> countryRegion[country(row)] == code;
+            }
+            case COUNTRY: {
+                Integer match = countryByName.get(StringDictionary.fold(name));
+                return match == null ? null : row -> country(row) == match;
+            }
+            case COUNTRY_CODE: {
+                Integer match = countryByCode.get(StringDictionary.fold(name));
+                return match == null ? null : row -> country(row) == match;
+            }
+            case DISTRICT: {
+                int code = districtCode(name);
+                return code < 0 ? null : row -> in.getInt(cityDistrict + row * Integer.BYTES) == code;
+            }
+            default:
+                return null;
+        }
+    }
+
+    /** @return the number of cities in the file */
+    public int cityCount() { return cities; }
+
+    /** @return the city's name, decoded from the file */
+    public String cityName(int row) { return decode(cityNames, row); }
+
+    /** @return the name of the city's country */
+    public String cityCountry(int row) { return countryName[country(row)]; }
+
+    /** @return the continent of the city's country */
+    public String cityContinent(int row) { return continents[countryContinent[country(row)]]; }
+
+    /** @return the city's district, decoded from the file */
+    public String cityDistrict(int row) { return decode(districts, in.getInt(cityDistrict + row * Integer.BYTES)); }
+
+    /** @return the city's population */
+    public int cityPopulation(int row) { return in.getInt(cityPopulation + row * Integer.BYTES); }
+
+    private int country(int row) {
+        return in.getInt(cityCountry + row * Integer.BYTES);
+    }
+
+    /**
+     * Finds a district's code, matching the UTF-8 bytes first and ignoring case only if that fails.
+     */
+    private int districtCode(String name) {
+        byte[] wanted = name.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < districts.count(); i++) {
+            int start = in.getInt(districts.offsets() + i * Integer.BYTES);
+            int end = in.getInt(districts.offsets() + (i + 1) * Integer.BYTES);
+            if (end - start == wanted.length
+                    && in.slice(districts.bytes() + start, wanted.length).equals(ByteBuffer.wrap(wanted))) {
+                return i;
+            }
+        }
+        String folded = StringDictionary.fold(name);
+        for (int i = 0; i < districts.count(); i++) {
+            if (folded.equals(StringDictionary.fold(decode(districts, i)))) return i;
+        }
+        return -1;
+    }
+
+    /** A dictionary: a string table preceded by its count. */
+    private Strings dictionary(int at) {
+        return strings(at + Integer.BYTES, in.getInt(at));
+    }
+
+    /** A string table whose offsets start at {@code offsets}. */
+    private static Strings strings(int offsets, int count) {
+        return new Strings(count, offsets, offsets + (count + 1) * Integer.BYTES);
+    }
+
+    private String decode(Strings table, int i) {
+        int start = in.getInt(table.offsets() + i * Integer.BYTES);
+        int end = in.getInt(table.offsets() + (i + 1) * Integer.BYTES);
+        byte[] bytes = new byte[end - start];
+        in.get(table.bytes() + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private String[] decodeAll(Strings table) {
+        String[] values = new String[table.count()];
+        for (int i = 0; i < values.length; i++) values[i] = decode(table, i);
+        return values;
+    }
+
+    private int[] ints(int at, int count) {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) values[i] = in.getInt(at + i * Integer.BYTES);
+        return values;
+    }
+
+    private static int indexOf(String[] values, String name) {
+        String folded = StringDictionary.fold(name);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].equals(name)) return i;
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (StringDictionary.fold(values[i]).equals(folded)) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,216 @@
+package com.napier.devops.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Saves a {@link WorldSnapshot} to disk and reads it back, so the app can serve reports from
+ * the last known data at startup without waiting for MySQL.
+ *
+ * The file is a flat, big-endian sequence of sections that can be memory-mapped and read in
+ * place. It opens with a magic number and a format version; a file with any other version is
+ * rejected rather than guessed at, and a fresh one is written after the next database load.
+ * <pre>
+ *   int magic ("WSNP"), int version, long written-at (epoch ms)
+ *   4 string tables: continents, regions, districts, languages
+ *   int n, string table codes, string table names, int[n] continent, int[n] region,
+ *          long[n] population, int[n] capital city row (-1 for none)
+ *   int n, int[n] id, string table names, int[n] country row, int[n] district, int[n] population
+ *   int n, int[n] country row, int[n] language, short[n] tenths of a percent
+ *   int[] countries largest first, int[] cities largest first
+ * </pre>
+ * A string table is {@code int[count + 1]} byte offsets followed by the UTF-8 bytes, so any one
+ * string can be reached without decoding the others; the four dictionaries are preceded by
+ * their count, the column tables take theirs from the row count. Storing the population orderings lets
+ * a reader serve "largest first" reports without sorting.
+ */
+public final class SnapshotFile {
+    static final int MAGIC = 0x57534E50;
+    static final int FORMAT_VERSION = 1;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Writes a snapshot, replacing any existing file only once the new one is complete.
+     *
+     * @param snapshot the snapshot to save
+     * @param file where to save it
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(WorldSnapshot snapshot, Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(tmp), 1 << 16))) {
+            writeTo(snapshot, out);
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void writeTo(WorldSnapshot s, DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(System.currentTimeMillis());
+        writeStrings(out, s.continents);
+        writeStrings(out, s.regions);
+        writeStrings(out, s.districts);
+        writeStrings(out, s.languages);
+
+        out.writeInt(s.countryCount());
+        writeStrings(out, s.countryCode);
+        writeStrings(out, s.countryName);
+        writeInts(out, s.countryContinent);
+        writeInts(out, s.countryRegion);
+        for (long population : s.countryPopulation) out.writeLong(population);
+        writeInts(out, s.countryCapital);
+
+        out.writeInt(s.cityCount());
+        writeInts(out, s.cityId);
+        writeStrings(out, s.cityName);
+        writeInts(out, s.cityCountry);
+        writeInts(out, s.cityDistrict);
+        writeInts(out, s.cityPopulation);
+
+        out.writeInt(s.languageRowCount());
+        writeInts(out, s.languageCountry);
+        writeInts(out, s.languageName);
+        for (short tenths : s.languageTenths) out.writeShort(tenths);
+
+        writeInts(out, s.countriesByPopulation);
+        writeInts(out, s.citiesByPopulation);
+    }
+
+    private static void writeStrings(DataOutputStream out, StringDictionary dictionary) throws IOException {
+        String[] values = new String[dictionary.size()];
+        for (int i = 0; i < values.length; i++) values[i] = dictionary.valueOf(i);
+        out.writeInt(values.length);
+        writeStrings(out, values);
+    }
+
+    /** Writes the offsets and bytes of a string table; the count is written by the caller. */
+    private static void writeStrings(DataOutputStream out, String[] values) throws IOException {
+        byte[][] encoded = new byte[values.length][];
+        int offset = 0;
+        out.writeInt(0);
+        for (int i = 0; i < values.length; i++) {
+            encoded[i] = values[i] == null ? new byte[0] : values[i].getBytes(StandardCharsets.UTF_8);
+            offset += encoded[i].length;
+            out.writeInt(offset);
+        }
+        for (byte[] bytes : encoded) out.write(bytes);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) out.writeInt(value);
+    }
+
+    /**
+     * Maps a snapshot file and rebuilds the snapshot it holds.
+     *
+     * @param file a file written by {@link #write(WorldSnapshot, Path)}
+     * @return the snapshot
+     * @throws IOException if the file cannot be read, is not a snapshot, or has another format version
+     */
+    public static WorldSnapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer);
+        }
+    }
+
+    static WorldSnapshot read(ByteBuffer in) throws IOException {
+        try {
+            checkHeader(in);
+            String[] continents = readStrings(in, in.getInt());
+            String[] regions = readStrings(in, in.getInt());
+            String[] districts = readStrings(in, in.getInt());
+            String[] languages = readStrings(in, in.getInt());
+
+            int countries = in.getInt();
+            String[] codes = readStrings(in, countries);
+            String[] names = readStrings(in, countries);
+            int[] continent = readInts(in, countries);
+            int[] region = readInts(in, countries);
+            long[] population = new long[countries];
+            for (int i = 0; i < countries; i++) population[i] = in.getLong();
+            int[] capital = readInts(in, countries);
+
+            int cities = in.getInt();
+            int[] cityId = readInts(in, cities);
+            String[] cityName = readStrings(in, cities);
+            int[] cityCountry = readInts(in, cities);
+            int[] cityDistrict = readInts(in, cities);
+            int[] cityPopulation = readInts(in, cities);
+
+            WorldSnapshot.Builder b = new WorldSnapshot.Builder();
+            for (int i = 0; i < countries; i++) {
+                b.addCountry(codes[i], names[i], continents[continent[i]], regions[region[i]], population[i],
+                        capital[i] < 0 ? null : cityId[capital[i]]);
+            }
+            for (int i = 0; i < cities; i++) {
+                b.addCity(cityId[i], cityName[i], codes[cityCountry[i]], districts[cityDistrict[i]], cityPopulation[i]);
+            }
+            int spoken = in.getInt();
+            int[] languageCountry = readInts(in, spoken);
+            int[] languageName = readInts(in, spoken);
+            for (int i = 0; i < spoken; i++) {
+                b.addLanguage(codes[languageCountry[i]], languages[languageName[i]], in.getShort());
+            }
+            // The stored orderings are for readers that serve the file in place; building sorts afresh
+            return b.build();
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("Snapshot file is truncated or corrupt", e);
+        }
+    }
+
+    /**
+     * Checks the magic number and format version, leaving the buffer just past the header.
+     *
+     * @return when the file was written, in epoch milliseconds
+     */
+    static long checkHeader(ByteBuffer in) throws IOException {
+        if (in.remaining() < 16 || in.getInt() != MAGIC) {
+            throw new IOException("Not a snapshot file");
+        }
+        int version = in.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported snapshot format version " + version);
+        }
+        return in.getLong();
+    }
+
+    private static String[] readStrings(ByteBuffer in, int count) {
+        int[] offsets = readInts(in, count + 1);
+        String[] values = new String[count];
+        byte[] bytes = new byte[offsets[count]];
+        in.get(bytes);
+        for (int i = 0; i < count; i++) {
+            values[i] = new String(bytes, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+        }
+        return values;
+    }
+
+    private static int[] readInts(ByteBuffer in, int count) {
+        int[] values = new int[count];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + count * Integer.BYTES);
+        return values;
+    }
+}
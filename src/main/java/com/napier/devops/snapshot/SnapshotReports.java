@@ -0,0 +1,392 @@
+package com.napier.devops.snapshot;
+
+import com.napier.devops.dao.LanguageStats;
+import com.napier.devops.dao.Page;
+import com.napier.devops.dao.PageCursor;
+import com.napier.devops.dao.PopulationCube;
+import com.napier.devops.dao.Scope;
+import com.napier.devops.db.ConnectionSource;
+import com.napier.devops.models.*;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Answers the DAO report methods from a {@link WorldSnapshot} held in memory.
+ * Results have the same content and ordering as the SQL the DAOs would otherwise run.
+
+ * A limit of {@link #UNLIMITED} returns every matching row; a negative limit returns none,
+ * just as an invalid {@code LIMIT} makes the SQL version return an empty list.
+
+ * "Top N in scope" reports are slices of population-sorted runs built once per snapshot
+ * (see {@link TopN}), so they cost O(N) however many rows the scope holds.
+ */
+public class SnapshotReports {
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private final WorldSnapshot s;
+    private final long globalPopulation;
+    private final PopulationCube cube;
+    private final LanguageStats languageStats;
+
+    private final TopN.Partition allCities;
+    private final TopN.Partition allCountries;
+    private final TopN.Partition citiesByContinent;
+    private final TopN.Partition citiesByRegion;
+    private final TopN.Partition citiesByCountry;
+    private final TopN.Partition citiesByDistrict;
+    private final TopN.Partition countriesByContinent;
+    private final TopN.Partition countriesByRegion;
+    private final TopN.Partition countriesByCountry;
+    private final TopN.Partition capitalsByContinent;
+    private final TopN.Partition capitalsByRegion;
+    private final TopN.Partition capitalsByCountry;
+    private final int[] citiesByContinentName;
+    private final int[] citiesByRegionName;
+    private final int[] countriesByContinentName;
+    private final int[] countriesByRegionName;
+
+    /**
+     * @param snapshot the data to answer reports from
+     */
+    public SnapshotReports(WorldSnapshot snapshot) {
+        this.s = snapshot;
+        this.cube = buildCube(snapshot);
+        this.globalPopulation = cube.getGlobalPopulation();
+        this.languageStats = buildLanguageStats(snapshot);
+
+        int continents = s.continents.size();
+        int regions = s.regions.size();
+        int countries = s.countryCount();
+        allCities = TopN.whole(s.citiesByPopulation);
+        allCountries = TopN.whole(s.countriesByPopulation);
+        citiesByContinent = TopN.partition(s.citiesByPopulation, continents, row -> s.countryContinent[s.cityCountry[row]]);
+        citiesByRegion = TopN.partition(s.citiesByPopulation, regions, row -> s.countryRegion[s.cityCountry[row]]);
+        citiesByCountry = TopN.partition(s.citiesByPopulation, countries, row -> s.cityCountry[row]);
+        citiesByDistrict = TopN.partition(s.citiesByPopulation, s.districts.size(), row -> s.cityDistrict[row]);
+        countriesByContinent = TopN.partition(s.countriesByPopulation, continents, row -> s.countryContinent[row]);
+        countriesByRegion = TopN.partition(s.countriesByPopulation, regions, row -> s.countryRegion[row]);
+        countriesByCountry = TopN.partition(s.countriesByPopulation, countries, row -> row);
+        capitalsByContinent = TopN.partition(s.capitalsByPopulation, continents, row -> s.countryContinent[s.cityCountry[row]]);
+        capitalsByRegion = TopN.partition(s.capitalsByPopulation, regions, row -> s.countryRegion[s.cityCountry[row]]);
+        capitalsByCountry = TopN.partition(s.capitalsByPopulation, countries, row -> s.cityCountry[row]);
+
+        String[] continentNames = groupNames(s.continents);
+        String[] regionNames = groupNames(s.regions);
+        citiesByContinentName = sortByGroupName(s.citiesByPopulation, row -> continentNames[s.countryContinent[s.cityCountry[row]]]);
+        citiesByRegionName = sortByGroupName(s.citiesByPopulation, row -> regionNames[s.countryRegion[s.cityCountry[row]]]);
+        countriesByContinentName = sortByGroupName(s.countriesByPopulation, row -> continentNames[s.countryContinent[row]]);
+        countriesByRegionName = sortByGroupName(s.countriesByPopulation, row -> regionNames[s.countryRegion[row]]);
+    }
+
+    /**
+     * Loads a fresh snapshot and wraps it.
+     *
+     * @param source supplies the connection used for loading
+     * @return reports over the newly loaded data
+     * @throws SQLException if loading fails
+     */
+    public static SnapshotReports load(ConnectionSource source) throws SQLException {
+        return new SnapshotReports(WorldSnapshot.load(source));
+    }
+
+    /** @return the underlying snapshot */
+    public WorldSnapshot getSnapshot() {
+        return s;
+    }
+
+    // --- Cities ---
+
+    /**
+     * Cities within one continent, region, country or district, largest first.
+     *
+     * @param scope the level the name belongs to; WORLD ignores the name
+     * @param name the continent, region, country name/code or district to filter by
+     * @param limit maximum number of rows
+     */
+    public List<City> cities(Scope scope, String name, int limit) {
+        return switch (scope) {
+            case WORLD -> first(s.citiesByPopulation, limit, this::toCity);
+            case CONTINENT -> first(citiesByContinent, s.continents.codeOf(name), limit, this::toCity);
+            case REGION -> first(citiesByRegion, s.regions.codeOf(name), limit, this::toCity);
+            case COUNTRY -> first(citiesByCountry, s.countryRowByName(name), limit, this::toCity);
+            case COUNTRY_CODE -> first(citiesByCountry, s.countryRowByCode(name), limit, this::toCity);
+            case DISTRICT -> first(citiesByDistrict, s.districts.codeOf(name), limit, this::toCity);
+        };
+    }
+
+    /**
+     * One page of the cities within a scope, largest first and then by ID, as the paged SQL orders them.
+     * The page's start is found by binary search, so any page costs the same as the first.
+     *
+     * @param scope the level the name belongs to; WORLD ignores the name
+     * @param name the continent, region, country name/code or district to filter by
+     * @param size rows per page
+     * @param after where the previous page ended, or null for the first page
+     * @throws IllegalArgumentException if the cursor does not hold a city ID
+     */
+    public Page<City> citiesPage(Scope scope, String name, int size, PageCursor after) {
+        Run run = switch (scope) {
+            case WORLD -> new Run(allCities, 0);
+            case CONTINENT -> new Run(citiesByContinent, s.continents.codeOf(name));
+            case REGION -> new Run(citiesByRegion, s.regions.codeOf(name));
+            case COUNTRY -> new Run(citiesByCountry, s.countryRowByName(name));
+            case COUNTRY_CODE -> new Run(citiesByCountry, s.countryRowByCode(name));
+            case DISTRICT -> new Run(citiesByDistrict, s.districts.codeOf(name));
+        };
+        IntPredicate isAfter = row -> true;
+        if (after != null) {
+            long population = after.getPopulation();
+            int id = after.getNumericId();
+            isAfter = row -> s.cityPopulation[row] < population
+                    || (s.cityPopulation[row] == population && s.cityId[row] > id);
+        }
+        return page(run, size, isAfter, this::toCity,
+                row -> new PageCursor(s.cityPopulation[row], String.valueOf(s.cityId[row])));
+    }
+
+    /**
+     * All cities ordered by continent or region name, then by population (largest first).
+     */
+    public List<City> citiesGroupedBy(Scope scope, int limit) {
+        return first(scope == Scope.REGION ? citiesByRegionName : citiesByContinentName, limit, this::toCity);
+    }
+
+    private City toCity(int row) {
+        int country = s.cityCountry[row];
+        return new City(
+                s.cityName[row],
+                s.districts.valueOf(s.cityDistrict[row]),
+                s.countryName[country],
+                s.continents.valueOf(s.countryContinent[country]),
+                s.cityPopulation[row]);
+    }
+
+    // --- Countries ---
+
+    /**
+     * Countries within one continent or region (or the whole world), largest first.
+     */
+    public List<Country> countries(Scope scope, String name, int limit) {
+        return switch (scope) {
+            case WORLD -> first(s.countriesByPopulation, limit, this::toCountry);
+            case CONTINENT -> first(countriesByContinent, s.continents.codeOf(name), limit, this::toCountry);
+            case REGION -> first(countriesByRegion, s.regions.codeOf(name), limit, this::toCountry);
+            case COUNTRY -> first(countriesByCountry, s.countryRowByName(name), limit, this::toCountry);
+            case COUNTRY_CODE -> first(countriesByCountry, s.countryRowByCode(name), limit, this::toCountry);
+            case DISTRICT -> new ArrayList<>();
+        };
+    }
+
+    /**
+     * One page of the countries within a scope, largest first and then by code, as the paged SQL orders them.
+     *
+     * @param scope the level the name belongs to; WORLD ignores the name
+     * @param name the continent or region to filter by
+     * @param size rows per page
+     * @param after where the previous page ended, or null for the first page
+     */
+    public Page<Country> countriesPage(Scope scope, String name, int size, PageCursor after) {
+        Run run = switch (scope) {
+            case WORLD -> new Run(allCountries, 0);
+            case CONTINENT -> new Run(countriesByContinent, s.continents.codeOf(name));
+            case REGION -> new Run(countriesByRegion, s.regions.codeOf(name));
+            case COUNTRY -> new Run(countriesByCountry, s.countryRowByName(name));
+            case COUNTRY_CODE -> new Run(countriesByCountry, s.countryRowByCode(name));
+            case DISTRICT -> new Run(countriesByCountry, -1);
+        };
+        IntPredicate isAfter = row -> true;
+        if (after != null) {
+            long population = after.getPopulation();
+            String code = after.getId();
+            isAfter = row -> s.countryPopulation[row] < population
+                    || (s.countryPopulation[row] == population && s.countryCode[row].compareTo(code) > 0);
+        }
+        return page(run, size, isAfter, this::toCountry,
+                row -> new PageCursor(s.countryPopulation[row], s.countryCode[row]));
+    }
+
+    /**
+     * All countries ordered by continent or region name, then by population (largest first).
+     */
+    public List<Country> countriesGroupedBy(Scope scope, int limit) {
+        return first(scope == Scope.REGION ? countriesByRegionName : countriesByContinentName, limit, this::toCountry);
+    }
+
+    private Country toCountry(int row) {
+        int capital = s.countryCapital[row];
+        return new Country(
+                s.countryCode[row],
+                s.countryName[row],
+                s.continents.valueOf(s.countryContinent[row]),
+                s.regions.valueOf(s.countryRegion[row]),
+                s.countryPopulation[row],
+                capital < 0 ? null : s.cityName[capital]);
+    }
+
+    /**
+     * Each continent's or region's name as grouped reports sort by it, trimmed like the SQL
+     * path's TRIM; the sort ignores case like its UPPER. Names that differ only in surrounding
+     * whitespace therefore form one group in every report.
+     */
+    private static String[] groupNames(StringDictionary groups) {
+        String[] names = new String[groups.size()];
+        for (int code = 0; code < names.length; code++) {
+            String name = groups.valueOf(code);
+            names[code] = name == null ? "" : name.trim();
+        }
+        return names;
+    }
+
+    // --- Capital cities ---
+
+    /**
+     * Capital cities within one continent or region (or the whole world), largest first.
+     */
+    public List<CapitalCity> capitals(Scope scope, String name, int limit) {
+        return switch (scope) {
+            case WORLD -> first(s.capitalsByPopulation, limit, this::toCapital);
+            case CONTINENT -> first(capitalsByContinent, s.continents.codeOf(name), limit, this::toCapital);
+            case REGION -> first(capitalsByRegion, s.regions.codeOf(name), limit, this::toCapital);
+            case COUNTRY -> first(capitalsByCountry, s.countryRowByName(name), limit, this::toCapital);
+            case COUNTRY_CODE -> first(capitalsByCountry, s.countryRowByCode(name), limit, this::toCapital);
+            case DISTRICT -> new ArrayList<>();
+        };
+    }
+
+    private CapitalCity toCapital(int row) {
+        int country = s.cityCountry[row];
+        return new CapitalCity(
+                s.cityName[row],
+                s.countryName[country],
+                s.continents.valueOf(s.countryContinent[country]),
+                s.regions.valueOf(s.countryRegion[country]),
+                s.cityPopulation[row]);
+    }
+
+    // --- Populations ---
+
+    /** @return the sum of every country's population */
+    public long globalPopulation() {
+        return globalPopulation;
+    }
+
+    /** @return the population rollup computed from this snapshot */
+    public PopulationCube populationCube() {
+        return cube;
+    }
+
+    /**
+     * Total, city and non-city population for every continent, region or country, largest first.
+     */
+    public List<Population> populations(Scope groupBy, int limit) {
+        return cube.all(groupBy, limit);
+    }
+
+    /**
+     * Total, city and non-city population for a single continent, region or country.
+     */
+    public List<Population> populationOf(Scope scope, String name, int limit) {
+        return cube.of(scope, name, limit);
+    }
+
+    /**
+     * Feeds per-country totals into a cube, summing city populations in one pass over the city column.
+     */
+    private static PopulationCube buildCube(WorldSnapshot s) {
+        long[] inCities = new long[s.countryCount()];
+        for (int row = 0; row < s.cityCount(); row++) {
+            inCities[s.cityCountry[row]] += s.cityPopulation[row];
+        }
+        PopulationCube.Builder b = new PopulationCube.Builder();
+        for (int row = 0; row < s.countryCount(); row++) {
+            b.addCountry(s.countryCode[row], s.countryName[row],
+                    s.continents.valueOf(s.countryContinent[row]),
+                    s.regions.valueOf(s.countryRegion[row]),
+                    s.countryPopulation[row], inCities[row]);
+        }
+        return b.build();
+    }
+
+    // --- Languages ---
+
+    /** @return the language statistics computed from this snapshot */
+    public LanguageStats languageStats() {
+        return languageStats;
+    }
+
+    /**
+     * Feeds every country and the languages spoken in it into language statistics.
+     */
+    private static LanguageStats buildLanguageStats(WorldSnapshot s) {
+        LanguageStats.Builder b = new LanguageStats.Builder();
+        for (int row = 0; row < s.countryCount(); row++) {
+            b.addCountry(s.countryCode[row], s.countryName[row],
+                    s.continents.valueOf(s.countryContinent[row]),
+                    s.regions.valueOf(s.countryRegion[row]),
+                    s.countryPopulation[row]);
+        }
+        for (int row = 0; row < s.languageRowCount(); row++) {
+            b.addLanguage(s.countryCode[s.languageCountry[row]], s.languages.valueOf(s.languageName[row]),
+                    s.languageTenths[row]);
+        }
+        return b.build();
+    }
+
+    /**
+     * Languages ranked by number of speakers, worldwide or within one continent, region or country.
+     * Answered from {@link #languageStats()}, the same statistics the database path uses.
+     */
+    public List<Language> languages(Scope scope, String name, int limit) {
+        return languageStats.languages(scope, name, limit);
+    }
+
+    /**
+     * Stable-sorts population-sorted rows by group name ignoring case, so each group stays largest first.
+     */
+    private static int[] sortByGroupName(int[] rows, IntFunction<String> groupName) {
+        Integer[] boxed = new Integer[rows.length];
+        for (int i = 0; i < rows.length; i++) boxed[i] = rows[i];
+        Arrays.sort(boxed, Comparator.comparing(groupName::apply, String.CASE_INSENSITIVE_ORDER));
+        return Arrays.stream(boxed).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Maps the first {@code limit} rows of an ordered row array.
+     */
+    private static <T> List<T> first(int[] rows, int limit, IntFunction<T> toResult) {
+        int n = Math.min(rows.length, Math.max(limit, 0));
+        List<T> results = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) results.add(toResult.apply(rows[i]));
+        return results;
+    }
+
+    /** One group of a partition; an unknown group (-1) is empty. */
+    private record Run(TopN.Partition index, int group) {}
+
+    /**
+     * Maps up to {@code size} rows of a run, starting at the first row {@code after} accepts.
+     */
+    private static <T> Page<T> page(Run run, int size, IntPredicate after, IntFunction<T> toResult,
+                                    IntFunction<PageCursor> cursorOf) {
+        int total = run.index.size(run.group);
+        int from = run.index.seek(run.group, after);
+        int to = (int) Math.min(total, (long) from + Math.max(size, 0));
+        List<T> data = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) data.add(toResult.apply(run.index.row(run.group, i)));
+        PageCursor next = to < total && to > from ? cursorOf.apply(run.index.row(run.group, to - 1)) : null;
+        return new Page<>(data, next);
+    }
+
+    /**
+     * Maps the first {@code limit} rows of one group; an unknown group (-1) yields nothing.
+     */
+    private static <T> List<T> first(TopN.Partition index, int group, int limit, IntFunction<T> toResult) {
+        int n = Math.min(index.size(group), Math.max(limit, 0));
+        List<T> results = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) results.add(toResult.apply(index.row(group, i)));
+        return results;
+    }
+}
@@ -0,0 +1,65 @@
+package com.napier.devops.snapshot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Dictionary encoding for low-cardinality string columns (continent, region, district, language).
+ * Each distinct value is stored once and rows refer to it by an int code.
+ * Lookups ignore case, matching MySQL's default case-insensitive collation.
+ */
+public class StringDictionary {
+    private final List<String> values = new ArrayList<>();
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final Map<String, Integer> codesIgnoringCase = new HashMap<>();
+
+    /**
+     * Returns the code for a value, adding it to the dictionary if it is new.
+     * Only used while a snapshot is being built.
+     *
+     * @param value the string to encode
+     * @return the value's code
+     */
+    int encode(String value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            values.add(value);
+            codes.put(value, code);
+            codesIgnoringCase.putIfAbsent(fold(value), code);
+        }
+        return code;
+    }
+
+    /**
+     * Looks up the code for a value without adding it.
+     *
+     * @param value the string to look up
+     * @return the value's code, or -1 if it is not in the dictionary
+     */
+    public int codeOf(String value) {
+        Integer code = codes.get(value);
+        if (code == null && value != null) code = codesIgnoringCase.get(fold(value));
+        return code == null ? -1 : code;
+    }
+
+    static String fold(String value) {
+        return value == null ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param code a code returned by {@link #codeOf(String)}
+     * @return the string stored under that code
+     */
+    public String valueOf(int code) {
+        return values.get(code);
+    }
+
+    /** @return the number of distinct values */
+    public int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,187 @@
+package com.napier.devops.snapshot;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Answers "top N by population within a scope" without sorting at query time.
+
+ * A {@link Partition} splits rows that are already sorted largest first into one run per
+ * group (continent, region, country, district), keeping that order inside every run, so the
+ * top N of any group is just the first N entries of its run. {@link #largest} covers
+ * rankings that cannot be indexed up front, such as aggregates computed per request, by
+ * keeping the best N seen so far in a bounded heap.
+ */
+public final class TopN {
+
+    private TopN() {
+    }
+
+    /**
+     * Rows grouped by an int code, each group holding its rows in their original order.
+     * Group {@code g} occupies {@code rows[start[g]]} up to, but not including, {@code rows[start[g + 1]]}.
+     */
+    static final class Partition {
+        private final int[] start;
+        private final int[] rows;
+
+        private Partition(int[] start, int[] rows) {
+            this.start = start;
+            this.rows = rows;
+        }
+
+        /**
+         * @param group the group code; anything out of range is an empty group
+         * @return how many rows the group has
+         */
+        int size(int group) {
+            return group < 0 || group >= start.length - 1 ? 0 : start[group + 1] - start[group];
+        }
+
+        /**
+         * @param group the group code
+         * @param i position within the group, below {@link #size(int)}
+         * @return the row at that position
+         */
+        int row(int group, int i) {
+            return rows[start[group] + i];
+        }
+
+        /**
+         * Binary-searches a group for the first position whose row satisfies {@code after}.
+         * The predicate must be false for a prefix of the group and true for the rest,
+         * as "comes after this cursor" is for rows in the group's order.
+         *
+         * @param group the group code
+         * @param after tests a row
+         * @return the first matching position, or {@link #size(int)} if none match
+         */
+        int seek(int group, IntPredicate after) {
+            int lo = 0;
+            int hi = size(group);
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (after.test(row(group, mid))) hi = mid;
+                else lo = mid + 1;
+            }
+            return lo;
+        }
+    }
+
+    /**
+     * Wraps already ordered rows as a partition with a single group, 0, without copying them.
+     *
+     * @param rows the rows, in order
+     * @return the partition
+     */
+    static Partition whole(int[] rows) {
+        return new Partition(new int[]{0, rows.length}, rows);
+    }
+
+    /**
+     * Splits {@code sortedRows} by group with a counting sort, so each group keeps the input order.
+     *
+     * @param sortedRows rows in the order every group should list them
+     * @param groups number of distinct group codes
+     * @param groupOf maps a row to its group code, in {@code [0, groups)}
+     * @return the partition
+     */
+    static Partition partition(int[] sortedRows, int groups, IntUnaryOperator groupOf) {
+        int[] start = new int[groups + 1];
+        for (int row : sortedRows) {
+            start[groupOf.applyAsInt(row) + 1]++;
+        }
+        for (int g = 0; g < groups; g++) {
+            start[g + 1] += start[g];
+        }
+        int[] next = Arrays.copyOf(start, groups);
+        int[] rows = new int[sortedRows.length];
+        for (int row : sortedRows) {
+            rows[next[groupOf.applyAsInt(row)]++] = row;
+        }
+        return new Partition(start, rows);
+    }
+
+    /**
+     * Picks the {@code n} ids with the largest keys among those matching {@code filter},
+     * using a heap that never holds more than {@code n} entries.
+     * Equal keys keep the lower id first, as a stable sort would.
+     *
+     * @param count ids run from 0 to count - 1
+     * @param filter which ids take part
+     * @param key the value to rank by
+     * @param n how many ids to return
+     * @return the selected ids, largest key first
+     */
+    public static int[] largest(int count, IntPredicate filter, IntToLongFunction key, int n) {
+        if (n <= 0) return new int[0];
+        int capacity = Math.min(n, count);
+        // Min-heap on (key, -id): the root is the entry the next better candidate replaces
+        int[] heap = new int[capacity];
+        long[] keys = new long[capacity];
+        int size = 0;
+        for (int id = 0; id < count; id++) {
+            if (!filter.test(id)) continue;
+            long k = key.applyAsLong(id);
+            if (size < capacity) {
+                heap[size] = id;
+                keys[size] = k;
+                siftUp(heap, keys, size++);
+            } else if (worse(keys[0], heap[0], k, id)) {
+                heap[0] = id;
+                keys[0] = k;
+                siftDown(heap, keys, size);
+            }
+        }
+
+        int[] result = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            result[i] = heap[0];
+            heap[0] = heap[i];
+            keys[0] = keys[i];
+            siftDown(heap, keys, i);
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the entry (k1, id1) ranks below (k2, id2)
+     */
+    private static boolean worse(long k1, int id1, long k2, int id2) {
+        return k1 != k2 ? k1 < k2 : id1 > id2;
+    }
+
+    private static void siftUp(int[] heap, long[] keys, int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!worse(keys[i], heap[i], keys[parent], heap[parent])) break;
+            swap(heap, keys, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, long[] keys, int size) {
+        int i = 0;
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && worse(keys[left], heap[left], keys[smallest], heap[smallest])) smallest = left;
+            if (right < size && worse(keys[right], heap[right], keys[smallest], heap[smallest])) smallest = right;
+            if (smallest == i) return;
+            swap(heap, keys, i, smallest);
+            i = smallest;
+        }
+    }
+
+    private static void swap(int[] heap, long[] keys, int a, int b) {
+        int id = heap[a];
+        heap[a] = heap[b];
+        heap[b] = id;
+        long k = keys[a];
+        keys[a] = keys[b];
+        keys[b] = k;
+    }
+}
@@ -0,0 +1,248 @@
+package com.napier.devops.snapshot;
+
+import com.napier.devops.db.ConnectionSource;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * An immutable, column-oriented copy of the {@code country}, {@code city} and
+ * {@code countrylanguage} tables.
+
+ * Each table is held as parallel primitive arrays indexed by row number. Repeated strings
+ * (continent, region, district, language) are dictionary encoded, and foreign keys are
+ * resolved to row numbers at load time, so reports can be answered without touching MySQL.
+ * Rows are also pre-sorted by population so "largest first" reports need no sorting.
+ */
+public class WorldSnapshot {
+    // --- country columns ---
+    final String[] countryCode;
+    final String[] countryName;
+    final int[] countryContinent;     // code into continents
+    final int[] countryRegion;        // code into regions
+    final long[] countryPopulation;
+    final int[] countryCapital;       // row into the city columns, or -1
+
+    // --- city columns ---
+    final int[] cityId;
+    final String[] cityName;
+    final int[] cityCountry;          // row into the country columns
+    final int[] cityDistrict;         // code into districts
+    final int[] cityPopulation;
+
+    // --- countrylanguage columns ---
+    final int[] languageCountry;      // row into the country columns
+    final int[] languageName;         // code into languages
+    final short[] languageTenths;     // percentage of speakers, in tenths of a percent
+
+    final StringDictionary continents;
+    final StringDictionary regions;
+    final StringDictionary districts;
+    final StringDictionary languages;
+
+    // --- derived indexes ---
+    final int[] countriesByPopulation;  // country rows, largest population first
+    final int[] citiesByPopulation;     // city rows, largest population first
+    final int[] capitalsByPopulation;   // city rows of capitals, largest population first
+    private final Map<String, Integer> countryByCode = new HashMap<>();
+    private final Map<String, Integer> countryByName = new HashMap<>();
+    private final long loadedAt = System.currentTimeMillis();
+
+    private WorldSnapshot(Builder b) {
+        int countries = b.countries.size();
+        countryCode = new String[countries];
+        countryName = new String[countries];
+        countryContinent = new int[countries];
+        countryRegion = new int[countries];
+        countryPopulation = new long[countries];
+        countryCapital = new int[countries];
+        continents = b.continents;
+        regions = b.regions;
+        districts = b.districts;
+        languages = b.languages;
+
+        for (int i = 0; i < countries; i++) {
+            CountryRow r = b.countries.get(i);
+            countryCode[i] = r.code;
+            countryName[i] = r.name;
+            countryContinent[i] = r.continent;
+            countryRegion[i] = r.region;
+            countryPopulation[i] = r.population;
+            countryByCode.put(r.code, i);
+            countryByCode.putIfAbsent(StringDictionary.fold(r.code), i);
+            countryByName.putIfAbsent(StringDictionary.fold(r.name), i);
+        }
+
+        // Cities whose country is unknown cannot appear in any joined report, so they are dropped
+        List<CityRow> cityRows = new ArrayList<>(b.cities.size());
+        for (CityRow r : b.cities) {
+            if (countryByCode.containsKey(r.countryCode)) cityRows.add(r);
+        }
+        int cities = cityRows.size();
+        cityId = new int[cities];
+        cityName = new String[cities];
+        cityCountry = new int[cities];
+        cityDistrict = new int[cities];
+        cityPopulation = new int[cities];
+        Map<Integer, Integer> cityRowById = new HashMap<>(cities * 2);
+        for (int i = 0; i < cities; i++) {
+            CityRow r = cityRows.get(i);
+            cityId[i] = r.id;
+            cityName[i] = r.name;
+            cityCountry[i] = countryByCode.get(r.countryCode);
+            cityDistrict[i] = r.district;
+            cityPopulation[i] = r.population;
+            cityRowById.put(r.id, i);
+        }
+        for (int i = 0; i < countries; i++) {
+            Integer capitalId = b.countries.get(i).capitalId;
+            Integer row = capitalId == null ? null : cityRowById.get(capitalId);
+            countryCapital[i] = row == null ? -1 : row;
+        }
+
+        List<LanguageRow> languageRows = new ArrayList<>(b.spoken.size());
+        for (LanguageRow r : b.spoken) {
+            if (countryByCode.containsKey(r.countryCode)) languageRows.add(r);
+        }
+        languageCountry = new int[languageRows.size()];
+        languageName = new int[languageRows.size()];
+        languageTenths = new short[languageRows.size()];
+        for (int i = 0; i < languageRows.size(); i++) {
+            LanguageRow r = languageRows.get(i);
+            languageCountry[i] = countryByCode.get(r.countryCode);
+            languageName[i] = r.language;
+            languageTenths[i] = r.tenths;
+        }
+
+        // Equal populations are ordered by code or ID, as the paged SQL reports order them
+        countriesByPopulation = sortDescending(countries, i -> countryPopulation[i],
+                Comparator.comparing(i -> countryCode[i]));
+        citiesByPopulation = sortDescending(cities, i -> cityPopulation[i], Comparator.comparingInt(i -> cityId[i]));
+        capitalsByPopulation = Arrays.stream(citiesByPopulation)
+                .filter(c -> countryCapital[cityCountry[c]] == c)
+                .toArray();
+    }
+
+    private interface RowKey {
+        long of(int row);
+    }
+
+    /**
+     * Returns row numbers 0..n-1 ordered by the given key, largest first, then by {@code ties}.
+     */
+    private static int[] sortDescending(int n, RowKey key, Comparator<Integer> ties) {
+        Comparator<Integer> byKey = (a, c) -> Long.compare(key.of(c), key.of(a));
+        return java.util.stream.IntStream.range(0, n)
+                .boxed()
+                .sorted(byKey.thenComparing(ties))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    /**
+     * Loads a snapshot with one full scan of each table.
+     *
+     * @param source supplies the connection to read from
+     * @return the loaded snapshot
+     * @throws SQLException if any of the scans fail
+     */
+    public static WorldSnapshot load(ConnectionSource source) throws SQLException {
+        Builder b = new Builder();
+        try (Connection conn = source.getConnection();
+             Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT Code, Name, Continent, Region, Population, Capital FROM country")) {
+                while (rs.next()) {
+                    int capital = rs.getInt("Capital");
+                    b.addCountry(rs.getString("Code"), rs.getString("Name"), rs.getString("Continent"),
+                            rs.getString("Region"), rs.getLong("Population"), rs.wasNull() ? null : capital);
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT ID, Name, CountryCode, District, Population FROM city")) {
+                while (rs.next()) {
+                    b.addCity(rs.getInt("ID"), rs.getString("Name"), rs.getString("CountryCode"),
+                            rs.getString("District"), rs.getInt("Population"));
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT CountryCode, Language, Percentage FROM countrylanguage")) {
+                while (rs.next()) {
+                    b.addLanguage(rs.getString("CountryCode"), rs.getString("Language"),
+                            rs.getBigDecimal("Percentage").movePointRight(1).shortValue());
+                }
+            }
+        }
+        return b.build();
+    }
+
+    // --- lookups used by the report engine ---
+
+    /** @return the country row for an ISO code, or -1 */
+    public int countryRowByCode(String code) {
+        Integer row = code == null ? null : countryByCode.getOrDefault(code, countryByCode.get(StringDictionary.fold(code)));
+        return row == null ? -1 : row;
+    }
+
+    /** @return the country row for a country name, or -1 */
+    public int countryRowByName(String name) {
+        Integer row = name == null ? null : countryByName.get(StringDictionary.fold(name));
+        return row == null ? -1 : row;
+    }
+
+    /** @return the number of countries */
+    public int countryCount() { return countryCode.length; }
+
+    /** @return the number of cities */
+    public int cityCount() { return cityId.length; }
+
+    /** @return the number of (country, language) rows */
+    public int languageRowCount() { return languageCountry.length; }
+
+    /** @return when this snapshot was loaded, in epoch milliseconds */
+    public long getLoadedAt() { return loadedAt; }
+
+    /**
+     * Collects rows for a snapshot before freezing them into columns.
+     * Used by {@link #load(ConnectionSource)} and by anything that generates world data in process.
+     */
+    public static class Builder {
+        private final List<CountryRow> countries = new ArrayList<>();
+        private final List<CityRow> cities = new ArrayList<>();
+        private final List<LanguageRow> spoken = new ArrayList<>();
+        private final StringDictionary continents = new StringDictionary();
+        private final StringDictionary regions = new StringDictionary();
+        private final StringDictionary districts = new StringDictionary();
+        private final StringDictionary languages = new StringDictionary();
+
+        public Builder addCountry(String code, String name, String continent, String region,
+                                  long population, Integer capitalId) {
+            countries.add(new CountryRow(code, name, continents.encode(continent),
+                    regions.encode(region), population, capitalId));
+            return this;
+        }
+
+        public Builder addCity(int id, String name, String countryCode, String district, int population) {
+            cities.add(new CityRow(id, name, countryCode, districts.encode(district), population));
+            return this;
+        }
+
+        /**
+         * @param tenths percentage of the country's population speaking the language, in tenths of a percent
+         */
+        public Builder addLanguage(String countryCode, String language, short tenths) {
+            spoken.add(new LanguageRow(countryCode, languages.encode(language), tenths));
+            return this;
+        }
+
+        public WorldSnapshot build() {
+            return new WorldSnapshot(this);
+        }
+    }
+
+    private record CountryRow(String code, String name, int continent, int region, long population, Integer capitalId) {}
+
+    private record CityRow(int id, String name, String countryCode, int district, int population) {}
+
+    private record LanguageRow(String countryCode, int language, short tenths) {}
+}
@@ -0,0 +1,131 @@
+package com.napier.devops.util;
+
+import java.util.Arrays;
+
+/**
+ * A BK-tree: finds every stored string within a given edit distance of a query without
+ * comparing the query against all of them.
+
+ * Each child hangs off its parent under its Levenshtein distance to the parent. Because
+ * edit distance obeys the triangle inequality, a search for matches within {@code t} of the
+ * query only has to descend into children whose edge lies within {@code t} of the query's
+ * distance to the parent; the rest of the tree is skipped. Each string carries an int id,
+ * and strings that are equal share a node.
+
+ * Not thread-safe while strings are being added; once built, any number of threads may search.
+ */
+public final class BkTree {
+
+    /** Receives each match of a search with its distance from the query. */
+    @FunctionalInterface
+    public interface MatchVisitor {
+        void visit(int id, int distance);
+    }
+
+    private static final class Node {
+        final String key;
+        int[] ids;
+        int[] edges = new int[0];
+        Node[] children = new Node[0];
+
+        Node(String key, int id) {
+            this.key = key;
+            this.ids = new int[]{id};
+        }
+    }
+
+    private Node root;
+
+    /**
+     * @param key the string to store
+     * @param id the id reported when the string matches
+     */
+    public void add(String key, int id) {
+        if (root == null) {
+            root = new Node(key, id);
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int d = distance(key, node.key, Integer.MAX_VALUE);
+            if (d == 0) {
+                node.ids = Arrays.copyOf(node.ids, node.ids.length + 1);
+                node.ids[node.ids.length - 1] = id;
+                return;
+            }
+            Node next = null;
+            for (int i = 0; i < node.edges.length; i++) {
+                if (node.edges[i] == d) next = node.children[i];
+            }
+            if (next == null) {
+                node.edges = Arrays.copyOf(node.edges, node.edges.length + 1);
+                node.children = Arrays.copyOf(node.children, node.children.length + 1);
+                node.edges[node.edges.length - 1] = d;
+                node.children[node.children.length - 1] = new Node(key, id);
+                return;
+            }
+            node = next;
+        }
+    }
+
+    /**
+     * Visits every stored string within {@code maxDistance} edits of the query, in no particular order.
+     *
+     * @param query the string to match
+     * @param maxDistance the most insertions, deletions and substitutions allowed
+     * @param visitor called with the id and distance of each match
+     */
+    public void search(String query, int maxDistance, MatchVisitor visitor) {
+        if (root == null) return;
+        // The distance rows run along the query, so one pair serves every node visited
+        int[][] rows = {new int[query.length() + 1], new int[query.length() + 1]};
+        search(root, query, maxDistance, visitor, rows);
+    }
+
+    private static void search(Node node, String query, int t, MatchVisitor visitor, int[][] rows) {
+        // Distances past the widest edge cannot reach any child, so the computation stops there
+        int widest = 0;
+        for (int e : node.edges) widest = Math.max(widest, e);
+        int d = distance(node.key, query, Math.max(t, widest + t), rows[0], rows[1]);
+        if (d <= t) {
+            for (int id : node.ids) visitor.visit(id, d);
+        }
+        for (int i = 0; i < node.edges.length; i++) {
+            if (Math.abs(node.edges[i] - d) <= t) search(node.children[i], query, t, visitor, rows);
+        }
+    }
+
+    /**
+     * Levenshtein distance, giving up once it is certain to exceed {@code bound}.
+     *
+     * @param a one string
+     * @param b the other string
+     * @param bound the largest distance the caller needs to know exactly
+     * @return the distance, or {@code bound + 1} if it is larger than {@code bound}
+     */
+    public static int distance(String a, String b, int bound) {
+        return distance(a, b, bound, new int[b.length() + 1], new int[b.length() + 1]);
+    }
+
+    /** As {@link #distance(String, String, int)}, working in two rows at least {@code b.length() + 1} long. */
+    private static int distance(String a, String b, int bound, int[] prev, int[] cur) {
+        int over = bound == Integer.MAX_VALUE ? bound : bound + 1;
+        if (Math.abs(a.length() - b.length()) > bound) return over;
+        for (int j = 0; j <= b.length(); j++) prev[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            cur[0] = i;
+            int rowMin = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                cur[j] = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                rowMin = Math.min(rowMin, cur[j]);
+            }
+            if (rowMin > bound) return over;
+            int[] swap = prev;
+            prev = cur;
+            cur = swap;
+        }
+        return Math.min(prev[b.length()], over);
+    }
+}
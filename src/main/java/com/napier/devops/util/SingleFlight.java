@@ -0,0 +1,86 @@
+package com.napier.devops.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Collapses concurrent identical calls into one execution.
+ *
+ * The first caller for a key runs the call on its own thread; anyone asking for the same
+ * key while it is running waits for that result instead of starting another execution.
+ * Nothing is cached: once the call finishes the key is forgotten and the next caller runs
+ * it afresh. A failure is rethrown to every caller that was waiting on it.
+ *
+ * @param <K> identifies identical calls; needs equals and hashCode
+ * @param <V> the call's result
+ */
+public class SingleFlight<K, V> {
+    private static final LongAdder SHARED_TOTAL = new LongAdder();
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final UnaryOperator<V> share;
+    private final LongAdder shared = new LongAdder();
+
+    /**
+     * Hands every caller the very same result object.
+     */
+    public SingleFlight() {
+        this(UnaryOperator.identity());
+    }
+
+    /**
+     * @param share makes the copy each caller receives, e.g. {@code ArrayList::new} so that
+     *              callers can modify the list they get back without affecting each other;
+     *              the result itself is never handed out
+     */
+    public SingleFlight(UnaryOperator<V> share) {
+        this.share = share;
+    }
+
+    /**
+     * Runs {@code call}, or waits for the identical call already running.
+     *
+     * @param key identifies the call
+     * @param call produces the result
+     * @return the result
+     */
+    public V run(K key, Supplier<V> call) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            shared.increment();
+            SHARED_TOTAL.increment();
+            try {
+                return share.apply(running.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) throw cause;
+                if (e.getCause() instanceof Error cause) throw cause;
+                throw e;
+            }
+        }
+
+        try {
+            V result = call.get();
+            mine.complete(result);
+            return share.apply(result);
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /** @return how many calls this instance answered with another caller's execution */
+    public long getShared() { return shared.sum(); }
+
+    /** @return how many calls are running right now */
+    public int getInFlight() { return inFlight.size(); }
+
+    /** @return how many calls every instance answered with another caller's execution */
+    public static long totalShared() { return SHARED_TOTAL.sum(); }
+}
@@ -1,5 +1,6 @@
 package com.napier.devops.util;
 
+import java.io.PrintStream;
 import java.util.*;
 
 public class TablePrinter {
@@ -19,8 +20,13 @@ public class TablePrinter {
     }
 
     public void print(int pageSize) {
+        print(pageSize, System.out);
+    }
+
+    // Same as print(pageSize), but to any stream (batch reports render into their own buffer)
+    public void print(int pageSize, PrintStream out) {
         if (rows.isEmpty()) {
-            System.out.println("No results found.");
+            out.println("No results found.");
             return;
         }
 
@@ -32,18 +38,18 @@ public class TablePrinter {
 
         // Print table header
         int[] widths = calculateWidths();
-        printLine(widths);
-        printRow(headers, widths);
-        printLine(widths);
+        printLine(widths, out);
+        printRow(headers, widths, out);
+        printLine(widths, out);
 
         // Print rows for this page
         for (int i = start; i < end; i++) {
-            printRow(rows.get(i), widths);
+            printRow(rows.get(i), widths, out);
         }
-        printLine(widths);
+        printLine(widths, out);
 
         // Pagination controls
-        System.out.println("Page " + (currentPage + 1) + " of " + totalPages);
+        out.println("Page " + (currentPage + 1) + " of " + totalPages);
 
     }
 
@@ -63,15 +69,15 @@ public class TablePrinter {
 
             // Print table header
             int[] widths = calculateWidths();
-            printLine(widths);
-            printRow(headers, widths);
-            printLine(widths);
+            printLine(widths, System.out);
+            printRow(headers, widths, System.out);
+            printLine(widths, System.out);
 
             // Print rows for this page
             for (int i = start; i < end; i++) {
-                printRow(rows.get(i), widths);
+                printRow(rows.get(i), widths, System.out);
             }
-            printLine(widths);
+            printLine(widths, System.out);
 
             // Pagination controls
             System.out.println("Page " + (currentPage + 1) + " of " + totalPages);
@@ -109,22 +115,22 @@ public class TablePrinter {
         return widths;
     }
 
-    private void printLine(int[] widths) {
+    private void printLine(int[] widths, PrintStream out) {
         StringBuilder sb = new StringBuilder();
         for (int w : widths) {
             sb.append("+").append("-".repeat(w + 2));
         }
         sb.append("+");
-        System.out.println(sb);
+        out.println(sb);
     }
 
-    private void printRow(List<String> row, int[] widths) {
+    private void printRow(List<String> row, int[] widths, PrintStream out) {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < row.size(); i++) {
             sb.append("| ").append(pad(row.get(i), widths[i])).append(" ");
         }
         sb.append("|");
-        System.out.println(sb);
+        out.println(sb);
     }
 
     private String pad(String text, int width) {
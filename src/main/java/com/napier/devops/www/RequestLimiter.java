@@ -0,0 +1,74 @@
+package com.napier.devops.www;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/// Caps how many requests run against the database at once.
+///
+/// With virtual threads the web tier no longer runs out of threads, so without a cap every
+/// request would pile onto the connection pool and time out there. Requests over the cap
+/// wait their turn here, in arrival order, for up to the queue timeout and are then turned
+/// away, so callers get a quick 503 instead of an empty report.
+public class RequestLimiter {
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final long queueTimeoutMillis;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    /// @param maxConcurrent requests allowed to run at once
+    /// @param queueTimeoutMillis how long a request may wait for its turn
+    public RequestLimiter(int maxConcurrent, long queueTimeoutMillis) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.permits = new Semaphore(this.maxConcurrent, true);
+        this.queueTimeoutMillis = queueTimeoutMillis;
+    }
+
+    /// Sizes the limiter from WEB_MAX_CONCURRENT (default: the connection pool size)
+    /// and WEB_QUEUE_TIMEOUT_MS (default 10 seconds).
+    public static RequestLimiter fromEnv(int poolSize) {
+        return new RequestLimiter((int) longEnv("WEB_MAX_CONCURRENT", poolSize),
+                longEnv("WEB_QUEUE_TIMEOUT_MS", 10_000));
+    }
+
+    private static long longEnv(String name, long fallback) {
+        try {
+            return Long.parseLong(System.getenv().getOrDefault(name, String.valueOf(fallback)));
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /// Waits for a free slot. Every successful call must be paired with {@link #release()}.
+    /// @return false if the queue timeout passed first
+    public boolean acquire() {
+        waiting.incrementAndGet();
+        try {
+            if (permits.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS)) return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            waiting.decrementAndGet();
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /// Frees the slot taken by {@link #acquire()}.
+    public void release() {
+        permits.release();
+    }
+
+    public int getMaxConcurrent() { return maxConcurrent; }
+
+    /// @return requests currently holding a slot
+    public int getActive() { return maxConcurrent - permits.availablePermits(); }
+
+    /// @return requests currently queued for a slot
+    public int getWaiting() { return waiting.get(); }
+
+    /// @return requests turned away since startup
+    public long getRejected() { return rejected.sum(); }
+}
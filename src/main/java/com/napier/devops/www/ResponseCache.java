@@ -0,0 +1,408 @@
+package com.napier.devops.www;
+
+import com.napier.devops.db.DataVersion;
+import com.napier.devops.metrics.Metrics;
+import spark.Request;
+import spark.Response;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/// Caches serialised JSON responses for the report and lookup routes.
+///
+/// Entries are keyed by route plus the normalised query parameters and tagged with the
+/// data version they were produced under, which also forms the ETag. A request whose
+/// If-None-Match matches gets a 304 with no body; otherwise a cached body is written
+/// straight out, and only a miss reaches the DAOs. When the data version changes every
+/// entry is dropped. Least recently used entries are evicted once the byte budget is spent.
+///
+/// Bodies are gzip or deflate compressed when the client's Accept-Encoding allows it. Each
+/// entry keeps the compressed variants next to the plain body, so a body is compressed at
+/// most once per encoding per data version, and the variants count against the same budget.
+public class ResponseCache {
+
+    /// A content coding the cache can produce, in order of preference.
+    public enum Encoding {
+        GZIP("gzip", "-gz"),
+        DEFLATE("deflate", "-df"),
+        IDENTITY("identity", "");
+
+        private final String token;
+        private final String etagSuffix;
+
+        Encoding(String token, String etagSuffix) {
+            this.token = token;
+            this.etagSuffix = etagSuffix;
+        }
+
+        public String getToken() { return token; }
+
+        /// Wraps a stream so that whatever is written to it comes out in this coding.
+        OutputStream wrap(OutputStream out) throws IOException {
+            switch (this) {
+                case GZIP: return new GZIPOutputStream(out, 8192);
+                case DEFLATE: return new DeflaterOutputStream(out);
+                default: return out;
+            }
+        }
+
+        /// Picks the coding for an Accept-Encoding header: the one with the highest q-value,
+        /// gzip winning ties, and identity when the header is missing or allows neither.
+        ///
+        /// @param acceptEncoding the request header, may be null
+        public static Encoding negotiate(String acceptEncoding) {
+            if (acceptEncoding == null || acceptEncoding.isBlank()) return IDENTITY;
+            double gzip = -1;
+            double deflate = -1;
+            double any = -1;
+            for (String part : acceptEncoding.split(",")) {
+                String[] fields = part.split(";");
+                String coding = fields[0].trim().toLowerCase(Locale.ROOT);
+                double q = 1;
+                for (int i = 1; i < fields.length; i++) {
+                    String param = fields[i].trim();
+                    if (param.startsWith("q=") || param.startsWith("Q=")) {
+                        try {
+                            q = Double.parseDouble(param.substring(2).trim());
+                        } catch (NumberFormatException e) {
+                            q = 0;
+                        }
+                    }
+                }
+                switch (coding) {
+                    case "gzip": case "x-gzip": gzip = Math.max(gzip, q); break;
+                    case "deflate": deflate = Math.max(deflate, q); break;
+                    case "*": any = q; break;
+                    default: break;
+                }
+            }
+            /// A wildcard only speaks for the codings the header does not name
+            if (gzip < 0) gzip = any;
+            if (deflate < 0) deflate = any;
+            if (gzip > 0 && gzip >= deflate) return GZIP;
+            if (deflate > 0) return DEFLATE;
+            return IDENTITY;
+        }
+    }
+
+    /// Writes a response body to the given stream.
+    @FunctionalInterface
+    public interface BodyWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private final DataVersion dataVersion;
+    private final long maxBytes;
+    private final int maxEntryBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedBytes;
+    private long entriesVersion;
+    private long hits;
+    private long misses;
+    private long compressions;
+
+    /// @param dataVersion tells the cache when the underlying data has changed
+    /// @param maxBytes total size of all cached bodies
+    /// @param maxEntryBytes bodies larger than this are streamed but not kept
+    public ResponseCache(DataVersion dataVersion, long maxBytes, int maxEntryBytes) {
+        this.dataVersion = dataVersion;
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+    }
+
+    /// Sizes the cache from RESPONSE_CACHE_MAX_BYTES (default 64 MB) and
+    /// RESPONSE_CACHE_MAX_ENTRY_BYTES (default 8 MB).
+    public static ResponseCache fromEnv(DataVersion dataVersion) {
+        return new ResponseCache(dataVersion,
+                longEnv("RESPONSE_CACHE_MAX_BYTES", 64L << 20),
+                (int) longEnv("RESPONSE_CACHE_MAX_ENTRY_BYTES", 8L << 20));
+    }
+
+    private static long longEnv(String name, long fallback) {
+        try {
+            return Long.parseLong(System.getenv().getOrDefault(name, String.valueOf(fallback)));
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /// Builds the cache key for a request: the route path plus scope, level, name, district,
+    /// country, limit, page size and cursor, trimmed, with the scope and level (which the
+    /// routes match ignoring case) lower-cased.
+    public static String keyOf(Request req) {
+        StringBuilder key = new StringBuilder(req.pathInfo());
+        append(key, "scope", trim(req.queryParams("scope"), true));
+        append(key, "level", trim(req.queryParams("level"), true));
+        append(key, "name", trim(req.queryParams("name"), false));
+        append(key, "district", trim(req.queryParams("district"), false));
+        append(key, "country", trim(req.queryParams("country"), false));
+        append(key, "pageSize", trim(req.queryParams("pageSize"), false));
+        append(key, "cursor", trim(req.queryParams("cursor"), false));
+        /// Parsed exactly as the routes parse it, so requests share an entry only if they get the same rows
+        int limit = parseLimit(req.queryParams("limit"));
+        if (limit >= 0) append(key, "limit", String.valueOf(limit));
+        return key.toString();
+    }
+
+    /// Parses a limit query parameter, ignoring surrounding whitespace.
+    /// Returns -1 ("no limit") if it is missing, malformed or negative.
+    public static int parseLimit(String limitParam) {
+        if (limitParam == null) return -1;
+        try {
+            return Math.max(Integer.parseInt(limitParam.trim()), -1);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String trim(String value, boolean lowerCase) {
+        if (value == null) return null;
+        return lowerCase ? value.trim().toLowerCase(Locale.ROOT) : value.trim();
+    }
+
+    private static void append(StringBuilder key, String param, String value) {
+        if (value != null && !value.isEmpty()) {
+            key.append(key.indexOf("?") < 0 ? '?' : '&').append(param).append('=').append(value);
+        }
+    }
+
+    /// Answers a request from the cache when it can, otherwise runs the writer and keeps its output.
+    ///
+    /// @param req the incoming request
+    /// @param res the response to write to
+    /// @param writer produces the JSON body on a cache miss
+    /// @return an empty string, since the body has already been written
+    public String serve(Request req, Response res, BodyWriter writer) throws IOException {
+        String key = keyOf(req);
+        long version = currentVersion();
+        Encoding encoding = Encoding.negotiate(req.headers("Accept-Encoding"));
+        /// Each coding is a different representation, so it gets its own strong ETag
+        String etag = "\"" + Long.toHexString(version) + "-" + Integer.toHexString(key.hashCode())
+                + encoding.etagSuffix + "\"";
+
+        res.type("application/json");
+        res.header("ETag", etag);
+        res.header("Vary", "Accept-Encoding");
+        /// Clients may keep the response but must check the ETag before reusing it
+        res.header("Cache-Control", "no-cache");
+
+        /// Only a body this cache still holds can be vouched for; one that was never kept
+        /// (too large, or built from a failed DAO call) is produced again
+        Entry cached = get(key, version);
+        if (cached != null && matches(req.headers("If-None-Match"), etag)) {
+            res.status(304);
+            return "";
+        }
+
+        if (encoding != Encoding.IDENTITY) {
+            res.header("Content-Encoding", encoding.token);
+        }
+        OutputStream out = res.raw().getOutputStream();
+        if (cached != null) {
+            out.write(variant(key, version, cached, encoding));
+            /// Commits the response, so Spark does not gzip the already encoded body a second time
+            out.flush();
+            return "";
+        }
+
+        CapturingStream wire = new CapturingStream(out, maxEntryBytes);
+        CapturingStream plain = wire;
+        OutputStream encoded = null;
+        if (encoding != Encoding.IDENTITY) {
+            encoded = encoding.wrap(wire);
+            plain = new CapturingStream(encoded, maxEntryBytes);
+            count();
+        }
+        long failures = Metrics.failures();
+        boolean failed;
+        try {
+            writer.writeTo(plain);
+            if (encoded != null) {
+                ((DeflaterOutputStream) encoded).finish();
+            }
+            /// A DAO that hit a database error still answers, with some rows or none. That body is
+            /// not kept, and unless a large body already committed the headers, it loses its ETag
+            /// before the flush commits them, so the client cannot revalidate it into a 304 either
+            failed = Metrics.failures() != failures;
+            if (failed && !res.raw().isCommitted()) {
+                res.raw().setHeader("ETag", null);
+                res.raw().setHeader("Cache-Control", "no-store");
+            }
+            wire.flush();
+        } catch (IOException | RuntimeException e) {
+            /// Nothing reached the client yet, so the error page goes out unencoded
+            if (!res.raw().isCommitted()) res.raw().setHeader("Content-Encoding", null);
+            throw e;
+        }
+        if (failed) return "";
+        if (!plain.overflowed()) {
+            Entry entry = new Entry(plain.captured());
+            if (encoded != null && !wire.overflowed()) {
+                entry.variants.put(encoding, wire.captured());
+            }
+            put(key, version, entry);
+        }
+        return "";
+    }
+
+    /// Returns the body in the given coding, compressing and keeping it on first use.
+    private byte[] variant(String key, long version, Entry entry, Encoding encoding) throws IOException {
+        if (encoding == Encoding.IDENTITY) return entry.body;
+        byte[] bytes;
+        synchronized (this) {
+            bytes = entry.variants.get(encoding);
+        }
+        if (bytes != null) return bytes;
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(64, entry.body.length / 4));
+        try (OutputStream compressor = encoding.wrap(buffer)) {
+            compressor.write(entry.body);
+        }
+        count();
+        bytes = buffer.toByteArray();
+        synchronized (this) {
+            /// Only keep it if the entry is still the live one for this key and version
+            if (version == entriesVersion && entries.get(key) == entry && !entry.variants.containsKey(encoding)) {
+                entry.variants.put(encoding, bytes);
+                cachedBytes += bytes.length;
+                evict();
+            }
+        }
+        return bytes;
+    }
+
+    private synchronized void count() {
+        compressions++;
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals(etag) || tag.equals("*")) return true;
+        }
+        return false;
+    }
+
+    /// Reads the data version, dropping every entry if it has moved on.
+    private long currentVersion() {
+        long version = dataVersion.current();
+        synchronized (this) {
+            if (version != entriesVersion) {
+                entries.clear();
+                cachedBytes = 0;
+                entriesVersion = version;
+            }
+        }
+        return version;
+    }
+
+    private synchronized Entry get(String key, long version) {
+        Entry entry = version == entriesVersion ? entries.get(key) : null;
+        if (entry != null) hits++;
+        else misses++;
+        return entry;
+    }
+
+    private synchronized void put(String key, long version, Entry entry) {
+        if (version != entriesVersion || entry.size() > maxBytes) return;
+        Entry previous = entries.put(key, entry);
+        if (previous != null) cachedBytes -= previous.size();
+        cachedBytes += entry.size();
+        evict();
+    }
+
+    /// Drops least recently used entries until the cache fits its budget again.
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (cachedBytes > maxBytes && eldest.hasNext()) {
+            cachedBytes -= eldest.next().getValue().size();
+            eldest.remove();
+        }
+    }
+
+    /// Drops every cached response.
+    public synchronized void clear() {
+        entries.clear();
+        cachedBytes = 0;
+    }
+
+    public synchronized int size() { return entries.size(); }
+
+    public synchronized long getCachedBytes() { return cachedBytes; }
+
+    public synchronized long getHits() { return hits; }
+
+    public synchronized long getMisses() { return misses; }
+
+    /// @return how many bodies have been gzip or deflate compressed
+    public synchronized long getCompressions() { return compressions; }
+
+    /// A cached body plus whichever compressed copies of it have been asked for.
+    private static final class Entry {
+        private final byte[] body;
+        private final EnumMap<Encoding, byte[]> variants = new EnumMap<>(Encoding.class);
+
+        Entry(byte[] body) {
+            this.body = body;
+        }
+
+        int size() {
+            int size = body.length;
+            for (byte[] variant : variants.values()) size += variant.length;
+            return size;
+        }
+    }
+
+    /// Passes bytes through to the client while keeping a copy, until the copy grows past the limit.
+    private static final class CapturingStream extends OutputStream {
+        private final OutputStream out;
+        private final int limit;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        CapturingStream(OutputStream out, int limit) {
+            this.out = out;
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (copy != null) {
+                copy.write(b);
+                checkLimit();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copy != null) {
+                copy.write(b, off, len);
+                checkLimit();
+            }
+        }
+
+        private void checkLimit() {
+            if (copy.size() > limit) copy = null;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        boolean overflowed() { return copy == null; }
+
+        byte[] captured() { return copy.toByteArray(); }
+    }
+}
@@ -0,0 +1,53 @@
+package com.napier.devops.www;
+
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Logger;
+
+/// Runs Spark's Jetty server on virtual threads when the JVM has them (Java 21 and later).
+///
+/// A request that waits on MySQL then parks its virtual thread instead of holding a platform
+/// thread, so thousands of slow report requests can be in flight on a handful of carrier
+/// threads. The build still targets Java 17, so the virtual thread API is looked up
+/// reflectively; on an older JVM the server keeps Jetty's usual platform thread pool.
+final class VirtualThreads {
+    private static final Logger logger = Logger.getLogger(VirtualThreads.class.getName());
+
+    private VirtualThreads() {
+    }
+
+    /// Replaces Spark's Jetty thread pool with one whose threads are virtual.
+    /// Must run before the first route is registered, as that is when Spark starts Jetty.
+    /// @param maxThreads how many requests Jetty may handle at once
+    /// @return false if this JVM has no virtual threads and nothing was changed
+    static boolean installJettyPool(int maxThreads) {
+        ThreadFactory factory = factory("web-");
+        if (factory == null) {
+            logger.warning("Virtual threads need Java 21 or later; keeping platform request threads");
+            return false;
+        }
+        // Parked virtual threads cost next to nothing, so keep none in reserve and let idle ones go
+        QueuedThreadPool pool = new QueuedThreadPool(maxThreads, 8, 60_000, 0, null, null, factory);
+        pool.setName("web-virtual");
+        EmbeddedServers.add(EmbeddedServers.Identifiers.JETTY, new EmbeddedJettyFactory().withThreadPool(pool));
+        return true;
+    }
+
+    /// Builds a factory for named virtual threads, i.e. {@code Thread.ofVirtual().name(prefix, 0).factory()}.
+    /// @return the factory, or null on a JVM without virtual threads
+    static ThreadFactory factory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            Method factory = builderType.getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -3,16 +3,41 @@ package com.napier.devops.www;
 import static spark.Spark.*;
 
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 import com.napier.devops.dao.*;
+import com.napier.devops.db.ConnectionPool;
+import com.napier.devops.db.DataVersion;
 import com.napier.devops.db.DatabaseManager;
+import com.napier.devops.db.DeferredConnectionSource;
+import com.napier.devops.db.PoolConfig;
+import com.napier.devops.db.SlowQueryLog;
+import com.napier.devops.metrics.Metrics;
 import com.napier.devops.models.*;
-
-import java.sql.Connection;
+import com.napier.devops.snapshot.MappedSnapshot;
+import com.napier.devops.snapshot.SnapshotFile;
+import com.napier.devops.snapshot.SnapshotReports;
+import com.napier.devops.util.SingleFlight;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
 
 /// This WebServer class is responsible for defining and exposing Restful API endpoints
 /// for the World Reporting Application.
@@ -22,6 +47,8 @@ import java.util.Map;
 /// Capital cities, Populations, and Languages, all retrieved from a relational database.
 
 public class WebServer {
+    private static final Logger logger = Logger.getLogger(WebServer.class.getName());
+
    /// DAO (Data Access Object) instances for database interaction.
     private final CountryDAO countryDAO;
     private final CityDAO cityDAO;
@@ -30,19 +57,162 @@ public class WebServer {
     private final LanguageDAO languageDAO;
     private final LookupDAO lookupDAO;
     private final Gson gson = new Gson();
-
-    /// Constructor initializes the database connection and DAO objects.
-    /// This ensures that all endpoints can have access to the data consistently via the DAO layer.
+    /// Serialised responses, reused until the data version changes.
+    private final ResponseCache cache;
+    /// Caps requests in flight when running on virtual threads; null on platform threads,
+    /// where Jetty's bounded thread pool already does that job.
+    private final RequestLimiter limiter;
+    /// Where the DAOs get connections; fails fast until the database is up. Null in tests.
+    private final DeferredConnectionSource source;
+    /// Where the world snapshot is saved between runs (SNAPSHOT_FILE), or null.
+    private final Path snapshotFile;
+    /// With SNAPSHOT_MAPPED=true the city report is read from the mapped snapshot file, or null.
+    private volatile MappedSnapshot mapped;
+    /// True while the report DAOs answer from an in-memory snapshot.
+    private volatile boolean servingSnapshot;
+    /// Scope values reported as metric labels; anything else is counted as "other".
+    private static final Set<String> SCOPES = Set.of("global", "continent", "region", "country", "district");
+    /// Rows per page when a paged report does not ask for a size, and the most it may ask for.
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    /// Suggestions returned by /lookups/search when the client does not ask for a number.
+    private static final int DEFAULT_SEARCH_RESULTS = 10;
+
+    /// Constructor initializes the connection pool and DAO objects.
+    /// Every DAO borrows its own pooled connection per query, so concurrent requests
+    /// run in parallel instead of queuing on a single MySQL connection.
 
 // constructor uses DatabaseManager
     public WebServer() throws SQLException {
-        Connection conn = DatabaseManager.getConnection();
-        this.countryDAO = new CountryDAO(conn);
-        this.cityDAO = new CityDAO(conn);
-        this.capitalDAO = new CapitalCityDAO(conn);
-        this.populationDAO = new PopulationDAO(conn);
-        this.languageDAO = new LanguageDAO(conn);
-        this.lookupDAO = new LookupDAO(conn);
+        this.source = new DeferredConnectionSource();
+        this.countryDAO = new CountryDAO(source);
+        this.cityDAO = new CityDAO(source);
+        this.capitalDAO = new CapitalCityDAO(source);
+        this.populationDAO = new PopulationDAO(source);
+        this.languageDAO = new LanguageDAO(source);
+        this.lookupDAO = new LookupDAO(source);
+        /// One data version drives the response cache, the shared lookup index, the population
+        /// cube and the language statistics, so a fresh ETag never labels stale figures.
+        DataVersion dataVersion = DataVersion.fromEnv(source);
+        this.cache = ResponseCache.fromEnv(dataVersion);
+        LookupCache.shared().watch(dataVersion);
+        populationDAO.watch(dataVersion);
+        languageDAO.watch(dataVersion);
+        this.snapshotFile = System.getenv("SNAPSHOT_FILE") == null ? null : Path.of(System.getenv("SNAPSHOT_FILE"));
+
+        /// WEB_VIRTUAL_THREADS=true (Java 21+) handles each request on a virtual thread,
+        /// up to WEB_MAX_THREADS at once, with a limiter in front of the connection pool.
+        if ("true".equals(System.getenv("WEB_VIRTUAL_THREADS"))
+                && VirtualThreads.installJettyPool(intEnv("WEB_MAX_THREADS", 10_000))) {
+            this.limiter = RequestLimiter.fromEnv(PoolConfig.fromEnv().getMaxSize());
+        } else {
+            this.limiter = null;
+        }
+        registerGauges();
+        SlowQueryLog.get().setExplainSource(source);
+
+        /// POPULATION_REFRESH_SECONDS rebuilds the population rollup periodically;
+        /// without it the rollup is built on first use and kept until refreshed.
+        String refresh = System.getenv("POPULATION_REFRESH_SECONDS");
+        if (refresh != null) {
+            try {
+                populationDAO.scheduleCubeRefresh(Long.parseLong(refresh.trim()));
+            } catch (NumberFormatException e) {
+                logger.warning("Ignoring invalid POPULATION_REFRESH_SECONDS: " + refresh);
+            }
+        }
+
+        /// With SNAPSHOT_FILE set, the snapshot saved by the last run answers the report
+        /// endpoints straight away while MySQL is still coming up in the background.
+        /// SNAPSHOT_MAPPED=true reads the city report from the file in place instead,
+        /// for datasets too large to copy onto the heap.
+        SnapshotReports saved = null;
+        if (mappedMode()) {
+            mapped = openMappedSnapshot();
+        } else {
+            saved = readSnapshotFile();
+        }
+        if (saved == null && mapped == null) {
+            connect();
+            return;
+        }
+        if (saved != null) useSnapshot(saved);
+        Thread connector = new Thread(() -> {
+            try {
+                connect();
+            } catch (SQLException e) {
+                logger.warning("Database unavailable, still serving the saved snapshot: " + e.getMessage());
+            }
+        }, "db-connect");
+        connector.setDaemon(true);
+        connector.start();
+    }
+
+    /// Waits for the connection pool, then hands it to the DAOs and preloads the lookup index. With SNAPSHOT_MODE=true the
+    /// world tables are loaded into memory and the report endpoints are answered without going
+    /// to MySQL; otherwise they query it directly. Either way, with SNAPSHOT_FILE set a fresh
+    /// snapshot is loaded and saved for the next start; a mapped file is left as it is, since
+    /// it is usually produced offline and may be far larger than the database.
+    private void connect() throws SQLException {
+        ConnectionPool pool = DatabaseManager.getPool();
+        source.complete(pool);
+        registerPoolGauges(pool);
+        /// Preload the lookup lists so the first dropdown and type-ahead don't wait for them.
+        lookupDAO.refreshIndex();
+
+        boolean snapshotMode = "true".equals(System.getenv("SNAPSHOT_MODE"));
+        boolean save = snapshotFile != null && !mappedMode();
+        SnapshotReports fresh = snapshotMode || save ? SnapshotReports.load(pool) : null;
+        if (fresh != null && save) {
+            try {
+                SnapshotFile.write(fresh.getSnapshot(), snapshotFile);
+            } catch (IOException e) {
+                logger.warning("Could not save snapshot to " + snapshotFile + ": " + e.getMessage());
+            }
+        }
+        useSnapshot(snapshotMode ? fresh : null);
+    }
+
+    private boolean mappedMode() {
+        return snapshotFile != null && "true".equals(System.getenv("SNAPSHOT_MAPPED"));
+    }
+
+    /// Maps the snapshot file for the city report, or returns null if there is none or it cannot be used.
+    private MappedSnapshot openMappedSnapshot() {
+        if (!Files.isReadable(snapshotFile)) return null;
+        try {
+            MappedSnapshot file = MappedSnapshot.open(snapshotFile);
+            logger.info("Serving the city report from " + snapshotFile + " (" + file.cityCount() + " cities, mapped)");
+            return file;
+        } catch (IOException e) {
+            logger.warning("Ignoring snapshot file " + snapshotFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /// Reads the snapshot saved by a previous run, or returns null if there is none or it cannot be used.
+    private SnapshotReports readSnapshotFile() {
+        if (snapshotFile == null || !Files.isReadable(snapshotFile)) return null;
+        try {
+            long started = System.nanoTime();
+            SnapshotReports saved = new SnapshotReports(SnapshotFile.read(snapshotFile));
+            logger.info("Serving reports from " + snapshotFile + ", read in "
+                    + (System.nanoTime() - started) / 1_000_000 + " ms");
+            return saved;
+        } catch (IOException e) {
+            logger.warning("Ignoring snapshot file " + snapshotFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /// Points every report DAO at the given in-memory snapshot (or back at MySQL when null).
+    public void useSnapshot(SnapshotReports snapshot) {
+        servingSnapshot = snapshot != null;
+        countryDAO.setSnapshot(snapshot);
+        cityDAO.setSnapshot(snapshot);
+        capitalDAO.setSnapshot(snapshot);
+        populationDAO.setSnapshot(snapshot);
+        languageDAO.setSnapshot(snapshot);
     }
 
     // constructor for testing
@@ -55,6 +225,41 @@ public class WebServer {
         this.populationDAO = populationDAO;
         this.languageDAO = languageDAO;
         this.lookupDAO = lookupDAO;
+        this.cache = ResponseCache.fromEnv(new DataVersion(null, 0));
+        this.limiter = null;
+        this.source = null;
+        this.snapshotFile = null;
+        registerGauges();
+    }
+
+    /// Publishes cache and limiter figures alongside the request metrics.
+    /// They are read fresh on every scrape of /metrics.
+    private void registerGauges() {
+        Metrics.counter("response_cache_hits_total", "Responses served from the response cache", cache::getHits);
+        Metrics.counter("response_cache_misses_total", "Responses that had to be produced", cache::getMisses);
+        Metrics.gauge("response_cache_bytes", "Bytes held by the response cache", cache::getCachedBytes);
+        Metrics.counter("response_cache_compressions_total", "Response bodies gzip or deflate compressed",
+                cache::getCompressions);
+        Metrics.counter("dao_coalesced_calls_total", "DAO queries answered by an identical query already running",
+                SingleFlight::totalShared);
+        if (limiter != null) {
+            Metrics.gauge("web_limiter_active_requests", "Requests holding a limiter slot", limiter::getActive);
+            Metrics.gauge("web_limiter_waiting_requests", "Requests queued for a limiter slot", limiter::getWaiting);
+            Metrics.counter("web_limiter_rejections_total", "Requests turned away after queueing too long",
+                    limiter::getRejected);
+        }
+    }
+
+    /// Publishes connection pool and statement cache figures once the pool exists.
+    private void registerPoolGauges(ConnectionPool pool) {
+        Metrics.gauge("db_pool_active_connections", "Connections currently lent out", pool::getActiveCount);
+        Metrics.gauge("db_pool_idle_connections", "Open connections waiting in the pool", pool::getIdleCount);
+        Metrics.counter("db_statement_cache_hits_total", "Prepares answered from the statement cache",
+                () -> pool.getStatementStats().getHits());
+        Metrics.counter("db_statement_cache_misses_total", "Prepares sent to the driver",
+                () -> pool.getStatementStats().getMisses());
+        Metrics.counter("db_statement_cache_evictions_total", "Cached statements closed to make room",
+                () -> pool.getStatementStats().getEvictions());
     }
 
     /// Initializes the Spark web server, sets up routing, and defines all REST endpoints.
@@ -71,66 +276,84 @@ public class WebServer {
         // Root
         get("/", (req, res) -> "World Reporting App is running on port 8081");
 
+        /// Prometheus scrape endpoint: per-route and per-DAO-method latency histograms,
+        /// request, error and row counts, plus pool and cache figures.
+        get("/metrics", (req, res) -> {
+            res.type("text/plain; version=0.0.4; charset=utf-8");
+            return Metrics.scrape();
+        });
+
+        /// Statements that went over SLOW_QUERY_MS, newest first, each with the request that ran it.
+        get("/debug/slow-queries", (req, res) -> {
+            res.type("application/json");
+            return gson.toJson(SlowQueryLog.get().samples());
+        });
+
+        /// Runs EXPLAIN FORMAT=JSON for one sample and returns it with the plan attached.
+        get("/debug/slow-queries/:id/explain", (req, res) -> {
+            res.type("application/json");
+            long id;
+            try {
+                id = Long.parseLong(req.params(":id"));
+            } catch (NumberFormatException e) {
+                res.status(400);
+                return gson.toJson(Collections.singletonMap("error", "Invalid sample id"));
+            }
+            try {
+                SlowQueryLog.Entry entry = SlowQueryLog.get().explain(id);
+                if (entry == null) {
+                    res.status(404);
+                    return gson.toJson(Collections.singletonMap("error", "No such sample"));
+                }
+                return gson.toJson(entry);
+            } catch (SQLException | IllegalStateException e) {
+                res.status(500);
+                return gson.toJson(Collections.singletonMap("error", e.getMessage()));
+            }
+        });
+
 
         /// -------------------------------
         /// COUNTRY REPORT ENDPOINTS
         /// -------------------------------
 
         // --- Countries ---
-        get("/reports/countries", (req, res) -> {
-            res.type("application/json");
-
+        timedGet("/reports/countries", (req, res) -> {
             /// Reads query parameters for filtering.
             String scope = req.queryParams("scope");   // global, continent, region
-            String name  = req.queryParams("name");    // e.g. "Asia"
-            int limit    = parseLimit(req.queryParams("limit"));
-
-            List<Country> countries;
-
-            /// Determines which DAO method to call based on scope and limit.
+            String name  = resolveName(scope, blankToNull(req.queryParams("name")), res);    // e.g. "Asia"
+            int limit    = ResponseCache.parseLimit(req.queryParams("limit"));
 
+            /// Without a name, continent and region scopes list every country grouped by that level.
+            Scope level;
             if ("continent".equalsIgnoreCase(scope)) {
-                if(limit < 0) {
-                    if ( name == null || name.isEmpty() ) {
-                        countries = countryDAO.getCountriesInContinent();
-                    } else {
-                        countries = countryDAO.getCountriesInContinent(name);
-                    }
-                }
-                else {
-                    if ( name == null || name.isEmpty() ) {
-                        countries = countryDAO.getCountriesInContinent(limit);
-                    } else {
-                        countries = countryDAO.getCountriesInContinent(name, limit);
-                    }
-                }
+                level = Scope.CONTINENT;
             } else if ("region".equalsIgnoreCase(scope)) {
-                if(limit < 0) {
-                    if ( name == null || name.isEmpty() ) {
-                        countries = countryDAO.getCountriesInRegion();
-                    } else {
-                        countries = countryDAO.getCountriesInRegion(name);
-                    }
-                }
-                else {
-                    if ( name == null || name.isEmpty() ) {
-                        countries = countryDAO.getCountriesInRegion(limit);
-                    } else {
-                        countries = countryDAO.getCountriesInRegion(name, limit);
-                    }
-                }
+                level = Scope.REGION;
             } else {
                 /// Default: return all countries
-                if (limit < 0) {
-                    countries = countryDAO.getCountriesByPopulation();
-                }
-                else {
-                    countries = countryDAO.getCountriesByPopulation(limit);
-                }
+                level = Scope.WORLD;
+            }
+
+            /// With pageSize or cursor, one page is returned as {"data": [...], "next": cursor}.
+            if (isPaged(req)) {
+                if (level != Scope.WORLD && name == null) {
+                    res.status(400);
+                    return gson.toJson(Collections.singletonMap("error", "Paging needs a name for this scope"));
+                }
+                PageCursor after;
+                try {
+                    after = parseCursor(req.queryParams("cursor"));
+                } catch (IllegalArgumentException e) {
+                    res.status(400);
+                    return gson.toJson(Collections.singletonMap("error", e.getMessage()));
+                }
+                int size = parsePageSize(req.queryParams("pageSize"));
+                return cache.serve(req, res, out -> writeJson(out, countryDAO.getCountriesPage(level, name, size, after)));
             }
 
-            /// Convert results to JSON
-            return gson.toJson(countries);
+            /// Rows are written to the response as they are read.
+            return cache.serve(req, res, out -> writeJsonArray(out, sink -> countryDAO.forEachCountry(level, name, limit, sink)));
         });
 
 
@@ -139,74 +362,59 @@ public class WebServer {
         /// CITY REPORT ENDPOINTS
         /// -------------------------------
 
-        get("/reports/cities", (req, res) -> {
-            res.type("application/json");
+        timedGet("/reports/cities", (req, res) -> {
             String scope = req.queryParams("scope");   // global, continent, region, country, district
-            String name  = req.queryParams("name");
-            String district = req.queryParams("district");
-            int limit = parseLimit(req.queryParams("limit"));
-
-            List<City> cities;
+            String name  = blankToNull(req.queryParams("name"));
+            String district = blankToNull(req.queryParams("district"));
+            int limit = ResponseCache.parseLimit(req.queryParams("limit"));
 
-            /// Handles each scope type separately.
+            /// Maps each scope type onto the level the DAO filters by.
+            Scope level;
+            String filter = name;
             if ("continent".equalsIgnoreCase(scope)) {
-                if(limit < 0) {
-                    if (name == null || name.isEmpty() ) {
-                        cities = cityDAO.getCitiesByContinent();
-                    }
-                    else {
-                        cities = cityDAO.getCitiesInContinent(name);
-                    }
-                }
-                else {
-                    if (name == null || name.isEmpty() ) {
-                        cities = cityDAO.getCitiesByContinent(limit);
-                    }
-                    else {
-                        cities = cityDAO.getCitiesInContinent(name, limit);
-                    }
-                }
+                /// Without a name every city is listed, grouped by continent.
+                level = Scope.CONTINENT;
             } else if ("country".equalsIgnoreCase(scope)) {
-                if(limit < 0) {
-                    if( district == null || district.equals("") ) {
-                        cities = cityDAO.getCitiesInCountryByName(name);
-                    }
-                    else {
-                        cities = cityDAO.getCitiesInDistrict(district);
-                    }
-                }
-                else {
-                    if( district == null || district.equals("") ) {
-                        cities = cityDAO.getCitiesInCountryByName(name, limit);
-                    }
-                    else {
-                        cities = cityDAO.getCitiesInDistrict(district, limit);
-                    }
-                }
+                /// A district narrows a country report down to that district.
+                level = district == null ? Scope.COUNTRY : Scope.DISTRICT;
+                filter = district == null ? name : district;
             } else if ("region".equalsIgnoreCase(scope)) {
-                if(limit < 0) {
-                    cities = cityDAO.getCitiesInRegion(name);
-                }
-                else {
-                    cities = cityDAO.getCitiesInRegion(name, limit);
-                }
+                level = Scope.REGION;
             } else if ("district".equalsIgnoreCase(scope)) {
-                if(limit < 0) {
-                    cities = cityDAO.getCitiesInDistrict(name);
-                }
-                else {
-                    cities = cityDAO.getCitiesInDistrict(name, limit);
-                }
+                level = Scope.DISTRICT;
             } else {
                 /// Default: return all cities ordered by population.
-                if (limit < 0) {
-                    cities = cityDAO.getCitiesByPopulation();
-                }
-                else {
-                    cities = cityDAO.getCitiesByPopulation(limit);
-                }
+                level = Scope.WORLD;
             }
-            return gson.toJson(cities);
+
+            String value = resolveName(level == Scope.DISTRICT ? "district" : scope, filter, res);
+
+            /// A mapped snapshot streams the rows straight from the file; it has no grouped or paged form.
+            MappedSnapshot file = mapped;
+            if (file != null && !isPaged(req) && (level == Scope.WORLD || value != null)) {
+                return cache.serve(req, res, out -> writeMappedCities(out, file, level, value, limit));
+            }
+            if (waitingForDatabase()) return startingUp(res);
+
+            /// With pageSize or cursor, one page is returned as {"data": [...], "next": cursor}.
+            if (isPaged(req)) {
+                if (level != Scope.WORLD && value == null) {
+                    res.status(400);
+                    return gson.toJson(Collections.singletonMap("error", "Paging needs a name for this scope"));
+                }
+                PageCursor after;
+                try {
+                    after = parseCursor(req.queryParams("cursor"));
+                    if (after != null) after.getNumericId();
+                } catch (IllegalArgumentException e) {
+                    res.status(400);
+                    return gson.toJson(Collections.singletonMap("error", e.getMessage()));
+                }
+                int size = parsePageSize(req.queryParams("pageSize"));
+                return cache.serve(req, res, out -> writeJson(out, cityDAO.getCitiesPage(level, value, size, after)));
+            }
+
+            return cache.serve(req, res, out -> writeJsonArray(out, sink -> cityDAO.forEachCity(level, value, limit, sink)));
         });
 
 
@@ -214,212 +422,192 @@ public class WebServer {
         /// CAPITAL CITY REPORTS
         /// -------------------------------
 
-        get("/reports/capitals", (req, res) -> {
-            res.type("application/json");
+        timedGet("/reports/capitals", (req, res) -> {
             String scope = req.queryParams("scope");   // global, continent, region
-            String name  = req.queryParams("name");
-            int limit = parseLimit(req.queryParams("limit"));
-
-            List<CapitalCity> capitals;
+            String name  = resolveName(scope, blankToNull(req.queryParams("name")), res);
+            int limit = ResponseCache.parseLimit(req.queryParams("limit"));
 
-            /// Retrieve capital cities based on scope and filters
+            /// Retrieve capital cities based on scope and filters; without a name every capital is listed.
+            Scope level;
             if ("continent".equalsIgnoreCase(scope)) {
-                if (limit < 0) {
-                    if ( name == null || name.isEmpty() ) {
-                        capitals = capitalDAO.getCapitalCitiesByPopulation();
-                    }
-                    else {
-                        capitals = capitalDAO.getCapitalCitiesInContinent(name);
-                    }
-                }
-                else {
-                    if (name == null || name.isEmpty() ) {
-                        capitals = capitalDAO.getCapitalCitiesByPopulation(limit);
-                    }
-                    else {
-                        capitals = capitalDAO.getCapitalCitiesInContinent(name, limit);
-                    }
-                }
+                level = Scope.CONTINENT;
             } else if ("region".equalsIgnoreCase(scope)) {
-                if (limit < 0) {
-                    if ( name == null || name.isEmpty() ) {
-                        capitals = capitalDAO.getCapitalCitiesByPopulation();
-                    }
-                    else {
-                        capitals = capitalDAO.getCapitalCitiesInRegion(name);
-                    }
-                }
-                else {
-                    if (name == null || name.isEmpty() ) {
-                        capitals = capitalDAO.getCapitalCitiesByPopulation(limit);
-                    }
-                    else {
-                        capitals = capitalDAO.getCapitalCitiesInRegion(name, limit);
-                    }
-                }
+                level = Scope.REGION;
             } else {
-                if (limit < 0) {
-                    capitals = capitalDAO.getCapitalCitiesByPopulation();
-                }
-                else {
-                    capitals = capitalDAO.getCapitalCitiesByPopulation(limit);
-                }
+                level = Scope.WORLD;
             }
-            return gson.toJson(capitals);
+            return cache.serve(req, res, out -> writeJsonArray(out, sink -> capitalDAO.forEachCapital(level, name, limit, sink)));
         });
 
         /// -------------------------------
         /// POPULATION REPORTS
         /// -------------------------------
 
-        get("/reports/populations", (req, res) -> {
-            res.type("application/json");
+        timedGet("/reports/populations", (req, res) -> {
             String scope = req.queryParams("scope");   // global, continent, region, country
-            String name  = req.queryParams("name");
-            int limit = parseLimit(req.queryParams("limit"));
-
-            List<Population> pops;
-
-             /// Determine which population query to execute.
-            if ("continent".equalsIgnoreCase(scope)) {
-                if(limit < 0) {
-                    if (name == null || name.isEmpty()) {
-                        /// Fetch populations grouped at the global/continent level
-                        pops = populationDAO.getGlobalPopulations();
-                    } else {
-                        /// If a specific continent name is provided, fetch that continent’s population
-                        pops = populationDAO.getContinentPopulations(name);
-                    }
-                }
-                else {
-                    if (name == null || name.isEmpty()) {
-                        /// Fetch populations grouped at the global/continent level
-                        pops = populationDAO.getGlobalPopulations(limit);
-                    } else {
-                        /// If a specific continent name is provided, fetch that continent’s population
-                        pops = populationDAO.getContinentPopulations(name, limit);
+            String name  = resolveName(scope, req.queryParams("name"), res);
+            int limit = ResponseCache.parseLimit(req.queryParams("limit"));
+
+            return cache.serve(req, res, out -> {
+                List<Population> pops;
+
+                 /// Determine which population query to execute.
+                if ("continent".equalsIgnoreCase(scope)) {
+                    if(limit < 0) {
+                        if (name == null || name.isEmpty()) {
+                            /// Fetch populations grouped at the global/continent level
+                            pops = populationDAO.getGlobalPopulations();
+                        } else {
+                            /// If a specific continent name is provided, fetch that continent’s population
+                            pops = populationDAO.getContinentPopulations(name);
+                        }
                     }
-                }
-            } else if ("region".equalsIgnoreCase(scope)) {
-                if (limit < 0) {
-                    if (name == null || name.isEmpty()) {
-                        /// If a specific region name is not provided, fetch all region populations
-                        pops = populationDAO.getRegionPopulations();
-                    } else {
-                        /// Otherwise, fetch that region’s population
-                        pops = populationDAO.getRegionPopulations(name);
-                    }
-                }
-                else {
-                    if (name == null || name.isEmpty()) {
-                        /// If a specific region name is not provided, fetch all region populations
-                        pops = populationDAO.getRegionPopulations(limit);
-                    } else {
-                        /// Otherwise, fetch all region populations
-                        pops = populationDAO.getRegionPopulations(name, limit);
+                    else {
+                        if (name == null || name.isEmpty()) {
+                            /// Fetch populations grouped at the global/continent level
+                            pops = populationDAO.getGlobalPopulations(limit);
+                        } else {
+                            /// If a specific continent name is provided, fetch that continent’s population
+                            pops = populationDAO.getContinentPopulations(name, limit);
+                        }
+                    }
+                } else if ("region".equalsIgnoreCase(scope)) {
+                    if (limit < 0) {
+                        if (name == null || name.isEmpty()) {
+                            /// If a specific region name is not provided, fetch all region populations
+                            pops = populationDAO.getRegionPopulations();
+                        } else {
+                            /// Otherwise, fetch that region’s population
+                            pops = populationDAO.getRegionPopulations(name);
+                        }
                     }
-                }
-            } else if ("country".equalsIgnoreCase(scope)) {
-                if (limit < 0) {
-                    if (name == null || name.isEmpty()) {
-                        /// If a specific country name is provided, fetch that country’s population
-                        pops = populationDAO.getCountryPopulations();
-                    } else {
-                        /// Otherwise, fetch all country populations
-                        pops = populationDAO.getCountryPopulations(name);
+                    else {
+                        if (name == null || name.isEmpty()) {
+                            /// If a specific region name is not provided, fetch all region populations
+                            pops = populationDAO.getRegionPopulations(limit);
+                        } else {
+                            /// Otherwise, fetch all region populations
+                            pops = populationDAO.getRegionPopulations(name, limit);
+                        }
+                    }
+                } else if ("country".equalsIgnoreCase(scope)) {
+                    if (limit < 0) {
+                        if (name == null || name.isEmpty()) {
+                            /// If a specific country name is provided, fetch that country’s population
+                            pops = populationDAO.getCountryPopulations();
+                        } else {
+                            /// Otherwise, fetch all country populations
+                            pops = populationDAO.getCountryPopulations(name);
+                        }
                     }
-                }
-                else {
-                    if (name == null || name.isEmpty()) {
-                        /// If a specific country name is provided, fetch that country’s population
-                        pops = populationDAO.getCountryPopulations(limit);
-                    } else {
-                        /// Otherwise, fetch all country populations
-                        pops = populationDAO.getCountryPopulations(name, limit);
+                    else {
+                        if (name == null || name.isEmpty()) {
+                            /// If a specific country name is provided, fetch that country’s population
+                            pops = populationDAO.getCountryPopulations(limit);
+                        } else {
+                            /// Otherwise, fetch all country populations
+                            pops = populationDAO.getCountryPopulations(name, limit);
+                        }
                     }
+                } else {
+                    /// Default: return global populations (grouped by continent)
+                    pops = populationDAO.getGlobalPopulations();
                 }
-            } else {
-                /// Default: return global populations (grouped by continent)
-                pops = populationDAO.getGlobalPopulations();
-            }
 
 
-            Map<String,Object> response = new HashMap<>();
+                Map<String,Object> response = new HashMap<>();
 
-            /// Sum across all rows for global context
-            long globalPop = populationDAO.getGlobalPopulation();
-            response.put("globalPopulation", globalPop);
-            response.put("data", pops);
+                /// Sum across all rows for global context
+                long globalPop = populationDAO.getGlobalPopulation();
+                response.put("globalPopulation", globalPop);
+                response.put("data", pops);
 
-            return gson.toJson(response);
+                writeJson(out, response);
+            });
         });
 
         /// -------------------------------
         /// LANGUAGE REPORTS
         /// -------------------------------
-        get("/reports/languages", (req, res) -> {
-            res.type("application/json");
+        timedGet("/reports/languages", (req, res) -> {
             String scope = req.queryParams("scope");   /// global, continent, region, country
-            String name  = req.queryParams("name");
-            int limit = parseLimit(req.queryParams("limit"));
+            String name  = resolveName(scope, req.queryParams("name"), res);
+            int limit = ResponseCache.parseLimit(req.queryParams("limit"));
 
-            List<Language> langs;
+            return cache.serve(req, res, out -> {
+                List<Language> langs;
 
-            /// Determine which language dataset to fetch.
-            if ("continent".equalsIgnoreCase(scope)) {
-                if(limit < 0) {
-                    if (name == null || name.isEmpty()) {
-                        langs = languageDAO.getLanguagesByPopulation();
-                    } else {
-                        langs = languageDAO.getLanguagesByContinent(name);
-                    }
-                }
-                else {
-                    if (name == null || name.isEmpty()) {
-                        langs = languageDAO.getLanguagesByPopulation(limit);
-                    } else {
-                        langs = languageDAO.getLanguagesByContinent(name, limit);
+                /// Determine which language dataset to fetch.
+                if ("continent".equalsIgnoreCase(scope)) {
+                    if(limit < 0) {
+                        if (name == null || name.isEmpty()) {
+                            langs = languageDAO.getLanguagesByPopulation();
+                        } else {
+                            langs = languageDAO.getLanguagesByContinent(name);
+                        }
                     }
-                }
-            } else if ("region".equalsIgnoreCase(scope)) {
-                if (limit < 0) {
-                    if (name == null || name.isEmpty()) {
-                        langs = languageDAO.getLanguagesByPopulation();
-                    } else {
-                        langs = languageDAO.getLanguagesByRegion(name);
+                    else {
+                        if (name == null || name.isEmpty()) {
+                            langs = languageDAO.getLanguagesByPopulation(limit);
+                        } else {
+                            langs = languageDAO.getLanguagesByContinent(name, limit);
+                        }
+                    }
+                } else if ("region".equalsIgnoreCase(scope)) {
+                    if (limit < 0) {
+                        if (name == null || name.isEmpty()) {
+                            langs = languageDAO.getLanguagesByPopulation();
+                        } else {
+                            langs = languageDAO.getLanguagesByRegion(name);
+                        }
                     }
-                }
-                else {
-                    if (name == null || name.isEmpty()) {
-                        langs = languageDAO.getLanguagesByPopulation(limit);
-                    } else {
-                        langs = languageDAO.getLanguagesByRegion(name, limit);
+                    else {
+                        if (name == null || name.isEmpty()) {
+                            langs = languageDAO.getLanguagesByPopulation(limit);
+                        } else {
+                            langs = languageDAO.getLanguagesByRegion(name, limit);
+                        }
+                    }
+                } else if ("country".equalsIgnoreCase(scope)) {
+                    if (limit < 0) {
+                        if (name == null || name.isEmpty()) {
+                            langs = languageDAO.getLanguagesByPopulation();
+                        } else {
+                            langs = languageDAO.getLanguagesByCountry(name);
+                        }
                     }
-                }
-            } else if ("country".equalsIgnoreCase(scope)) {
-                if (limit < 0) {
-                    if (name == null || name.isEmpty()) {
-                        langs = languageDAO.getLanguagesByPopulation();
-                    } else {
-                        langs = languageDAO.getLanguagesByCountry(name);
+                    else {
+                        if (name == null || name.isEmpty()) {
+                            langs = languageDAO.getLanguagesByPopulation(limit);
+                        } else {
+                            langs = languageDAO.getLanguagesByCountry(name, limit);
+                        }
                     }
+                } else {
+                    langs = languageDAO.getLanguagesByPopulation();
                 }
-                else {
-                    if (name == null || name.isEmpty()) {
-                        langs = languageDAO.getLanguagesByPopulation(limit);
-                    } else {
-                        langs = languageDAO.getLanguagesByCountry(name, limit);
-                    }
+
+                /// Apply limit manually if DAO doesn’t support it
+                if (limit > 0 && langs.size() > limit) {
+                    langs = langs.subList(0, limit);
                 }
-            } else {
-                langs = languageDAO.getLanguagesByPopulation();
-            }
+                writeJson(out, langs);
+            });
+        });
 
-            /// Apply limit manually if DAO doesn’t support it
-            if (limit > 0 && langs.size() > limit) {
-                langs = langs.subList(0, limit);
+        /// Speakers of every language in every continent (level=continent, the default) or
+        /// every region (level=region) as one sparse matrix, so comparing languages across
+        /// areas takes one request instead of one /reports/languages call per area.
+        timedGet("/reports/languages/matrix", (req, res) -> {
+            String level = req.queryParams("level") == null ? null : req.queryParams("level").trim();
+            Scope scope = level == null || level.isEmpty() || level.equalsIgnoreCase("continent") ? Scope.CONTINENT
+                    : level.equalsIgnoreCase("region") ? Scope.REGION : null;
+            if (scope == null) {
+                res.type("application/json");
+                res.status(400);
+                return gson.toJson(Collections.singletonMap("error", "level must be continent or region"));
             }
-            return gson.toJson(langs);
+            return cache.serve(req, res, out -> writeJson(out, languageDAO.getLanguageMatrix(scope)));
         });
 
 
@@ -428,47 +616,204 @@ public class WebServer {
         /// -------------------------------
 
         /// Continents
-        get("/lookups/continents", (req, res) -> {
-            res.type("application/json");
-            List<Lookup> continents = lookupDAO.getAllContinents();
-            return gson.toJson(continents);
-        });
+        timedGet("/lookups/continents", (req, res) -> cache.serve(req, res, out -> writeJson(out, lookupDAO.getAllContinents())));
 
           /// Regions
-        get("/lookups/regions", (req, res) -> {
-            res.type("application/json");
-            List<Lookup> regions = lookupDAO.getAllRegions();
-            return gson.toJson(regions);
-        });
+        timedGet("/lookups/regions", (req, res) -> cache.serve(req, res, out -> writeJson(out, lookupDAO.getAllRegions())));
 
         /// Countries
-        get("/lookups/countries", (req, res) -> {
-            res.type("application/json");
-            List<Lookup> countries = lookupDAO.getAllCountries();
-            return gson.toJson(countries);
-        });
+        timedGet("/lookups/countries", (req, res) -> cache.serve(req, res, out -> writeJson(out, lookupDAO.getAllCountries())));
 
          /// Districts (requires country name)
-        get("/lookups/districts", (req, res) -> {
+        timedGet("/lookups/districts", (req, res) -> {
             res.type("application/json");
             String countryName = req.queryParams("country");
             if (countryName == null || countryName.isEmpty()) {
                 res.status(400);
                 return gson.toJson(Collections.singletonMap("error", "Missing country parameter"));
             }
-            List<Lookup> districts = lookupDAO.getDistrictsByCountryName(countryName);
-            return gson.toJson(districts);
+            return cache.serve(req, res, out -> writeJson(out, lookupDAO.getDistrictsByCountryName(countryName)));
+        });
+
+        /// Type-ahead search (type = continent, region, country or district; q = text typed so far).
+        /// Answered from the in-memory lookup index, so it skips the response cache: every keystroke
+        /// is a new query and would only push report bodies out.
+        timedGet("/lookups/search", (req, res) -> {
+            res.type("application/json");
+            LookupIndex.Type type = LookupIndex.Type.parse(req.queryParams("type"));
+            if (type == null) {
+                res.status(400);
+                return gson.toJson(Collections.singletonMap("error", "type must be continent, region, country or district"));
+            }
+            int limit = ResponseCache.parseLimit(req.queryParams("limit"));
+            List<Lookup> matches = lookupDAO.search(type, req.queryParams("q"), limit < 0 ? DEFAULT_SEARCH_RESULTS : limit);
+            Metrics.addResponseRows(matches.size());
+            return gson.toJson(matches);
         });
 
 
     }
-    /// Parses an integer limit parameter from a query string.
-    /// Returns -1 if invalid or not provided.
-    private int parseLimit(String limitParam) {
+    /// Registers a GET route whose requests are timed and counted under its path and scope.
+    /// Statements run while handling it are tagged with the request in the slow-query log.
+    /// When a limiter is in place the request first waits for a slot, or gets a 503.
+    /// While the database is still starting only the snapshot-backed report routes are answered.
+    private void timedGet(String path, Route route) {
+        get(path, (req, res) -> {
+            Metrics.Sample sample = Metrics.startRequest(path, scopeLabel(req.queryParams("scope")));
+            String query = req.queryString();
+            SlowQueryLog.setCurrentRequest("GET " + path + (query == null ? "" : "?" + query));
+            boolean admitted = false;
+            try {
+                boolean fromSnapshot = servingSnapshot && path.startsWith("/reports/")
+                        || mapped != null && path.equals("/reports/cities");
+                if (!fromSnapshot && waitingForDatabase()) {
+                    sample.fail();
+                    return startingUp(res);
+                }
+                if (limiter != null && !(admitted = limiter.acquire())) {
+                    sample.fail();
+                    res.status(503);
+                    res.header("Retry-After", "1");
+                    return gson.toJson(Collections.singletonMap("error", "Server busy, try again shortly"));
+                }
+                Object body = route.handle(req, res);
+                if (res.status() >= 500) sample.fail();
+                return body;
+            } catch (Exception e) {
+                sample.fail();
+                throw e;
+            } finally {
+                if (admitted) limiter.release();
+                SlowQueryLog.setCurrentRequest(null);
+                sample.stop();
+            }
+        });
+    }
+
+    /// True until the pool is up, unless reports are being answered from a snapshot in memory.
+    private boolean waitingForDatabase() {
+        return source != null && !source.isReady() && !servingSnapshot;
+    }
+
+    /// Replaces a mistyped continent, region, country or district name with the one it most likely
+    /// means before the report query runs, and echoes the correction in X-Resolved-Name. A name
+    /// that cannot be resolved is passed on unchanged, with any close names in X-Did-You-Mean.
+    /// Names are left alone until the database is up, as the lookup index is built from it.
+    private String resolveName(String scope, String name, Response res) {
+        LookupIndex.Type type = LookupIndex.Type.parse(scope);
+        if (type == null || name == null || name.isEmpty() || source != null && !source.isReady()) return name;
+        Lookup match = lookupDAO.resolve(type, name);
+        if (match != null) {
+            if (!match.getValue().equalsIgnoreCase(name.trim())) res.header("X-Resolved-Name", match.getValue());
+            return match.getValue();
+        }
+        List<Lookup> close = lookupDAO.suggest(type, name, 5);
+        if (!close.isEmpty()) {
+            res.header("X-Did-You-Mean", String.join(", ", close.stream().map(Lookup::getValue).toList()));
+        }
+        return name;
+    }
+
+    /// Answers a request that needs the database before it is available.
+    private String startingUp(Response res) {
+        res.status(503);
+        res.header("Retry-After", "5");
+        return gson.toJson(Collections.singletonMap("error", "Database is starting up, try again shortly"));
+    }
+
+    /// Maps the scope parameter onto a small fixed set of metric labels.
+    static String scopeLabel(String scope) {
+        if (scope == null || scope.isBlank()) return "none";
+        String label = scope.trim().toLowerCase(Locale.ROOT);
+        return SCOPES.contains(label) ? label : "other";
+    }
+
+    /// Writes the rows a DAO produces straight to the response body as a JSON array.
+    /// Each row is serialised as soon as it is read from the ResultSet, so memory stays
+    /// flat however many rows match and the first bytes leave before the query finishes.
+    private void writeJsonArray(OutputStream body, Consumer<Consumer<Object>> rows) throws IOException {
+        JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8));
+        long[] count = new long[1];
+        writer.beginArray();
+        rows.accept(row -> {
+            gson.toJson(row, row.getClass(), writer);
+            count[0]++;
+        });
+        writer.endArray();
+        writer.flush();
+        Metrics.addResponseRows(count[0]);
+    }
+
+    /// Writes cities from the mapped snapshot as the same JSON array the City model produces,
+    /// decoding each name only as it is written.
+    private void writeMappedCities(OutputStream body, MappedSnapshot file, Scope scope, String name, int limit)
+            throws IOException {
+        JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8));
+        writer.beginArray();
+        long rows = file.forEachCity(scope, name, limit, row -> {
+            writer.beginObject();
+            writer.name("name").value(file.cityName(row));
+            writer.name("continent").value(file.cityContinent(row));
+            writer.name("country").value(file.cityCountry(row));
+            writer.name("district").value(file.cityDistrict(row));
+            writer.name("population").value(file.cityPopulation(row));
+            writer.endObject();
+        });
+        writer.endArray();
+        writer.flush();
+        Metrics.addResponseRows(rows);
+    }
+
+    /// Serialises a whole result to the response body.
+    private void writeJson(OutputStream body, Object result) throws IOException {
+        Writer writer = new OutputStreamWriter(body, StandardCharsets.UTF_8);
+        gson.toJson(result, writer);
+        writer.flush();
+        Metrics.addResponseRows(rowsIn(result));
+    }
+
+    /// Counts the rows in a result for the request metrics: the entries of a list,
+    /// or of the "data" list in a wrapped report.
+    private static long rowsIn(Object result) {
+        if (result instanceof Map<?, ?> map) result = map.get("data");
+        if (result instanceof Page<?> page) result = page.getData();
+        if (result instanceof LanguageMatrix matrix) result = matrix.getCells();
+        return result instanceof Collection<?> rows ? rows.size() : 0;
+    }
+
+    /// Reads an integer setting from the environment, falling back when it is unset or invalid.
+    private static int intEnv(String name, int fallback) {
+        try {
+            return Integer.parseInt(System.getenv().getOrDefault(name, String.valueOf(fallback)).trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /// Treats a missing or empty query parameter the same way.
+    private static String blankToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    /// A report is paged when the client sends a page size or a cursor.
+    private static boolean isPaged(Request req) {
+        return blankToNull(req.queryParams("pageSize")) != null || blankToNull(req.queryParams("cursor")) != null;
+    }
+
+    /// Decodes the cursor parameter; null (first page) when it is missing.
+    private static PageCursor parseCursor(String cursor) {
+        cursor = blankToNull(cursor);
+        return cursor == null ? null : PageCursor.decode(cursor);
+    }
+
+    /// Parses the page size, falling back to the default when missing or invalid
+    /// and capping it so a single page stays small.
+    private static int parsePageSize(String sizeParam) {
         try {
-            return limitParam != null ? Integer.parseInt(limitParam) : -1;
+            int size = sizeParam != null ? Integer.parseInt(sizeParam.trim()) : DEFAULT_PAGE_SIZE;
+            return size <= 0 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
         } catch (NumberFormatException e) {
-            return -1;
+            return DEFAULT_PAGE_SIZE;
         }
     }
 }
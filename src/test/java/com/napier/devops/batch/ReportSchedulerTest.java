@@ -0,0 +1,79 @@
+package com.napier.devops.batch;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReportSchedulerTest {
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final PrintStream out = new PrintStream(buffer, true, StandardCharsets.UTF_8);
+
+    @Test
+    void testOutputFollowsInsertionOrderNotFinishOrder() {
+        // "first" cannot finish until "second" has run, so they must overlap
+        CountDownLatch secondDone = new CountDownLatch(1);
+        ReportScheduler scheduler = new ReportScheduler(2)
+                .add(new ReportTask("first", (upstream, o) -> {
+                    assertTrue(secondDone.await(5, TimeUnit.SECONDS));
+                    o.println("first");
+                    return null;
+                }))
+                .add(new ReportTask("second", (upstream, o) -> {
+                    o.println("second");
+                    secondDone.countDown();
+                    return null;
+                }));
+
+        scheduler.run(out);
+
+        assertEquals("first\nsecond\n", buffer.toString(StandardCharsets.UTF_8).replace("\r", ""));
+    }
+
+    @Test
+    void testDependenciesReceiveUpstreamValues() {
+        Map<String, Object> results = new ReportScheduler(4)
+                .add(new ReportTask("total", List.of("a", "b"),
+                        (upstream, o) -> (Integer) upstream.get("a") + (Integer) upstream.get("b")))
+                .add(new ReportTask("a", (upstream, o) -> 2))
+                .add(new ReportTask("b", (upstream, o) -> 3))
+                .run(out);
+
+        assertEquals(5, results.get("total"));
+        assertEquals(List.of("total", "a", "b"), List.copyOf(results.keySet()));
+    }
+
+    @Test
+    void testFailureSkipsDependentsOnly() {
+        Map<String, Object> results = new ReportScheduler(2)
+                .add(new ReportTask("broken", (upstream, o) -> { throw new IllegalStateException("boom"); }))
+                .add(new ReportTask("after", List.of("broken"), (upstream, o) -> "never"))
+                .add(new ReportTask("independent", (upstream, o) -> "ok"))
+                .run(out);
+
+        assertEquals(Map.of("independent", "ok"), results);
+        String printed = buffer.toString(StandardCharsets.UTF_8);
+        assertTrue(printed.contains("Report broken failed"));
+        assertTrue(printed.contains("Skipped after"));
+    }
+
+    @Test
+    void testCyclesAndUnknownDependenciesAreRejected() {
+        ReportScheduler cyclic = new ReportScheduler(1)
+                .add(new ReportTask("a", List.of("b"), (upstream, o) -> null))
+                .add(new ReportTask("b", List.of("a"), (upstream, o) -> null));
+        assertThrows(IllegalArgumentException.class, () -> cyclic.run(out));
+
+        ReportScheduler dangling = new ReportScheduler(1)
+                .add(new ReportTask("a", List.of("missing"), (upstream, o) -> null));
+        assertThrows(IllegalArgumentException.class, () -> dangling.run(out));
+    }
+}
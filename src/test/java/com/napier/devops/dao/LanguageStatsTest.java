@@ -0,0 +1,93 @@
+package com.napier.devops.dao;
+
+import com.napier.devops.models.Language;
+import com.napier.devops.models.LanguageMatrix;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LanguageStatsTest {
+
+    private LanguageStats stats;
+
+    @BeforeEach
+    void setUp() {
+        stats = new LanguageStats.Builder()
+                .addCountry("FRA", "France", "Europe", "Western Europe", 1000)
+                .addCountry("BEL", "Belgium", "Europe", "Western Europe", 400)
+                .addCountry("JPN", "Japan", "Asia", "Eastern Asia", 2000)
+                // No recorded languages, but still part of every denominator
+                .addCountry("ATA", "Antarctica", "Antarctica", "Antarctica", 600)
+                .addLanguage("FRA", "French", 1000)
+                .addLanguage("BEL", "French", 500)
+                .addLanguage("BEL", "Dutch", 500)
+                .addLanguage("JPN", "Japanese", 995)
+                .build();
+    }
+
+    @Test
+    void testWorldRanksLanguagesBySpeakers() {
+        List<Language> world = stats.languages(Scope.WORLD, null, Integer.MAX_VALUE);
+        assertEquals(List.of("Japanese", "French", "Dutch"), world.stream().map(Language::getLanguage).toList());
+        assertEquals(1990, world.get(0).getSpeakers());
+        assertEquals(1200, world.get(1).getSpeakers());
+        assertEquals("49.75", world.get(0).getPercentOfGlobalPopulation());
+        assertEquals(4000, stats.getGlobalPopulation());
+        assertEquals(4000, world.get(0).getGlobalPopulation());
+    }
+
+    @Test
+    void testContinentAndRegionRollUpTheirCountries() {
+        List<Language> europe = stats.languages(Scope.CONTINENT, "europe", Integer.MAX_VALUE);
+        assertEquals("French", europe.get(0).getLanguage());
+        assertEquals(1200, europe.get(0).getSpeakers());
+        assertEquals("85.71", europe.get(0).getPercentOfContinentPopulation());
+        assertEquals("30.00", europe.get(0).getPercentOfGlobalPopulation());
+        assertEquals("Europe", europe.get(0).getContinent());
+
+        List<Language> region = stats.languages(Scope.REGION, "Western Europe", 1);
+        assertEquals(1, region.size());
+        assertEquals("85.71", region.get(0).getPercentOfRegionPopulation());
+    }
+
+    @Test
+    void testCountryByNameAndByCode() {
+        List<Language> byName = stats.languages(Scope.COUNTRY, " BELGIUM ", Integer.MAX_VALUE);
+        List<Language> byCode = stats.languages(Scope.COUNTRY_CODE, "bel", Integer.MAX_VALUE);
+        assertEquals(List.of("Dutch", "French"), byName.stream().map(Language::getLanguage).toList());
+        assertEquals(byName.size(), byCode.size());
+        assertEquals("50.00", byCode.get(0).getPercentOfCountryPopulation());
+        assertEquals("Belgium", byCode.get(0).getCountry());
+    }
+
+    @Test
+    void testUnknownScopesAndLimits() {
+        assertTrue(stats.languages(Scope.COUNTRY, "Atlantis", 10).isEmpty());
+        assertTrue(stats.languages(Scope.CONTINENT, "Antarctica", 10).isEmpty());
+        assertTrue(stats.languages(Scope.WORLD, null, 0).isEmpty());
+        assertEquals(2, stats.languages(Scope.WORLD, null, 2).size());
+    }
+
+    @Test
+    void testMatrixListsEveryLanguageInEveryArea() {
+        LanguageMatrix matrix = stats.matrix(Scope.CONTINENT);
+        assertEquals("Continent", matrix.getLevel());
+        assertEquals(List.of("Japanese", "French", "Dutch"), matrix.getLanguages());
+        assertEquals(List.of("Antarctica", "Asia", "Europe"), matrix.getAreas());
+        assertEquals(List.of(600L, 2000L, 1400L), matrix.getAreaPopulations());
+        assertEquals(4000, matrix.getGlobalPopulation());
+
+        // Sparse and ordered by language, then area: Japanese in Asia, French and Dutch in Europe
+        List<LanguageMatrix.Cell> cells = matrix.getCells();
+        assertEquals(3, cells.size());
+        assertEquals(List.of(0, 1, 2), cells.stream().map(LanguageMatrix.Cell::getLanguage).toList());
+        assertEquals(List.of(1, 2, 2), cells.stream().map(LanguageMatrix.Cell::getArea).toList());
+        assertEquals(List.of(1990L, 1200L, 200L), cells.stream().map(LanguageMatrix.Cell::getSpeakers).toList());
+
+        assertEquals(List.of("Antarctica", "Eastern Asia", "Western Europe"), stats.matrix(Scope.REGION).getAreas());
+        assertNull(stats.matrix(Scope.COUNTRY));
+    }
+}
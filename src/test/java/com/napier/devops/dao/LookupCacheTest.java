@@ -0,0 +1,101 @@
+package com.napier.devops.dao;
+
+import com.napier.devops.db.ConnectionSource;
+import com.napier.devops.db.DataVersion;
+import com.napier.devops.models.Lookup;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class LookupCacheTest {
+
+    private final AtomicLong version = new AtomicLong(1);
+    private final List<Map<String, String>> countries = new ArrayList<>();
+    private final List<Map<String, String>> districts = new ArrayList<>();
+    private Connection conn;
+    private LookupDAO dao;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        countries.add(Map.of("Code", "FRA", "Name", "France", "Continent", "Europe", "Region", "Western Europe"));
+        countries.add(Map.of("Code", "JPN", "Name", "Japan", "Continent", "Asia", "Region", "Eastern Asia"));
+        districts.add(Map.of("CountryCode", "FRA", "District", "Île-de-France"));
+        districts.add(Map.of("CountryCode", "FRA", "District", "Alsace"));
+        districts.add(Map.of("CountryCode", "JPN", "District", "Tokyo-to"));
+
+        conn = mock(Connection.class);
+        PreparedStatement countryStmt = mock(PreparedStatement.class);
+        PreparedStatement districtStmt = mock(PreparedStatement.class);
+        when(conn.prepareStatement(contains("FROM country"))).thenReturn(countryStmt);
+        when(conn.prepareStatement(contains("FROM city"))).thenReturn(districtStmt);
+        when(countryStmt.executeQuery()).thenAnswer(inv -> rows(countries));
+        when(districtStmt.executeQuery()).thenAnswer(inv -> rows(districts));
+
+        LookupCache cache = new LookupCache();
+        cache.watch(new DataVersion(null, 0) {
+            @Override
+            public long current() {
+                return version.get();
+            }
+        });
+        dao = new LookupDAO(ConnectionSource.of(conn), cache);
+    }
+
+    @Test
+    void testListsAreServedFromOneLoad() throws Exception {
+        assertEquals(List.of("Asia", "Europe"), values(dao.getAllContinents()));
+        assertEquals(List.of("France", "Japan"), values(dao.getAllCountries()));
+        assertEquals("FRA", dao.getAllCountries().get(0).getType());
+        assertEquals(List.of("Alsace", "Île-de-France"), values(dao.getDistrictsByCountryCode("fra")));
+        assertEquals(List.of("Tokyo-to"), values(dao.getDistrictsByCountryName("JAPAN")));
+        assertEquals(List.of("Japan"), values(dao.searchCountries("apa")));
+
+        // One pass over country and one over city, however many lookups were made
+        verify(conn, times(2)).prepareStatement(anyString());
+    }
+
+    @Test
+    void testIndexIsRebuiltWhenTheDataVersionChanges() throws Exception {
+        assertEquals(2, dao.getAllCountries().size());
+        countries.add(Map.of("Code", "DEU", "Name", "Germany", "Continent", "Europe", "Region", "Western Europe"));
+        assertEquals(2, dao.getAllCountries().size());
+
+        version.incrementAndGet();
+        assertEquals(List.of("France", "Germany", "Japan"), values(dao.getAllCountries()));
+        assertEquals(List.of("France", "Germany", "Japan"), values(dao.getAllCountries()));
+        verify(conn, times(4)).prepareStatement(anyString());
+    }
+
+    @Test
+    void testFailedRebuildKeepsThePreviousIndex() throws Exception {
+        assertEquals(2, dao.getAllRegions().size());
+        when(conn.prepareStatement(anyString())).thenThrow(new SQLException("gone"));
+
+        version.incrementAndGet();
+        assertEquals(List.of("Eastern Asia", "Western Europe"), values(dao.getAllRegions()));
+    }
+
+    private static ResultSet rows(List<Map<String, String>> rows) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        int[] at = {-1};
+        when(rs.next()).thenAnswer(inv -> ++at[0] < rows.size());
+        when(rs.getString(anyString())).thenAnswer(inv -> rows.get(at[0]).get(inv.<String>getArgument(0)));
+        return rs;
+    }
+
+    private static List<String> values(List<Lookup> lookups) {
+        return lookups.stream().map(Lookup::getValue).toList();
+    }
+}
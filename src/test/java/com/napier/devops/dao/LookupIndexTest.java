@@ -0,0 +1,100 @@
+package com.napier.devops.dao;
+
+import com.napier.devops.models.Lookup;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LookupIndexTest {
+
+    private LookupIndex index;
+
+    @BeforeEach
+    void setUp() {
+        LookupIndex.Builder b = new LookupIndex.Builder()
+                .add(LookupIndex.Type.COUNTRY, "FRA", "France")
+                .add(LookupIndex.Type.COUNTRY, "GUF", "French Guiana")
+                .add(LookupIndex.Type.COUNTRY, "PYF", "French Polynesia")
+                .add(LookupIndex.Type.COUNTRY, "ZAF", "South Africa")
+                .add(LookupIndex.Type.COUNTRY, "CAF", "Central African Republic")
+                .add(LookupIndex.Type.REGION, null, "Caribbean")
+                .add(LookupIndex.Type.REGION, null, "Caribbean")
+                .add(LookupIndex.Type.DISTRICT, null, "New York")
+                .add(LookupIndex.Type.DISTRICT, null, "York")
+                .add(LookupIndex.Type.DISTRICT, null, "Yorkshire")
+                .add(LookupIndex.Type.DISTRICT, null, "Québec")
+                .add(LookupIndex.Type.DISTRICT, null, "  ");
+        for (int i = 0; i < 100; i++) {
+            b.add(LookupIndex.Type.DISTRICT, null, "District " + i);
+        }
+        index = b.build();
+    }
+
+    @Test
+    void testRanksExactThenPrefixThenWordThenSubstring() {
+        assertEquals(List.of("York", "Yorkshire", "New York"), values(index.search(LookupIndex.Type.DISTRICT, "york", 10)));
+        assertEquals(List.of("South Africa", "Central African Republic"),
+                values(index.search(LookupIndex.Type.COUNTRY, "afr", 10)));
+        assertEquals(List.of("York", "New York"), values(index.search(LookupIndex.Type.DISTRICT, "ork", 2)));
+    }
+
+    @Test
+    void testCountriesCarryTheirCodes() {
+        List<Lookup> fr = index.search(LookupIndex.Type.COUNTRY, "FR", 3);
+        assertEquals(List.of("France", "French Guiana", "French Polynesia"), values(fr));
+        assertEquals("FRA", fr.get(0).getType());
+        assertEquals("Region", index.search(LookupIndex.Type.REGION, "carib", 5).get(0).getType());
+    }
+
+    @Test
+    void testIgnoresCaseAccentsAndSpaces() {
+        assertEquals(List.of("Québec"), values(index.search(LookupIndex.Type.DISTRICT, " QUEBEC ", 10)));
+        assertEquals(List.of("Québec"), values(index.matching(LookupIndex.Type.DISTRICT, "éb")));
+    }
+
+    @Test
+    void testResultsAreCapped() {
+        assertEquals(10, index.search(LookupIndex.Type.DISTRICT, "dis", 10).size());
+        assertEquals(LookupIndex.MAX_RESULTS, index.search(LookupIndex.Type.DISTRICT, "district", 1000).size());
+        assertEquals("District 0", index.search(LookupIndex.Type.DISTRICT, "district", 1).get(0).getValue());
+        assertTrue(index.search(LookupIndex.Type.DISTRICT, "", 10).isEmpty());
+        assertTrue(index.search(LookupIndex.Type.DISTRICT, "xyz", 10).isEmpty());
+    }
+
+    @Test
+    void testMatchingReturnsEverySubstringMatchAlphabetically() {
+        assertEquals(1, index.size(LookupIndex.Type.REGION));
+        assertEquals(104, index.size(LookupIndex.Type.DISTRICT));
+        assertEquals(List.of("Central African Republic", "France", "French Guiana", "French Polynesia", "South Africa"),
+                values(index.matching(LookupIndex.Type.COUNTRY, "r")));
+        assertEquals(100, index.matching(LookupIndex.Type.DISTRICT, "strict").size());
+    }
+
+    @Test
+    void testResolvesTyposToTheCanonicalName() {
+        assertEquals("France", index.resolve(LookupIndex.Type.COUNTRY, "france").getValue());
+        Lookup typo = index.resolve(LookupIndex.Type.COUNTRY, "Frnace");
+        assertEquals("France", typo.getValue());
+        assertEquals("FRA", typo.getType());
+        assertEquals("Caribbean", index.resolve(LookupIndex.Type.REGION, "Carribean").getValue());
+        assertEquals("Québec", index.resolve(LookupIndex.Type.DISTRICT, "Qebec").getValue());
+    }
+
+    @Test
+    void testAmbiguousOrDistantNamesAreNotResolved() {
+        // One edit from "District 1" and from "District 10" to "District 19"
+        assertNull(index.resolve(LookupIndex.Type.DISTRICT, "District 1x"));
+        assertNull(index.resolve(LookupIndex.Type.COUNTRY, "Germany"));
+        assertNull(index.resolve(LookupIndex.Type.DISTRICT, "Yo"));
+        assertEquals(List.of("District 1", "District 10", "District 11"),
+                values(index.suggest(LookupIndex.Type.DISTRICT, "District 1x", 3)));
+        assertTrue(index.suggest(LookupIndex.Type.COUNTRY, "Germany", 3).isEmpty());
+    }
+
+    private static List<String> values(List<Lookup> lookups) {
+        return lookups.stream().map(Lookup::getValue).toList();
+    }
+}
@@ -0,0 +1,100 @@
+package com.napier.devops.dao;
+
+import com.napier.devops.db.ConnectionSource;
+import com.napier.devops.db.DataVersion;
+import com.napier.devops.models.Population;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class PopulationCubeTest {
+
+    private PopulationCube cube;
+
+    @BeforeEach
+    void setUp() {
+        cube = new PopulationCube.Builder()
+                .addCountry("FRA", "France", "Europe", "Western Europe", 1000, 400)
+                .addCountry("DEU", "Germany", "Europe", "Western Europe", 2000, 600)
+                .addCountry("ITA", "Italy", "Europe", "Southern Europe", 1500, 0)
+                .addCountry("SGP", "Singapore", "Asia", "Southeast Asia", 100, 150)
+                .build();
+    }
+
+    @Test
+    void testRollsUpEveryLevel() {
+        assertEquals(4600, cube.getGlobalPopulation());
+
+        List<Population> continents = cube.all(Scope.CONTINENT, 10);
+        assertEquals(List.of("Europe", "Asia"), continents.stream().map(Population::getLabel).toList());
+        assertEquals(4500, continents.get(0).getTotalPopulation());
+        assertEquals(1000, continents.get(0).getCityPopulation());
+        assertEquals(3500, continents.get(0).getNonCityPopulation());
+
+        List<Population> regions = cube.all(Scope.REGION, 2);
+        assertEquals(List.of("Western Europe", "Southern Europe"), regions.stream().map(Population::getLabel).toList());
+    }
+
+    @Test
+    void testCountryCityPopulationIsCapped() {
+        Population singapore = cube.of(Scope.COUNTRY_CODE, "sgp", 1).get(0);
+        assertEquals("Singapore", singapore.getLabel());
+        assertEquals(100, singapore.getCityPopulation());
+        assertEquals(0, singapore.getNonCityPopulation());
+    }
+
+    @Test
+    void testLookupsAndLimits() {
+        assertEquals(1, cube.of(Scope.REGION, " western europe ", 5).size());
+        assertTrue(cube.of(Scope.COUNTRY, "Atlantis", 5).isEmpty());
+        assertTrue(cube.of(Scope.CONTINENT, null, 5).isEmpty());
+        assertTrue(cube.of(Scope.CONTINENT, "Europe", 0).isEmpty());
+        assertTrue(cube.all(Scope.COUNTRY, -1).isEmpty());
+    }
+
+    @Test
+    void testReturnedRowsAreCopies() {
+        cube.all(Scope.COUNTRY, 1).get(0).setTotalPopulation(0);
+        assertEquals(2000, cube.all(Scope.COUNTRY, 1).get(0).getTotalPopulation());
+    }
+
+    @Test
+    void testDaoRebuildsTheCubeWhenTheDataVersionChanges() throws Exception {
+        AtomicLong version = new AtomicLong(1);
+        AtomicLong population = new AtomicLong(1000);
+        Connection conn = mock(Connection.class);
+        PreparedStatement stmt = mock(PreparedStatement.class);
+        when(conn.prepareStatement(anyString())).thenReturn(stmt);
+        when(stmt.executeQuery()).thenAnswer(inv -> {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.next()).thenReturn(true, false);
+            when(rs.getString(anyString())).thenReturn("FRA");
+            when(rs.getLong("Population")).thenReturn(population.get());
+            return rs;
+        });
+
+        PopulationDAO dao = new PopulationDAO(ConnectionSource.of(conn));
+        dao.watch(new DataVersion(null, 0) {
+            @Override
+            public long current() {
+                return version.get();
+            }
+        });
+        assertEquals(1000, dao.getGlobalPopulation());
+        population.set(2500);
+        assertEquals(1000, dao.getGlobalPopulation());
+
+        version.incrementAndGet();
+        assertEquals(2500, dao.getGlobalPopulation());
+        verify(conn, times(2)).prepareStatement(anyString());
+    }
+}
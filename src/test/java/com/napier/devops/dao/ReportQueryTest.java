@@ -0,0 +1,89 @@
+package com.napier.devops.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReportQueryTest {
+
+    private static final String SELECT = "SELECT Name FROM country";
+    private static final Map<Scope, String> FILTERS = Map.of(Scope.REGION, "Region");
+
+    @Test
+    void testNamesAndLimitsAreBoundNotConcatenated() {
+        ReportQuery first = ReportQuery.select(SELECT, FILTERS)
+                .scope(Scope.REGION, "Caribbean").orderBy("Population DESC").limit(5).build();
+        ReportQuery second = ReportQuery.select(SELECT, FILTERS)
+                .scope(Scope.REGION, "Nordic Countries").orderBy("Population DESC").limit(50).build();
+
+        assertEquals("SELECT Name FROM country WHERE Region = ? ORDER BY Population DESC LIMIT ?", first.getSql());
+        assertEquals(first.getSql(), second.getSql());
+        assertArrayEquals(new Object[]{"Caribbean", 5}, first.getParams());
+        assertFalse(first.matchesNothing());
+    }
+
+    @Test
+    void testWorldScopeAndOffset() {
+        ReportQuery query = ReportQuery.select(SELECT, FILTERS)
+                .scope(Scope.WORLD, "ignored").groupBy("Name").limit(10).offset(20).build();
+
+        assertEquals("SELECT Name FROM country GROUP BY Name LIMIT ? OFFSET ?", query.getSql());
+        assertArrayEquals(new Object[]{10, 20}, query.getParams());
+    }
+
+    @Test
+    void testNegativeLimitReturnsNoRows() {
+        ReportQuery query = ReportQuery.select(SELECT, FILTERS).limit(-3).build();
+
+        assertArrayEquals(new Object[]{0}, query.getParams());
+    }
+
+    @Test
+    void testMissingNameMatchesNothing() {
+        assertTrue(ReportQuery.select(SELECT, FILTERS).scope(Scope.REGION, null).build().matchesNothing());
+    }
+
+    @Test
+    void testUnsupportedScopeIsRejected() {
+        ReportQuery.Builder builder = ReportQuery.select(SELECT, FILTERS);
+        assertThrows(IllegalArgumentException.class, () -> builder.scope(Scope.DISTRICT, "Texas"));
+    }
+
+    @Test
+    void testSeekContinuesAfterTheLastRow() {
+        ReportQuery query = ReportQuery.select(SELECT, FILTERS)
+                .scope(Scope.REGION, "Caribbean")
+                .pageBy("city.Population", "city.ID")
+                .after(5000, 42)
+                .limit(11)
+                .build();
+
+        assertEquals(SELECT + " WHERE Region = ? AND (city.Population < ? OR (city.Population = ? AND city.ID > ?))"
+                + " ORDER BY city.Population DESC, city.ID ASC LIMIT ?", query.getSql());
+        assertArrayEquals(new Object[]{"Caribbean", 5000L, 5000L, 42, 11}, query.getParams());
+        assertThrows(IllegalStateException.class, () -> ReportQuery.select(SELECT, FILTERS).after(1, 1));
+    }
+
+    @Test
+    void testPageCursorRoundTrips() {
+        PageCursor cursor = PageCursor.decode(new PageCursor(10500000, "1024").encode());
+        assertEquals(10500000, cursor.getPopulation());
+        assertEquals(1024, cursor.getNumericId());
+        assertEquals("GBR", PageCursor.decode(new PageCursor(0, "GBR").encode()).getId());
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("not a cursor!"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(new PageCursor(1, "GBR").encode()).getNumericId());
+    }
+
+    @Test
+    void testQueriesWithTheSameSqlAndParamsAreEqual() {
+        ReportQuery first = ReportQuery.select(SELECT, FILTERS).scope(Scope.REGION, "Caribbean").limit(5).build();
+        ReportQuery same = ReportQuery.select(SELECT, FILTERS).scope(Scope.REGION, "Caribbean").limit(5).build();
+        ReportQuery other = ReportQuery.select(SELECT, FILTERS).scope(Scope.REGION, "Caribbean").limit(6).build();
+
+        assertEquals(first, same);
+        assertEquals(first.hashCode(), same.hashCode());
+        assertNotEquals(first, other);
+    }
+}
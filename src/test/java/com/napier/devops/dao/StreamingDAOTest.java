@@ -0,0 +1,69 @@
+package com.napier.devops.dao;
+
+import com.napier.devops.models.City;
+import com.napier.devops.models.Country;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class StreamingDAOTest {
+
+    private Connection conn;
+    private PreparedStatement stmt;
+    private ResultSet rs;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        conn = mock(Connection.class);
+        stmt = mock(PreparedStatement.class);
+        rs = mock(ResultSet.class);
+        when(conn.prepareStatement(anyString())).thenReturn(stmt);
+        when(stmt.executeQuery()).thenReturn(rs);
+    }
+
+    @Test
+    void testCitiesAreStreamedRowByRow() throws Exception {
+        when(rs.next()).thenReturn(true, true, false);
+        when(rs.getString("Name")).thenReturn("Paris", "Lyon");
+        when(rs.getInt("Population")).thenReturn(300, 100);
+
+        List<City> seen = new ArrayList<>();
+        new CityDAO(conn).forEachCity(Scope.REGION, "Western Europe", 2, seen::add);
+
+        assertEquals(List.of("Paris", "Lyon"), seen.stream().map(City::getName).toList());
+        verify(conn).prepareStatement(argThat(sql -> sql.contains("WHERE country.Region = ?") && sql.endsWith("LIMIT ?")));
+        verify(stmt).setObject(1, "Western Europe");
+        verify(stmt).setObject(2, 2);
+        verify(stmt).setFetchSize(Integer.MIN_VALUE);
+    }
+
+    @Test
+    void testGroupedCountriesWithoutLimit() throws Exception {
+        when(rs.next()).thenReturn(false);
+
+        List<Country> seen = new ArrayList<>();
+        new CountryDAO(conn).forEachCountry(Scope.REGION, null, -1, seen::add);
+
+        assertTrue(seen.isEmpty());
+        verify(conn).prepareStatement(argThat(sql -> sql.contains("ORDER BY UPPER(TRIM(country.Region))") && !sql.contains("LIMIT")));
+        verify(stmt, never()).setObject(anyInt(), any());
+    }
+
+    @Test
+    void testMissingNameMatchesNothing() throws Exception {
+        List<City> seen = new ArrayList<>();
+        new CityDAO(conn).forEachCity(Scope.COUNTRY, null, 10, seen::add);
+
+        assertTrue(seen.isEmpty());
+        verify(conn, never()).prepareStatement(anyString());
+    }
+}
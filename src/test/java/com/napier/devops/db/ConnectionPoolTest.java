@@ -0,0 +1,92 @@
+package com.napier.devops.db;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ConnectionPoolTest {
+
+    private final List<Connection> opened = new ArrayList<>();
+    private ConnectionPool pool;
+
+    private ConnectionPool newPool(int min, int max, long acquireTimeoutMillis) {
+        PoolConfig config = new PoolConfig();
+        config.setMinSize(min);
+        config.setMaxSize(max);
+        config.setAcquireTimeoutMillis(acquireTimeoutMillis);
+        pool = new ConnectionPool(config, () -> {
+            Connection raw = mock(Connection.class);
+            try {
+                when(raw.getAutoCommit()).thenReturn(true);
+                when(raw.isValid(anyInt())).thenReturn(true);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            opened.add(raw);
+            return raw;
+        });
+        return pool;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) pool.close();
+    }
+
+    @Test
+    void testPoolOpensMinimumConnections() {
+        newPool(2, 4, 100);
+        assertEquals(2, pool.getTotalCount());
+        assertEquals(2, pool.getIdleCount());
+    }
+
+    @Test
+    void testClosedHandleReturnsConnectionToPool() throws SQLException {
+        newPool(1, 1, 100);
+        Connection first = pool.getConnection();
+        assertEquals(1, pool.getActiveCount());
+        first.close();
+        assertEquals(0, pool.getActiveCount());
+        assertTrue(first.isClosed());
+        verify(opened.get(0), never()).close();
+
+        try (Connection second = pool.getConnection()) {
+            assertNotNull(second);
+        }
+        assertEquals(1, opened.size());
+    }
+
+    @Test
+    void testAcquireTimesOutWhenExhausted() throws SQLException {
+        newPool(0, 1, 50);
+        Connection held = pool.getConnection();
+        SQLException e = assertThrows(SQLException.class, () -> pool.getConnection());
+        assertTrue(e.getMessage().contains("Timed out"));
+        held.close();
+        assertNotNull(pool.getConnection());
+    }
+
+    @Test
+    void testReturnedHandleCannotBeReused() throws SQLException {
+        newPool(0, 1, 50);
+        Connection handle = pool.getConnection();
+        handle.close();
+        assertThrows(SQLException.class, () -> handle.prepareStatement("SELECT 1"));
+    }
+
+    @Test
+    void testBrokenConnectionIsDiscarded() throws SQLException {
+        newPool(0, 2, 50);
+        Connection handle = pool.getConnection();
+        when(opened.get(0).isClosed()).thenReturn(true);
+        handle.close();
+        assertEquals(0, pool.getTotalCount());
+    }
+}
@@ -0,0 +1,67 @@
+package com.napier.devops.db;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataVersionTest {
+
+    @Test
+    void testMissingConnectionKeepsTheLastVersion() {
+        DataVersion version = new DataVersion(ConnectionSource.of(null), 0);
+        assertEquals(0, version.current());
+        assertEquals(0, version.current());
+    }
+
+    @Test
+    void testProbesOnFirstUseAndAfterInvalidate() {
+        AtomicInteger probes = new AtomicInteger();
+        DataVersion version = new DataVersion(() -> {
+            probes.incrementAndGet();
+            throw new SQLException("down");
+        }, 60_000);
+
+        version.current();
+        version.current();
+        assertEquals(1, probes.get());
+        version.invalidate();
+        version.current();
+        assertEquals(2, probes.get());
+    }
+
+    @Test
+    void testUnreachableDatabaseIsReportedOnce() {
+        Logger logger = Logger.getLogger(DataVersion.class.getName());
+        List<LogRecord> records = new ArrayList<>();
+        Handler handler = new Handler() {
+            @Override public void publish(LogRecord record) { records.add(record); }
+            @Override public void flush() { }
+            @Override public void close() { }
+        };
+        Level level = logger.getLevel();
+        logger.addHandler(handler);
+        logger.setLevel(Level.ALL);
+        try {
+            DataVersion version = new DataVersion(() -> {
+                throw new SQLException("down");
+            }, 0);
+            for (int i = 0; i < 3; i++) assertEquals(0, version.current());
+        } finally {
+            logger.removeHandler(handler);
+            logger.setLevel(level);
+        }
+
+        assertEquals(3, records.size());
+        assertEquals(List.of(Level.WARNING, Level.FINE, Level.FINE), records.stream().map(LogRecord::getLevel).toList());
+        assertTrue(records.stream().allMatch(r -> r.getThrown() == null));
+    }
+}
@@ -0,0 +1,92 @@
+package com.napier.devops.db;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SlowQueryLogTest {
+
+    @AfterEach
+    void tearDown() {
+        SlowQueryLog.setCurrentRequest(null);
+    }
+
+    @Test
+    void testStatementOverThresholdIsKeptWithItsRequest() {
+        SlowQueryLog log = new SlowQueryLog(0, 4);
+        SlowQueryLog.setCurrentRequest("GET /reports/cities?scope=region&name=Caribbean");
+        try (SlowQueryLog.Timer timer = log.start("SELECT * FROM city WHERE Region = ?", "Caribbean")) {
+            timer.row();
+            timer.row();
+        }
+
+        List<SlowQueryLog.Entry> samples = log.samples();
+        assertEquals(1, samples.size());
+        SlowQueryLog.Entry entry = samples.get(0);
+        assertEquals(1, entry.getId());
+        assertEquals("GET /reports/cities?scope=region&name=Caribbean", entry.getRequest());
+        assertEquals(List.of("Caribbean"), entry.getParams());
+        assertEquals(2, entry.getRows());
+        assertNull(entry.getPlan());
+    }
+
+    @Test
+    void testFastStatementsAreNotKept() {
+        SlowQueryLog log = new SlowQueryLog(60_000, 4);
+        log.start("SELECT 1").close();
+        assertTrue(log.samples().isEmpty());
+
+        SlowQueryLog disabled = new SlowQueryLog(-1, 4);
+        disabled.start("SELECT 1").close();
+        assertTrue(disabled.samples().isEmpty());
+    }
+
+    @Test
+    void testRingKeepsTheNewestSamples() {
+        SlowQueryLog log = new SlowQueryLog(0, 3);
+        for (int i = 1; i <= 5; i++) {
+            log.start("SELECT " + i).close();
+        }
+
+        List<SlowQueryLog.Entry> samples = log.samples();
+        assertEquals(List.of("SELECT 5", "SELECT 4", "SELECT 3"), samples.stream().map(SlowQueryLog.Entry::getSql).toList());
+        assertNotNull(log.find(3));
+        assertNull(log.find(2));
+    }
+
+    @Test
+    void testExplainBindsTheSampleParametersOnce() throws SQLException {
+        Connection conn = mock(Connection.class);
+        PreparedStatement stmt = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        when(conn.prepareStatement("EXPLAIN FORMAT=JSON SELECT * FROM city WHERE District = ?")).thenReturn(stmt);
+        when(stmt.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        when(rs.getString(1)).thenReturn("{\"query_block\":{}}");
+
+        SlowQueryLog log = new SlowQueryLog(0, 4);
+        log.setExplainSource(ConnectionSource.of(conn));
+        log.start("SELECT * FROM city WHERE District = ?", "Kabol").close();
+
+        assertEquals("{\"query_block\":{}}", log.explain(1).getPlan());
+        assertEquals("{\"query_block\":{}}", log.explain(1).getPlan());
+        verify(stmt).setObject(1, "Kabol");
+        verify(stmt, times(1)).executeQuery();
+        assertNull(log.explain(7));
+    }
+
+    @Test
+    void testExplainNeedsASource() {
+        SlowQueryLog log = new SlowQueryLog(0, 4);
+        log.start("SELECT 1").close();
+        assertThrows(IllegalStateException.class, () -> log.explain(1));
+    }
+}
@@ -0,0 +1,116 @@
+package com.napier.devops.db;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class StatementCacheTest {
+
+    private Connection raw;
+    private final Map<String, PreparedStatement> prepared = new HashMap<>();
+    private final StatementCache.Stats stats = new StatementCache.Stats();
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        raw = mock(Connection.class);
+        when(raw.prepareStatement(anyString())).thenAnswer(call -> {
+            PreparedStatement statement = mock(PreparedStatement.class);
+            prepared.put(call.getArgument(0), statement);
+            return statement;
+        });
+    }
+
+    @Test
+    void testClosedStatementIsReused() throws SQLException {
+        StatementCache cache = new StatementCache(raw, 4, stats);
+        try (PreparedStatement first = cache.prepare("SELECT 1")) {
+            first.setInt(1, 5);
+        }
+        try (PreparedStatement second = cache.prepare("SELECT 1")) {
+            assertFalse(second.isClosed());
+        }
+
+        verify(raw, times(1)).prepareStatement("SELECT 1");
+        verify(prepared.get("SELECT 1"), times(2)).clearParameters();
+        verify(prepared.get("SELECT 1"), never()).close();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+    }
+
+    @Test
+    void testResultSetLeftOpenIsClosedOnCheckIn() throws SQLException {
+        StatementCache cache = new StatementCache(raw, 4, stats);
+        ResultSet rs = mock(ResultSet.class);
+        try (PreparedStatement statement = cache.prepare("SELECT 1")) {
+            when(prepared.get("SELECT 1").getResultSet()).thenReturn(rs);
+            statement.executeQuery();
+        }
+
+        verify(rs).close();
+        verify(prepared.get("SELECT 1"), never()).close();
+    }
+
+    @Test
+    void testStatementInUseIsNotShared() throws SQLException {
+        StatementCache cache = new StatementCache(raw, 4, stats);
+        PreparedStatement first = cache.prepare("SELECT 1");
+        PreparedStatement second = cache.prepare("SELECT 1");
+
+        verify(raw, times(2)).prepareStatement("SELECT 1");
+        assertEquals(2, stats.getMisses());
+        first.close();
+        second.close();
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvicted() throws SQLException {
+        StatementCache cache = new StatementCache(raw, 2, stats);
+        cache.prepare("SELECT 1").close();
+        cache.prepare("SELECT 2").close();
+        cache.prepare("SELECT 1").close();
+        cache.prepare("SELECT 3").close();
+
+        assertEquals(2, cache.size());
+        assertEquals(1, stats.getEvictions());
+        verify(prepared.get("SELECT 2")).close();
+        verify(prepared.get("SELECT 1"), never()).close();
+    }
+
+    @Test
+    void testClosedHandleCannotBeReused() throws SQLException {
+        StatementCache cache = new StatementCache(raw, 2, stats);
+        PreparedStatement handle = cache.prepare("SELECT 1");
+        handle.close();
+        assertTrue(handle.isClosed());
+        assertThrows(SQLException.class, handle::executeQuery);
+    }
+
+    @Test
+    void testPoolHandsOutCachedStatements() throws SQLException {
+        PoolConfig config = new PoolConfig();
+        config.setMinSize(0);
+        config.setMaxSize(1);
+        try (ConnectionPool pool = new ConnectionPool(config, () -> raw)) {
+            for (int i = 0; i < 3; i++) {
+                try (Connection conn = pool.getConnection();
+                     PreparedStatement stmt = conn.prepareStatement("SELECT 1")) {
+                    assertNotNull(stmt);
+                }
+            }
+            assertEquals(2, pool.getStatementStats().getHits());
+            verify(raw, times(1)).prepareStatement("SELECT 1");
+        }
+        verify(prepared.get("SELECT 1")).close();
+    }
+}
@@ -0,0 +1,53 @@
+package com.napier.devops.db;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionedValueTest {
+
+    private final AtomicLong version = new AtomicLong(1);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void testLoadsOnceUntilTheVersionChanges() {
+        VersionedValue<Integer> value = watched();
+        VersionedValue.Loader<Integer> loader = loads::incrementAndGet;
+
+        assertEquals(1, value.get(loader));
+        assertEquals(1, value.get(loader));
+        version.incrementAndGet();
+        assertEquals(2, value.get(loader));
+        assertEquals(2, value.get(loader));
+    }
+
+    @Test
+    void testFailedReloadKeepsThePreviousValue() {
+        VersionedValue<Integer> value = watched();
+        assertEquals(1, value.get(loads::incrementAndGet));
+
+        version.incrementAndGet();
+        assertEquals(1, value.get(() -> {
+            throw new SQLException("gone");
+        }));
+        assertFalse(value.refresh(() -> {
+            throw new SQLException("gone");
+        }));
+        assertEquals(2, value.get(loads::incrementAndGet));
+    }
+
+    private VersionedValue<Integer> watched() {
+        VersionedValue<Integer> value = new VersionedValue<>();
+        value.watch(new DataVersion(null, 0) {
+            @Override
+            public long current() {
+                return version.get();
+            }
+        });
+        return value;
+    }
+}
@@ -0,0 +1,107 @@
+package com.napier.devops.generator;
+
+import com.napier.devops.snapshot.WorldSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorldGeneratorTest {
+
+    /** Keeps every generated row for inspection. */
+    private static final class Rows implements WorldGenerator.Sink {
+        final Map<String, Integer> capitals = new HashMap<>();
+        final Set<String> codes = new HashSet<>();
+        final List<int[]> cities = new ArrayList<>();   // id, population
+        final Map<Integer, String> cityCountry = new HashMap<>();
+        final Map<String, Integer> languagesPerCountry = new HashMap<>();
+        int longestCityName;
+
+        @Override
+        public void country(String code, String name, String continent, String region, long population, Integer capitalId) {
+            assertTrue(codes.add(code), "duplicate code " + code);
+            assertTrue(population > 0 && population <= Integer.MAX_VALUE);
+            if (capitalId != null) capitals.put(code, capitalId);
+        }
+
+        @Override
+        public void city(int id, String name, String countryCode, String district, int population) {
+            cities.add(new int[]{id, population});
+            cityCountry.put(id, countryCode);
+            longestCityName = Math.max(longestCityName, name.length());
+            assertTrue(district.length() <= 20);
+        }
+
+        @Override
+        public void language(String countryCode, String language, boolean official, short tenths) {
+            languagesPerCountry.merge(countryCode, 1, Integer::sum);
+            assertTrue(tenths > 0 && tenths <= 1000);
+        }
+    }
+
+    @Test
+    void testSameSeedGivesTheSameData() throws IOException {
+        assertEquals(sql(7, 0.5), sql(7, 0.5));
+        assertNotEquals(sql(7, 0.5), sql(8, 0.5));
+    }
+
+    @Test
+    void testRowsAreConsistentAndSkewed() throws IOException {
+        WorldGenerator generator = new WorldGenerator(42, 2);
+        Rows rows = new Rows();
+        generator.generate(rows);
+
+        assertEquals(2 * WorldGenerator.STOCK_CITIES, rows.cities.size());
+        assertEquals(generator.countryCount(), rows.codes.size());
+        assertTrue(rows.longestCityName <= 35);
+        // Every capital is a city of its own country, and some small countries have no cities
+        rows.capitals.forEach((code, id) -> assertEquals(code, rows.cityCountry.get(id)));
+        assertTrue(rows.capitals.size() < rows.codes.size());
+        assertTrue(rows.languagesPerCountry.values().stream().anyMatch(n -> n > 3));
+
+        // The largest tenth of the cities holds most of the city population
+        List<int[]> bySize = new ArrayList<>(rows.cities);
+        bySize.sort(Comparator.comparingInt((int[] city) -> city[1]).reversed());
+        long total = bySize.stream().mapToLong(city -> city[1]).sum();
+        long top = bySize.subList(0, bySize.size() / 10).stream().mapToLong(city -> city[1]).sum();
+        assertTrue(top > total / 2, "top tenth holds " + top + " of " + total);
+    }
+
+    @Test
+    void testFeedsASnapshotDirectly() throws IOException {
+        WorldGenerator generator = new WorldGenerator(42, 1);
+        WorldSnapshot.Builder builder = new WorldSnapshot.Builder();
+        generator.generate(WorldGenerator.into(builder));
+        WorldSnapshot snapshot = builder.build();
+
+        assertEquals(WorldGenerator.STOCK_CITIES, snapshot.cityCount());
+        assertEquals(generator.countryCount(), snapshot.countryCount());
+    }
+
+    @Test
+    void testSqlIsBatchedAndQuoted() throws IOException {
+        String sql = sql(1, 1);
+        assertTrue(sql.contains("TRUNCATE TABLE `city`;"));
+        assertTrue(sql.trim().endsWith("SET FOREIGN_KEY_CHECKS = 1;"));
+        long cityInserts = sql.lines().filter(line -> line.startsWith("INSERT INTO `city`")).count();
+        assertEquals((WorldGenerator.STOCK_CITIES + SqlWriter.ROWS_PER_INSERT - 1) / SqlWriter.ROWS_PER_INSERT, cityInserts);
+        assertEquals("'O''Brien \\\\ Co'", SqlWriter.quote("O'Brien \\ Co"));
+    }
+
+    private static String sql(long seed, double scale) throws IOException {
+        StringWriter out = new StringWriter();
+        try (SqlWriter writer = new SqlWriter(out)) {
+            new WorldGenerator(seed, scale).generate(writer);
+        }
+        return out.toString();
+    }
+}
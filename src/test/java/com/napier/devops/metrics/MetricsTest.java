@@ -0,0 +1,74 @@
+package com.napier.devops.metrics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsTest {
+
+    @AfterEach
+    void tearDown() {
+        Metrics.reset();
+    }
+
+    @Test
+    void testHistogramBucketsByPowerOfTwo() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(10_000);          // 10 µs
+        histogram.record(64_000);          // 64 µs, on the first bound
+        histogram.record(65_000);          // 65 µs
+        histogram.record(60_000_000_000L); // a minute
+
+        long[] buckets = histogram.bucketCounts();
+        assertEquals(2, buckets[0]);
+        assertEquals(1, buckets[1]);
+        assertEquals(1, buckets[LatencyHistogram.BUCKETS]);
+        assertEquals(4, histogram.getCount());
+        assertEquals(0.000128, LatencyHistogram.upperBoundSeconds(1));
+    }
+
+    @Test
+    void testTimedCallCountsRowsAndFailures() {
+        List<String> rows = Metrics.timed("CityDAO", "getCitiesInRegion", () -> List.of("a", "b", "c"));
+        Metrics.timed("CityDAO", "getCitiesInRegion", () -> {
+            Metrics.markFailed();
+            return new ArrayList<>();
+        });
+
+        Metrics.Series series = Metrics.call("CityDAO", "getCitiesInRegion");
+        assertEquals(3, rows.size());
+        assertEquals(2, series.getCalls());
+        assertEquals(1, series.getErrors());
+        assertEquals(3, series.getRows());
+        assertEquals(2, series.getLatency().getCount());
+    }
+
+    @Test
+    void testRowsGoToTheInnermostRequest() {
+        Metrics.Sample request = Metrics.startRequest("/reports/cities", "region");
+        Metrics.timed("CityDAO", "getCitiesInRegion", () -> List.of("a"));
+        Metrics.addResponseRows(1);
+        request.stop();
+        Metrics.addResponseRows(5);
+
+        assertEquals(1, Metrics.request("/reports/cities", "region").getRows());
+    }
+
+    @Test
+    void testScrapeUsesTextExpositionFormat() {
+        Metrics.startRequest("/reports/cities", "continent").stop();
+        Metrics.gauge("db_pool_active_connections", "Connections currently lent out", () -> 3);
+
+        String body = Metrics.scrape();
+        assertTrue(body.contains("# TYPE http_request_duration_seconds histogram\n"));
+        assertTrue(body.contains("http_requests_total{route=\"/reports/cities\",scope=\"continent\"} 1\n"));
+        assertTrue(body.contains("http_request_duration_seconds_bucket{route=\"/reports/cities\",scope=\"continent\",le=\"+Inf\"} 1\n"));
+        assertTrue(body.contains("http_request_duration_seconds_bucket{route=\"/reports/cities\",scope=\"continent\",le=\"0.000064\"}"));
+        assertTrue(body.contains("# TYPE db_pool_active_connections gauge\ndb_pool_active_connections 3\n"));
+        assertFalse(body.contains("dao_call"));
+    }
+}
@@ -0,0 +1,61 @@
+package com.napier.devops.models;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CityTableTest {
+
+    private static final City KABUL = new City("Kabul", "Kabol", "Afghanistan", "Asia", 1780000);
+    private static final City HERAT = new City("Herat", "Herat", "Afghanistan", "Asia", 186800);
+    private static final City AMSTERDAM = new City("Amsterdam", "Noord-Holland", "Netherlands", "Europe", 731200);
+
+    @Test
+    void testBehavesLikeAListOfCities() {
+        CityTable table = new CityTable(1);
+        table.add(KABUL);
+        table.add(HERAT);
+        table.add(1, AMSTERDAM);
+
+        assertEquals(List.of(KABUL, AMSTERDAM, HERAT), table);
+        assertEquals(731200, table.getPopulation(1));
+
+        assertEquals(AMSTERDAM, table.remove(1));
+        table.set(0, HERAT);
+        assertEquals(List.of(HERAT, HERAT), table);
+        assertThrows(IndexOutOfBoundsException.class, () -> table.get(2));
+    }
+
+    @Test
+    void testSortsAndCopies() {
+        CityTable table = new CityTable(List.of(HERAT, KABUL, AMSTERDAM));
+        table.sort(Comparator.comparingLong(City::getPopulation).reversed());
+        CityTable copy = new CityTable(table);
+        copy.remove(0);
+
+        assertEquals(List.of(KABUL, AMSTERDAM, HERAT), table);
+        assertEquals(List.of(AMSTERDAM, HERAT), copy);
+    }
+
+    @Test
+    void testSerialisesLikeAnArrayList() {
+        Gson gson = new Gson();
+        List<City> cities = List.of(KABUL, AMSTERDAM);
+        assertEquals(gson.toJson(new ArrayList<>(cities)), gson.toJson(new CityTable(cities)));
+    }
+
+    @Test
+    void testGeographyStringsAreShared() {
+        City first = new City("Kabul", new String("Kabol"), new String("Afghanistan"), new String("Asia"), 1);
+        City second = new City("Herat", new String("Herat"), new String("Afghanistan"), new String("Asia"), 1);
+
+        assertSame(first.getCountry(), second.getCountry());
+        assertSame(first.getContinent(), second.getContinent());
+        assertNull(GeoNames.canonical(null));
+    }
+}
@@ -0,0 +1,93 @@
+package com.napier.devops.snapshot;
+
+import com.napier.devops.dao.Scope;
+import com.napier.devops.models.City;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    private SnapshotReports reports;
+    private MappedSnapshot mapped;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        WorldSnapshot snapshot = new WorldSnapshot.Builder()
+                .addCountry("FRA", "France", "Europe", "Western Europe", 1000, 1)
+                .addCountry("DEU", "Germany", "Europe", "Western Europe", 2000, 3)
+                .addCountry("JPN", "Japan", "Asia", "Eastern Asia", 5000, 5)
+                .addCity(1, "Paris", "FRA", "Île-de-France", 300)
+                .addCity(2, "Lyon", "FRA", "Rhône-Alpes", 100)
+                .addCity(3, "Berlin", "DEU", "Berliini", 400)
+                .addCity(4, "Hamburg", "DEU", "Hamburg", 200)
+                .addCity(5, "Tokyo", "JPN", "Tokyo-to", 900)
+                .addCity(6, "Ōsaka", "JPN", "Osaka", 300)
+                .addLanguage("JPN", "Japanese", (short) 995)
+                .build();
+        reports = new SnapshotReports(snapshot);
+        Path file = dir.resolve("world.snapshot");
+        SnapshotFile.write(snapshot, file);
+        mapped = MappedSnapshot.open(file);
+    }
+
+    @Test
+    void testReportsMatchTheHeapSnapshot() throws IOException {
+        assertEquals(6, mapped.cityCount());
+        assertEquals(reports.cities(Scope.WORLD, null, SnapshotReports.UNLIMITED), cities(Scope.WORLD, null, -1));
+        assertEquals(reports.cities(Scope.CONTINENT, "europe", 3), cities(Scope.CONTINENT, "europe", 3));
+        assertEquals(reports.cities(Scope.REGION, "Eastern Asia", 10), cities(Scope.REGION, "Eastern Asia", 10));
+        assertEquals(reports.cities(Scope.COUNTRY, "germany", 10), cities(Scope.COUNTRY, "germany", 10));
+        assertEquals(reports.cities(Scope.COUNTRY_CODE, "fra", 10), cities(Scope.COUNTRY_CODE, "fra", 10));
+    }
+
+    @Test
+    void testDistrictsAreFoundInTheFile() throws IOException {
+        assertEquals(List.of("Paris"), names(Scope.DISTRICT, "Île-de-France"));
+        assertEquals(List.of("Lyon"), names(Scope.DISTRICT, "RHÔNE-ALPES"));
+        assertTrue(names(Scope.DISTRICT, "Atlantis").isEmpty());
+    }
+
+    @Test
+    void testUnknownOrMissingNamesVisitNothing() throws IOException {
+        assertTrue(names(Scope.CONTINENT, null).isEmpty());
+        assertTrue(names(Scope.REGION, "Atlantis").isEmpty());
+        assertTrue(names(Scope.WORLD, null, 0).isEmpty());
+    }
+
+    @Test
+    void testForeignFilesAreRejected() throws IOException {
+        Path file = dir.resolve("other.snapshot");
+        Files.writeString(file, "not a snapshot at all");
+        assertThrows(IOException.class, () -> MappedSnapshot.open(file));
+    }
+
+    private List<City> cities(Scope scope, String name, int limit) throws IOException {
+        List<City> cities = new ArrayList<>();
+        mapped.forEachCity(scope, name, limit, row -> cities.add(new City(mapped.cityName(row),
+                mapped.cityDistrict(row), mapped.cityCountry(row), mapped.cityContinent(row),
+                mapped.cityPopulation(row))));
+        return cities;
+    }
+
+    private List<String> names(Scope scope, String name) throws IOException {
+        return names(scope, name, -1);
+    }
+
+    private List<String> names(Scope scope, String name, int limit) throws IOException {
+        List<String> names = new ArrayList<>();
+        mapped.forEachCity(scope, name, limit, row -> names.add(mapped.cityName(row)));
+        return names;
+    }
+}
@@ -0,0 +1,79 @@
+package com.napier.devops.snapshot;
+
+import com.google.gson.Gson;
+import com.napier.devops.dao.Scope;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotFileTest {
+
+    @TempDir
+    Path dir;
+
+    private static WorldSnapshot world() {
+        return new WorldSnapshot.Builder()
+                .addCountry("FRA", "France", "Europe", "Western Europe", 1000, 1)
+                .addCountry("DEU", "Germany", "Europe", "Western Europe", 2000, 3)
+                .addCountry("JPN", "Japan", "Asia", "Eastern Asia", 5000, null)
+                .addCity(1, "Paris", "FRA", "Île-de-France", 300)
+                .addCity(2, "Lyon", "FRA", "Rhône-Alpes", 100)
+                .addCity(3, "Berlin", "DEU", "Berliini", 400)
+                .addCity(5, "Tokyo", "JPN", "Tokyo-to", 900)
+                .addLanguage("FRA", "French", (short) 1000)
+                .addLanguage("DEU", "German", (short) 900)
+                .addLanguage("JPN", "Japanese", (short) 995)
+                .build();
+    }
+
+    @Test
+    void testSavedSnapshotAnswersReportsLikeTheOriginal() throws IOException {
+        SnapshotReports original = new SnapshotReports(world());
+        Path file = dir.resolve("nested").resolve("world.snapshot");
+        SnapshotFile.write(original.getSnapshot(), file);
+        SnapshotReports restored = new SnapshotReports(SnapshotFile.read(file));
+
+        assertFalse(Files.exists(dir.resolve("nested").resolve("world.snapshot.tmp")));
+        assertEquals(original.cities(Scope.WORLD, null, SnapshotReports.UNLIMITED),
+                restored.cities(Scope.WORLD, null, SnapshotReports.UNLIMITED));
+        assertEquals(original.countries(Scope.CONTINENT, "Europe", SnapshotReports.UNLIMITED),
+                restored.countries(Scope.CONTINENT, "Europe", SnapshotReports.UNLIMITED));
+        assertEquals(original.capitals(Scope.WORLD, null, SnapshotReports.UNLIMITED),
+                restored.capitals(Scope.WORLD, null, SnapshotReports.UNLIMITED));
+        Gson gson = new Gson();
+        assertEquals(gson.toJson(original.languages(Scope.WORLD, null, SnapshotReports.UNLIMITED)),
+                gson.toJson(restored.languages(Scope.WORLD, null, SnapshotReports.UNLIMITED)));
+        assertEquals("Île-de-France", restored.cities(Scope.COUNTRY_CODE, "FRA", 1).get(0).getDistrict());
+    }
+
+    @Test
+    void testOtherFormatVersionsAreRejected() throws IOException {
+        Path file = dir.resolve("world.snapshot");
+        SnapshotFile.write(world(), file);
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(4, SnapshotFile.FORMAT_VERSION + 1);
+        Files.write(file, bytes);
+
+        IOException e = assertThrows(IOException.class, () -> SnapshotFile.read(file));
+        assertTrue(e.getMessage().contains("version"));
+    }
+
+    @Test
+    void testTruncatedOrForeignFilesAreRejected() throws IOException {
+        Path file = dir.resolve("world.snapshot");
+        SnapshotFile.write(world(), file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+        assertThrows(IOException.class, () -> SnapshotFile.read(file));
+
+        Files.writeString(file, "not a snapshot at all");
+        assertThrows(IOException.class, () -> SnapshotFile.read(file));
+    }
+}
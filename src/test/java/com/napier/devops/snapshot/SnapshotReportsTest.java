@@ -0,0 +1,165 @@
+package com.napier.devops.snapshot;
+
+import com.napier.devops.dao.Page;
+import com.napier.devops.dao.PageCursor;
+import com.napier.devops.dao.Scope;
+import com.napier.devops.models.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotReportsTest {
+
+    private SnapshotReports reports;
+
+    @BeforeEach
+    void setUp() {
+        WorldSnapshot snapshot = new WorldSnapshot.Builder()
+                .addCountry("FRA", "France", "Europe", "Western Europe", 1000, 1)
+                .addCountry("DEU", "Germany", "Europe", "Western Europe", 2000, 3)
+                .addCountry("JPN", "Japan", "Asia", "Eastern Asia", 5000, 5)
+                .addCity(1, "Paris", "FRA", "Ile-de-France", 300)
+                .addCity(2, "Lyon", "FRA", "Rhone-Alpes", 100)
+                .addCity(3, "Berlin", "DEU", "Berliini", 400)
+                .addCity(4, "Hamburg", "DEU", "Hamburg", 200)
+                .addCity(5, "Tokyo", "JPN", "Tokyo-to", 900)
+                .addLanguage("FRA", "French", (short) 1000)
+                .addLanguage("DEU", "German", (short) 900)
+                .addLanguage("DEU", "French", (short) 100)
+                .addLanguage("JPN", "Japanese", (short) 995)
+                .build();
+        reports = new SnapshotReports(snapshot);
+    }
+
+    @Test
+    void testCitiesAreLargestFirstAndLimited() {
+        List<City> cities = reports.cities(Scope.WORLD, null, 3);
+        assertEquals(List.of("Tokyo", "Berlin", "Paris"), cities.stream().map(City::getName).toList());
+        assertEquals("Japan", cities.get(0).getCountry());
+        assertEquals("Asia", cities.get(0).getContinent());
+    }
+
+    @Test
+    void testCitiesInScopeIgnoreCase() {
+        List<City> cities = reports.cities(Scope.CONTINENT, "europe", SnapshotReports.UNLIMITED);
+        assertEquals(List.of("Berlin", "Paris", "Hamburg", "Lyon"), cities.stream().map(City::getName).toList());
+        assertTrue(reports.cities(Scope.REGION, "Atlantis", 10).isEmpty());
+        assertTrue(reports.cities(Scope.CONTINENT, null, 10).isEmpty());
+        assertTrue(reports.cities(Scope.WORLD, null, 0).isEmpty());
+    }
+
+    @Test
+    void testCityPagesFollowTheCursor() {
+        Page<City> first = reports.citiesPage(Scope.WORLD, null, 2, null);
+        assertEquals(List.of("Tokyo", "Berlin"), first.getData().stream().map(City::getName).toList());
+
+        Page<City> second = reports.citiesPage(Scope.WORLD, null, 2, PageCursor.decode(first.getNext()));
+        assertEquals(List.of("Paris", "Hamburg"), second.getData().stream().map(City::getName).toList());
+
+        Page<City> last = reports.citiesPage(Scope.WORLD, null, 2, PageCursor.decode(second.getNext()));
+        assertEquals(List.of("Lyon"), last.getData().stream().map(City::getName).toList());
+        assertNull(last.getNext());
+
+        Page<City> europe = reports.citiesPage(Scope.CONTINENT, "Europe", 2, new PageCursor(300, "1"));
+        assertEquals(List.of("Hamburg", "Lyon"), europe.getData().stream().map(City::getName).toList());
+        assertNull(europe.getNext());
+        assertTrue(reports.citiesPage(Scope.REGION, "Atlantis", 2, null).getData().isEmpty());
+    }
+
+    @Test
+    void testCountryPagesBreakTiesByCode() {
+        WorldSnapshot tied = new WorldSnapshot.Builder()
+                .addCountry("NLD", "Netherlands", "Europe", "Western Europe", 500, -1)
+                .addCountry("BEL", "Belgium", "Europe", "Western Europe", 500, -1)
+                .addCountry("LUX", "Luxembourg", "Europe", "Western Europe", 100, -1)
+                .build();
+        SnapshotReports tiedReports = new SnapshotReports(tied);
+
+        Page<Country> first = tiedReports.countriesPage(Scope.REGION, "Western Europe", 1, null);
+        assertEquals("BEL", first.getData().get(0).getCode());
+        Page<Country> second = tiedReports.countriesPage(Scope.REGION, "Western Europe", 5, PageCursor.decode(first.getNext()));
+        assertEquals(List.of("NLD", "LUX"), second.getData().stream().map(Country::getCode).toList());
+        assertNull(second.getNext());
+    }
+
+    @Test
+    void testCitiesGroupedByContinent() {
+        List<City> cities = reports.citiesGroupedBy(Scope.CONTINENT, SnapshotReports.UNLIMITED);
+        assertEquals(List.of("Tokyo", "Berlin", "Paris", "Hamburg", "Lyon"), cities.stream().map(City::getName).toList());
+    }
+
+    @Test
+    void testGroupNamesIgnoreSurroundingWhitespaceInEveryReport() {
+        SnapshotReports padded = new SnapshotReports(new WorldSnapshot.Builder()
+                .addCountry("FRA", "France", "Europe", " Western Europe", 1000, null)
+                .addCountry("DEU", "Germany", "Europe", "Western Europe", 2000, null)
+                .addCountry("ITA", "Italy", "Europe", "Southern Europe ", 1500, null)
+                .addCity(1, "Paris", "FRA", "Ile-de-France", 300)
+                .addCity(2, "Berlin", "DEU", "Berliini", 400)
+                .addCity(3, "Rome", "ITA", "Latium", 350)
+                .build());
+
+        assertEquals(List.of("ITA", "DEU", "FRA"), padded.countriesGroupedBy(Scope.REGION, SnapshotReports.UNLIMITED)
+                .stream().map(Country::getCode).toList());
+        assertEquals(List.of("Rome", "Berlin", "Paris"), padded.citiesGroupedBy(Scope.REGION, SnapshotReports.UNLIMITED)
+                .stream().map(City::getName).toList());
+    }
+
+    @Test
+    void testCountriesAndCapitals() {
+        List<Country> countries = reports.countries(Scope.REGION, "Western Europe", SnapshotReports.UNLIMITED);
+        assertEquals(List.of("DEU", "FRA"), countries.stream().map(Country::getCode).toList());
+        assertEquals("Berlin", countries.get(0).getCapital());
+
+        List<CapitalCity> capitals = reports.capitals(Scope.CONTINENT, "Europe", 1);
+        assertEquals(1, capitals.size());
+        assertEquals("Berlin", capitals.get(0).getName());
+    }
+
+    @Test
+    void testPopulationRollup() {
+        assertEquals(8000, reports.globalPopulation());
+
+        List<Population> continents = reports.populations(Scope.CONTINENT, SnapshotReports.UNLIMITED);
+        assertEquals("Asia", continents.get(0).getLabel());
+        Population europe = continents.get(1);
+        assertEquals(3000, europe.getTotalPopulation());
+        assertEquals(1000, europe.getCityPopulation());
+        assertEquals(2000, europe.getNonCityPopulation());
+
+        List<Population> france = reports.populationOf(Scope.COUNTRY_CODE, "FRA", 1);
+        assertEquals("France", france.get(0).getLabel());
+        assertEquals(400, france.get(0).getCityPopulation());
+        assertTrue(reports.populationOf(Scope.REGION, null, 1).isEmpty());
+    }
+
+    @Test
+    void testLanguageSpeakers() {
+        List<Language> global = reports.languages(Scope.WORLD, null, SnapshotReports.UNLIMITED);
+        assertEquals("Japanese", global.get(0).getLanguage());
+        assertEquals(4975, global.get(0).getSpeakers());
+        assertEquals("German", global.get(1).getLanguage());
+        assertEquals("French", global.get(2).getLanguage());
+        assertEquals(1200, global.get(2).getSpeakers());
+        assertEquals("15.00", global.get(2).getPercentOfGlobalPopulation());
+
+        List<Language> europe = reports.languages(Scope.CONTINENT, "Europe", 5);
+        assertEquals("Europe", europe.get(0).getScopeName());
+        assertEquals("60.00", europe.get(0).getPercentOfContinentPopulation());
+    }
+
+    @Test
+    void testLanguageMatrixMatchesTheReports() {
+        LanguageMatrix matrix = reports.languageStats().matrix(Scope.CONTINENT);
+        assertEquals(List.of("Japanese", "German", "French"), matrix.getLanguages());
+        assertEquals(List.of("Asia", "Europe"), matrix.getAreas());
+        for (Language language : reports.languages(Scope.CONTINENT, "Europe", SnapshotReports.UNLIMITED)) {
+            int row = matrix.getLanguages().indexOf(language.getLanguage());
+            assertTrue(matrix.getCells().stream().anyMatch(c -> c.getLanguage() == row && c.getArea() == 1
+                    && c.getSpeakers() == language.getSpeakers()));
+        }
+    }
+}
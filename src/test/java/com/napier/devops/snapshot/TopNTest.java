@@ -0,0 +1,55 @@
+package com.napier.devops.snapshot;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopNTest {
+
+    @Test
+    void testPartitionKeepsInputOrderWithinEachGroup() {
+        int[] sorted = {4, 0, 3, 1, 2};
+        int[] group = {1, 0, 1, 0, 1};
+        TopN.Partition partition = TopN.partition(sorted, 3, row -> group[row]);
+
+        assertEquals(2, partition.size(0));
+        assertEquals(3, partition.row(0, 0));
+        assertEquals(1, partition.row(0, 1));
+        assertEquals(3, partition.size(1));
+        assertEquals(4, partition.row(1, 0));
+        assertEquals(0, partition.row(1, 1));
+        assertEquals(2, partition.row(1, 2));
+        assertEquals(0, partition.size(2));
+        assertEquals(0, partition.size(-1));
+    }
+
+    @Test
+    void testLargestMatchesAFullSort() {
+        Random random = new Random(7);
+        long[] keys = random.longs(500, 0, 50).toArray();
+
+        int[] top = TopN.largest(keys.length, id -> id % 3 != 0, id -> keys[id], 25);
+
+        int[] expected = IntStream.range(0, keys.length)
+                .filter(id -> id % 3 != 0)
+                .boxed()
+                .sorted(Comparator.comparingLong((Integer id) -> keys[id]).reversed())
+                .limit(25)
+                .mapToInt(Integer::intValue)
+                .toArray();
+        assertArrayEquals(expected, top);
+    }
+
+    @Test
+    void testLargestWithFewerMatchesThanRequested() {
+        long[] keys = {5, 9, 1};
+        assertArrayEquals(new int[]{1, 0, 2}, TopN.largest(3, id -> true, id -> keys[id], Integer.MAX_VALUE));
+        assertEquals(0, TopN.largest(3, id -> true, id -> keys[id], 0).length);
+        assertTrue(Arrays.stream(TopN.largest(0, id -> true, id -> 0, 5)).findAny().isEmpty());
+    }
+}
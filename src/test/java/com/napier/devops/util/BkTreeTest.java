@@ -0,0 +1,55 @@
+package com.napier.devops.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BkTreeTest {
+
+    @Test
+    void testDistance() {
+        assertEquals(0, BkTree.distance("paris", "paris", 5));
+        assertEquals(3, BkTree.distance("kitten", "sitting", 5));
+        assertEquals(2, BkTree.distance("frnace", "france", 5));
+        // Past the bound only "more than the bound" is reported
+        assertEquals(2, BkTree.distance("kitten", "sitting", 1));
+        assertEquals(3, BkTree.distance("a", "abcdef", 2));
+    }
+
+    @Test
+    void testSearchFindsExactlyWhatABruteForceScanFinds() {
+        Random random = new Random(7);
+        List<String> words = new ArrayList<>();
+        BkTree tree = new BkTree();
+        for (int i = 0; i < 2000; i++) {
+            String word = randomWord(random);
+            words.add(word);
+            tree.add(word, i);
+        }
+        for (int q = 0; q < 50; q++) {
+            String query = randomWord(random);
+            for (int t = 0; t <= 2; t++) {
+                TreeMap<Integer, Integer> expected = new TreeMap<>();
+                for (int i = 0; i < words.size(); i++) {
+                    int d = BkTree.distance(query, words.get(i), Integer.MAX_VALUE);
+                    if (d <= t) expected.put(i, d);
+                }
+                TreeMap<Integer, Integer> found = new TreeMap<>();
+                tree.search(query, t, (id, d) -> assertNull(found.put(id, d)));
+                assertEquals(expected, found);
+            }
+        }
+    }
+
+    private static String randomWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        int length = 2 + random.nextInt(6);
+        for (int i = 0; i < length; i++) word.append((char) ('a' + random.nextInt(4)));
+        return word.toString();
+    }
+}
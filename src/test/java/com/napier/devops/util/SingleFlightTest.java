@@ -0,0 +1,82 @@
+package com.napier.devops.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    @Test
+    void testConcurrentCallsShareOneExecution() throws Exception {
+        SingleFlight<String, List<String>> flights = new SingleFlight<>(ArrayList::new);
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<CompletableFuture<List<String>>> calls = new ArrayList<>();
+            calls.add(CompletableFuture.supplyAsync(() -> flights.run("continent", () -> {
+                executions.incrementAndGet();
+                started.countDown();
+                await(release);
+                return new ArrayList<>(List.of("Asia", "Europe"));
+            }), pool));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 3; i++) {
+                calls.add(CompletableFuture.supplyAsync(() -> flights.run("continent", () -> {
+                    executions.incrementAndGet();
+                    return List.of();
+                }), pool));
+            }
+            while (flights.getShared() < 3) Thread.onSpinWait();
+            release.countDown();
+
+            List<String> first = calls.get(0).get(5, TimeUnit.SECONDS);
+            for (CompletableFuture<List<String>> call : calls) {
+                List<String> result = call.get(5, TimeUnit.SECONDS);
+                assertEquals(List.of("Asia", "Europe"), result);
+                if (result != first) assertNotSame(first, result);
+            }
+            assertEquals(1, executions.get());
+            assertEquals(0, flights.getInFlight());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testFinishedCallIsNotReused() {
+        SingleFlight<String, Integer> flights = new SingleFlight<>();
+        AtomicInteger executions = new AtomicInteger();
+        flights.run("world", executions::incrementAndGet);
+        assertEquals(2, flights.run("world", executions::incrementAndGet));
+        assertEquals(0, flights.getShared());
+    }
+
+    @Test
+    void testFailureReachesTheCallerAndClearsTheKey() {
+        SingleFlight<String, Integer> flights = new SingleFlight<>();
+        assertThrows(IllegalStateException.class, () -> flights.run("region", () -> {
+            throw new IllegalStateException("down");
+        }));
+        assertEquals(0, flights.getInFlight());
+        assertEquals(7, flights.run("region", () -> 7));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.napier.devops.www;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestLimiterTest {
+
+    @Test
+    void testRequestsOverTheCapAreTurnedAwayAfterTheQueueTimeout() {
+        RequestLimiter limiter = new RequestLimiter(1, 20);
+        assertTrue(limiter.acquire());
+        assertEquals(1, limiter.getActive());
+
+        assertFalse(limiter.acquire());
+        assertEquals(1, limiter.getRejected());
+        assertEquals(0, limiter.getWaiting());
+
+        limiter.release();
+        assertEquals(0, limiter.getActive());
+    }
+
+    @Test
+    void testQueuedRequestRunsOnceASlotFrees() throws Exception {
+        RequestLimiter limiter = new RequestLimiter(1, 5_000);
+        assertTrue(limiter.acquire());
+
+        CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(limiter::acquire);
+        while (limiter.getWaiting() == 0) Thread.onSpinWait();
+        limiter.release();
+
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+        assertEquals(0, limiter.getRejected());
+    }
+
+    @Test
+    void testVirtualThreadFactoryMatchesTheRuntime() {
+        boolean hasVirtualThreads = Runtime.version().feature() >= 21;
+        assertEquals(hasVirtualThreads, VirtualThreads.factory("test-") != null);
+    }
+}
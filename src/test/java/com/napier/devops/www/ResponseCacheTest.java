@@ -0,0 +1,252 @@
+package com.napier.devops.www;
+
+import com.napier.devops.db.DataVersion;
+import com.napier.devops.metrics.Metrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ResponseCacheTest {
+
+    private DataVersion version;
+    private ResponseCache cache;
+    private final AtomicInteger writes = new AtomicInteger();
+    private final ResponseCache.BodyWriter body = out -> {
+        writes.incrementAndGet();
+        out.write("[1,2,3]".getBytes(StandardCharsets.UTF_8));
+    };
+
+    @BeforeEach
+    void setUp() {
+        version = mock(DataVersion.class);
+        when(version.current()).thenReturn(1L);
+        cache = new ResponseCache(version, 1024, 512);
+    }
+
+    @Test
+    void testSecondRequestIsServedFromCache() throws Exception {
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        cache.serve(request("Asia", null), response(first), body);
+        cache.serve(request(" Asia ", null), response(second), body);
+
+        assertEquals(1, writes.get());
+        assertEquals("[1,2,3]", second.toString(StandardCharsets.UTF_8));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void testBodyOfAFailedDaoCallIsNotKept() throws Exception {
+        ResponseCache.BodyWriter failing = out -> {
+            writes.incrementAndGet();
+            Metrics.markFailed();
+            out.write("[]".getBytes(StandardCharsets.UTF_8));
+        };
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        Response failed = response(first);
+        cache.serve(request("Asia", null), failed, failing);
+        cache.serve(request("Asia", null), response(second), body);
+
+        assertEquals("[]", first.toString(StandardCharsets.UTF_8));
+        verify(failed.raw()).setHeader("ETag", null);
+        assertTrue(failed.raw().isCommitted());
+        assertEquals(2, writes.get());
+        assertEquals("[1,2,3]", second.toString(StandardCharsets.UTF_8));
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    void testEtagOfABodyThatWasNotKeptIsNotHonoured() throws Exception {
+        ResponseCache.BodyWriter failing = out -> {
+            writes.incrementAndGet();
+            Metrics.markFailed();
+            out.write("[]".getBytes(StandardCharsets.UTF_8));
+        };
+        Response failed = response(new ByteArrayOutputStream());
+        cache.serve(request("Asia", null), failed, failing);
+        String etag = etagOf(failed);
+
+        // Revalidating the failed body must not turn it into a 304
+        ByteArrayOutputStream again = new ByteArrayOutputStream();
+        Response res = response(again);
+        cache.serve(request("Asia", etag), res, body);
+
+        verify(res, never()).status(304);
+        assertEquals("[1,2,3]", again.toString(StandardCharsets.UTF_8));
+        assertEquals(2, writes.get());
+    }
+
+    @Test
+    void testMatchingEtagGetsNotModified() throws Exception {
+        Response res = response(new ByteArrayOutputStream());
+        cache.serve(request("Asia", null), res, body);
+        String etag = etagOf(res);
+
+        Response again = response(new ByteArrayOutputStream());
+        cache.serve(request("Asia", etag), again, body);
+
+        verify(again).status(304);
+        verify(again.raw(), never()).getOutputStream();
+        assertEquals(1, writes.get());
+    }
+
+    @Test
+    void testNewDataVersionDropsEntriesAndChangesEtag() throws Exception {
+        Response res = response(new ByteArrayOutputStream());
+        cache.serve(request("Asia", null), res, body);
+        String etag = etagOf(res);
+
+        when(version.current()).thenReturn(2L);
+        Response again = response(new ByteArrayOutputStream());
+        cache.serve(request("Asia", etag), again, body);
+
+        verify(again, never()).status(304);
+        assertEquals(2, writes.get());
+        assertNotEquals(etag, etagOf(again));
+    }
+
+    @Test
+    void testOversizedBodiesAreNotKept() throws Exception {
+        ResponseCache small = new ResponseCache(version, 1024, 4);
+        small.serve(request("Asia", null), response(new ByteArrayOutputStream()), body);
+        assertEquals(0, small.size());
+    }
+
+    @Test
+    void testGzipIsNegotiatedAndCompressedOncePerVersion() throws Exception {
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        Response res = response(first);
+        cache.serve(gzipRequest(), res, body);
+        cache.serve(gzipRequest(), response(second), body);
+
+        verify(res).header("Content-Encoding", "gzip");
+        verify(res).header("Vary", "Accept-Encoding");
+        assertEquals("[1,2,3]", gunzip(first.toByteArray()));
+        assertArrayEquals(first.toByteArray(), second.toByteArray());
+        assertEquals(1, writes.get());
+        assertEquals(1, cache.getCompressions());
+    }
+
+    @Test
+    void testCachedPlainBodyIsCompressedOnFirstGzipRequestOnly() throws Exception {
+        Response plain = response(new ByteArrayOutputStream());
+        cache.serve(request("Asia", null), plain, body);
+        long plainBytes = cache.getCachedBytes();
+
+        ByteArrayOutputStream zipped = new ByteArrayOutputStream();
+        Response gzip = response(zipped);
+        cache.serve(gzipRequest(), gzip, body);
+        cache.serve(gzipRequest(), response(new ByteArrayOutputStream()), body);
+
+        assertEquals("[1,2,3]", gunzip(zipped.toByteArray()));
+        assertEquals(1, cache.getCompressions());
+        assertTrue(cache.getCachedBytes() > plainBytes);
+        assertNotEquals(etagOf(plain), etagOf(gzip));
+        verify(plain, never()).header(eq("Content-Encoding"), anyString());
+    }
+
+    @Test
+    void testDeflateIsUsedWhenGzipIsRefused() throws Exception {
+        Request req = request("Asia", null);
+        when(req.headers("Accept-Encoding")).thenReturn("gzip;q=0, deflate");
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        Response res = response(sink);
+        cache.serve(req, res, body);
+
+        verify(res).header("Content-Encoding", "deflate");
+        try (InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(sink.toByteArray()))) {
+            assertEquals("[1,2,3]", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testLimitIsParsedTheSameWayForTheKeyAndTheRoute() {
+        assertEquals(5, ResponseCache.parseLimit(" 5 "));
+        assertEquals(-1, ResponseCache.parseLimit("-7"));
+        assertEquals(-1, ResponseCache.parseLimit("five"));
+        assertEquals(-1, ResponseCache.parseLimit(null));
+
+        assertEquals(ResponseCache.keyOf(limited("5")), ResponseCache.keyOf(limited(" 5")));
+        assertEquals(ResponseCache.keyOf(limited(null)), ResponseCache.keyOf(limited("five")));
+        assertNotEquals(ResponseCache.keyOf(limited(null)), ResponseCache.keyOf(limited("5")));
+    }
+
+    private static Request limited(String limit) {
+        Request req = request("Asia", null);
+        when(req.queryParams("limit")).thenReturn(limit);
+        return req;
+    }
+
+    @Test
+    void testNegotiation() {
+        assertEquals(ResponseCache.Encoding.IDENTITY, ResponseCache.Encoding.negotiate(null));
+        assertEquals(ResponseCache.Encoding.IDENTITY, ResponseCache.Encoding.negotiate("br"));
+        assertEquals(ResponseCache.Encoding.GZIP, ResponseCache.Encoding.negotiate("gzip, deflate, br"));
+        assertEquals(ResponseCache.Encoding.DEFLATE, ResponseCache.Encoding.negotiate("gzip;q=0.5, deflate"));
+        assertEquals(ResponseCache.Encoding.GZIP, ResponseCache.Encoding.negotiate("*"));
+        assertEquals(ResponseCache.Encoding.IDENTITY, ResponseCache.Encoding.negotiate("gzip;q=0, *;q=0"));
+    }
+
+    private static Request gzipRequest() {
+        Request req = request("Asia", null);
+        when(req.headers("Accept-Encoding")).thenReturn("gzip, deflate, br");
+        return req;
+    }
+
+    private static String gunzip(byte[] bytes) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Request request(String name, String ifNoneMatch) {
+        Request req = mock(Request.class);
+        when(req.pathInfo()).thenReturn("/reports/countries");
+        when(req.queryParams("scope")).thenReturn("Continent");
+        when(req.queryParams("name")).thenReturn(name);
+        when(req.headers("If-None-Match")).thenReturn(ifNoneMatch);
+        return req;
+    }
+
+    /// Like Jetty, the response is committed once its output is flushed.
+    private static Response response(ByteArrayOutputStream sink) throws Exception {
+        Response res = mock(Response.class);
+        HttpServletResponse raw = mock(HttpServletResponse.class);
+        boolean[] committed = {false};
+        when(res.raw()).thenReturn(raw);
+        when(raw.isCommitted()).thenAnswer(inv -> committed[0]);
+        when(raw.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override public boolean isReady() { return true; }
+            @Override public void setWriteListener(WriteListener listener) { }
+            @Override public void write(int b) { sink.write(b); }
+            @Override public void flush() { committed[0] = true; }
+        });
+        return res;
+    }
+
+    private static String etagOf(Response res) {
+        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        verify(res).header(eq("ETag"), captor.capture());
+        return captor.getValue();
+    }
+}